@@ -0,0 +1,153 @@
+#!/bin/sh
+
+# AppCDS training run for the JVM build.
+#
+# Usage: scripts/cds-train.sh <extracted-app-dir>
+#
+# The directory must contain the layout produced by
+#   java -Djarmode=tools -jar janus.jar extract --destination <dir>
+# (an application jar plus lib/). The application is started with
+# -XX:ArchiveClassesAtExit, a training workload is run against the Janus
+# endpoints, and on shutdown the JVM writes <dir>/janus.jsa. Startup to first
+# request is then measured with and without the archive.
+#
+# Requires PostgreSQL and Keycloak to be reachable (make start). When they are
+# not, no archive is written and the application runs without one.
+#
+# POSIX sh so it also runs inside the alpine runtime image during docker build.
+
+set -e
+
+APP_DIR=${1:?usage: cds-train.sh <extracted-app-dir>}
+PORT=${SERVER_PORT:-9090}
+BASE_URL="http://localhost:${PORT}"
+TOKEN_URL=${KEYCLOAK_TOKEN_URI:-http://localhost:8080/realms/janus/protocol/openid-connect/token}
+CLIENT_ID=${KEYCLOAK_CLIENT_ID:-janus-client}
+CLIENT_SECRET=${KEYCLOAK_CLIENT_SECRET:-change-me}
+TRAINING_ROUNDS=${CDS_TRAINING_ROUNDS:-50}
+STARTUP_TIMEOUT_SECONDS=${CDS_STARTUP_TIMEOUT_SECONDS:-120}
+
+cd "$APP_DIR"
+APP_JAR=$(ls ./*.jar | head -n 1)
+if [ -z "$APP_JAR" ]; then
+    echo "No application jar in ${APP_DIR}" >&2
+    exit 1
+fi
+APP_DIR=$(pwd)
+ARCHIVE="${APP_DIR}/janus.jsa"
+LOG="${APP_DIR}/cds-train.log"
+
+# curl locally, busybox wget inside the alpine image
+http_status() {
+    if command -v curl > /dev/null 2>&1; then
+        curl -s -o /dev/null -w '%{http_code}' "$@"
+    else
+        url=$1
+        shift
+        wget -q -O /dev/null -S "$@" "$url" 2>&1 | awk '/HTTP\//{code=$2} END{print code ? code : "000"}'
+    fi
+}
+
+http_post_form() {
+    if command -v curl > /dev/null 2>&1; then
+        curl -s -X POST "$1" -d "$2"
+    else
+        wget -q -O - --post-data="$2" "$1"
+    fi
+}
+
+now_ms() {
+    # busybox date has no %N; fall back to /proc/uptime
+    if date +%s%3N 2>/dev/null | grep -qv 'N'; then
+        date +%s%3N
+    else
+        awk '{printf "%d\n", $1 * 1000}' /proc/uptime
+    fi
+}
+
+wait_until_ready() {
+    pid=$1
+    waited=0
+    while [ "$(http_status "${BASE_URL}/api/v1/auth/health")" != "200" ]; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            return 1
+        fi
+        waited=$((waited + 1))
+        if [ "$waited" -gt $((STARTUP_TIMEOUT_SECONDS * 20)) ]; then
+            return 1
+        fi
+        sleep 0.05
+    done
+    return 0
+}
+
+stop_app() {
+    kill -TERM "$1" 2>/dev/null || true
+    wait "$1" 2>/dev/null || true
+}
+
+# Startup to first successful request, in milliseconds
+measure_startup() {
+    start=$(now_ms)
+    java "$@" -jar "$APP_JAR" > /dev/null 2>&1 &
+    pid=$!
+    if wait_until_ready "$pid"; then
+        echo $(( $(now_ms) - start ))
+    else
+        echo "n/a"
+    fi
+    stop_app "$pid"
+}
+
+training_workload() {
+    token=$(http_post_form "$TOKEN_URL" \
+        "client_id=${CLIENT_ID}&client_secret=${CLIENT_SECRET}&grant_type=password&username=john.doe&password=password" \
+        | sed -n 's/.*"access_token":"\([^"]*\)".*/\1/p')
+
+    round=0
+    while [ "$round" -lt "$TRAINING_ROUNDS" ]; do
+        http_status "${BASE_URL}/api/v1/auth/health" > /dev/null
+        http_status "${BASE_URL}/api/v1/auth/user" > /dev/null
+        http_status "${BASE_URL}/oauth2/authorization/keycloak" > /dev/null
+        http_status "${BASE_URL}/v3/api-docs" > /dev/null
+        if [ -n "$token" ]; then
+            http_status "${BASE_URL}/api/v1/users/keycloak/kc-user-001" -H "Authorization: Bearer ${token}" > /dev/null
+            http_status "${BASE_URL}/api/v1/users/username/john.doe" -H "Authorization: Bearer ${token}" > /dev/null
+            http_status "${BASE_URL}/api/v1/users/exists/kc-user-001" -H "Authorization: Bearer ${token}" > /dev/null
+        fi
+        http_status "${BASE_URL}/api/v1/users/username/john.doe" -H "Authorization: Bearer invalid" > /dev/null
+        round=$((round + 1))
+    done
+
+    if [ -z "$token" ]; then
+        echo "   (no Keycloak token - authenticated endpoints were not trained)"
+    fi
+}
+
+echo "▶ CDS training run (${TRAINING_ROUNDS} rounds)"
+rm -f "$ARCHIVE"
+java -XX:ArchiveClassesAtExit="$ARCHIVE" -jar "$APP_JAR" > "$LOG" 2>&1 &
+PID=$!
+
+if ! wait_until_ready "$PID"; then
+    stop_app "$PID"
+    rm -f "$ARCHIVE"
+    echo "   Janus did not start (is PostgreSQL/Keycloak reachable?) - skipping CDS archive"
+    echo "   See ${LOG}"
+    exit 0
+fi
+
+training_workload
+stop_app "$PID"
+
+if [ ! -f "$ARCHIVE" ]; then
+    echo "   JVM did not write ${ARCHIVE}, see ${LOG}"
+    exit 0
+fi
+echo "   wrote ${ARCHIVE} ($(du -k "$ARCHIVE" | cut -f1) KB)"
+
+echo "▶ Startup to first request"
+WITHOUT=$(measure_startup)
+WITH=$(measure_startup -XX:SharedArchiveFile="$ARCHIVE")
+echo "   without archive: ${WITHOUT} ms"
+echo "   with archive:    ${WITH} ms"
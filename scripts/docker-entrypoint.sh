@@ -0,0 +1,15 @@
+#!/bin/sh
+
+# Container entrypoint: uses the AppCDS archive produced at build time when present.
+
+set -e
+
+APP_DIR=/app/application
+CDS_OPTS=""
+
+if [ -f "${APP_DIR}/janus.jsa" ]; then
+    CDS_OPTS="-XX:SharedArchiveFile=${APP_DIR}/janus.jsa"
+fi
+
+# JAVA_OPTS is intentionally unquoted so it can carry several flags
+exec java ${CDS_OPTS} ${JAVA_OPTS} -jar "${APP_DIR}/janus.jar" "$@"
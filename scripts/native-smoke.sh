@@ -0,0 +1,133 @@
+#!/bin/bash
+
+# Smoke test for the native executable, compared against the JVM build.
+#
+# Prerequisites:
+#   make start                                   (PostgreSQL + Keycloak)
+#   mvn clean package -DskipTests                (target/janus-*.jar)
+#   mvn -Pnative native:compile -DskipTests      (target/janus)
+#
+# For each build the script measures time-to-first-healthy-response and the
+# resident set size after a short request burst, then checks that the auth and
+# user endpoints answer as expected.
+
+set -e
+
+PORT=${SERVER_PORT:-9090}
+BASE_URL="http://localhost:${PORT}"
+TOKEN_URL=${KEYCLOAK_TOKEN_URI:-http://localhost:8080/realms/janus/protocol/openid-connect/token}
+CLIENT_ID=${KEYCLOAK_CLIENT_ID:-janus-client}
+CLIENT_SECRET=${KEYCLOAK_CLIENT_SECRET:-change-me}
+
+NATIVE_BIN="target/janus"
+JAR=$(ls target/janus-*.jar 2>/dev/null | grep -v '\.original$' | head -n 1)
+
+RED='\033[0;31m'
+GREEN='\033[0;32m'
+BLUE='\033[0;34m'
+NC='\033[0m'
+
+FAILURES=0
+
+now_ms() {
+    date +%s%3N
+}
+
+expect_status() {
+    local description=$1
+    local expected=$2
+    shift 2
+    local actual
+    actual=$(curl -s -o /dev/null -w '%{http_code}' "$@")
+    if [[ "$actual" =~ ^(${expected})$ ]]; then
+        echo -e "   ${GREEN}✓${NC} ${description} (${actual})"
+    else
+        echo -e "   ${RED}✗${NC} ${description} (expected ${expected}, got ${actual})"
+        FAILURES=$((FAILURES + 1))
+    fi
+}
+
+run_build() {
+    local label=$1
+    shift
+
+    echo -e "${BLUE}▶ ${label}${NC}"
+    local start
+    start=$(now_ms)
+    "$@" > "target/smoke-${label}.log" 2>&1 &
+    local pid=$!
+
+    until curl -sf "${BASE_URL}/api/v1/auth/health" > /dev/null 2>&1; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo -e "   ${RED}✗${NC} process exited, see target/smoke-${label}.log"
+            FAILURES=$((FAILURES + 1))
+            return
+        fi
+        sleep 0.05
+    done
+    local startup=$(( $(now_ms) - start ))
+
+    # Auth endpoints
+    expect_status "GET /api/v1/auth/health" 200 "${BASE_URL}/api/v1/auth/health"
+    # Unauthenticated requests either get a 401 or a redirect to the Keycloak login
+    expect_status "GET /api/v1/auth/user without credentials" "401|302" "${BASE_URL}/api/v1/auth/user"
+    expect_status "GET /oauth2/authorization/keycloak redirects" 302 "${BASE_URL}/oauth2/authorization/keycloak"
+
+    # User endpoints (Bearer token from the pre-configured test user)
+    local token
+    token=$(curl -s -X POST "${TOKEN_URL}" \
+        -d "client_id=${CLIENT_ID}" -d "client_secret=${CLIENT_SECRET}" \
+        -d "grant_type=password" -d "username=john.doe" -d "password=password" \
+        | sed -n 's/.*"access_token":"\([^"]*\)".*/\1/p')
+    expect_status "GET /api/v1/users/username/john.doe without credentials" "401|302" \
+        "${BASE_URL}/api/v1/users/username/john.doe"
+    if [ -n "$token" ]; then
+        expect_status "GET /api/v1/users/username/john.doe" 200 \
+            -H "Authorization: Bearer ${token}" "${BASE_URL}/api/v1/users/username/john.doe"
+        expect_status "GET /api/v1/users/exists/kc-user-001" 200 \
+            -H "Authorization: Bearer ${token}" "${BASE_URL}/api/v1/users/exists/kc-user-001"
+    else
+        echo "   - could not obtain a Keycloak token, skipping authenticated user checks"
+    fi
+
+    for _ in $(seq 1 200); do
+        curl -s -o /dev/null "${BASE_URL}/api/v1/auth/health"
+    done
+    local rss_kb
+    rss_kb=$(ps -o rss= -p "$pid" | tr -d ' ')
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+
+    echo "   startup to first request: ${startup} ms"
+    echo "   RSS after warm-up:        $((rss_kb / 1024)) MB"
+    echo ""
+    RESULTS+=("$(printf '%-8s %10s ms %10s MB' "$label" "$startup" "$((rss_kb / 1024))")")
+}
+
+RESULTS=()
+
+if [ -n "$JAR" ]; then
+    run_build jvm java -jar "$JAR"
+else
+    echo "No JAR found in target/ - run 'mvn clean package -DskipTests' for the JVM baseline"
+fi
+
+if [ -x "$NATIVE_BIN" ]; then
+    run_build native "$NATIVE_BIN"
+else
+    echo "No native executable at ${NATIVE_BIN} - run 'mvn -Pnative native:compile -DskipTests'"
+    FAILURES=$((FAILURES + 1))
+fi
+
+echo -e "${BLUE}Summary${NC}"
+printf '%-8s %13s %13s\n' "build" "startup" "rss"
+for line in "${RESULTS[@]}"; do
+    echo "$line"
+done
+
+if [ "$FAILURES" -gt 0 ]; then
+    echo -e "${RED}${FAILURES} check(s) failed${NC}"
+    exit 1
+fi
+echo -e "${GREEN}All smoke checks passed${NC}"
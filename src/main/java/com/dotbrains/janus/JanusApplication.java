@@ -1,14 +1,19 @@
 package com.dotbrains.janus;
 
+import com.dotbrains.janus.config.JanusRuntimeHints;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @SpringBootApplication
 @EnableJpaRepositories
 @EnableTransactionManagement
+@EnableScheduling
+@ImportRuntimeHints(JanusRuntimeHints.class)
 @Slf4j
 public class JanusApplication {
 
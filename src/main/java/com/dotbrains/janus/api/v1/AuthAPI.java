@@ -1,5 +1,9 @@
 package com.dotbrains.janus.api.v1;
 
+import com.dotbrains.janus.auth.v1.CurrentUserResponse;
+import com.dotbrains.janus.auth.v1.EnhancedTokenResponse;
+import com.dotbrains.janus.auth.v1.LoginFailureResponse;
+import com.dotbrains.janus.auth.v1.LoginResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -9,10 +13,14 @@
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.Map;
 
@@ -44,7 +52,7 @@ public interface AuthAPI {
             description = "Authentication successful",
             content = @Content(
                 mediaType = "application/json",
-                schema = @Schema(implementation = Map.class),
+                schema = @Schema(implementation = LoginResponse.class),
                 examples = @ExampleObject(
                     name = "Success Response",
                     value = """
@@ -74,7 +82,7 @@ public interface AuthAPI {
     })
     @SecurityRequirement(name = "oauth2")
     @GetMapping("/success")
-    Map<String, Object> loginSuccess(
+    LoginResponse loginSuccess(
         @Parameter(hidden = true)
         @AuthenticationPrincipal OidcUser oidcUser
     );
@@ -89,7 +97,7 @@ Map<String, Object> loginSuccess(
             description = "Authentication failure response",
             content = @Content(
                 mediaType = "application/json",
-                schema = @Schema(implementation = Map.class),
+                schema = @Schema(implementation = LoginFailureResponse.class),
                 examples = @ExampleObject(
                     name = "Failure Response",
                     value = """
@@ -103,7 +111,7 @@ Map<String, Object> loginSuccess(
         )
     })
     @GetMapping("/failure")
-    Map<String, Object> loginFailure();
+    LoginFailureResponse loginFailure();
 
     @Operation(
         summary = "Get Current User",
@@ -147,7 +155,7 @@ Map<String, Object> loginSuccess(
     })
     @SecurityRequirement(name = "oauth2")
     @GetMapping("/user")
-    Map<String, Object> getCurrentUser(
+    CurrentUserResponse getCurrentUser(
         @Parameter(hidden = true)
         @AuthenticationPrincipal OidcUser oidcUser
     );
@@ -164,7 +172,7 @@ Map<String, Object> getCurrentUser(
             description = "Enhanced token generated successfully",
             content = @Content(
                 mediaType = "application/json",
-                schema = @Schema(implementation = Map.class),
+                schema = @Schema(implementation = EnhancedTokenResponse.class),
                 examples = @ExampleObject(
                     name = "Enhanced Token Response",
                     value = """
@@ -201,11 +209,56 @@ Map<String, Object> getCurrentUser(
     })
     @SecurityRequirement(name = "oauth2")
     @GetMapping("/token")
-    Map<String, Object> getEnhancedToken(
+    EnhancedTokenResponse getEnhancedToken(
         @Parameter(hidden = true)
         @AuthenticationPrincipal OidcUser oidcUser
     );
 
+    @Operation(
+        summary = "Refresh Tokens",
+        description = "Exchanges a Keycloak refresh token of a public client for new tokens, like a refresh_token " +
+                     "grant on Keycloak's token endpoint; no client secret is sent. Identical concurrent or recent " +
+                     "refreshes (several tabs of the same user) share one call to Keycloak and get the same response."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Tokens refreshed; the token endpoint's response, unchanged",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    name = "Refresh Response",
+                    value = """
+                        {
+                          "access_token": "eyJhbGciOiJSUzI1NiIs...",
+                          "expires_in": 300,
+                          "refresh_token": "eyJhbGciOiJIUzUxMiIs...",
+                          "refresh_expires_in": 1800,
+                          "token_type": "Bearer"
+                        }
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Refresh token missing, expired or revoked, or the client is the confidential Janus client",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "502",
+            description = "Keycloak's token endpoint could not be reached",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @PostMapping(value = "/refresh", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    ResponseEntity<byte[]> refresh(
+        @Parameter(description = "The refresh token")
+        @RequestParam("refresh_token") String refreshToken,
+        @Parameter(description = "The public client the refresh token was issued to; defaults to the Janus client, refused while it has a secret")
+        @RequestParam(name = "client_id", required = false) String clientId
+    );
+
     @Operation(
         summary = "Health Check",
         description = "Simple health check endpoint to verify the authentication service is running."
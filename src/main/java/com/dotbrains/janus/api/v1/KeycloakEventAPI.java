@@ -0,0 +1,80 @@
+package com.dotbrains.janus.api.v1;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Keycloak Event API Interface - Version 1
+ * 
+ * Receives user and admin events from a Keycloak event listener. Requests are
+ * authenticated with an HMAC-SHA256 signature of a timestamp and the body instead
+ * of a token.
+ * 
+ * @version 1.0
+ * @since 1.0
+ */
+@Tag(
+    name = "Keycloak Events v1",
+    description = "Webhook for Keycloak user and admin events"
+)
+@RequestMapping("/api/v1/keycloak")
+public interface KeycloakEventAPI {
+
+    @Operation(
+        summary = "Submit Keycloak Events",
+        description = "Accepts one event or an array of events. User changes are merged per user and applied in batches."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "202",
+            description = "Events accepted",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                        {
+                          "accepted": 2
+                        }
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Body is not a Keycloak event or array of events",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Missing or invalid signature, or a timestamp outside janus.keycloak-events.max-clock-skew",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "413",
+            description = "More events in one request than janus.keycloak-events.max-pending",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Too many events pending, retry after the Retry-After delay",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @PostMapping("/events")
+    ResponseEntity<Map<String, Object>> submitEvents(
+        @Parameter(description = "Hex HMAC-SHA256 of \"{timestamp}.{body}\" keyed with janus.keycloak-events.secret")
+        @RequestHeader(name = "X-Keycloak-Signature", required = false) String signature,
+        @Parameter(description = "Time of signing in epoch seconds")
+        @RequestHeader(name = "X-Keycloak-Timestamp", required = false) String timestamp,
+        @RequestBody byte[] body
+    );
+}
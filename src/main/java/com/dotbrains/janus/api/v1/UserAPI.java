@@ -1,6 +1,6 @@
 package com.dotbrains.janus.api.v1;
 
-import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.v1.UserResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,7 +10,11 @@
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.JsonNode;
 
 import java.util.Map;
 
@@ -18,6 +22,11 @@
  * User Management API Interface - Version 1
  * 
  * Provides user management endpoints for querying and managing users.
+ * User lookups carry a strong ETag derived from the user's id and version and
+ * honor If-None-Match, so pollers mostly receive 304 Not Modified. Clients that
+ * need every change follow the server-sent event feed instead of polling.
+ * Free-form user attributes are read and written as one JSON document per user,
+ * versioned with the user.
  * 
  * @version 1.0
  * @since 1.0
@@ -31,7 +40,7 @@ public interface UserAPI {
 
     @Operation(
         summary = "Get User by Keycloak ID",
-        description = "Retrieves a user by their Keycloak ID"
+        description = "Retrieves a user by their Keycloak ID. Supports conditional requests via ETag/If-None-Match."
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -39,9 +48,14 @@ public interface UserAPI {
             description = "User found",
             content = @Content(
                 mediaType = "application/json",
-                schema = @Schema(implementation = User.class)
+                schema = @Schema(implementation = UserResponse.class)
             )
         ),
+        @ApiResponse(
+            responseCode = "304",
+            description = "User unchanged since the ETag in If-None-Match",
+            content = @Content
+        ),
         @ApiResponse(
             responseCode = "404",
             description = "User not found",
@@ -65,14 +79,17 @@ public interface UserAPI {
     })
     @SecurityRequirement(name = "oauth2")
     @GetMapping("/keycloak/{keycloakId}")
-    Map<String, Object> getUserByKeycloakId(
+    ResponseEntity<?> getUserByKeycloakId(
         @Parameter(description = "Keycloak user ID", required = true)
-        @PathVariable String keycloakId
+        @PathVariable String keycloakId,
+        @Parameter(description = "ETag from a previous response")
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     );
 
     @Operation(
         summary = "Get User by Username",
-        description = "Retrieves a user by their username with all associated roles"
+        description = "Retrieves a user by their username with all associated roles. " +
+                     "Supports conditional requests via ETag/If-None-Match."
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -80,9 +97,14 @@ Map<String, Object> getUserByKeycloakId(
             description = "User found",
             content = @Content(
                 mediaType = "application/json",
-                schema = @Schema(implementation = User.class)
+                schema = @Schema(implementation = UserResponse.class)
             )
         ),
+        @ApiResponse(
+            responseCode = "304",
+            description = "User unchanged since the ETag in If-None-Match",
+            content = @Content
+        ),
         @ApiResponse(
             responseCode = "404",
             description = "User not found",
@@ -106,9 +128,199 @@ Map<String, Object> getUserByKeycloakId(
     })
     @SecurityRequirement(name = "oauth2")
     @GetMapping("/username/{username}")
-    Map<String, Object> getUserByUsername(
+    ResponseEntity<?> getUserByUsername(
         @Parameter(description = "Username", required = true)
-        @PathVariable String username
+        @PathVariable String username,
+        @Parameter(description = "ETag from a previous response")
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    );
+
+    @Operation(
+        summary = "Get User Attributes",
+        description = "Retrieves the free-form attributes document of a user. " +
+                     "Carries the user's ETag and supports conditional requests via If-None-Match."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Attributes of the user, an empty object if none are set",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                        {
+                          "costCenter": "CC-4410",
+                          "location": { "city": "Oslo", "site": "HQ" }
+                        }
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "304",
+            description = "User unchanged since the ETag in If-None-Match",
+            content = @Content
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "User not found",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                        {
+                          "error": "User not found",
+                          "keycloakId": "kc-user-001"
+                        }
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Not authenticated",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @SecurityRequirement(name = "oauth2")
+    @GetMapping("/keycloak/{keycloakId}/attributes")
+    ResponseEntity<?> getUserAttributes(
+        @Parameter(description = "Keycloak user ID", required = true)
+        @PathVariable String keycloakId,
+        @Parameter(description = "ETag from a previous response")
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    );
+
+    @Operation(
+        summary = "Replace User Attributes",
+        description = "Replaces the attributes document of a user. Changing it bumps the user's version, " +
+                     "so cached claims and ETags of the user are invalidated and a change is published."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Attributes stored",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Not a JSON object, or larger than janus.users.attributes.max-bytes",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "User not found",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                        {
+                          "error": "User not found",
+                          "keycloakId": "kc-user-001"
+                        }
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Not authenticated",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @SecurityRequirement(name = "oauth2")
+    @PutMapping("/keycloak/{keycloakId}/attributes")
+    ResponseEntity<?> replaceUserAttributes(
+        @Parameter(description = "Keycloak user ID", required = true)
+        @PathVariable String keycloakId,
+        @Parameter(description = "The new attributes document", required = true)
+        @RequestBody JsonNode attributes
+    );
+
+    @Operation(
+        summary = "Update User Attributes",
+        description = "Applies a JSON merge patch (RFC 7396) to the attributes document of a user: " +
+                     "objects are merged, other values replaced and null removes an attribute."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Attributes after the patch",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "The patched document is not a JSON object, or larger than janus.users.attributes.max-bytes",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "User not found",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                        {
+                          "error": "User not found",
+                          "keycloakId": "kc-user-001"
+                        }
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Not authenticated",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @SecurityRequirement(name = "oauth2")
+    @PatchMapping(value = "/keycloak/{keycloakId}/attributes", consumes = {"application/merge-patch+json", "application/json"})
+    ResponseEntity<?> mergeUserAttributes(
+        @Parameter(description = "Keycloak user ID", required = true)
+        @PathVariable String keycloakId,
+        @Parameter(description = "JSON merge patch", required = true)
+        @RequestBody JsonNode patch
+    );
+
+    @Operation(
+        summary = "Find Users by Attributes",
+        description = "Finds active users of the caller's realm whose attributes contain the given JSON object, " +
+                     "e.g. match={\"location\":{\"city\":\"Oslo\"}}. Served by the GIN index on attributes."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Matching users, in Keycloak ID order",
+            content = @Content(
+                mediaType = "application/json",
+                examples = @ExampleObject(
+                    value = """
+                        [
+                          { "keycloakId": "kc-user-001", "username": "john.doe" }
+                        ]
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "match is not a JSON object, or limit is out of range",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Not authenticated",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @SecurityRequirement(name = "oauth2")
+    @GetMapping("/attributes")
+    ResponseEntity<?> findUsersByAttributes(
+        @Parameter(description = "JSON object the attributes must contain", required = true)
+        @RequestParam("match") String match,
+        @Parameter(description = "Maximum number of users, 1 to 1000")
+        @RequestParam(value = "limit", defaultValue = "100") int limit
     );
 
     @Operation(
@@ -192,4 +404,51 @@ Map<String, Object> deactivateUser(
         @Parameter(description = "Keycloak user ID", required = true)
         @PathVariable String keycloakId
     );
+
+    @Operation(
+        summary = "Stream User Changes",
+        description = "Server-sent events of the committed changes to users of the caller's realm, in commit order. " +
+                     "Each event has the change's sequence number as id; a client reconnecting with Last-Event-ID " +
+                     "(or ?after=) receives every change after it. A reset event means changes were purged " +
+                     "before they could be sent and cached users must be reloaded."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Event stream of user.updated, user.deactivated and reset events",
+            content = @Content(
+                mediaType = "text/event-stream",
+                examples = @ExampleObject(
+                    value = """
+                        id: 42
+                        event: user.deactivated
+                        data: {"seq":42,"keycloakId":"kc-user-001","type":"DEACTIVATED","changedAt":"2024-06-01T12:30:00Z"}
+                        """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Last-Event-ID or after is not a sequence number",
+            content = @Content
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Not authenticated",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Too many open streams; retry after the Retry-After seconds",
+            content = @Content
+        )
+    })
+    @SecurityRequirement(name = "oauth2")
+    @GetMapping("/changes")
+    ResponseEntity<SseEmitter> streamChanges(
+        @Parameter(description = "Id of the last event received; takes precedence over after")
+        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+        @Parameter(description = "Sequence number to resume after, for clients that cannot set headers")
+        @RequestParam(value = "after", required = false) Long after
+    );
 }
@@ -0,0 +1,31 @@
+package com.dotbrains.janus.audit;
+
+import java.time.Instant;
+
+/**
+ * One entry of the authentication audit trail
+ *
+ * @param occurredAt when the event happened
+ * @param type what happened
+ * @param realm the realm the event happened in
+ * @param subject the Keycloak ID of the user concerned, if known
+ * @param username the username of the user concerned, if known
+ * @param actor who caused the event, if not the user itself
+ * @param clientIp the remote address of the request
+ */
+public record AuditEvent(
+        Instant occurredAt,
+        Type type,
+        String realm,
+        String subject,
+        String username,
+        String actor,
+        String clientIp
+) {
+
+    public enum Type {
+        LOGIN_SUCCESS,
+        LOGIN_FAILURE,
+        USER_DEACTIVATED
+    }
+}
@@ -0,0 +1,162 @@
+package com.dotbrains.janus.audit;
+
+import com.dotbrains.janus.realm.Realms;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of the authentication audit trail
+ *
+ * Events are captured on the request thread (time, realm, remote address, acting user)
+ * and put in a bounded buffer; the {@link AuditWriter} stores them off the request
+ * thread, so request latency never includes audit I/O. When the buffer is full the
+ * {@code overflow} policy drops either the new event or the oldest buffered one;
+ * drops are counted in {@code janus.audit.dropped} by event type.
+ */
+@Component
+@Slf4j
+public class AuditLog {
+
+    /**
+     * What to drop when the buffer is full
+     */
+    public enum Overflow {
+        DROP_NEWEST,
+        DROP_OLDEST
+    }
+
+    private final Realms realms;
+    private final boolean enabled;
+    private final Overflow overflow;
+    private final BlockingQueue<AuditEvent> buffer;
+    private final Map<AuditEvent.Type, Counter> dropped = new EnumMap<>(AuditEvent.Type.class);
+
+    public AuditLog(MeterRegistry meterRegistry,
+                    Realms realms,
+                    @Value("${janus.audit.enabled}") boolean enabled,
+                    @Value("${janus.audit.buffer-size}") int bufferSize,
+                    @Value("${janus.audit.overflow}") Overflow overflow) {
+        this.realms = realms;
+        this.enabled = enabled;
+        this.overflow = overflow;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        for (AuditEvent.Type type : AuditEvent.Type.values()) {
+            dropped.put(type, Counter.builder("janus.audit.dropped")
+                    .description("Audit events dropped because the buffer was full")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("janus.audit.buffer.size", buffer, BlockingQueue::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a successful login
+     * @param subject the Keycloak user ID
+     * @param username the preferred username
+     */
+    public void loginSucceeded(String subject, String username) {
+        record(AuditEvent.Type.LOGIN_SUCCESS, subject, username, null);
+    }
+
+    /**
+     * Record a failed login; the user is not known
+     */
+    public void loginFailed() {
+        record(AuditEvent.Type.LOGIN_FAILURE, null, null, null);
+    }
+
+    /**
+     * Record the deactivation of a user by the current principal
+     * @param subject the Keycloak ID of the deactivated user
+     * @param username the username of the deactivated user
+     */
+    public void userDeactivated(String subject, String username) {
+        record(AuditEvent.Type.USER_DEACTIVATED, subject, username, currentActor());
+    }
+
+    /**
+     * Record the deactivation of a user by a background job
+     * @param subject the Keycloak ID of the deactivated user
+     * @param username the username of the deactivated user
+     * @param actor the name of the job
+     */
+    public void userDeactivated(String subject, String username, String actor) {
+        record(AuditEvent.Type.USER_DEACTIVATED, subject, username, actor);
+    }
+
+    private void record(AuditEvent.Type type, String subject, String username, String actor) {
+        if (!enabled) {
+            return;
+        }
+        AuditEvent event = new AuditEvent(Instant.now(), type, realms.current(), subject, username, actor, currentClientIp());
+        while (!buffer.offer(event)) {
+            AuditEvent victim = overflow == Overflow.DROP_OLDEST ? buffer.poll() : event;
+            if (victim != null) {
+                dropped.get(victim.type()).increment();
+            }
+            if (victim == event) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait for buffered events and move up to a batch of them to the given collection
+     * @param batch receives the events
+     * @param maxEvents the maximum number of events to move
+     * @param wait how long to wait for a first event
+     * @return the number of events moved
+     */
+    int drainTo(Collection<AuditEvent> batch, int maxEvents, Duration wait) throws InterruptedException {
+        AuditEvent first = buffer.poll(wait.toNanos(), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return 0;
+        }
+        batch.add(first);
+        return 1 + buffer.drainTo(batch, maxEvents - 1);
+    }
+
+    /**
+     * Move up to a batch of buffered events to the given collection without waiting
+     */
+    int drainTo(Collection<AuditEvent> batch, int maxEvents) {
+        return buffer.drainTo(batch, maxEvents);
+    }
+
+    private static String currentClientIp() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            return request.getRemoteAddr();
+        }
+        return null;
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : null;
+    }
+}
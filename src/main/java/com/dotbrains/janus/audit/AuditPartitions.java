@@ -0,0 +1,67 @@
+package com.dotbrains.janus.audit;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Creates the monthly partitions of {@code auth_audit} ahead of time
+ *
+ * The table is range-partitioned on {@code occurred_at} (UTC months), so old months
+ * can be detached or dropped as a whole and the BRIN index stays small. Rows
+ * outside every monthly partition land in {@code auth_audit_default}.
+ */
+@Component
+@DependsOnDatabaseInitialization
+@Slf4j
+public class AuditPartitions {
+
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'auth_audit_'yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int monthsAhead;
+
+    public AuditPartitions(JdbcTemplate jdbcTemplate,
+                           @Value("${janus.audit.enabled}") boolean enabled,
+                           @Value("${janus.audit.partitions-ahead}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Make sure the partitions of this month and the next {@code partitions-ahead} months exist
+     */
+    @PostConstruct
+    @Scheduled(cron = "0 0 3 * * *", zone = "UTC")
+    public void createPartitions() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate month = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            create(month.plusMonths(i));
+        }
+    }
+
+    private void create(LocalDate month) {
+        String sql = "CREATE TABLE IF NOT EXISTS " + NAME.format(month) + " PARTITION OF auth_audit"
+                + " FOR VALUES FROM ('" + month + " 00:00:00+00') TO ('" + month.plusMonths(1) + " 00:00:00+00')";
+        try {
+            jdbcTemplate.execute(sql);
+        } catch (DataAccessException e) {
+            // e.g. the default partition already holds rows of that month
+            log.warn("Could not create audit partition {}: {}", NAME.format(month), e.getMessage());
+        }
+    }
+}
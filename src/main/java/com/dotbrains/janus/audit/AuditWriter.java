@@ -0,0 +1,160 @@
+package com.dotbrains.janus.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes buffered audit events to {@code auth_audit} on a dedicated thread
+ *
+ * Events are inserted with one multi-row {@code INSERT} per batch of up to
+ * {@code max-batch-size} events; a batch is written as soon as events are
+ * buffered, so batches grow with the login rate. A failed batch is retried after
+ * {@code retry-backoff} while new events keep buffering (and overflow once the
+ * buffer is full). Stopped after the web server, so events of requests completed
+ * during a graceful shutdown are still written.
+ */
+@Component
+@Slf4j
+public class AuditWriter implements SmartLifecycle {
+
+    private static final String INSERT = "INSERT INTO auth_audit "
+            + "(occurred_at, event_type, realm, subject, username, actor, client_ip) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?)";
+
+    private final AuditLog auditLog;
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxBatchSize;
+    private final Duration pollInterval;
+    private final Duration retryBackoff;
+    private final Counter written;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public AuditWriter(AuditLog auditLog,
+                       JdbcTemplate jdbcTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${janus.audit.max-batch-size}") int maxBatchSize,
+                       @Value("${janus.audit.retry-backoff}") Duration retryBackoff) {
+        if (maxBatchSize < 1 || maxBatchSize > 5000) {
+            throw new IllegalArgumentException("janus.audit.max-batch-size must be between 1 and 5000");
+        }
+        this.auditLog = auditLog;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.pollInterval = Duration.ofMillis(200);
+        this.retryBackoff = retryBackoff;
+        this.written = Counter.builder("janus.audit.written")
+                .description("Audit events written to auth_audit")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!auditLog.isEnabled()) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofPlatform().name("audit-writer").daemon().start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join(retryBackoff.plus(Duration.ofSeconds(10)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    @Override
+    public int getPhase() {
+        // Below the web server's graceful shutdown phase, so this stops after it
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void run() {
+        List<AuditEvent> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    auditLog.drainTo(batch, maxBatchSize, pollInterval);
+                }
+                if (!batch.isEmpty()) {
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (DataAccessException e) {
+                log.warn("Could not write {} audit events, retrying in {}: {}", batch.size(), retryBackoff, e.getMessage());
+                sleep(retryBackoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // Shutting down: write what is left, once
+        int lost = 0;
+        do {
+            try {
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (DataAccessException e) {
+                lost += batch.size();
+            }
+            batch.clear();
+        } while (auditLog.drainTo(batch, maxBatchSize) > 0);
+        if (lost > 0) {
+            log.error("Lost {} audit events at shutdown, the database was unavailable", lost);
+        }
+    }
+
+    void write(List<AuditEvent> batch) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + batch.size() * (ROW.length() + 2)).append(INSERT);
+        Object[] args = new Object[batch.size() * 7];
+        int i = 0;
+        for (AuditEvent event : batch) {
+            sql.append(i == 0 ? ROW : ", " + ROW);
+            args[i++] = event.occurredAt().atOffset(ZoneOffset.UTC);
+            args[i++] = event.type().name();
+            args[i++] = event.realm();
+            args[i++] = event.subject();
+            args[i++] = event.username();
+            args[i++] = event.actor();
+            args[i++] = event.clientIp();
+        }
+        jdbcTemplate.update(sql.toString(), args);
+        written.increment(batch.size());
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
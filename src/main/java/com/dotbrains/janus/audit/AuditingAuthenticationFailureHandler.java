@@ -0,0 +1,34 @@
+package com.dotbrains.janus.audit;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import java.io.IOException;
+
+/**
+ * Records failed OAuth2 logins in the audit trail, then redirects to the failure URL
+ *
+ * Recorded here rather than at the failure endpoint, which anyone can request
+ * without having attempted a login.
+ */
+public class AuditingAuthenticationFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private final AuditLog auditLog;
+
+    public AuditingAuthenticationFailureHandler(String failureUrl, AuditLog auditLog) {
+        super(failureUrl);
+        // The failure endpoint does not read the exception back, so never create a session for it
+        setAllowSessionCreation(false);
+        this.auditLog = auditLog;
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
+                                        AuthenticationException exception) throws IOException, ServletException {
+        auditLog.loginFailed();
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
@@ -0,0 +1,24 @@
+package com.dotbrains.janus.auth;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cookies holding the OAuth2 login state ({@code janus.auth.cookie.*})
+ *
+ * @param key the base64 AES key (128, 192 or 256 bit) shared by all replicas; a random key is used when empty
+ * @param maxAge how long a login stays valid
+ * @param loginTimeout how long the authorization request of a login in progress is kept
+ * @param secure whether the cookies are only sent over HTTPS
+ * @param sameSite the SameSite attribute; must not be Strict, or the redirect back from Keycloak loses the cookies
+ */
+@ConfigurationProperties("janus.auth.cookie")
+public record AuthCookieProperties(
+        String key,
+        Duration maxAge,
+        Duration loginTimeout,
+        boolean secure,
+        String sameSite
+) {
+}
@@ -0,0 +1,259 @@
+package com.dotbrains.janus.auth;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Encrypted, authenticated cookies for state that would otherwise live in an HTTP session
+ *
+ * Values are sealed with AES-GCM under {@code janus.auth.cookie.key}, with the cookie
+ * name as associated data so a value cannot be replayed under another name, and carry
+ * their own expiry so extending a cookie's Max-Age does not extend its validity. Any
+ * replica holding the key can read the cookies of another. Values longer than one
+ * cookie are split over {@code name}, {@code name.1}, ... up to {@value #MAX_CHUNKS}
+ * cookies.
+ *
+ * The cookies of a completed login are only sent to {@value #LOGIN_PATH}, so no other
+ * route can be authenticated by them, and with it be reached by a cross-site request.
+ */
+@Component
+@EnableConfigurationProperties(AuthCookieProperties.class)
+@Slf4j
+public class AuthCookies {
+
+    /**
+     * Path of the cookies holding a completed login
+     */
+    public static final String LOGIN_PATH = "/api/v1/auth";
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int CHUNK_LENGTH = 3800;
+    private static final int MAX_CHUNKS = 4;
+
+    private final SecretKeySpec key;
+    private final boolean secure;
+    private final String sameSite;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public AuthCookies(AuthCookieProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    AuthCookies(AuthCookieProperties properties, Clock clock) {
+        byte[] keyBytes;
+        if (properties.key() == null || properties.key().isBlank()) {
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+            log.warn("janus.auth.cookie.key is not set, using a random key: logins only work on this instance "
+                    + "and are lost on restart");
+        } else {
+            keyBytes = Base64.getDecoder().decode(properties.key().trim());
+            if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+                throw new IllegalArgumentException("janus.auth.cookie.key must be a base64 AES key of 128, 192 or 256 bits");
+            }
+        }
+        if ("strict".equalsIgnoreCase(properties.sameSite())) {
+            throw new IllegalArgumentException("janus.auth.cookie.same-site must not be Strict");
+        }
+        this.key = new SecretKeySpec(keyBytes, "AES");
+        this.secure = properties.secure();
+        this.sameSite = properties.sameSite();
+        this.clock = clock;
+    }
+
+    /**
+     * Read and open a cookie
+     * @param request the request
+     * @param name the cookie name
+     * @return the value, or empty if absent, expired or not sealed with this key
+     */
+    public Optional<byte[]> read(HttpServletRequest request, String name) {
+        Map<String, String> cookies = cookies(request);
+        String first = cookies.get(name);
+        if (first == null) {
+            return Optional.empty();
+        }
+        StringBuilder sealed = new StringBuilder(first);
+        for (int i = 1; i < MAX_CHUNKS && cookies.containsKey(chunkName(name, i)); i++) {
+            sealed.append(cookies.get(chunkName(name, i)));
+        }
+        return open(name, sealed.toString());
+    }
+
+    /**
+     * Seal a value into a cookie, replacing the previous one
+     * @param request the request, to expire chunks the new value no longer needs
+     * @param response the response
+     * @param name the cookie name
+     * @param value the value
+     * @param maxAge how long the value is valid
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, String name, byte[] value,
+                      Duration maxAge) {
+        write(request, response, name, value, maxAge, "/");
+    }
+
+    /**
+     * Seal a value into a cookie sent only to a path, replacing the previous one
+     * @param request the request, to expire chunks the new value no longer needs
+     * @param response the response
+     * @param name the cookie name
+     * @param value the value
+     * @param maxAge how long the value is valid
+     * @param path the path the cookie is sent to
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, String name, byte[] value,
+                      Duration maxAge, String path) {
+        String sealed = seal(name, value, maxAge);
+        int chunks = (sealed.length() + CHUNK_LENGTH - 1) / CHUNK_LENGTH;
+        if (chunks > MAX_CHUNKS) {
+            throw new IllegalArgumentException("Value of cookie " + name + " is too large: " + sealed.length() + " characters");
+        }
+        for (int i = 0; i < chunks; i++) {
+            String chunk = sealed.substring(i * CHUNK_LENGTH, Math.min((i + 1) * CHUNK_LENGTH, sealed.length()));
+            response.addCookie(cookie(chunkName(name, i), chunk, (int) maxAge.toSeconds(), path));
+        }
+        Map<String, String> previous = cookies(request);
+        for (int i = chunks; i < MAX_CHUNKS; i++) {
+            if (previous.containsKey(chunkName(name, i))) {
+                response.addCookie(cookie(chunkName(name, i), "", 0, path));
+            }
+        }
+    }
+
+    /**
+     * Expire a cookie and its chunks
+     * @param request the request
+     * @param response the response
+     * @param name the cookie name
+     */
+    public void clear(HttpServletRequest request, HttpServletResponse response, String name) {
+        clear(request, response, name, "/");
+    }
+
+    /**
+     * Expire a cookie sent only to a path, and its chunks
+     * @param request the request
+     * @param response the response
+     * @param name the cookie name
+     * @param path the path the cookie was written with
+     */
+    public void clear(HttpServletRequest request, HttpServletResponse response, String name, String path) {
+        Map<String, String> cookies = cookies(request);
+        for (int i = 0; i < MAX_CHUNKS; i++) {
+            if (cookies.containsKey(chunkName(name, i))) {
+                response.addCookie(cookie(chunkName(name, i), "", 0, path));
+            }
+        }
+    }
+
+    /**
+     * @param request the request
+     * @param name the cookie name
+     * @return true if the request carries the cookie, valid or not
+     */
+    public boolean contains(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (cookie.getName().equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String seal(String name, byte[] value, Duration maxAge) {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        byte[] plaintext = ByteBuffer.allocate(Long.BYTES + value.length)
+                .putLong(clock.millis() + maxAge.toMillis())
+                .put(value)
+                .array();
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(name.getBytes(StandardCharsets.UTF_8));
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            byte[] sealed = ByteBuffer.allocate(1 + IV_BYTES + ciphertext.length)
+                    .put(FORMAT_VERSION)
+                    .put(iv)
+                    .put(ciphertext)
+                    .array();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(sealed);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not seal cookie " + name, e);
+        }
+    }
+
+    private Optional<byte[]> open(String name, String sealed) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(sealed);
+            if (bytes.length < 1 + IV_BYTES || bytes[0] != FORMAT_VERSION) {
+                return Optional.empty();
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, 1, IV_BYTES));
+            cipher.updateAAD(name.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer plaintext = ByteBuffer.wrap(cipher.doFinal(bytes, 1 + IV_BYTES, bytes.length - 1 - IV_BYTES));
+            if (plaintext.getLong() < clock.millis()) {
+                return Optional.empty();
+            }
+            byte[] value = new byte[plaintext.remaining()];
+            plaintext.get(value);
+            return Optional.of(value);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            log.debug("Ignoring cookie {} that cannot be opened: {}", name, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Cookie cookie(String name, String value, int maxAge, String path) {
+        Cookie cookie = new Cookie(name, value);
+        cookie.setPath(path);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(secure);
+        cookie.setMaxAge(maxAge);
+        cookie.setAttribute("SameSite", sameSite);
+        return cookie;
+    }
+
+    private static String chunkName(String name, int index) {
+        return index == 0 ? name : name + "." + index;
+    }
+
+    private static Map<String, String> cookies(HttpServletRequest request) {
+        Map<String, String> cookies = new HashMap<>();
+        Cookie[] all = request.getCookies();
+        if (all != null) {
+            for (Cookie cookie : all) {
+                cookies.putIfAbsent(cookie.getName(), cookie.getValue());
+            }
+        }
+        return cookies;
+    }
+}
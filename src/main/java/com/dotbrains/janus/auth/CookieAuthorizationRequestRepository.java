@@ -0,0 +1,115 @@
+package com.dotbrains.janus.auth;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the authorization request of a login in progress in an encrypted cookie
+ *
+ * Replaces the HTTP session storage, so the callback from Keycloak can land on any
+ * replica. The request is only returned for a callback carrying its {@code state}.
+ */
+@Component
+public class CookieAuthorizationRequestRepository implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+
+    static final String COOKIE = "JANUS_OAUTH2_REQUEST";
+
+    private final AuthCookies cookies;
+    private final JsonMapper jsonMapper;
+    private final Duration loginTimeout;
+
+    public CookieAuthorizationRequestRepository(AuthCookies cookies, JsonMapper jsonMapper,
+                                                AuthCookieProperties properties) {
+        this.cookies = cookies;
+        this.jsonMapper = jsonMapper;
+        this.loginTimeout = properties.loginTimeout();
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest loadAuthorizationRequest(HttpServletRequest request) {
+        String state = request.getParameter(OAuth2ParameterNames.STATE);
+        if (state == null) {
+            return null;
+        }
+        return cookies.read(request, COOKIE)
+                .map(this::decode)
+                .filter(stored -> state.equals(stored.state()))
+                .map(StoredRequest::toAuthorizationRequest)
+                .orElse(null);
+    }
+
+    @Override
+    public void saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest, HttpServletRequest request,
+                                         HttpServletResponse response) {
+        if (authorizationRequest == null) {
+            cookies.clear(request, response, COOKIE);
+            return;
+        }
+        cookies.write(request, response, COOKIE,
+                jsonMapper.writeValueAsBytes(StoredRequest.of(authorizationRequest)), loginTimeout);
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request,
+                                                                 HttpServletResponse response) {
+        OAuth2AuthorizationRequest authorizationRequest = loadAuthorizationRequest(request);
+        if (authorizationRequest != null) {
+            cookies.clear(request, response, COOKIE);
+        }
+        return authorizationRequest;
+    }
+
+    private StoredRequest decode(byte[] json) {
+        try {
+            return jsonMapper.readValue(json, StoredRequest.class);
+        } catch (JacksonException e) {
+            return StoredRequest.INVALID;
+        }
+    }
+
+    /**
+     * The fields of an authorization code request, all parameters and attributes being strings
+     */
+    record StoredRequest(
+            String authorizationUri,
+            String clientId,
+            String redirectUri,
+            Set<String> scopes,
+            String state,
+            Map<String, Object> additionalParameters,
+            Map<String, Object> attributes,
+            String authorizationRequestUri
+    ) {
+
+        static final StoredRequest INVALID = new StoredRequest(null, null, null, null, null, null, null, null);
+
+        static StoredRequest of(OAuth2AuthorizationRequest request) {
+            return new StoredRequest(request.getAuthorizationUri(), request.getClientId(), request.getRedirectUri(),
+                    request.getScopes(), request.getState(), request.getAdditionalParameters(),
+                    request.getAttributes(), request.getAuthorizationRequestUri());
+        }
+
+        OAuth2AuthorizationRequest toAuthorizationRequest() {
+            return OAuth2AuthorizationRequest.authorizationCode()
+                    .authorizationUri(authorizationUri)
+                    .clientId(clientId)
+                    .redirectUri(redirectUri)
+                    .scopes(scopes)
+                    .state(state)
+                    .additionalParameters(additionalParameters)
+                    .attributes(attributes)
+                    .authorizationRequestUri(authorizationRequestUri)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.dotbrains.janus.auth;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Keeps the tokens of a logged-in user's authorized client in an encrypted cookie
+ *
+ * Replaces the in-memory {@code OAuth2AuthorizedClientService}, which held the
+ * tokens of every logged-in user on the replica that handled the login. The
+ * client registration itself is looked up by id, only the tokens are stored.
+ */
+@Component
+public class CookieOAuth2AuthorizedClientRepository implements OAuth2AuthorizedClientRepository {
+
+    static final String COOKIE_PREFIX = "JANUS_OAUTH2_CLIENT_";
+
+    private final AuthCookies cookies;
+    private final JsonMapper jsonMapper;
+    private final ClientRegistrationRepository clientRegistrations;
+    private final Duration maxAge;
+
+    public CookieOAuth2AuthorizedClientRepository(AuthCookies cookies, JsonMapper jsonMapper,
+                                                  ClientRegistrationRepository clientRegistrations,
+                                                  AuthCookieProperties properties) {
+        this.cookies = cookies;
+        this.jsonMapper = jsonMapper;
+        this.clientRegistrations = clientRegistrations;
+        this.maxAge = properties.maxAge();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId,
+                                                                     Authentication principal,
+                                                                     HttpServletRequest request) {
+        ClientRegistration registration = clientRegistrations.findByRegistrationId(clientRegistrationId);
+        if (registration == null || principal == null) {
+            return null;
+        }
+        return (T) cookies.read(request, COOKIE_PREFIX + clientRegistrationId)
+                .map(this::decode)
+                .filter(stored -> principal.getName().equals(stored.principalName()))
+                .map(stored -> stored.toAuthorizedClient(registration))
+                .orElse(null);
+    }
+
+    @Override
+    public void saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal,
+                                     HttpServletRequest request, HttpServletResponse response) {
+        cookies.write(request, response, COOKIE_PREFIX + authorizedClient.getClientRegistration().getRegistrationId(),
+                jsonMapper.writeValueAsBytes(StoredClient.of(authorizedClient)), maxAge, AuthCookies.LOGIN_PATH);
+    }
+
+    @Override
+    public void removeAuthorizedClient(String clientRegistrationId, Authentication principal,
+                                       HttpServletRequest request, HttpServletResponse response) {
+        cookies.clear(request, response, COOKIE_PREFIX + clientRegistrationId, AuthCookies.LOGIN_PATH);
+    }
+
+    private StoredClient decode(byte[] json) {
+        try {
+            return jsonMapper.readValue(json, StoredClient.class);
+        } catch (JacksonException e) {
+            return StoredClient.INVALID;
+        }
+    }
+
+    /**
+     * The principal and tokens of an authorized client
+     */
+    record StoredClient(
+            String principalName,
+            String accessToken,
+            Instant accessTokenIssuedAt,
+            Instant accessTokenExpiresAt,
+            Set<String> scopes,
+            String refreshToken,
+            Instant refreshTokenIssuedAt,
+            Instant refreshTokenExpiresAt
+    ) {
+
+        static final StoredClient INVALID = new StoredClient(null, null, null, null, null, null, null, null);
+
+        static StoredClient of(OAuth2AuthorizedClient client) {
+            OAuth2AccessToken access = client.getAccessToken();
+            OAuth2RefreshToken refresh = client.getRefreshToken();
+            return new StoredClient(client.getPrincipalName(),
+                    access.getTokenValue(), access.getIssuedAt(), access.getExpiresAt(), access.getScopes(),
+                    refresh != null ? refresh.getTokenValue() : null,
+                    refresh != null ? refresh.getIssuedAt() : null,
+                    refresh != null ? refresh.getExpiresAt() : null);
+        }
+
+        OAuth2AuthorizedClient toAuthorizedClient(ClientRegistration registration) {
+            OAuth2AccessToken access = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken,
+                    accessTokenIssuedAt, accessTokenExpiresAt, scopes);
+            OAuth2RefreshToken refresh = refreshToken != null
+                    ? new OAuth2RefreshToken(refreshToken, refreshTokenIssuedAt, refreshTokenExpiresAt)
+                    : null;
+            return new OAuth2AuthorizedClient(registration, principalName, access, refresh);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.dotbrains.janus.auth;
+
+import com.nimbusds.jwt.JWTParser;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenDecoderFactory;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.converter.ClaimTypeConverter;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.util.function.SingletonSupplier;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the OAuth2 login of a browser in an encrypted cookie instead of an HTTP session
+ *
+ * Only OIDC logins are stored, as the raw ID token, the user info claims and the
+ * authority names; bearer token requests never touch the cookie. The user is rebuilt
+ * lazily, the first time a request reads its security context, so requests that do
+ * not need it pay nothing for the cookie.
+ *
+ * The cookie is sent to, and only read on, {@value AuthCookies#LOGIN_PATH}: every
+ * other route needs a bearer token, so the cookie cannot authenticate a cross-site
+ * request that changes users.
+ */
+@Component
+@Slf4j
+public class CookieSecurityContextRepository implements SecurityContextRepository {
+
+    static final String COOKIE = "JANUS_AUTH";
+
+    private static final RequestMatcher SCOPE =
+            PathPatternRequestMatcher.withDefaults().matcher(AuthCookies.LOGIN_PATH + "/**");
+
+    private static final ClaimTypeConverter ID_TOKEN_CLAIMS = OidcIdTokenDecoderFactory.createDefaultClaimTypeConverter();
+
+    private final AuthCookies cookies;
+    private final JsonMapper jsonMapper;
+    private final ClientRegistrationRepository clientRegistrations;
+    private final Duration maxAge;
+    private final SecurityContextHolderStrategy contextHolder = SecurityContextHolder.getContextHolderStrategy();
+
+    public CookieSecurityContextRepository(AuthCookies cookies, JsonMapper jsonMapper,
+                                           ClientRegistrationRepository clientRegistrations,
+                                           AuthCookieProperties properties) {
+        this.cookies = cookies;
+        this.jsonMapper = jsonMapper;
+        this.clientRegistrations = clientRegistrations;
+        this.maxAge = properties.maxAge();
+    }
+
+    @Override
+    @Deprecated
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        return loadDeferredContext(requestResponseHolder.getRequest()).get();
+    }
+
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        Supplier<Optional<Authentication>> authentication = SingletonSupplier.of(() -> load(request));
+        Supplier<SecurityContext> context = SingletonSupplier.of(() -> {
+            SecurityContext loaded = contextHolder.createEmptyContext();
+            authentication.get().ifPresent(loaded::setAuthentication);
+            return loaded;
+        });
+        return new DeferredSecurityContext() {
+            @Override
+            public SecurityContext get() {
+                return context.get();
+            }
+
+            @Override
+            public boolean isGenerated() {
+                return authentication.get().isEmpty();
+            }
+        };
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        Authentication authentication = context.getAuthentication();
+        if (authentication == null) {
+            cookies.clear(request, response, COOKIE, AuthCookies.LOGIN_PATH);
+        } else if (authentication instanceof OAuth2AuthenticationToken token
+                && token.getPrincipal() instanceof OidcUser user) {
+            cookies.write(request, response, COOKIE,
+                    jsonMapper.writeValueAsBytes(StoredLogin.of(token, user)), maxAge, AuthCookies.LOGIN_PATH);
+        }
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return SCOPE.matches(request) && cookies.contains(request, COOKIE);
+    }
+
+    private Optional<Authentication> load(HttpServletRequest request) {
+        // A cookie still scoped to / from before is sent everywhere; only honor it where it belongs
+        if (!SCOPE.matches(request)) {
+            return Optional.empty();
+        }
+        return cookies.read(request, COOKIE).flatMap(json -> {
+            try {
+                StoredLogin stored = jsonMapper.readValue(json, StoredLogin.class);
+                ClientRegistration registration = clientRegistrations.findByRegistrationId(stored.registrationId());
+                return registration == null ? Optional.empty() : Optional.of(stored.toAuthentication(registration));
+            } catch (JacksonException | ParseException | IllegalArgumentException e) {
+                log.debug("Ignoring login cookie that cannot be restored: {}", e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * An OIDC login: the ID token as issued, the user info claims and the authority names
+     */
+    record StoredLogin(
+            String registrationId,
+            String idToken,
+            Map<String, Object> userInfo,
+            String userAuthority,
+            List<String> authorities
+    ) {
+
+        static StoredLogin of(OAuth2AuthenticationToken token, OidcUser user) {
+            String userAuthority = null;
+            List<String> authorities = new ArrayList<>();
+            for (GrantedAuthority authority : token.getAuthorities()) {
+                if (authority instanceof OidcUserAuthority) {
+                    userAuthority = authority.getAuthority();
+                } else {
+                    authorities.add(authority.getAuthority());
+                }
+            }
+            return new StoredLogin(token.getAuthorizedClientRegistrationId(), user.getIdToken().getTokenValue(),
+                    user.getUserInfo() != null ? user.getUserInfo().getClaims() : null, userAuthority, authorities);
+        }
+
+        Authentication toAuthentication(ClientRegistration registration) throws ParseException {
+            Map<String, Object> claims = ID_TOKEN_CLAIMS.convert(JWTParser.parse(idToken).getJWTClaimsSet().getClaims());
+            OidcIdToken token = new OidcIdToken(idToken, (Instant) claims.get("iat"),
+                    (Instant) claims.get("exp"), claims);
+            OidcUserInfo info = userInfo != null ? new OidcUserInfo(userInfo) : null;
+            List<GrantedAuthority> granted = new ArrayList<>();
+            if (userAuthority != null) {
+                granted.add(new OidcUserAuthority(userAuthority, token, info));
+            }
+            authorities.forEach(authority -> granted.add(new SimpleGrantedAuthority(authority)));
+            String nameAttribute = registration.getProviderDetails().getUserInfoEndpoint().getUserNameAttributeName();
+            DefaultOidcUser user = new DefaultOidcUser(granted, token, info, nameAttribute);
+            return new OAuth2AuthenticationToken(user, granted, registration.getRegistrationId());
+        }
+    }
+}
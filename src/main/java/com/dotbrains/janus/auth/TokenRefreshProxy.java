@@ -0,0 +1,197 @@
+package com.dotbrains.janus.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Forwards refresh token grants to Keycloak, one call per refresh token
+ *
+ * Browser tabs of the same user tend to refresh the same token at the same moment.
+ * The first request for a (client, refresh token) pair calls the token endpoint on
+ * its own thread; concurrent requests for the pair wait for that call however long it
+ * takes, and requests arriving within {@code janus.auth.refresh.dedupe-window} after it
+ * completed get the same response. Server errors and I/O failures are not kept. Refresh tokens are only
+ * held as SHA-256 hashes. Connections to Keycloak are kept alive and reused by the
+ * JDK HTTP client.
+ *
+ * Only public clients are forwarded, and never with a secret: lending the secret of
+ * the Janus client would let anyone holding one of its refresh tokens use it as that
+ * client. Refreshes for the Janus client, when it is confidential, are refused.
+ */
+@Component
+@Slf4j
+public class TokenRefreshProxy {
+
+    private static final byte[] UNAVAILABLE = """
+            {"error":"temporarily_unavailable","error_description":"Token endpoint unreachable"}\
+            """.getBytes(StandardCharsets.UTF_8);
+    private static final RefreshResult CONFIDENTIAL_CLIENT = new RefreshResult(400, """
+            {"error":"unauthorized_client","error_description":"Only public clients can refresh through Janus"}\
+            """.getBytes(StandardCharsets.UTF_8));
+
+    private final ClientRegistration registration;
+    private final RestClient restClient;
+    private final Map<RefreshKey, CompletableFuture<RefreshResult>> inFlight = new ConcurrentHashMap<>();
+    // Completed calls, kept from completion so they never expire while in flight
+    private final Cache<RefreshKey, RefreshResult> recent;
+    private final Counter forwarded;
+    private final Counter coalesced;
+    private final Counter replayed;
+    private final Counter rejected;
+
+    public TokenRefreshProxy(ClientRegistrationRepository clientRegistrations,
+                             MeterRegistry meterRegistry,
+                             @Value("${janus.auth.refresh.registration-id}") String registrationId,
+                             @Value("${janus.auth.refresh.dedupe-window}") Duration dedupeWindow,
+                             @Value("${janus.auth.refresh.max-entries}") long maxEntries,
+                             @Value("${janus.auth.refresh.timeout}") Duration timeout) {
+        this.registration = clientRegistrations.findByRegistrationId(registrationId);
+        if (registration == null) {
+            throw new IllegalArgumentException("janus.auth.refresh.registration-id: no client registration " + registrationId);
+        }
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build());
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+        this.recent = Caffeine.newBuilder()
+                .expireAfterWrite(dedupeWindow)
+                .maximumSize(maxEntries)
+                .build();
+        this.forwarded = counter(meterRegistry, "forwarded");
+        this.coalesced = counter(meterRegistry, "coalesced");
+        this.replayed = counter(meterRegistry, "replayed");
+        this.rejected = counter(meterRegistry, "rejected");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("janus.auth.refresh")
+                .description("Token refresh requests by outcome: forwarded to Keycloak, coalesced with one in flight, replayed from a recent one, or rejected for a confidential client")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Refresh a token, sharing the call with identical concurrent or recent refreshes
+     * @param clientId the public client the refresh token was issued to, or null for the configured client
+     * @param refreshToken the refresh token
+     * @return the status and body of the token endpoint's response, or 400 for the configured
+     *         client when it has a secret
+     */
+    public RefreshResult refresh(String clientId, String refreshToken) {
+        String client = clientId == null || clientId.isBlank() ? registration.getClientId() : clientId;
+        if (client.equals(registration.getClientId()) && registration.getClientSecret() != null
+                && !registration.getClientSecret().isEmpty()) {
+            rejected.increment();
+            return CONFIDENTIAL_CLIENT;
+        }
+        RefreshKey key = new RefreshKey(client, sha256(refreshToken));
+        RefreshResult done = recent.getIfPresent(key);
+        if (done != null) {
+            replayed.increment();
+            return done;
+        }
+        CompletableFuture<RefreshResult> mine = new CompletableFuture<>();
+        CompletableFuture<RefreshResult> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.join();
+        }
+        // A call may have completed between the two lookups
+        done = recent.getIfPresent(key);
+        if (done != null) {
+            inFlight.remove(key, mine);
+            mine.complete(done);
+            replayed.increment();
+            return done;
+        }
+
+        forwarded.increment();
+        RefreshResult result;
+        try {
+            result = forward(client, refreshToken);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        // Kept before leaving the in-flight map, so a later request finds one or the other
+        if (result.cacheable()) {
+            recent.put(key, result);
+        }
+        inFlight.remove(key, mine);
+        mine.complete(result);
+        return result;
+    }
+
+    private RefreshResult forward(String clientId, String refreshToken) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "refresh_token");
+        form.add("refresh_token", refreshToken);
+        form.add("client_id", clientId);
+        try {
+            return restClient.post()
+                    .uri(registration.getProviderDetails().getTokenUri())
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .body(form)
+                    .exchange((request, response) -> new RefreshResult(response.getStatusCode().value(),
+                            StreamUtils.copyToByteArray(response.getBody())));
+        } catch (RestClientException e) {
+            log.warn("Token refresh could not reach {}: {}", registration.getProviderDetails().getTokenUri(), e.getMessage());
+            return new RefreshResult(502, UNAVAILABLE);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private record RefreshKey(String clientId, String refreshTokenHash) {
+    }
+
+    /**
+     * A token endpoint response, passed through to the caller unchanged
+     * @param status the HTTP status
+     * @param body the JSON body
+     */
+    public record RefreshResult(int status, byte[] body) {
+
+        /**
+         * Successful and rejected refreshes are final; server errors may succeed on retry
+         */
+        boolean cacheable() {
+            return status < 500;
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.dotbrains.janus.auth.v1;
 
 import com.dotbrains.janus.api.v1.AuthAPI;
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.auth.TokenRefreshProxy;
+import com.dotbrains.janus.token.EncodedClaims;
 import com.dotbrains.janus.token.TokenCustomizer;
+import com.dotbrains.janus.user.LastLoginTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -26,69 +33,59 @@
 public class AuthController implements AuthAPI {
 
     private final TokenCustomizer tokenCustomizer;
+    private final LastLoginTracker lastLoginTracker;
+    private final AuditLog auditLog;
+    private final TokenRefreshProxy tokenRefreshProxy;
 
     @Override
-    public Map<String, Object> loginSuccess(@AuthenticationPrincipal OidcUser oidcUser) {
+    public LoginResponse loginSuccess(@AuthenticationPrincipal OidcUser oidcUser) {
         log.info("User logged in successfully: {}", oidcUser.getPreferredUsername());
+        lastLoginTracker.recordLogin(oidcUser.getSubject());
+        auditLog.loginSucceeded(oidcUser.getSubject(), oidcUser.getPreferredUsername());
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", "success");
-        response.put("message", "Authentication successful");
-        response.put("username", oidcUser.getPreferredUsername());
-        response.put("email", oidcUser.getEmail());
+        // Enhance token with database attributes (omitted from the response when empty)
+        EncodedClaims enhancedClaims = tokenCustomizer.enhanceTokenEncoded(oidcUser);
 
-        // Enhance token with database attributes
-        Map<String, Object> enhancedClaims = tokenCustomizer.enhanceToken(oidcUser);
-        if (!enhancedClaims.isEmpty()) {
-            response.put("custom_claims", enhancedClaims);
-        }
-
-        return response;
+        return LoginResponse.success(oidcUser.getPreferredUsername(), oidcUser.getEmail(), enhancedClaims);
     }
 
     @Override
-    public Map<String, Object> loginFailure() {
+    public LoginFailureResponse loginFailure() {
         log.warn("User login failed");
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", "error");
-        response.put("message", "Authentication failed");
-
-        return response;
+        return LoginFailureResponse.INSTANCE;
     }
 
     @Override
-    public Map<String, Object> getCurrentUser(@AuthenticationPrincipal OidcUser oidcUser) {
+    public CurrentUserResponse getCurrentUser(@AuthenticationPrincipal OidcUser oidcUser) {
         log.debug("Fetching current user info: {}", oidcUser.getPreferredUsername());
 
-        Map<String, Object> userInfo = new HashMap<>(oidcUser.getClaims());
+        // OIDC claims plus enhanced claims from database, written inline
+        EncodedClaims enhancedClaims = tokenCustomizer.enhanceTokenEncoded(oidcUser);
 
-        // Add enhanced claims
-        Map<String, Object> enhancedClaims = tokenCustomizer.enhanceToken(oidcUser);
-        userInfo.putAll(enhancedClaims);
-
-        return userInfo;
+        return CurrentUserResponse.of(oidcUser, enhancedClaims);
     }
 
     @Override
-    public Map<String, Object> getEnhancedToken(@AuthenticationPrincipal OidcUser oidcUser) {
+    public EnhancedTokenResponse getEnhancedToken(@AuthenticationPrincipal OidcUser oidcUser) {
         log.debug("Generating enhanced token for user: {}", oidcUser.getPreferredUsername());
 
-        Map<String, Object> response = new HashMap<>();
-        
-        // Standard OIDC claims
-        response.put("sub", oidcUser.getSubject());
-        response.put("preferred_username", oidcUser.getPreferredUsername());
-        response.put("email", oidcUser.getEmail());
-        response.put("email_verified", oidcUser.getEmailVerified());
-        response.put("given_name", oidcUser.getGivenName());
-        response.put("family_name", oidcUser.getFamilyName());
-
-        // Enhanced claims from database
-        Map<String, Object> enhancedClaims = tokenCustomizer.enhanceToken(oidcUser);
-        response.putAll(enhancedClaims);
-
-        return response;
+        // Standard OIDC claims plus enhanced claims from database, written inline
+        EncodedClaims enhancedClaims = tokenCustomizer.enhanceTokenEncoded(oidcUser);
+
+        return EnhancedTokenResponse.of(oidcUser, enhancedClaims);
+    }
+
+    @Override
+    public ResponseEntity<byte[]> refresh(String refreshToken, String clientId) {
+        TokenRefreshProxy.RefreshResult result = tokenRefreshProxy.refresh(clientId, refreshToken);
+
+        // Tokens must not be cached by the browser or intermediaries
+        return ResponseEntity.status(result.status())
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noStore())
+                .header(HttpHeaders.PRAGMA, "no-cache")
+                .body(result.body());
     }
 
     @Override
@@ -0,0 +1,32 @@
+package com.dotbrains.janus.auth.v1;
+
+import com.dotbrains.janus.token.EncodedClaims;
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Current user: every OIDC claim from Keycloak merged with the enhanced claims
+ * from the database, which take precedence on name clashes
+ *
+ * @param claims OIDC claims not overridden by the enhanced claims
+ * @param enhancedClaims claims from the database, written inline
+ */
+public record CurrentUserResponse(
+        @JsonAnyGetter Map<String, Object> claims,
+        @JsonUnwrapped EncodedClaims enhancedClaims
+) {
+
+    public static CurrentUserResponse of(OidcUser oidcUser, EncodedClaims enhancedClaims) {
+        Map<String, Object> claims = oidcUser.getClaims();
+        // Only copy the OIDC claims when an enhanced claim replaces one of them
+        if (enhancedClaims.names().stream().anyMatch(claims::containsKey)) {
+            claims = new HashMap<>(claims);
+            claims.keySet().removeAll(enhancedClaims.names());
+        }
+        return new CurrentUserResponse(claims, enhancedClaims);
+    }
+}
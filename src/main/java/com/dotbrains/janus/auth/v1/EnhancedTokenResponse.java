@@ -0,0 +1,45 @@
+package com.dotbrains.janus.auth.v1;
+
+import com.dotbrains.janus.token.EncodedClaims;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+
+/**
+ * Enhanced token: the standard OIDC claims as fixed fields, followed by the
+ * enhanced claims from the database spliced in from their cached encoding
+ *
+ * @param sub subject (Keycloak user ID)
+ * @param preferredUsername preferred username
+ * @param email email from Keycloak, omitted when the enhanced claims carry the database email
+ * @param emailVerified whether the email is verified
+ * @param givenName given name
+ * @param familyName family name
+ * @param enhancedClaims claims from the database, written inline
+ */
+@JsonPropertyOrder({"sub", "preferred_username", "email", "email_verified", "given_name", "family_name"})
+public record EnhancedTokenResponse(
+        String sub,
+        @JsonProperty("preferred_username") String preferredUsername,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String email,
+        @JsonProperty("email_verified") Boolean emailVerified,
+        @JsonProperty("given_name") String givenName,
+        @JsonProperty("family_name") String familyName,
+        @JsonUnwrapped @Schema(hidden = true) EncodedClaims enhancedClaims
+) {
+
+    public static EnhancedTokenResponse of(OidcUser oidcUser, EncodedClaims enhancedClaims) {
+        return new EnhancedTokenResponse(
+                oidcUser.getSubject(),
+                oidcUser.getPreferredUsername(),
+                enhancedClaims.contains("email") ? null : oidcUser.getEmail(),
+                oidcUser.getEmailVerified(),
+                oidcUser.getGivenName(),
+                oidcUser.getFamilyName(),
+                enhancedClaims
+        );
+    }
+}
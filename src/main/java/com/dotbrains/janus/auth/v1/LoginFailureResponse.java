@@ -0,0 +1,18 @@
+package com.dotbrains.janus.auth.v1;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Response body of a failed OAuth2 login
+ *
+ * @param status always "error"
+ * @param message human-readable status message
+ */
+@JsonPropertyOrder({"status", "message"})
+public record LoginFailureResponse(String status, String message) {
+
+    /**
+     * The failure response carries no per-request data, so a single instance is shared
+     */
+    public static final LoginFailureResponse INSTANCE = new LoginFailureResponse("error", "Authentication failed");
+}
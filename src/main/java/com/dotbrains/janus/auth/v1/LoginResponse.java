@@ -0,0 +1,33 @@
+package com.dotbrains.janus.auth.v1;
+
+import com.dotbrains.janus.token.EncodedClaims;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Response body of a successful OAuth2 login
+ *
+ * @param status always "success"
+ * @param message human-readable status message
+ * @param username the preferred username from Keycloak
+ * @param email the email from Keycloak
+ * @param customClaims enhanced claims from the database, omitted when empty
+ */
+@JsonPropertyOrder({"status", "message", "username", "email", "custom_claims"})
+public record LoginResponse(
+        String status,
+        String message,
+        String username,
+        String email,
+        @JsonProperty("custom_claims")
+        @JsonInclude(JsonInclude.Include.NON_EMPTY)
+        @Schema(type = "object")
+        EncodedClaims customClaims
+) {
+
+    public static LoginResponse success(String username, String email, EncodedClaims customClaims) {
+        return new LoginResponse("success", "Authentication successful", username, email, customClaims);
+    }
+}
@@ -0,0 +1,22 @@
+package com.dotbrains.janus.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tools.jackson.databind.JacksonModule;
+import tools.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Jackson configuration
+ *
+ * Registers Blackbird, which replaces reflective getter calls with generated
+ * LambdaMetafactory accessors for the response records. Spring Boot adds every
+ * JacksonModule bean to the auto-configured JsonMapper.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public JacksonModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
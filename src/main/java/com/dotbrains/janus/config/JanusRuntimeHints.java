@@ -0,0 +1,43 @@
+package com.dotbrains.janus.config;
+
+import com.dotbrains.janus.token.EncodedClaims;
+import com.dotbrains.janus.token.UserClaims;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserRole;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Runtime hints for the GraalVM native image build
+ *
+ * Spring AOT registers the JPA entities for Hibernate, but the SpEL expressions in
+ * CustomClaimsMapper resolve properties reflectively at runtime (firstName, lastName,
+ * isActive, roleNames). Those Lombok-generated accessors are not reachable from any
+ * static call site the native-image analysis can see, so they are registered here.
+ */
+public class JanusRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // SpEL property access against User (getters, including getRoleNames())
+        hints.reflection().registerType(User.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                MemberCategory.INVOKE_PUBLIC_METHODS,
+                MemberCategory.ACCESS_DECLARED_FIELDS);
+
+        // Role names are read through User.getRoleNames() during SpEL evaluation
+        hints.reflection().registerType(UserRole.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                MemberCategory.INVOKE_PUBLIC_METHODS,
+                MemberCategory.ACCESS_DECLARED_FIELDS);
+
+        // Lombok builders are used by UserService when syncing users from Keycloak
+        hints.reflection().registerType(User.UserBuilder.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerType(UserRole.UserRoleBuilder.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        // Instantiated by Jackson from @JsonSerialize(using = ...)
+        hints.reflection().registerType(EncodedClaims.Serializer.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        hints.reflection().registerType(UserClaims.Serializer.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
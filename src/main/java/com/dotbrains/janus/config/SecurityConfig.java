@@ -1,17 +1,34 @@
 package com.dotbrains.janus.config;
 
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.audit.AuditingAuthenticationFailureHandler;
+import com.dotbrains.janus.auth.AuthCookies;
+import com.dotbrains.janus.auth.CookieAuthorizationRequestRepository;
+import com.dotbrains.janus.auth.CookieOAuth2AuthorizedClientRepository;
+import com.dotbrains.janus.auth.CookieSecurityContextRepository;
+import com.dotbrains.janus.ratelimit.AdaptiveConcurrencyLimiter;
+import com.dotbrains.janus.ratelimit.LoadSheddingFilter;
+import com.dotbrains.janus.ratelimit.RateLimitFilter;
+import com.dotbrains.janus.ratelimit.RateLimitProperties;
+import com.dotbrains.janus.ratelimit.RateLimiter;
+import com.dotbrains.janus.realm.IssuerAuthenticationManagers;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtIssuerAuthenticationManagerResolver;
+import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -22,9 +39,17 @@
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
+@EnableConfigurationProperties(RateLimitProperties.class)
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    private final RateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final AuditLog auditLog;
+    private final CookieSecurityContextRepository securityContextRepository;
+    private final CookieAuthorizationRequestRepository authorizationRequestRepository;
+    private final CookieOAuth2AuthorizedClientRepository authorizedClientRepository;
+
     @Value("${janus.cors.allowed-origins}")
     private String[] allowedOrigins;
 
@@ -40,25 +65,33 @@ public class SecurityConfig {
     @Value("${janus.cors.max-age}")
     private long maxAge;
 
-    @Value("${spring.security.oauth2.client.provider.keycloak.issuer-uri}")
-    private String issuerUri;
-
+    /**
+     * Bearer token authentication for the trusted realms, routed by issuer
+     */
     @Bean
     @Profile("!test")
-    public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withIssuerLocation(issuerUri).build();
+    public JwtIssuerAuthenticationManagerResolver jwtIssuerAuthenticationManagerResolver(
+            IssuerAuthenticationManagers managers) {
+        return new JwtIssuerAuthenticationManagerResolver(managers);
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   ObjectProvider<JwtIssuerAuthenticationManagerResolver> issuerResolver)
+            throws Exception {
+        JwtIssuerAuthenticationManagerResolver realmResolver = issuerResolver.getIfAvailable();
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
-                .csrf(csrf -> csrf.disable()) // Disable CSRF for stateless API
+                // No CSRF tokens: the login cookies are only sent to and read on /api/v1/auth, whose
+                // only state change is a POST logout that SameSite=Lax keeps cross-site requests from
+                .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
                         // Public endpoints
                         .requestMatchers(
                                 "/",
                                 "/actuator/health",
+                                "/actuator/health/liveness",
+                                "/actuator/health/readiness",
                                 "/error",
                                 "/.well-known/**"
                         ).permitAll()
@@ -73,22 +106,50 @@ public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Excepti
                         // OAuth2 login endpoints
                         .requestMatchers("/oauth2/**", "/login/**").permitAll()
                         // Versioned API endpoints
-                        .requestMatchers("/api/v1/auth/health").permitAll()
+                        .requestMatchers("/api/v1/auth/health", "/api/v1/auth/failure").permitAll()
+                        // Authenticated by the refresh token, at Keycloak
+                        .requestMatchers(HttpMethod.POST, "/api/v1/auth/refresh").permitAll()
+                        // Authenticated by the body signature
+                        .requestMatchers(HttpMethod.POST, "/api/v1/keycloak/events").permitAll()
                         // All other endpoints require authentication
                         .anyRequest().authenticated()
                 )
+                // The browser login lives in encrypted cookies, so any replica can serve it
+                .securityContext(context -> context.securityContextRepository(securityContextRepository))
                 .oauth2Login(oauth2 -> oauth2
+                        .authorizationEndpoint(endpoint -> endpoint
+                                .authorizationRequestRepository(authorizationRequestRepository))
+                        .authorizedClientRepository(authorizedClientRepository)
                         .defaultSuccessUrl("/api/v1/auth/success", true)
-                        .failureUrl("/api/v1/auth/failure")
+                        // Audited on failure; the failure endpoint renders the JSON error
+                        .failureHandler(new AuditingAuthenticationFailureHandler("/api/v1/auth/failure", auditLog))
                 )
-                .oauth2Client(oauth2 -> {})
-                .oauth2ResourceServer(oauth2 -> oauth2
-                        .jwt(jwt -> {})
-                )
-                // Stateless REST API - no sessions
+                .oauth2Client(oauth2 -> oauth2.authorizedClientRepository(authorizedClientRepository))
+                // Logout expires the login cookie, so it must be where the cookie is sent; expire the tokens with it
+                .logout(logout -> logout
+                        .logoutRequestMatcher(PathPatternRequestMatcher.withDefaults()
+                                .matcher(HttpMethod.POST, AuthCookies.LOGIN_PATH + "/logout"))
+                        .addLogoutHandler((request, response, authentication) -> {
+                            if (authentication instanceof OAuth2AuthenticationToken token) {
+                                authorizedClientRepository.removeAuthorizedClient(
+                                        token.getAuthorizedClientRegistrationId(), token, request, response);
+                            }
+                        }))
+                .oauth2ResourceServer(oauth2 -> {
+                    if (realmResolver != null) {
+                        oauth2.authenticationManagerResolver(realmResolver);
+                    } else {
+                        oauth2.jwt(jwt -> {});
+                    }
+                })
+                // Stateless - no sessions, not even for the OAuth2 login
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
-                );
+                )
+                // Rate limits per route, keyed by the authenticated client or subject
+                .addFilterAfter(new RateLimitFilter(rateLimiter), BearerTokenAuthenticationFilter.class)
+                // Then shed database-backed requests beyond the adaptive concurrency limit
+                .addFilterAfter(new LoadSheddingFilter(concurrencyLimiter), RateLimitFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,29 @@
+package com.dotbrains.janus.exception;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Error response body written by GlobalExceptionHandler
+ *
+ * @param timestamp when the error occurred
+ * @param status HTTP status code
+ * @param error HTTP reason phrase
+ * @param message error detail
+ * @param path request path
+ */
+@JsonPropertyOrder({"timestamp", "status", "error", "message", "path"})
+public record ApiError(
+        LocalDateTime timestamp,
+        int status,
+        String error,
+        String message,
+        String path
+) {
+
+    public static ApiError of(HttpStatus status, String message, String path) {
+        return new ApiError(LocalDateTime.now(), status.value(), status.getReasonPhrase(), message, path);
+    }
+}
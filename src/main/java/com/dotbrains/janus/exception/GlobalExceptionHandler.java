@@ -1,91 +1,118 @@
 package com.dotbrains.janus.exception;
 
+import com.dotbrains.janus.logging.SampledLogger;
+import com.dotbrains.janus.resilience.DatabaseUnavailableException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-
 @RestControllerAdvice
 @Slf4j
 public class GlobalExceptionHandler {
 
+    // Authentication failures are answered with fixed bodies and sampled logs, so a
+    // credential-stuffing flood neither blocks on logging nor leaks failure reasons
+    private static final SampledLogger authErrors = SampledLogger.of(log, "auth.error");
+    private static final SampledLogger accessDenied = SampledLogger.of(log, "auth.access-denied");
+    private static final SampledLogger databaseDown = SampledLogger.of(log, "database.unavailable");
+
+    private static final PrebuiltErrorBody UNAUTHORIZED =
+            new PrebuiltErrorBody(HttpStatus.UNAUTHORIZED, "Authentication failed");
+    private static final PrebuiltErrorBody FORBIDDEN =
+            new PrebuiltErrorBody(HttpStatus.FORBIDDEN, "Access denied");
+    private static final PrebuiltErrorBody DATABASE_UNAVAILABLE =
+            new PrebuiltErrorBody(HttpStatus.SERVICE_UNAVAILABLE, "Database unavailable, retry later");
+
     /**
      * Handle authentication exceptions
      */
     @ExceptionHandler(AuthenticationException.class)
-    public ResponseEntity<Map<String, Object>> handleAuthenticationException(
+    public ResponseEntity<byte[]> handleAuthenticationException(
             AuthenticationException ex, WebRequest request) {
-        log.error("Authentication error: {}", ex.getMessage());
+        authErrors.error("Authentication error: {}", ex.getMessage());
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("timestamp", LocalDateTime.now());
-        body.put("status", HttpStatus.UNAUTHORIZED.value());
-        body.put("error", "Unauthorized");
-        body.put("message", ex.getMessage());
-        body.put("path", request.getDescription(false).replace("uri=", ""));
-
-        return new ResponseEntity<>(body, HttpStatus.UNAUTHORIZED);
+        return UNAUTHORIZED.toResponse(path(request));
     }
 
     /**
      * Handle access denied exceptions
      */
     @ExceptionHandler(AccessDeniedException.class)
-    public ResponseEntity<Map<String, Object>> handleAccessDeniedException(
+    public ResponseEntity<byte[]> handleAccessDeniedException(
             AccessDeniedException ex, WebRequest request) {
-        log.error("Access denied: {}", ex.getMessage());
+        accessDenied.error("Access denied: {}", ex.getMessage());
+
+        return FORBIDDEN.toResponse(path(request));
+    }
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("timestamp", LocalDateTime.now());
-        body.put("status", HttpStatus.FORBIDDEN.value());
-        body.put("error", "Forbidden");
-        body.put("message", ex.getMessage());
-        body.put("path", request.getDescription(false).replace("uri=", ""));
+    /**
+     * Handle calls rejected by the open database circuit breaker
+     */
+    @ExceptionHandler(DatabaseUnavailableException.class)
+    public ResponseEntity<byte[]> handleDatabaseUnavailableException(
+            DatabaseUnavailableException ex, WebRequest request) {
+        databaseDown.warn("Database unavailable: {}", ex.getMessage());
 
-        return new ResponseEntity<>(body, HttpStatus.FORBIDDEN);
+        return DATABASE_UNAVAILABLE.toResponse(path(request));
     }
 
     /**
      * Handle illegal argument exceptions
      */
     @ExceptionHandler(IllegalArgumentException.class)
-    public ResponseEntity<Map<String, Object>> handleIllegalArgumentException(
+    public ResponseEntity<ApiError> handleIllegalArgumentException(
             IllegalArgumentException ex, WebRequest request) {
         log.error("Invalid argument: {}", ex.getMessage());
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("timestamp", LocalDateTime.now());
-        body.put("status", HttpStatus.BAD_REQUEST.value());
-        body.put("error", "Bad Request");
-        body.put("message", ex.getMessage());
-        body.put("path", request.getDescription(false).replace("uri=", ""));
+        return error(HttpStatus.BAD_REQUEST, ex.getMessage(), request);
+    }
+
+    /**
+     * Handle requests missing a required parameter
+     */
+    @ExceptionHandler(MissingServletRequestParameterException.class)
+    public ResponseEntity<ApiError> handleMissingParameterException(
+            MissingServletRequestParameterException ex, WebRequest request) {
+        log.debug("Missing parameter: {}", ex.getMessage());
+
+        return error(HttpStatus.BAD_REQUEST, ex.getMessage(), request);
+    }
+
+    /**
+     * Handle request bodies that cannot be parsed
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<ApiError> handleMessageNotReadableException(
+            HttpMessageNotReadableException ex, WebRequest request) {
+        log.debug("Unreadable request body: {}", ex.getMessage());
 
-        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+        return error(HttpStatus.BAD_REQUEST, "Malformed request body", request);
     }
 
     /**
      * Handle all other exceptions
      */
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<Map<String, Object>> handleGlobalException(
+    public ResponseEntity<ApiError> handleGlobalException(
             Exception ex, WebRequest request) {
         log.error("Unexpected error occurred", ex);
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("timestamp", LocalDateTime.now());
-        body.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
-        body.put("error", "Internal Server Error");
-        body.put("message", "An unexpected error occurred");
-        body.put("path", request.getDescription(false).replace("uri=", ""));
+        return error(HttpStatus.INTERNAL_SERVER_ERROR, "An unexpected error occurred", request);
+    }
+
+    private ResponseEntity<ApiError> error(HttpStatus status, String message, WebRequest request) {
+        ApiError body = ApiError.of(status, message, path(request));
+        return new ResponseEntity<>(body, status);
+    }
 
-        return new ResponseEntity<>(body, HttpStatus.INTERNAL_SERVER_ERROR);
+    private static String path(WebRequest request) {
+        return request.getDescription(false).replace("uri=", "");
     }
 }
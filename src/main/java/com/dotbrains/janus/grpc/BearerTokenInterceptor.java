@@ -0,0 +1,84 @@
+package com.dotbrains.janus.grpc;
+
+import com.dotbrains.janus.realm.Realms;
+import com.nimbusds.jwt.JWTParser;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+
+import java.text.ParseException;
+import java.util.Optional;
+
+/**
+ * Authenticates gRPC calls by their {@code authorization: Bearer} header
+ *
+ * The token is verified by the manager of its issuer, the same one the HTTP API
+ * uses, and the call runs in the issuer's realm ({@link #REALM}). Calls without a
+ * valid token of a trusted realm are closed with UNAUTHENTICATED before reaching
+ * the service.
+ */
+@Slf4j
+public class BearerTokenInterceptor implements ServerInterceptor {
+
+    /**
+     * Realm of the authenticated caller, for the duration of the call
+     */
+    public static final Context.Key<String> REALM = Context.key("janus-realm");
+
+    static final Metadata.Key<String> AUTHORIZATION =
+            Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final String BEARER = "Bearer ";
+
+    private final AuthenticationManagerResolver<String> managers;
+    private final Realms realms;
+
+    public BearerTokenInterceptor(AuthenticationManagerResolver<String> managers, Realms realms) {
+        this.managers = managers;
+        this.realms = realms;
+    }
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                       ServerCallHandler<Q, R> next) {
+        String header = headers.get(AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return reject(call, "Missing bearer token");
+        }
+        String token = header.substring(BEARER.length()).trim();
+
+        String issuer;
+        try {
+            issuer = JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+        } catch (ParseException e) {
+            return reject(call, "Malformed bearer token");
+        }
+        AuthenticationManager manager = managers.resolve(issuer);
+        Optional<String> realm = realms.realmOf(issuer);
+        if (manager == null || realm.isEmpty()) {
+            return reject(call, "Untrusted issuer");
+        }
+        try {
+            manager.authenticate(new BearerTokenAuthenticationToken(token));
+        } catch (AuthenticationException e) {
+            log.debug("Rejected gRPC call to {}: {}", call.getMethodDescriptor().getFullMethodName(), e.getMessage());
+            return reject(call, "Invalid bearer token");
+        }
+        return Contexts.interceptCall(Context.current().withValue(REALM, realm.get()), call, headers, next);
+    }
+
+    private static <Q, R> ServerCall.Listener<Q> reject(ServerCall<Q, R> call, String description) {
+        call.close(Status.UNAUTHENTICATED.withDescription(description), new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+}
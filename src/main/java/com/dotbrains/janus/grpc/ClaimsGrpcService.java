@@ -0,0 +1,258 @@
+package com.dotbrains.janus.grpc;
+
+import com.dotbrains.janus.grpc.v1.BatchGetClaimsRequest;
+import com.dotbrains.janus.grpc.v1.BatchGetClaimsResponse;
+import com.dotbrains.janus.grpc.v1.Claims;
+import com.dotbrains.janus.grpc.v1.ClaimsServiceGrpc;
+import com.dotbrains.janus.grpc.v1.GetClaimsRequest;
+import com.dotbrains.janus.grpc.v1.StreamUserChangesRequest;
+import com.dotbrains.janus.grpc.v1.UserChange;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.resilience.DatabaseUnavailableException;
+import com.dotbrains.janus.token.CustomClaimsMapper;
+import com.dotbrains.janus.token.UserClaims;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserChanges;
+import com.dotbrains.janus.user.UserService;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Claim lookups for internal services over gRPC
+ *
+ * Serves the same claims as {@code /api/v1/auth/user}, from {@link UserService}
+ * and {@link CustomClaimsMapper}, in the realm of the caller's token. Change streams
+ * are fed by {@link UserChanges} without a thread per stream: changes are queued
+ * per stream and written while the transport is ready, and a stream falling more
+ * than {@code janus.grpc.max-queued-changes} behind is closed with
+ * RESOURCE_EXHAUSTED so a slow client cannot hold memory.
+ */
+@Component
+@Slf4j
+public class ClaimsGrpcService extends ClaimsServiceGrpc.ClaimsServiceImplBase {
+
+    private final UserService userService;
+    private final CustomClaimsMapper claimsMapper;
+    private final UserChanges userChanges;
+    private final Realms realms;
+    private final int maxBatchSize;
+    private final int maxQueuedChanges;
+
+    public ClaimsGrpcService(UserService userService,
+                             CustomClaimsMapper claimsMapper,
+                             UserChanges userChanges,
+                             Realms realms,
+                             @Value("${janus.grpc.max-batch-size}") int maxBatchSize,
+                             @Value("${janus.grpc.max-queued-changes}") int maxQueuedChanges) {
+        this.userService = userService;
+        this.claimsMapper = claimsMapper;
+        this.userChanges = userChanges;
+        this.realms = realms;
+        this.maxBatchSize = maxBatchSize;
+        this.maxQueuedChanges = maxQueuedChanges;
+    }
+
+    @Override
+    public void getClaims(GetClaimsRequest request, StreamObserver<Claims> responseObserver) {
+        String keycloakId = request.getKeycloakId();
+        if (keycloakId.isEmpty()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("keycloak_id is required").asRuntimeException());
+            return;
+        }
+        Optional<Claims> claims;
+        try {
+            claims = realms.callAs(callerRealm(), () -> userService.findActiveUserWithRoles(keycloakId).map(this::toClaims));
+        } catch (DataAccessException e) {
+            responseObserver.onError(unavailable(e));
+            return;
+        }
+        if (claims.isEmpty()) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription("User not found: " + keycloakId).asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(claims.get());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void batchGetClaims(BatchGetClaimsRequest request, StreamObserver<BatchGetClaimsResponse> responseObserver) {
+        Set<String> keycloakIds = new LinkedHashSet<>(request.getKeycloakIdsList());
+        if (keycloakIds.size() > maxBatchSize) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("At most " + maxBatchSize + " keycloak_ids per call").asRuntimeException());
+            return;
+        }
+        List<User> users;
+        try {
+            users = realms.callAs(callerRealm(), () -> userService.findActiveUsersWithRoles(keycloakIds));
+        } catch (DataAccessException e) {
+            responseObserver.onError(unavailable(e));
+            return;
+        }
+        BatchGetClaimsResponse.Builder response = BatchGetClaimsResponse.newBuilder();
+        for (User user : users) {
+            response.putClaims(user.getKeycloakId(), toClaims(user));
+        }
+        for (String keycloakId : keycloakIds) {
+            if (!response.containsClaims(keycloakId)) {
+                response.addNotFound(keycloakId);
+            }
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void streamUserChanges(StreamUserChangesRequest request, StreamObserver<UserChange> responseObserver) {
+        ServerCallStreamObserver<UserChange> observer = (ServerCallStreamObserver<UserChange>) responseObserver;
+        ChangeStream stream = new ChangeStream(callerRealm(), observer);
+        Runnable unsubscribe = userChanges.subscribe(stream);
+        stream.unsubscribe = unsubscribe;
+        observer.setOnCancelHandler(unsubscribe);
+        observer.setOnReadyHandler(stream::drain);
+    }
+
+    private static StatusRuntimeException unavailable(DataAccessException e) {
+        if (!(e instanceof DatabaseUnavailableException)) {
+            log.warn("gRPC claim lookup failed: {}", e.getMessage());
+        }
+        return Status.UNAVAILABLE.withDescription("Database unavailable").asRuntimeException();
+    }
+
+    private String callerRealm() {
+        String realm = BearerTokenInterceptor.REALM.get();
+        return realm != null ? realm : realms.defaultRealm();
+    }
+
+    /**
+     * @param user an active user with roles
+     * @return the custom claims of the user, plus the version
+     */
+    Claims toClaims(User user) {
+        UserClaims userClaims = claimsMapper.mapUserToClaims(user);
+        Claims.Builder claims = Claims.newBuilder();
+        if (userClaims.get(UserClaims.USER_ID) instanceof Long userId) {
+            claims.setUserId(userId);
+        }
+        set(userClaims, UserClaims.KEYCLOAK_ID, claims::setKeycloakId);
+        set(userClaims, UserClaims.USERNAME, claims::setUsername);
+        set(userClaims, UserClaims.EMAIL, claims::setEmail);
+        set(userClaims, UserClaims.FULL_NAME, claims::setFullName);
+        set(userClaims, UserClaims.EMPLOYEE_ID, claims::setEmployeeId);
+        set(userClaims, UserClaims.DEPARTMENT, claims::setDepartment);
+        set(userClaims, UserClaims.JOB_TITLE, claims::setJobTitle);
+        set(userClaims, UserClaims.PHONE_NUMBER, claims::setPhoneNumber);
+        claims.setIsActive(Boolean.TRUE.equals(userClaims.get(UserClaims.IS_ACTIVE)));
+        if (userClaims.get(UserClaims.ROLES) instanceof Collection<?> roles) {
+            roles.forEach(role -> claims.addRoles(role.toString()));
+        }
+        claims.setIsAdmin(Boolean.TRUE.equals(userClaims.get(UserClaims.IS_ADMIN)));
+        if (userClaims.get(UserClaims.CREATED_AT) instanceof LocalDateTime createdAt) {
+            claims.setCreatedAt(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(createdAt));
+        }
+        if (userClaims.get(UserClaims.UPDATED_AT) instanceof LocalDateTime updatedAt) {
+            claims.setUpdatedAt(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(updatedAt));
+        }
+        if (user.getVersion() != null) {
+            claims.setVersion(user.getVersion());
+        }
+        return claims.build();
+    }
+
+    private static void set(UserClaims userClaims, String name, Consumer<String> setter) {
+        if (userClaims.get(name) instanceof String value) {
+            setter.accept(value);
+        }
+    }
+
+    /**
+     * Changes of one realm on their way to one client
+     *
+     * Changes arrive on committing threads and are written by whichever thread
+     * drains first; the draining flag keeps writes to the observer serial.
+     */
+    private final class ChangeStream implements Consumer<UserChanges.Change> {
+
+        private final String realm;
+        private final ServerCallStreamObserver<UserChange> observer;
+        private final Queue<UserChange> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean overflowed;
+        private volatile boolean closed;
+        private volatile Runnable unsubscribe = () -> {
+        };
+
+        private ChangeStream(String realm, ServerCallStreamObserver<UserChange> observer) {
+            this.realm = realm;
+            this.observer = observer;
+        }
+
+        @Override
+        public void accept(UserChanges.Change change) {
+            if (closed || !realm.equals(change.realm())) {
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueuedChanges) {
+                overflowed = true;
+            } else {
+                queue.add(UserChange.newBuilder()
+                        .setKeycloakId(change.keycloakId())
+                        .setType(change.type() == UserChanges.Type.DEACTIVATED
+                                ? UserChange.Type.DEACTIVATED : UserChange.Type.UPDATED)
+                        .setChangedAt(change.changedAt())
+                        .setSeq(change.seq())
+                        .build());
+            }
+            drain();
+        }
+
+        void drain() {
+            while (draining.compareAndSet(false, true)) {
+                try {
+                    if (closed || observer.isCancelled()) {
+                        return;
+                    }
+                    if (overflowed) {
+                        closed = true;
+                        unsubscribe.run();
+                        queue.clear();
+                        observer.onError(Status.RESOURCE_EXHAUSTED
+                                .withDescription("Client too slow; reconnect and refetch").asRuntimeException());
+                        return;
+                    }
+                    UserChange next;
+                    while (observer.isReady() && (next = queue.poll()) != null) {
+                        queued.decrementAndGet();
+                        observer.onNext(next);
+                    }
+                } finally {
+                    draining.set(false);
+                }
+                // A change queued by another thread while this one held the flag
+                if (closed || !observer.isReady() || (queue.isEmpty() && !overflowed)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.dotbrains.janus.grpc;
+
+import com.dotbrains.janus.realm.IssuerAuthenticationManagers;
+import com.dotbrains.janus.realm.Realms;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The gRPC server for internal claim lookups, on its own port
+ *
+ * Started with the application when {@code janus.grpc.enabled}; calls are
+ * authenticated by {@link BearerTokenInterceptor} against the trusted realms and run
+ * on virtual threads, so a lookup waiting on the database holds no platform thread.
+ * On shutdown new calls are refused and calls in flight get {@code shutdown-grace}
+ * to finish before they, and open change streams, are cancelled.
+ */
+@Component
+@Slf4j
+public class GrpcServer implements SmartLifecycle {
+
+    private final ClaimsGrpcService claimsService;
+    private final ObjectProvider<IssuerAuthenticationManagers> managers;
+    private final Realms realms;
+    private final boolean enabled;
+    private final int port;
+    private final Duration shutdownGrace;
+
+    private volatile Server server;
+    private ExecutorService executor;
+
+    public GrpcServer(ClaimsGrpcService claimsService,
+                      ObjectProvider<IssuerAuthenticationManagers> managers,
+                      Realms realms,
+                      @Value("${janus.grpc.enabled}") boolean enabled,
+                      @Value("${janus.grpc.port}") int port,
+                      @Value("${janus.grpc.shutdown-grace}") Duration shutdownGrace) {
+        this.claimsService = claimsService;
+        this.managers = managers;
+        this.realms = realms;
+        this.enabled = enabled;
+        this.port = port;
+        this.shutdownGrace = shutdownGrace;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // Without issuer managers (test profile) every call is refused
+        AuthenticationManagerResolver<String> issuerManagers = managers.getIfAvailable();
+        BearerTokenInterceptor authentication = new BearerTokenInterceptor(
+                issuerManagers != null ? issuerManagers : issuer -> null, realms);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            server = NettyServerBuilder.forPort(port)
+                    .executor(executor)
+                    .addService(ServerInterceptors.intercept(claimsService, authentication))
+                    .build()
+                    .start();
+        } catch (IOException e) {
+            executor.shutdown();
+            throw new UncheckedIOException("Could not start the gRPC server on port " + port, e);
+        }
+        log.info("gRPC server started on port {}", server.getPort());
+    }
+
+    @Override
+    public void stop() {
+        Server running = server;
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            if (!running.awaitTermination(shutdownGrace.toMillis(), TimeUnit.MILLISECONDS)) {
+                running.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            running.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+        server = null;
+        log.info("gRPC server stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return the port the server listens on, or -1 when it is not running
+     */
+    public int getPort() {
+        Server running = server;
+        return running != null ? running.getPort() : -1;
+    }
+}
@@ -0,0 +1,137 @@
+package com.dotbrains.janus.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Minimal client of the Keycloak admin REST API
+ *
+ * Obtains an admin token with the client credentials grant (service account) or
+ * the password grant and reuses it until shortly before it expires. Thread-safe;
+ * the underlying JDK HTTP client multiplexes concurrent requests.
+ */
+@Component
+@EnableConfigurationProperties(KeycloakAdminProperties.class)
+public class KeycloakAdminClient {
+
+    private static final Duration TOKEN_EXPIRY_MARGIN = Duration.ofSeconds(30);
+    private static final ParameterizedTypeReference<List<KeycloakUser>> USER_LIST = new ParameterizedTypeReference<>() {
+    };
+
+    private final KeycloakAdminProperties properties;
+    private final RestClient restClient;
+
+    private String accessToken;
+    private long accessTokenExpiresAt;
+
+    public KeycloakAdminClient(KeycloakAdminProperties properties) {
+        this.properties = properties;
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(
+                HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build());
+        requestFactory.setReadTimeout(Duration.ofSeconds(30));
+        this.restClient = RestClient.builder()
+                .baseUrl(properties.serverUrl())
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.enabled();
+    }
+
+    /**
+     * @return the number of users in the realm
+     */
+    public int countUsers() {
+        Integer count = restClient.get()
+                .uri("/admin/realms/{realm}/users/count", properties.realm())
+                .headers(headers -> headers.setBearerAuth(accessToken()))
+                .retrieve()
+                .body(Integer.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * List one page of users, in Keycloak's order
+     * @param first the offset of the first user
+     * @param max the page size
+     * @return the users of the page, fewer than max on the last page
+     */
+    public List<KeycloakUser> listUsers(int first, int max) {
+        List<KeycloakUser> users = restClient.get()
+                .uri("/admin/realms/{realm}/users?briefRepresentation=true&first={first}&max={max}",
+                        properties.realm(), first, max)
+                .headers(headers -> headers.setBearerAuth(accessToken()))
+                .retrieve()
+                .body(USER_LIST);
+        return users != null ? users : List.of();
+    }
+
+    /**
+     * Look up one user
+     * @param id the Keycloak user ID
+     * @return the user, or empty if it does not exist
+     */
+    public Optional<KeycloakUser> findUser(String id) {
+        return restClient.get()
+                .uri("/admin/realms/{realm}/users/{id}", properties.realm(), id)
+                .headers(headers -> headers.setBearerAuth(accessToken()))
+                .exchange((request, response) -> {
+                    if (response.getStatusCode() == HttpStatus.NOT_FOUND) {
+                        return Optional.empty();
+                    }
+                    if (response.getStatusCode().isError()) {
+                        throw new KeycloakAdminException("Looking up user " + id + " failed with " + response.getStatusCode());
+                    }
+                    return Optional.ofNullable(response.bodyTo(KeycloakUser.class));
+                });
+    }
+
+    private synchronized String accessToken() {
+        if (accessToken == null || System.nanoTime() - accessTokenExpiresAt >= 0) {
+            MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+            form.add("client_id", properties.clientId());
+            if (properties.useServiceAccount()) {
+                form.add("grant_type", "client_credentials");
+                form.add("client_secret", properties.password());
+            } else {
+                form.add("grant_type", "password");
+                form.add("username", properties.username());
+                form.add("password", properties.password());
+            }
+            long requestedAt = System.nanoTime();
+            TokenResponse token = restClient.post()
+                    .uri("/realms/{realm}/protocol/openid-connect/token", properties.realm())
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .body(form)
+                    .retrieve()
+                    .body(TokenResponse.class);
+            if (token == null || token.accessToken() == null) {
+                throw new KeycloakAdminException("Keycloak returned no admin access token");
+            }
+            accessToken = token.accessToken();
+            accessTokenExpiresAt = requestedAt
+                    + Duration.ofSeconds(token.expiresIn()).minus(TOKEN_EXPIRY_MARGIN).toNanos();
+        }
+        return accessToken;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record TokenResponse(@JsonProperty("access_token") String accessToken,
+                                 @JsonProperty("expires_in") long expiresIn) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.dotbrains.janus.keycloak;
+
+/**
+ * Thrown when the Keycloak admin API answers unexpectedly
+ */
+public class KeycloakAdminException extends RuntimeException {
+
+    public KeycloakAdminException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.dotbrains.janus.keycloak;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Connection to the Keycloak admin REST API ({@code keycloak.admin.*})
+ *
+ * @param enabled whether the admin API may be called
+ * @param serverUrl the Keycloak base URL
+ * @param realm the application realm
+ * @param clientId the client used to obtain admin tokens
+ * @param useServiceAccount true for the client credentials grant, with {@code password} as the client secret
+ * @param username the admin user for the password grant
+ * @param password the admin password, or the client secret for a service account
+ */
+@ConfigurationProperties("keycloak.admin")
+public record KeycloakAdminProperties(
+        boolean enabled,
+        String serverUrl,
+        String realm,
+        String clientId,
+        boolean useServiceAccount,
+        String username,
+        String password
+) {
+}
@@ -0,0 +1,34 @@
+package com.dotbrains.janus.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Map;
+
+/**
+ * A Keycloak event as posted by an event listener
+ *
+ * Either a user event ({@code type}, {@code userId}, {@code details}) or an admin
+ * event ({@code resourceType}, {@code operationType}, {@code resourcePath} and the
+ * JSON {@code representation} of the resource), in Keycloak's own field names.
+ *
+ * @param time the event time in epoch milliseconds
+ * @param type the user event type, e.g. REGISTER or UPDATE_PROFILE
+ * @param userId the user of a user event
+ * @param details the details of a user event, e.g. username and email
+ * @param resourceType the admin event resource type, e.g. USER
+ * @param operationType the admin event operation: CREATE, UPDATE, DELETE or ACTION
+ * @param resourcePath the admin event resource path, e.g. users/{id}
+ * @param representation the admin event resource as JSON
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record KeycloakEvent(
+        Long time,
+        String type,
+        String userId,
+        Map<String, String> details,
+        String resourceType,
+        String operationType,
+        String resourcePath,
+        String representation
+) {
+}
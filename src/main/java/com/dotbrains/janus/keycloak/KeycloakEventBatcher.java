@@ -0,0 +1,291 @@
+package com.dotbrains.janus.keycloak;
+
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.token.UserClaimsTable;
+import com.dotbrains.janus.user.UserChanges;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Applies Keycloak events to the users table in merged batches
+ *
+ * Events are reduced to one pending {@link UserChange} per user, events with a
+ * later {@code time} overriding earlier ones whatever order they arrive in, and written every {@code window} by a single thread
+ * with two statements per {@code max-batch-size} users: an {@code UPDATE ... FROM
+ * (VALUES ...)} for existing users, which bumps {@code version} only for users that
+ * actually changed, and an {@code INSERT ... ON CONFLICT DO NOTHING} for new ones.
+ * A bulk import therefore costs one connection and a few statements per thousand
+ * users. Callers are turned away once {@code max-pending} users are waiting, so a
+ * burst cannot grow the backlog without bound, and a single request may carry at
+ * most {@code max-pending} events. All events belong to the configured
+ * {@code realm}, the realm whose event listener calls the webhook. A batch and its
+ * {@link UserChanges} outbox rows and {@link UserClaimsTable} rows commit in one transaction.
+ */
+@Component
+@Slf4j
+public class KeycloakEventBatcher {
+
+    static final String ACTOR = "keycloak-events";
+
+    private static final String VALUES_ALIAS = " AS v(realm, keycloak_id, username, email, first_name, last_name, enabled, deleted)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+    private final AuditLog auditLog;
+    private final Realms realms;
+    private final UserChanges userChanges;
+    private final UserClaimsTable userClaimsTable;
+    private final String realm;
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final Map<String, UserChange> pending = new ConcurrentHashMap<>();
+    private final Counter received;
+    private final Counter applied;
+    private final Counter rejected;
+
+    public KeycloakEventBatcher(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                JsonMapper jsonMapper,
+                                AuditLog auditLog,
+                                Realms realms,
+                                UserChanges userChanges,
+                                UserClaimsTable userClaimsTable,
+                                MeterRegistry meterRegistry,
+                                @Value("${janus.keycloak-events.realm}") String realm,
+                                @Value("${janus.keycloak-events.max-batch-size}") int maxBatchSize,
+                                @Value("${janus.keycloak-events.max-pending}") int maxPending) {
+        if (maxBatchSize < 1 || maxBatchSize > 5000) {
+            throw new IllegalArgumentException("janus.keycloak-events.max-batch-size must be between 1 and 5000");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jsonMapper = jsonMapper;
+        this.auditLog = auditLog;
+        this.realms = realms;
+        this.userChanges = userChanges;
+        this.userClaimsTable = userClaimsTable;
+        this.realm = realm;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+        this.received = Counter.builder("janus.keycloak.events.received")
+                .description("Keycloak events accepted for processing")
+                .register(meterRegistry);
+        this.applied = Counter.builder("janus.keycloak.events.applied")
+                .description("Users created or changed by Keycloak events")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("janus.keycloak.events.rejected")
+                .description("User changes from Keycloak events the database refused")
+                .register(meterRegistry);
+        Gauge.builder("janus.keycloak.events.pending", pending, Map::size)
+                .description("Users with Keycloak events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue the changes of a list of events
+     * @param events the events, in any order; events without a time count as received now
+     * @return false if the backlog is full and nothing was queued
+     * @throws IllegalArgumentException if there are more than {@code max-pending} events, which could never be queued
+     * @throws JacksonException if an admin event carries an unreadable representation; nothing is queued
+     */
+    public boolean submit(List<KeycloakEvent> events) {
+        if (events.size() > maxPending) {
+            throw new IllegalArgumentException("More than " + maxPending + " Keycloak events in one request");
+        }
+        if (pending.size() + events.size() > maxPending) {
+            return false;
+        }
+        long receivedAt = System.currentTimeMillis();
+        List<UserChange> changes = new ArrayList<>(events.size());
+        for (KeycloakEvent event : events) {
+            UserChange.of(event, receivedAt, jsonMapper).ifPresent(changes::add);
+        }
+        changes.sort(Comparator.comparingLong(UserChange::time));
+        changes.forEach(this::queue);
+        received.increment(events.size());
+        return true;
+    }
+
+    /**
+     * Write the pending changes
+     */
+    @Scheduled(fixedDelayString = "${janus.keycloak-events.window}",
+            initialDelayString = "${janus.keycloak-events.window}")
+    @PreDestroy
+    public void flush() {
+        realms.callAs(realm, () -> {
+            flushPending();
+            return null;
+        });
+    }
+
+    private void flushPending() {
+        while (!pending.isEmpty()) {
+            List<UserChange> batch = takeBatch();
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                write(batch);
+            } catch (DataIntegrityViolationException e) {
+                writeOneByOne(batch);
+            } catch (DataAccessException e) {
+                batch.forEach(this::requeue);
+                log.warn("Could not write Keycloak events of {} users, retrying on the next flush: {}",
+                        pending.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private void queue(UserChange change) {
+        pending.merge(change.keycloakId(), change, UserChange::merge);
+    }
+
+    /**
+     * Put back a change that could not be written, combined by event time with any change queued since
+     */
+    private void requeue(UserChange change) {
+        pending.merge(change.keycloakId(), change, (queued, failed) -> failed.merge(queued));
+    }
+
+    /**
+     * Remove up to a batch of pending changes; a change merged meanwhile stays pending
+     */
+    private List<UserChange> takeBatch() {
+        List<UserChange> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+        for (Map.Entry<String, UserChange> change : pending.entrySet()) {
+            if (batch.size() == maxBatchSize) {
+                break;
+            }
+            if (pending.remove(change.getKey(), change.getValue())) {
+                batch.add(change.getValue());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Isolate the changes the database refuses, e.g. a username taken by another user
+     */
+    private void writeOneByOne(List<UserChange> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            UserChange change = batch.get(i);
+            try {
+                write(List.of(change));
+            } catch (DataIntegrityViolationException e) {
+                rejected.increment();
+                log.warn("Rejected Keycloak change to user {}: {}", change.keycloakId(), e.getMostSpecificCause().getMessage());
+            } catch (DataAccessException e) {
+                batch.subList(i, batch.size()).forEach(this::requeue);
+                throw e;
+            }
+        }
+    }
+
+    private void write(List<UserChange> batch) {
+        List<UpdatedUser> deactivated = transactionTemplate.execute(status -> apply(batch));
+        // Audited once committed, so a batch retried change by change is audited once
+        for (UpdatedUser user : deactivated) {
+            auditLog.userDeactivated(user.keycloakId(), user.username(), ACTOR);
+        }
+    }
+
+    /**
+     * @return the users the batch deactivated
+     */
+    private List<UpdatedUser> apply(List<UserChange> batch) {
+        StringBuilder values = new StringBuilder("(VALUES ");
+        Object[] args = new Object[batch.size() * 8];
+        for (int i = 0; i < batch.size(); i++) {
+            values.append(i == 0 ? "(?, ?, ?, ?, ?, ?, CAST(? AS BOOLEAN), CAST(? AS BOOLEAN))" : ", (?, ?, ?, ?, ?, ?, ?, ?)");
+            UserChange change = batch.get(i);
+            int offset = 8 * i;
+            args[offset] = realm;
+            args[offset + 1] = change.keycloakId();
+            args[offset + 2] = change.username();
+            args[offset + 3] = change.email();
+            args[offset + 4] = change.firstName();
+            args[offset + 5] = change.lastName();
+            args[offset + 6] = change.enabled();
+            args[offset + 7] = change.deleted();
+        }
+        values.append(')').append(VALUES_ALIAS);
+
+        // prev is the row as it was before this statement, to tell which users were deactivated
+        List<UpdatedUser> updated = jdbcTemplate.query("""
+                UPDATE users AS u SET
+                    username = COALESCE(v.username, u.username),
+                    email = COALESCE(v.email, u.email),
+                    first_name = COALESCE(v.first_name, u.first_name),
+                    last_name = COALESCE(v.last_name, u.last_name),
+                    is_active = COALESCE(v.enabled, u.is_active),
+                    version = u.version + 1
+                FROM %s, users AS prev
+                WHERE u.realm = v.realm AND u.keycloak_id = v.keycloak_id AND prev.id = u.id
+                  AND (u.username, u.email, u.first_name, u.last_name, u.is_active) IS DISTINCT FROM
+                      (COALESCE(v.username, u.username), COALESCE(v.email, u.email), COALESCE(v.first_name, u.first_name),
+                       COALESCE(v.last_name, u.last_name), COALESCE(v.enabled, u.is_active))
+                RETURNING u.keycloak_id, u.username, prev.is_active AND NOT u.is_active AS deactivated
+                """.formatted(values),
+                (rs, rowNum) -> new UpdatedUser(rs.getString("keycloak_id"), rs.getString("username"),
+                        rs.getBoolean("deactivated")),
+                args);
+        applied.increment(updated.size());
+        List<String> changed = new ArrayList<>();
+        List<UpdatedUser> deactivated = new ArrayList<>();
+        for (UpdatedUser user : updated) {
+            if (user.deactivated()) {
+                deactivated.add(user);
+            } else {
+                changed.add(user.keycloakId());
+            }
+        }
+
+        List<String> inserted = jdbcTemplate.queryForList("""
+                INSERT INTO users (realm, keycloak_id, username, email, first_name, last_name, is_active)
+                SELECT v.realm, v.keycloak_id, v.username, v.email, v.first_name, v.last_name, COALESCE(v.enabled, TRUE)
+                FROM %s
+                WHERE NOT v.deleted AND v.username IS NOT NULL AND v.email IS NOT NULL
+                ON CONFLICT (realm, keycloak_id) DO NOTHING
+                RETURNING keycloak_id
+                """.formatted(values), String.class, args);
+        applied.increment(inserted.size());
+        changed.addAll(inserted);
+        List<String> deactivatedIds = deactivated.stream().map(UpdatedUser::keycloakId).toList();
+        userClaimsTable.refresh(realm, Stream.concat(changed.stream(), deactivatedIds.stream()).toList());
+        userChanges.publish(realm, changed, UserChanges.Type.UPDATED);
+        userChanges.publish(realm, deactivatedIds, UserChanges.Type.DEACTIVATED);
+        log.debug("Applied Keycloak events of {} users: {} updated, {} created", batch.size(), updated.size(), inserted.size());
+        return deactivated;
+    }
+
+    private record UpdatedUser(String keycloakId, String username, boolean deactivated) {
+    }
+}
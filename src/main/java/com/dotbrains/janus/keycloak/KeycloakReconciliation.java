@@ -0,0 +1,288 @@
+package com.dotbrains.janus.keycloak;
+
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.user.UserIdentity;
+import com.dotbrains.janus.user.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deactivates local users that were deleted or disabled in Keycloak
+ *
+ * A run reads every user of the realm through the admin API, {@code parallelism}
+ * pages at a time, and keeps the IDs of the enabled ones in a sorted array. The
+ * active local users are then read in Keycloak ID order with keyset pagination and
+ * looked up in that array; users not found are candidates. Each candidate is
+ * confirmed with a single-user lookup (it may have been created after its page was
+ * read) before being deactivated, a batch per statement. A run that would deactivate
+ * more than {@code max-deactivation-ratio} of the active users is aborted, as that
+ * points to a misconfigured realm rather than mass deletion. Only the local users
+ * of the admin API's realm are compared.
+ *
+ * The admin API only pages by offset, in username order, so the Keycloak side
+ * cannot be merged with the keyset scan as it streams. The sorted array costs
+ * about 80 bytes per enabled user, and a realm larger than {@code max-users} is not
+ * reconciled at all. Users created or deleted during the read shift later pages:
+ * a user read twice is kept once, and a user skipped becomes a candidate that the
+ * single-user lookup then clears.
+ */
+@Component
+@Slf4j
+public class KeycloakReconciliation {
+
+    static final String ACTOR = "keycloak-reconciliation";
+
+    /**
+     * Outcome of a run
+     *
+     * @param keycloakUsers the enabled users found in Keycloak
+     * @param activeUsers the active local users compared
+     * @param candidates the active local users missing from Keycloak
+     * @param deactivated the users deactivated
+     * @param aborted true if the run stopped before deactivating anyone
+     */
+    public record Summary(int keycloakUsers, int activeUsers, int candidates, int deactivated, boolean aborted) {
+    }
+
+    private final KeycloakAdminClient adminClient;
+    private final UserService userService;
+    private final AuditLog auditLog;
+    private final Realms realms;
+    private final String realm;
+    private final Counter deactivatedCounter;
+    private final boolean enabled;
+    private final int pageSize;
+    private final int parallelism;
+    private final int batchSize;
+    private final double maxDeactivationRatio;
+    private final int maxUsers;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public KeycloakReconciliation(KeycloakAdminClient adminClient,
+                                  UserService userService,
+                                  AuditLog auditLog,
+                                  Realms realms,
+                                  KeycloakAdminProperties adminProperties,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${janus.reconciliation.enabled}") boolean enabled,
+                                  @Value("${janus.reconciliation.page-size}") int pageSize,
+                                  @Value("${janus.reconciliation.parallelism}") int parallelism,
+                                  @Value("${janus.reconciliation.batch-size}") int batchSize,
+                                  @Value("${janus.reconciliation.max-deactivation-ratio}") double maxDeactivationRatio,
+                                  @Value("${janus.reconciliation.max-users}") int maxUsers) {
+        if (pageSize < 1 || parallelism < 1 || batchSize < 1 || maxUsers < 1) {
+            throw new IllegalArgumentException("janus.reconciliation page-size, parallelism, batch-size and max-users must be positive");
+        }
+        this.adminClient = adminClient;
+        this.userService = userService;
+        this.auditLog = auditLog;
+        this.realms = realms;
+        this.realm = adminProperties.realm();
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.maxDeactivationRatio = maxDeactivationRatio;
+        this.maxUsers = maxUsers;
+        this.deactivatedCounter = Counter.builder("janus.reconciliation.deactivated")
+                .description("Users deactivated because they were deleted or disabled in Keycloak")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scheduled run; failures are logged and the next run starts over
+     */
+    @Scheduled(cron = "${janus.reconciliation.cron}")
+    public void scheduledRun() {
+        if (!enabled || !adminClient.isEnabled()) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("Keycloak reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Reconcile the active users with Keycloak
+     * @return the outcome, or null if a run is already in progress
+     */
+    public Summary reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Keycloak reconciliation already running, skipping");
+            return null;
+        }
+        try {
+            return realms.callAs(realm, this::run);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Summary run() {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofVirtual().name("keycloak-reconciliation-", 0).factory());
+        try {
+            int count = adminClient.countUsers();
+            String[] keycloakIds = count > maxUsers ? null : fetchEnabledIds(count, executor);
+            if (keycloakIds == null) {
+                log.warn("Keycloak reconciliation aborted: realm {} has more than max-users {} users", realm, maxUsers);
+                return new Summary(count, 0, 0, 0, true);
+            }
+            List<UserIdentity> candidates = new ArrayList<>();
+            int activeUsers = findMissing(keycloakIds, candidates);
+
+            Summary summary;
+            if (candidates.size() > maxDeactivationRatio * activeUsers) {
+                log.warn("Keycloak reconciliation aborted: {} of {} active users are missing from Keycloak, above the ratio of {}",
+                        candidates.size(), activeUsers, maxDeactivationRatio);
+                summary = new Summary(keycloakIds.length, activeUsers, candidates.size(), 0, true);
+            } else {
+                int deactivated = deactivate(candidates, executor);
+                summary = new Summary(keycloakIds.length, activeUsers, candidates.size(), deactivated, false);
+            }
+            log.info("Keycloak reconciliation of realm {} compared {} Keycloak users with {} active users, deactivated {} in {} ms",
+                    realm, summary.keycloakUsers(), summary.activeUsers(), summary.deactivated(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return summary;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Read all users of the realm and return the IDs of the enabled ones, sorted
+     * Users added after counting are picked up by reading on until a short page
+     * @param count the number of users in the realm
+     * @return the IDs, or null if the realm grew past max-users while being read
+     */
+    private String[] fetchEnabledIds(int count, ExecutorService executor) {
+        int pages = count / pageSize + 1;
+        List<Future<Page>> futures = new ArrayList<>(pages);
+        for (int page = 0; page < pages; page++) {
+            int first = page * pageSize;
+            futures.add(executor.submit(() -> readPage(first)));
+        }
+
+        List<String[]> results = new ArrayList<>(pages);
+        Page last = null;
+        for (Future<Page> future : futures) {
+            last = await(future);
+            results.add(last.enabledIds());
+        }
+        for (int first = pages * pageSize; last.size() == pageSize; first += pageSize) {
+            last = readPage(first);
+            if (first + last.size() > maxUsers) {
+                return null;
+            }
+            results.add(last.enabledIds());
+        }
+
+        String[] ids = results.stream().flatMap(Arrays::stream).sorted().distinct().toArray(String[]::new);
+        log.debug("Read {} enabled Keycloak users in {} pages", ids.length, results.size());
+        return ids;
+    }
+
+    private Page readPage(int first) {
+        List<KeycloakUser> users = adminClient.listUsers(first, pageSize);
+        String[] enabledIds = users.stream()
+                .filter(KeycloakUser::isEnabled)
+                .map(KeycloakUser::id)
+                .toArray(String[]::new);
+        return new Page(enabledIds, users.size());
+    }
+
+    /**
+     * Scan the active users in Keycloak ID order and collect those not in the given IDs
+     * @return the number of active users scanned
+     */
+    private int findMissing(String[] keycloakIds, List<UserIdentity> missing) {
+        int scanned = 0;
+        String after = "";
+        List<UserIdentity> page;
+        do {
+            page = userService.findActiveUsersAfter(after, pageSize);
+            for (UserIdentity user : page) {
+                if (Arrays.binarySearch(keycloakIds, user.keycloakId()) < 0) {
+                    missing.add(user);
+                }
+            }
+            scanned += page.size();
+            if (!page.isEmpty()) {
+                after = page.getLast().keycloakId();
+            }
+        } while (page.size() == pageSize);
+        return scanned;
+    }
+
+    /**
+     * Confirm each candidate is still gone or disabled, then deactivate a batch at a time
+     * @return the number of users deactivated
+     */
+    private int deactivate(List<UserIdentity> candidates, ExecutorService executor) {
+        int deactivated = 0;
+        for (int from = 0; from < candidates.size(); from += batchSize) {
+            List<UserIdentity> batch = candidates.subList(from, Math.min(from + batchSize, candidates.size()));
+            List<Future<Boolean>> confirmations = new ArrayList<>(batch.size());
+            for (UserIdentity user : batch) {
+                confirmations.add(executor.submit(() -> adminClient.findUser(user.keycloakId())
+                        .map(found -> !found.isEnabled())
+                        .orElse(true)));
+            }
+            List<UserIdentity> confirmed = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                if (await(confirmations.get(i))) {
+                    confirmed.add(batch.get(i));
+                }
+            }
+            if (confirmed.isEmpty()) {
+                continue;
+            }
+            int count = userService.deactivateUsers(confirmed.stream().map(UserIdentity::keycloakId).toList());
+            for (UserIdentity user : confirmed) {
+                auditLog.userDeactivated(user.keycloakId(), user.username(), ACTOR);
+            }
+            deactivatedCounter.increment(count);
+            deactivated += count;
+        }
+        return deactivated;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KeycloakAdminException("Keycloak reconciliation interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @param enabledIds the IDs of the enabled users of the page
+     * @param size the number of users in the page
+     */
+    private record Page(String[] enabledIds, int size) {
+    }
+}
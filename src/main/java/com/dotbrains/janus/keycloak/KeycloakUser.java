@@ -0,0 +1,22 @@
+package com.dotbrains.janus.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * User representation returned by the Keycloak admin API and carried by admin events
+ *
+ * @param id the Keycloak user ID
+ * @param username the username
+ * @param email the email, if set
+ * @param firstName the first name, if set
+ * @param lastName the last name, if set
+ * @param enabled false if the user is disabled in Keycloak; absent from partial updates
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record KeycloakUser(String id, String username, String email, String firstName, String lastName,
+                           Boolean enabled) {
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(enabled);
+    }
+}
@@ -0,0 +1,112 @@
+package com.dotbrains.janus.keycloak;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The net change to one user from one or more Keycloak events
+ *
+ * Null fields are left as they are. A deleted user is deactivated, never created.
+ * Changes are combined in event time order, whatever order they arrive in.
+ *
+ * @param keycloakId the Keycloak user ID
+ * @param username the new username, or null
+ * @param email the new email, or null
+ * @param firstName the new first name, or null
+ * @param lastName the new last name, or null
+ * @param enabled the new enabled state, or null
+ * @param deleted true if the user was deleted in Keycloak
+ * @param time the time of the latest event in the change, in epoch milliseconds
+ */
+record UserChange(String keycloakId, String username, String email, String firstName, String lastName,
+                  Boolean enabled, boolean deleted, long time) {
+
+    private static final String USERS_PATH = "users/";
+
+    static UserChange deletion(String keycloakId, long time) {
+        return new UserChange(keycloakId, null, null, null, null, false, true, time);
+    }
+
+    /**
+     * Apply a later change on top of this one
+     * @param later the change that happened after this one
+     * @return the combined change
+     */
+    UserChange then(UserChange later) {
+        long latest = Math.max(time, later.time());
+        if (later.deleted() || deleted) {
+            return new UserChange(keycloakId, later.username(), later.email(), later.firstName(), later.lastName(),
+                    later.enabled(), later.deleted(), latest);
+        }
+        return new UserChange(keycloakId,
+                later.username() != null ? later.username() : username,
+                later.email() != null ? later.email() : email,
+                later.firstName() != null ? later.firstName() : firstName,
+                later.lastName() != null ? later.lastName() : lastName,
+                later.enabled() != null ? later.enabled() : enabled,
+                false,
+                latest);
+    }
+
+    /**
+     * Combine with another change to the same user in event time order
+     * @param other a change that arrived after this one, but may have happened before it
+     * @return the combined change
+     */
+    UserChange merge(UserChange other) {
+        return other.time() >= time ? then(other) : other.then(this);
+    }
+
+    /**
+     * Map a Keycloak event to the change it makes to a user
+     * @param event the event
+     * @param receivedAt the time of an event without one, in epoch milliseconds
+     * @param jsonMapper reads admin event representations
+     * @return the change, or empty if the event does not change a user's profile
+     * @throws JacksonException if an admin event carries an unreadable representation
+     */
+    static Optional<UserChange> of(KeycloakEvent event, long receivedAt, JsonMapper jsonMapper) {
+        long time = event.time() != null ? event.time() : receivedAt;
+        if (event.resourceType() != null) {
+            return ofAdminEvent(event, time, jsonMapper);
+        }
+        if (event.type() == null || event.userId() == null) {
+            return Optional.empty();
+        }
+        Map<String, String> details = event.details() != null ? event.details() : Map.of();
+        return switch (event.type()) {
+            case "REGISTER", "UPDATE_PROFILE", "UPDATE_EMAIL" -> Optional.of(new UserChange(event.userId(),
+                    details.get("username"),
+                    details.getOrDefault("updated_email", details.get("email")),
+                    details.getOrDefault("updated_first_name", details.get("first_name")),
+                    details.getOrDefault("updated_last_name", details.get("last_name")),
+                    null, false, time));
+            case "DELETE_ACCOUNT" -> Optional.of(deletion(event.userId(), time));
+            default -> Optional.empty();
+        };
+    }
+
+    private static Optional<UserChange> ofAdminEvent(KeycloakEvent event, long time, JsonMapper jsonMapper) {
+        String path = event.resourcePath();
+        if (!"USER".equals(event.resourceType()) || path == null || !path.startsWith(USERS_PATH)
+                || path.indexOf('/', USERS_PATH.length()) >= 0) {
+            return Optional.empty();
+        }
+        String keycloakId = path.substring(USERS_PATH.length());
+        if ("DELETE".equals(event.operationType())) {
+            return Optional.of(deletion(keycloakId, time));
+        }
+        if (!"CREATE".equals(event.operationType()) && !"UPDATE".equals(event.operationType())
+                || event.representation() == null) {
+            return Optional.empty();
+        }
+        KeycloakUser user = jsonMapper.readValue(event.representation(), KeycloakUser.class);
+        // Keycloak creates users disabled unless told otherwise and leaves absent fields alone on update
+        Boolean enabled = "CREATE".equals(event.operationType()) ? Boolean.valueOf(user.isEnabled()) : user.enabled();
+        return Optional.of(new UserChange(keycloakId, user.username(), user.email(), user.firstName(),
+                user.lastName(), enabled, false, time));
+    }
+}
@@ -0,0 +1,146 @@
+package com.dotbrains.janus.keycloak.v1;
+
+import com.dotbrains.janus.api.v1.KeycloakEventAPI;
+import com.dotbrains.janus.keycloak.KeycloakEvent;
+import com.dotbrains.janus.keycloak.KeycloakEventBatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keycloak Event Controller - Version 1
+ * 
+ * Verifies the signature of the timestamp and body and hands the events to the
+ * {@link KeycloakEventBatcher}; no database work happens on the request thread.
+ * Requests whose timestamp is more than {@code max-clock-skew} away from now are
+ * refused, so a captured request cannot be replayed later. Answers 404 while disabled.
+ * 
+ * @version 1.0
+ * @since 1.0
+ */
+@RestController
+@Slf4j
+public class KeycloakEventController implements KeycloakEventAPI {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final KeycloakEventBatcher batcher;
+    private final ObjectReader eventsReader;
+    private final boolean enabled;
+    private final SecretKeySpec secret;
+    private final Duration maxClockSkew;
+    private final Clock clock;
+
+    @Autowired
+    public KeycloakEventController(KeycloakEventBatcher batcher,
+                                   JsonMapper jsonMapper,
+                                   @Value("${janus.keycloak-events.enabled}") boolean enabled,
+                                   @Value("${janus.keycloak-events.secret}") String secret,
+                                   @Value("${janus.keycloak-events.max-clock-skew}") Duration maxClockSkew) {
+        this(batcher, jsonMapper, enabled, secret, maxClockSkew, Clock.systemUTC());
+    }
+
+    KeycloakEventController(KeycloakEventBatcher batcher, JsonMapper jsonMapper, boolean enabled, String secret,
+                            Duration maxClockSkew, Clock clock) {
+        this.batcher = batcher;
+        this.eventsReader = jsonMapper.readerForListOf(KeycloakEvent.class)
+                .with(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY);
+        this.enabled = enabled;
+        this.secret = secret.isEmpty() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.maxClockSkew = maxClockSkew;
+        this.clock = clock;
+    }
+
+    @Override
+    public ResponseEntity<Map<String, Object>> submitEvents(String signature, String timestamp, byte[] body) {
+        if (!enabled) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!signatureMatches(signature, timestamp, body)) {
+            log.warn("Rejected Keycloak events with a missing or invalid signature");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid signature"));
+        }
+        if (!isRecent(timestamp)) {
+            log.warn("Rejected Keycloak events signed at {}, outside the allowed clock skew", timestamp);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Expired signature"));
+        }
+
+        List<KeycloakEvent> events;
+        boolean submitted;
+        try {
+            events = eventsReader.readValue(body);
+            // Also reads the representations of admin events, queuing nothing if one is unreadable
+            submitted = batcher.submit(events);
+        } catch (JacksonException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Malformed Keycloak event"));
+        } catch (IllegalArgumentException e) {
+            // More events than the backlog can ever hold; retrying would not help
+            return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).body(Map.of("error", e.getMessage()));
+        }
+        if (!submitted) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "Too many Keycloak events pending, retry later"));
+        }
+        return ResponseEntity.accepted().body(Map.of("accepted", events.size()));
+    }
+
+    /**
+     * The signature covers "{timestamp}.{body}", so the timestamp cannot be replaced
+     */
+    private boolean signatureMatches(String signature, String timestamp, byte[] body) {
+        if (secret == null || signature == null || timestamp == null) {
+            return false;
+        }
+        byte[] expected;
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            mac.update(timestamp.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '.');
+            expected = mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " unavailable", e);
+        }
+        byte[] actual;
+        try {
+            actual = HexFormat.of().parseHex(signature.startsWith("sha256=") ? signature.substring(7) : signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * @param timestamp the signed timestamp, in epoch seconds
+     */
+    private boolean isRecent(String timestamp) {
+        long signedAt;
+        try {
+            signedAt = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long skew = Math.abs(clock.instant().getEpochSecond() - signedAt);
+        return skew <= maxClockSkew.toSeconds();
+    }
+}
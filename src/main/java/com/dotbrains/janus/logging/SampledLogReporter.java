@@ -0,0 +1,56 @@
+package com.dotbrains.janus.logging;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies the log sampling limits and reports suppressed events
+ *
+ * Every {@code janus.logging.sampling.summary-interval} each category that
+ * dropped events logs one summary line through its own logger, and the totals
+ * are exposed as the {@code janus.log.suppressed} counter tagged by category.
+ */
+@Component
+@Slf4j
+public class SampledLogReporter {
+
+    private final MeterRegistry meterRegistry;
+    // One counter per category, registered when the category first shows up
+    private final Map<String, FunctionCounter> suppressedCounters = new ConcurrentHashMap<>();
+
+    public SampledLogReporter(MeterRegistry meterRegistry,
+                              @Value("${janus.logging.sampling.rate-per-second}") int ratePerSecond,
+                              @Value("${janus.logging.sampling.burst}") int burst) {
+        this.meterRegistry = meterRegistry;
+        SampledLogger.configure(ratePerSecond, burst);
+        log.debug("Sampled log categories limited to {}/s with a burst of {}", ratePerSecond, burst);
+    }
+
+    /**
+     * Log the number of events each category suppressed since the previous report
+     */
+    @Scheduled(fixedDelayString = "${janus.logging.sampling.summary-interval}",
+            initialDelayString = "${janus.logging.sampling.summary-interval}")
+    public void report() {
+        for (SampledLogger sampled : SampledLogger.all()) {
+            suppressedCounters.computeIfAbsent(sampled.category(), category ->
+                    FunctionCounter.builder("janus.log.suppressed", sampled, SampledLogger::totalSuppressed)
+                            .description("Log events dropped by sampling")
+                            .tag("category", category)
+                            .register(meterRegistry));
+
+            long suppressed = sampled.drainSuppressed();
+            if (suppressed > 0) {
+                sampled.logger().info("Suppressed {} '{}' log events since the last report",
+                        suppressed, sampled.category());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.dotbrains.janus.logging;
+
+import org.slf4j.Logger;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logger for a category of per-request events that is rate limited by a token bucket
+ *
+ * Events beyond the rate of the category are dropped and counted instead;
+ * {@link SampledLogReporter} periodically logs how many were suppressed. The
+ * bucket is a single CAS on the theoretical arrival time (GCRA), so a flood of
+ * events costs one atomic operation each and never waits on the log pipeline.
+ *
+ * Static like the Lombok loggers it wraps, so it can be used where the class
+ * logs today; rate and burst apply to every category and are set from
+ * {@code janus.logging.sampling.*} at startup.
+ */
+public final class SampledLogger {
+
+    public static final int DEFAULT_RATE_PER_SECOND = 10;
+    public static final int DEFAULT_BURST = 20;
+
+    private static final Map<String, SampledLogger> LOGGERS = new ConcurrentHashMap<>();
+
+    private static volatile long intervalNanos;
+    private static volatile long toleranceNanos;
+
+    static {
+        configure(DEFAULT_RATE_PER_SECOND, DEFAULT_BURST);
+    }
+
+    private final Logger log;
+    private final String category;
+    // Theoretical arrival time of the next event, in System.nanoTime() units
+    private final AtomicLong nextArrival = new AtomicLong(System.nanoTime());
+    private final AtomicLong pendingSuppressed = new AtomicLong();
+    private final LongAdder totalSuppressed = new LongAdder();
+
+    private SampledLogger(Logger log, String category) {
+        this.log = log;
+        this.category = category;
+    }
+
+    /**
+     * Get the sampled logger of a category, creating it on first use
+     * @param log the logger events are written to
+     * @param category the category, e.g. {@code auth.error}
+     * @return the sampled logger
+     */
+    public static SampledLogger of(Logger log, String category) {
+        return LOGGERS.computeIfAbsent(category, name -> new SampledLogger(log, name));
+    }
+
+    /**
+     * Set the rate limit of every category
+     * @param ratePerSecond sustained events per second
+     * @param burst events allowed at once after a quiet period
+     */
+    public static void configure(int ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Log sampling rate and burst must be positive");
+        }
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        intervalNanos = interval;
+        toleranceNanos = interval * (burst - 1);
+    }
+
+    static Collection<SampledLogger> all() {
+        return LOGGERS.values();
+    }
+
+    public String category() {
+        return category;
+    }
+
+    Logger logger() {
+        return log;
+    }
+
+    public void debug(String format, Object... args) {
+        if (log.isDebugEnabled() && tryAcquire()) {
+            log.debug(format, args);
+        }
+    }
+
+    public void info(String format, Object... args) {
+        if (log.isInfoEnabled() && tryAcquire()) {
+            log.info(format, args);
+        }
+    }
+
+    public void warn(String format, Object... args) {
+        if (log.isWarnEnabled() && tryAcquire()) {
+            log.warn(format, args);
+        }
+    }
+
+    public void error(String format, Object... args) {
+        if (log.isErrorEnabled() && tryAcquire()) {
+            log.error(format, args);
+        }
+    }
+
+    /**
+     * Take a token from the bucket of this category, counting the event as suppressed if there is none
+     * @return true if the event may be logged
+     */
+    boolean tryAcquire() {
+        long now = System.nanoTime();
+        long interval = intervalNanos;
+        long tolerance = toleranceNanos;
+        while (true) {
+            long next = nextArrival.get();
+            long start = next - now > 0 ? next : now;
+            if (start - now > tolerance) {
+                pendingSuppressed.incrementAndGet();
+                totalSuppressed.increment();
+                return false;
+            }
+            if (nextArrival.compareAndSet(next, start + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return events suppressed since the previous call, resetting the count
+     */
+    long drainSuppressed() {
+        return pendingSuppressed.getAndSet(0);
+    }
+
+    /**
+     * @return events suppressed since startup
+     */
+    public long totalSuppressed() {
+        return totalSuppressed.sum();
+    }
+}
@@ -0,0 +1,164 @@
+package com.dotbrains.janus.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit for database-backed requests that adapts to database latency (AIMD)
+ *
+ * Every UserService call is a latency sample. A call slower than the threshold,
+ * or failing on the database, cuts the limit by the backoff factor; a fast call
+ * while the limit is being used raises it by one per limit's worth of calls.
+ * Requests beyond the limit are shed immediately instead of queueing on the
+ * connection pool until its timeout. Low-priority requests may only use part
+ * of the limit, so they are shed before logins and token requests.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Shedding order of requests, lowest first
+     */
+    public enum Priority {
+        /** User administration and lookups */
+        NORMAL,
+        /** Login, token and current-user endpoints */
+        CRITICAL
+    }
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoff;
+    private final double normalShare;
+
+    // Current limit as double bits, updated by CAS
+    private final AtomicLong limitBits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${janus.loadshed.enabled}") boolean enabled,
+                                      @Value("${janus.loadshed.initial-limit}") int initialLimit,
+                                      @Value("${janus.loadshed.min-limit}") int minLimit,
+                                      @Value("${janus.loadshed.max-limit}") int maxLimit,
+                                      @Value("${janus.loadshed.latency-threshold}") Duration latencyThreshold,
+                                      @Value("${janus.loadshed.backoff}") double backoff,
+                                      @Value("${janus.loadshed.normal-share}") double normalShare) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 0 < min <= initial <= max");
+        }
+        if (backoff <= 0 || backoff >= 1 || normalShare <= 0 || normalShare > 1) {
+            throw new IllegalArgumentException("Concurrency backoff must be in (0, 1) and normal share in (0, 1]");
+        }
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoff = backoff;
+        this.normalShare = normalShare;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+
+        Gauge.builder("janus.concurrency.limit", this, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit of database-backed requests")
+                .register(meterRegistry);
+        Gauge.builder("janus.concurrency.in-flight", inFlight, AtomicInteger::get)
+                .description("Database-backed requests in progress")
+                .register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, Counter.builder("janus.concurrency.rejected")
+                    .description("Requests shed with 503 by the concurrency limiter")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        log.info("Adaptive concurrency limit {} (min {}, max {}, latency threshold {})",
+                initialLimit, minLimit, maxLimit, latencyThreshold);
+    }
+
+    /**
+     * Take a slot for a request
+     * @param priority the priority of the request
+     * @return true if the request may proceed, in which case {@link #release()} must follow
+     */
+    public boolean tryAcquire(Priority priority) {
+        if (!enabled) {
+            return true;
+        }
+        double limit = limitValue();
+        int allowed = (int) Math.max(1, priority == Priority.CRITICAL ? limit : limit * normalShare);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejected.get(priority).increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the slot of a request admitted by {@link #tryAcquire(Priority)}
+     */
+    public void release() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adjust the limit by the outcome of a database call
+     * @param latencyNanos duration of the call
+     * @param dropped true if the call failed on the database (e.g. connection timeout)
+     */
+    public void onSample(long latencyNanos, boolean dropped) {
+        if (!enabled) {
+            return;
+        }
+        boolean overloaded = dropped || latencyNanos > latencyThresholdNanos;
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double next;
+            if (overloaded) {
+                next = Math.max(minLimit, limit * backoff);
+            } else if (inFlight.get() * 2 >= limit) {
+                // Only grow while the limit is actually being used
+                next = Math.min(maxLimit, limit + 1 / limit);
+            } else {
+                return;
+            }
+            if (next == limit || limitBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the current limit, rounded down
+     */
+    public int limit() {
+        return (int) limitValue();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private double limitValue() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+}
@@ -0,0 +1,19 @@
+package com.dotbrains.janus.ratelimit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a UserService method called by background jobs rather than requests
+ *
+ * Such calls are long by design, e.g. streaming thousands of users at startup,
+ * so the {@link DatabaseLatencyAspect} does not count them as samples of request load.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BackgroundWork {
+}
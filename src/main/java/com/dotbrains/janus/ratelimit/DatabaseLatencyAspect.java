@@ -0,0 +1,46 @@
+package com.dotbrains.janus.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+/**
+ * Feeds the latency of UserService calls on the request path to the {@link AdaptiveConcurrencyLimiter}
+ *
+ * Ordered inside the circuit breaker and outside the transaction advice, so the
+ * time spent waiting for a pool connection is part of the sample. Methods marked
+ * {@link BackgroundWork}, such as the warm-up and reconciliation scans, are not
+ * sampled: their long calls would cut the limit just when a node starts or reconciles.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class DatabaseLatencyAspect {
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Around("execution(public * com.dotbrains.janus.user.UserService.*(..))"
+            + " && !@annotation(com.dotbrains.janus.ratelimit.BackgroundWork)")
+    public Object measure(ProceedingJoinPoint call) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            Object result = call.proceed();
+            concurrencyLimiter.onSample(System.nanoTime() - start, false);
+            return result;
+        } catch (DataAccessException | TransactionException e) {
+            concurrencyLimiter.onSample(System.nanoTime() - start, true);
+            throw e;
+        } catch (RuntimeException e) {
+            // Not a database failure, e.g. validation; the latency still counts
+            concurrencyLimiter.onSample(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+}
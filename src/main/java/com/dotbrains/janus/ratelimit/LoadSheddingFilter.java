@@ -0,0 +1,75 @@
+package com.dotbrains.janus.ratelimit;
+
+import com.dotbrains.janus.exception.PrebuiltErrorBody;
+import com.dotbrains.janus.logging.SampledLogger;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Sheds database-backed requests with 503 when the adaptive concurrency limit is reached
+ *
+ * Login, OAuth2 and auth endpoints are critical; user administration and lookups
+ * are shed first. Other requests (health, docs, token refresh) are not limited. Not a bean, for
+ * the same reason as {@link RateLimitFilter}.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private static final SampledLogger shedLog = SampledLogger.of(log, "loadshed.rejected");
+
+    private static final PrebuiltErrorBody SERVICE_UNAVAILABLE =
+            new PrebuiltErrorBody(HttpStatus.SERVICE_UNAVAILABLE, "Service overloaded, retry later");
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        AdaptiveConcurrencyLimiter.Priority priority = priorityOf(path);
+        if (priority == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!concurrencyLimiter.tryAcquire(priority)) {
+            shedLog.warn("Shed {} request to {} at concurrency limit {}",
+                    priority, path, concurrencyLimiter.limit());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            SERVICE_UNAVAILABLE.writeTo(response, path);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            concurrencyLimiter.release();
+        }
+    }
+
+    /**
+     * @return the priority of a database-backed path, or null if the path is not limited
+     */
+    static AdaptiveConcurrencyLimiter.Priority priorityOf(String path) {
+        // Health checks and token refreshes never reach the database
+        if (path.startsWith("/api/v1/auth/health") || path.startsWith("/api/v1/auth/refresh")) {
+            return null;
+        }
+        if (path.startsWith("/api/v1/auth/") || path.startsWith("/login/") || path.startsWith("/oauth2/")) {
+            return AdaptiveConcurrencyLimiter.Priority.CRITICAL;
+        }
+        if (path.startsWith("/api/v1/users")) {
+            return AdaptiveConcurrencyLimiter.Priority.NORMAL;
+        }
+        return null;
+    }
+}
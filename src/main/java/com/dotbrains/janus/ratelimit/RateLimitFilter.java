@@ -0,0 +1,81 @@
+package com.dotbrains.janus.ratelimit;
+
+import com.dotbrains.janus.exception.PrebuiltErrorBody;
+import com.dotbrains.janus.logging.SampledLogger;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests over the rate limit of their route with 429 and Retry-After
+ *
+ * Runs in the security filter chain after bearer token authentication, so
+ * routes can be limited per client or subject of the token. Not a bean, to keep
+ * Spring Boot from also registering it as a servlet filter.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final SampledLogger rejections = SampledLogger.of(log, "ratelimit.rejected");
+
+    private static final PrebuiltErrorBody TOO_MANY_REQUESTS =
+            new PrebuiltErrorBody(HttpStatus.TOO_MANY_REQUESTS, "Too many requests");
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        RateLimiter.LimitedRoute route = rateLimiter.routeFor(path);
+        if (route == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String key = keyOf(route.keyType(), request);
+        long waitNanos = route.tryAcquire(key);
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        rejections.warn("Rate limit of route {} exceeded by {}", route.name(), key);
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        TOO_MANY_REQUESTS.writeTo(response, path);
+    }
+
+    /**
+     * The bucket key of a request; anonymous requests fall back to the remote address
+     */
+    static String keyOf(RateLimitProperties.KeyType keyType, HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (keyType != RateLimitProperties.KeyType.IP && authentication != null && authentication.isAuthenticated()) {
+            if (authentication instanceof JwtAuthenticationToken jwt) {
+                String value = keyType == RateLimitProperties.KeyType.CLIENT
+                        ? jwt.getToken().getClaimAsString("azp")
+                        : jwt.getToken().getSubject();
+                if (value != null) {
+                    return (keyType == RateLimitProperties.KeyType.CLIENT ? "client:" : "sub:") + value;
+                }
+            } else if (keyType == RateLimitProperties.KeyType.SUBJECT && authentication.getName() != null) {
+                return "sub:" + authentication.getName();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,50 @@
+package com.dotbrains.janus.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Rate limits per route, bound from {@code janus.ratelimit.*}
+ *
+ * @param enabled whether requests are rate limited at all
+ * @param slots buckets per route (rounded up to a power of two); the memory of a
+ *              route is fixed at 8 bytes per slot however many keys are seen
+ * @param routes limited routes, the first matching one applies
+ */
+@ConfigurationProperties("janus.ratelimit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("65536") int slots,
+        @DefaultValue List<Route> routes
+) {
+
+    /**
+     * What requests of a route are counted against
+     */
+    public enum KeyType {
+        /** OAuth2 client of the bearer token ({@code azp}), else the IP */
+        CLIENT,
+        /** User of the bearer token ({@code sub}) or login, else the IP */
+        SUBJECT,
+        /** Remote address */
+        IP
+    }
+
+    /**
+     * @param name route name, used as the metric tag
+     * @param pattern request path pattern, e.g. {@code /api/v1/users/**}
+     * @param key what requests are counted against
+     * @param ratePerSecond sustained requests per second per key
+     * @param burst requests per key allowed at once
+     */
+    public record Route(
+            String name,
+            String pattern,
+            @DefaultValue("subject") KeyType key,
+            int ratePerSecond,
+            int burst
+    ) {
+    }
+}
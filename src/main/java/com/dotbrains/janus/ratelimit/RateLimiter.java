@@ -0,0 +1,124 @@
+package com.dotbrains.janus.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets of the rate-limited routes
+ *
+ * Each route has a fixed array of buckets and a key is hashed to one of them, so
+ * memory does not grow with the number of clients, subjects or addresses. Keys
+ * that share a slot share its budget; size {@code janus.ratelimit.slots} well
+ * above the number of keys active within one burst window to keep that rare.
+ * A bucket is a single long (the GCRA theoretical arrival time) updated by CAS,
+ * so there is no lock, global or striped.
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    // Bucket times are relative to startup so an untouched slot (0) reads as a full bucket
+    private static final long EPOCH = System.nanoTime();
+
+    private final List<LimitedRoute> routes;
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        int slots = Integer.highestOneBit(Math.max(properties.slots() - 1, 1)) << 1;
+        this.routes = !properties.enabled() ? List.of() : properties.routes().stream()
+                .map(route -> new LimitedRoute(route, slots, meterRegistry))
+                .toList();
+        log.info("Rate limiting {} route(s) with {} buckets each", routes.size(), slots);
+    }
+
+    /**
+     * @param path the request path within the application
+     * @return the first route matching the path, or null if it is not limited
+     */
+    public LimitedRoute routeFor(String path) {
+        if (routes.isEmpty()) {
+            return null;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        for (LimitedRoute route : routes) {
+            if (route.pattern.matches(container)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A rate-limited route and its buckets
+     */
+    public static final class LimitedRoute {
+
+        private final String name;
+        private final PathPattern pattern;
+        private final RateLimitProperties.KeyType keyType;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLongArray buckets;
+        private final Counter rejected;
+
+        private LimitedRoute(RateLimitProperties.Route route, int slots, MeterRegistry meterRegistry) {
+            if (route.ratePerSecond() <= 0 || route.burst() <= 0) {
+                throw new IllegalArgumentException("Rate limit of route " + route.name() + " must be positive");
+            }
+            this.name = route.name();
+            this.pattern = PathPatternParser.defaultInstance.parse(route.pattern());
+            this.keyType = route.key();
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / route.ratePerSecond();
+            this.toleranceNanos = intervalNanos * (route.burst() - 1);
+            this.buckets = new AtomicLongArray(slots);
+            this.rejected = Counter.builder("janus.ratelimit.rejected")
+                    .description("Requests rejected with 429 by the rate limiter")
+                    .tag("route", name)
+                    .register(meterRegistry);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public RateLimitProperties.KeyType keyType() {
+            return keyType;
+        }
+
+        /**
+         * Take a token from the bucket of a key
+         * @param key the client, subject or address
+         * @return 0 if the request may proceed, else nanoseconds until the key has a token again
+         */
+        public long tryAcquire(String key) {
+            int slot = slotOf(key);
+            long now = System.nanoTime() - EPOCH;
+            while (true) {
+                long next = buckets.get(slot);
+                long start = Math.max(next, now);
+                long wait = start - now - toleranceNanos;
+                if (wait > 0) {
+                    rejected.increment();
+                    return wait;
+                }
+                if (buckets.compareAndSet(slot, next, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        private int slotOf(String key) {
+            // Spread the hash so keys differing only in high bits land in different slots
+            int hash = key.hashCode() * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & (buckets.length() - 1);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.dotbrains.janus.realm;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bearer token authentication for the trusted realms, by issuer
+ *
+ * One decoder per issuer, each with its own JWKS cache, built once at startup;
+ * a token is routed by its unverified {@code iss} claim with a single map lookup
+ * and tokens of any other issuer resolve to no manager. Shared by the HTTP API
+ * and the gRPC server so both keep one JWKS cache per realm.
+ */
+@Component
+@Profile("!test")
+public class IssuerAuthenticationManagers implements AuthenticationManagerResolver<String> {
+
+    private final Map<String, AuthenticationManager> byIssuer;
+
+    public IssuerAuthenticationManagers(Realms realms) {
+        Map<String, AuthenticationManager> managers = new HashMap<>();
+        for (RealmProperties.Realm realm : realms.trusted()) {
+            NimbusJwtDecoder decoder = (realm.jwkSetUri() != null && !realm.jwkSetUri().isBlank()
+                    ? NimbusJwtDecoder.withJwkSetUri(realm.jwkSetUri())
+                    : NimbusJwtDecoder.withIssuerLocation(realm.issuerUri())).build();
+            decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(realm.issuerUri()));
+            managers.put(realm.issuerUri(), new JwtAuthenticationProvider(decoder)::authenticate);
+        }
+        this.byIssuer = Map.copyOf(managers);
+    }
+
+    /**
+     * @param issuer the unverified {@code iss} claim of a token
+     * @return the manager verifying tokens of a trusted issuer, or null
+     */
+    @Override
+    public AuthenticationManager resolve(String issuer) {
+        return issuer == null ? null : byIssuer.get(issuer);
+    }
+}
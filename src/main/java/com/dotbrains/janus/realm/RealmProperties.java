@@ -0,0 +1,27 @@
+package com.dotbrains.janus.realm;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Keycloak realms served by Janus ({@code janus.realms.*})
+ *
+ * @param defaultRealm the realm of background work and of logins from an unlisted issuer
+ * @param trusted the realms whose bearer tokens are accepted
+ */
+@ConfigurationProperties("janus.realms")
+public record RealmProperties(String defaultRealm, List<Realm> trusted) {
+
+    public RealmProperties {
+        trusted = trusted != null ? List.copyOf(trusted) : List.of();
+    }
+
+    /**
+     * @param name the realm name, stored in {@code users.realm}
+     * @param issuerUri the exact {@code iss} claim of the realm's tokens
+     * @param jwkSetUri the realm's JWKS endpoint; discovered from the issuer when empty
+     */
+    public record Realm(String name, String issuerUri, String jwkSetUri) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.dotbrains.janus.realm;
+
+import org.hibernate.cfg.MultiTenancySettings;
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Makes the current realm the Hibernate tenant
+ *
+ * {@code User.realm} is the {@code @TenantId}, so Hibernate adds the realm to
+ * every entity query and sets it on insert. The tenant is fixed when a session
+ * opens, i.e. at the start of each transaction. Native and JDBC statements are
+ * not covered and filter on the realm themselves.
+ */
+@Component
+public class RealmTenantResolver implements CurrentTenantIdentifierResolver<String>, HibernatePropertiesCustomizer {
+
+    private final Realms realms;
+
+    public RealmTenantResolver(Realms realms) {
+        this.realms = realms;
+    }
+
+    @Override
+    public String resolveCurrentTenantIdentifier() {
+        return realms.current();
+    }
+
+    @Override
+    public boolean validateExistingCurrentSessions() {
+        return false;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(MultiTenancySettings.MULTI_TENANT_IDENTIFIER_RESOLVER, this);
+    }
+}
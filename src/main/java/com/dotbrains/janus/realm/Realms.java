@@ -0,0 +1,115 @@
+package com.dotbrains.janus.realm;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The trusted realms and the realm the current thread works in
+ *
+ * The current realm is the one explicitly set with {@link #callAs} (background
+ * jobs), else the realm of the authenticated token's issuer, else the default realm.
+ * It scopes every {@code users} query (see {@link RealmTenantResolver}).
+ */
+@Component
+@EnableConfigurationProperties(RealmProperties.class)
+public class Realms {
+
+    private static final ThreadLocal<String> EXPLICIT = new ThreadLocal<>();
+
+    private final String defaultRealm;
+    private final List<RealmProperties.Realm> trusted;
+    private final Map<String, String> realmByIssuer;
+
+    public Realms(RealmProperties properties) {
+        if (properties.defaultRealm() == null || properties.defaultRealm().isBlank()) {
+            throw new IllegalArgumentException("janus.realms.default-realm must be set");
+        }
+        this.defaultRealm = properties.defaultRealm();
+        this.trusted = properties.trusted();
+        Map<String, String> byIssuer = new HashMap<>();
+        for (RealmProperties.Realm realm : trusted) {
+            if (byIssuer.put(realm.issuerUri(), realm.name()) != null) {
+                throw new IllegalArgumentException("Issuer " + realm.issuerUri() + " is listed twice in janus.realms.trusted");
+            }
+        }
+        this.realmByIssuer = Map.copyOf(byIssuer);
+    }
+
+    public String defaultRealm() {
+        return defaultRealm;
+    }
+
+    /**
+     * @return the realms whose bearer tokens are accepted
+     */
+    public List<RealmProperties.Realm> trusted() {
+        return trusted;
+    }
+
+    /**
+     * @return the names of the trusted realms and the default realm
+     */
+    public List<String> names() {
+        return Stream.concat(Stream.of(defaultRealm), trusted.stream().map(RealmProperties.Realm::name))
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * @param issuer the {@code iss} claim of a token
+     * @return the realm of a trusted issuer
+     */
+    public Optional<String> realmOf(String issuer) {
+        return Optional.ofNullable(issuer).map(realmByIssuer::get);
+    }
+
+    /**
+     * @return the realm the current thread works in
+     */
+    public String current() {
+        String explicit = EXPLICIT.get();
+        if (explicit != null) {
+            return explicit;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String issuer = switch (authentication) {
+            case JwtAuthenticationToken jwt -> jwt.getToken().getClaimAsString(JwtClaimNames.ISS);
+            case Authentication auth when auth.getPrincipal() instanceof OidcUser oidcUser ->
+                    oidcUser.getIdToken().getClaimAsString(JwtClaimNames.ISS);
+            case null, default -> null;
+        };
+        return realmOf(issuer).orElse(defaultRealm);
+    }
+
+    /**
+     * Run work in a given realm, e.g. a job driven by one realm's admin API
+     * @param realm the realm name
+     * @param work the work
+     * @return the result of the work
+     */
+    public <T> T callAs(String realm, Supplier<T> work) {
+        String previous = EXPLICIT.get();
+        EXPLICIT.set(realm);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                EXPLICIT.set(previous);
+            } else {
+                EXPLICIT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.dotbrains.janus.relay;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends relayed changes to a local file as JSON lines
+ *
+ * A batch is written with one append and forced to disk before it counts as
+ * delivered, so a crash loses no acknowledged change; a batch written but not
+ * marked relayed is appended again.
+ */
+@Component
+public class FileSink implements UserChangeSink {
+
+    private final JsonMapper jsonMapper;
+    private final Path path;
+
+    public FileSink(JsonMapper jsonMapper,
+                    @Value("${janus.changes.relay.file.path}") String path) {
+        this.jsonMapper = jsonMapper;
+        this.path = Path.of(path);
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void deliver(List<UserChangeMessage> changes) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(changes.size() * 128);
+        for (UserChangeMessage change : changes) {
+            lines.write(jsonMapper.writeValueAsBytes(change));
+            lines.write('\n');
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.dotbrains.janus.relay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Logs each relayed change at INFO, for development and log-shipping setups
+ */
+@Component
+@Slf4j
+public class LogSink implements UserChangeSink {
+
+    @Override
+    public String name() {
+        return "log";
+    }
+
+    @Override
+    public void deliver(List<UserChangeMessage> changes) {
+        for (UserChangeMessage change : changes) {
+            log.info("User change {}: {} {} in realm {} at {}",
+                    change.seq(), change.type(), change.keycloakId(), change.realm(), change.changedAt());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dotbrains.janus.relay;
+
+import com.dotbrains.janus.user.UserChanges;
+
+import java.time.Instant;
+
+/**
+ * A committed user change as delivered to the sinks
+ * @param seq the position in the outbox, for receivers to deduplicate and order by
+ * @param realm the realm of the user
+ * @param keycloakId the Keycloak ID of the user
+ * @param type what happened to the user
+ * @param changedAt when it was committed
+ */
+public record UserChangeMessage(long seq, String realm, String keycloakId, UserChanges.Type type, Instant changedAt) {
+
+    static UserChangeMessage of(UserChanges.Change change) {
+        return new UserChangeMessage(change.seq(), change.realm(), change.keycloakId(), change.type(),
+                Instant.ofEpochMilli(change.changedAt()));
+    }
+}
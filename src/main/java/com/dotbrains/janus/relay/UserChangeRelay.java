@@ -0,0 +1,173 @@
+package com.dotbrains.janus.relay;
+
+import com.dotbrains.janus.user.UserChangeOutbox;
+import com.dotbrains.janus.user.UserChanges;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers every committed user change at least once to the configured sinks
+ *
+ * Every {@code interval} the relay claims up to {@code batch-size} changes not yet
+ * relayed from the {@link UserChangeOutbox}, skipping rows another instance is
+ * claiming, hands the batch to each sink in turn and marks it relayed. Any number
+ * of instances relay in parallel, each on its own batches. A batch a sink refuses
+ * stays claimed until its {@code lease} runs out and is then delivered again to
+ * every sink, by whichever instance claims it. The instance that failed claims
+ * nothing until then, so it does not deliver later changes ahead of the refused
+ * ones or lease a new batch every interval during a sink outage. Batches are
+ * delivered in sequence order by one instance, but may overtake each other across
+ * instances; receivers order and deduplicate by {@code seq}.
+ */
+@Component
+@Slf4j
+public class UserChangeRelay {
+
+    private final UserChangeOutbox outbox;
+    private final boolean enabled;
+    private final List<UserChangeSink> sinks;
+    private final int batchSize;
+    private final Duration lease;
+    private final Clock clock;
+    private final Counter relayed;
+    private final Map<String, Counter> failed;
+    private final Timer batchTime;
+    private final Timer lag;
+    // Set after a failed run, while the batch it claimed may still be leased
+    private volatile Instant pausedUntil = Instant.MIN;
+
+    @Autowired
+    public UserChangeRelay(UserChangeOutbox outbox,
+                           List<UserChangeSink> availableSinks,
+                           MeterRegistry meterRegistry,
+                           @Value("${janus.changes.relay.enabled}") boolean enabled,
+                           @Value("${janus.changes.relay.sinks}") List<String> sinkNames,
+                           @Value("${janus.changes.relay.batch-size}") int batchSize,
+                           @Value("${janus.changes.relay.lease}") Duration lease) {
+        this(outbox, availableSinks, meterRegistry, enabled, sinkNames, batchSize, lease, Clock.systemUTC());
+    }
+
+    UserChangeRelay(UserChangeOutbox outbox,
+                    List<UserChangeSink> availableSinks,
+                    MeterRegistry meterRegistry,
+                    boolean enabled,
+                    List<String> sinkNames,
+                    int batchSize,
+                    Duration lease,
+                    Clock clock) {
+        if (batchSize < 1 || batchSize > 5000) {
+            throw new IllegalArgumentException("janus.changes.relay.batch-size must be between 1 and 5000");
+        }
+        Map<String, UserChangeSink> byName = availableSinks.stream()
+                .collect(Collectors.toMap(UserChangeSink::name, Function.identity()));
+        List<UserChangeSink> selected = new ArrayList<>();
+        for (String name : sinkNames) {
+            if (name.isBlank()) {
+                continue;
+            }
+            UserChangeSink sink = byName.get(name.trim());
+            if (sink == null) {
+                throw new IllegalArgumentException("janus.changes.relay.sinks: unknown sink " + name.trim()
+                        + ", expected one of " + byName.keySet());
+            }
+            if (!selected.contains(sink)) {
+                selected.add(sink);
+            }
+        }
+        if (enabled) {
+            if (selected.isEmpty()) {
+                throw new IllegalArgumentException("janus.changes.relay.sinks must name at least one sink");
+            }
+            selected.forEach(UserChangeSink::verify);
+        }
+        this.outbox = outbox;
+        this.enabled = enabled;
+        this.sinks = List.copyOf(selected);
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.clock = clock;
+        this.relayed = Counter.builder("janus.changes.relay.relayed")
+                .description("User changes delivered to every relay sink")
+                .register(meterRegistry);
+        this.failed = sinks.stream().collect(Collectors.toMap(UserChangeSink::name, sink -> Counter.builder("janus.changes.relay.failed")
+                .description("Batches of user changes a relay sink refused")
+                .tag("sink", sink.name())
+                .register(meterRegistry)));
+        this.batchTime = Timer.builder("janus.changes.relay.batch")
+                .description("Time to deliver a batch of user changes to every relay sink")
+                .register(meterRegistry);
+        this.lag = Timer.builder("janus.changes.relay.lag")
+                .description("Time from the commit of a user change to its relay")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Relay the changes waiting, a batch at a time, until none are left or a sink fails
+     * After a failure, wait for the lease of the batch to run out before claiming again
+     */
+    @Scheduled(fixedDelayString = "${janus.changes.relay.interval}", initialDelayString = "${janus.changes.relay.interval}")
+    public void relay() {
+        if (!enabled || clock.instant().isBefore(pausedUntil)) {
+            return;
+        }
+        try {
+            List<UserChanges.Change> batch;
+            do {
+                batch = outbox.claim(batchSize, lease);
+                if (!batch.isEmpty() && !deliver(batch)) {
+                    pausedUntil = clock.instant().plus(lease);
+                    return;
+                }
+            } while (batch.size() == batchSize);
+        } catch (DataAccessException e) {
+            // A batch that could not be marked relayed stays claimed as well
+            pausedUntil = clock.instant().plus(lease);
+            log.warn("Could not relay user changes, retrying in {}: {}", lease, e.getMessage());
+        }
+    }
+
+    /**
+     * @return whether every sink accepted the batch
+     */
+    private boolean deliver(List<UserChanges.Change> batch) {
+        List<UserChangeMessage> messages = batch.stream().map(UserChangeMessage::of).toList();
+        long start = System.nanoTime();
+        for (UserChangeSink sink : sinks) {
+            try {
+                sink.deliver(messages);
+            } catch (IOException | RuntimeException e) {
+                failed.get(sink.name()).increment();
+                log.warn("Sink {} refused {} user changes from {}, retrying in {}: {}",
+                        sink.name(), messages.size(), messages.getFirst().seq(), lease, e.getMessage());
+                return false;
+            }
+        }
+        // A failure here leaves the batch claimed; it is delivered again once the lease runs out
+        outbox.markRelayed(batch.stream().map(UserChanges.Change::seq).toList());
+        batchTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        relayed.increment(batch.size());
+        long now = clock.millis();
+        for (UserChanges.Change change : batch) {
+            lag.record(Math.max(0, now - change.changedAt()), TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+}
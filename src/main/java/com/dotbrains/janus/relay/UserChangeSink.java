@@ -0,0 +1,33 @@
+package com.dotbrains.janus.relay;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A destination the {@link UserChangeRelay} delivers committed user changes to
+ *
+ * Delivery is at least once: a batch that fails on any sink is delivered again to
+ * every sink, and a batch whose delivery outlasts the relay lease may be delivered
+ * by another instance as well. Receivers deduplicate by {@code seq}.
+ */
+public interface UserChangeSink {
+
+    /**
+     * @return the name to list in {@code janus.changes.relay.sinks}
+     */
+    String name();
+
+    /**
+     * Check the settings the sink needs, when it is selected
+     * @throws IllegalArgumentException if a setting is missing
+     */
+    default void verify() {
+    }
+
+    /**
+     * Deliver a batch of changes, returning only once it is durably accepted
+     * @param changes the changes in sequence order
+     * @throws IOException if the batch was not accepted
+     */
+    void deliver(List<UserChangeMessage> changes) throws IOException;
+}
@@ -0,0 +1,92 @@
+package com.dotbrains.janus.relay;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * POSTs each batch of relayed changes to a webhook as a JSON array
+ *
+ * Any 2xx answer accepts the batch. With a secret, the body is signed with
+ * HMAC-SHA256 in {@code X-Janus-Signature: sha256=<hex>}, as Keycloak events
+ * are signed towards Janus.
+ */
+@Component
+public class WebhookSink implements UserChangeSink {
+
+    static final String SIGNATURE_HEADER = "X-Janus-Signature";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final JsonMapper jsonMapper;
+    private final String url;
+    private final SecretKeySpec secret;
+    private final RestClient restClient;
+
+    public WebhookSink(JsonMapper jsonMapper,
+                       @Value("${janus.changes.relay.webhook.url}") String url,
+                       @Value("${janus.changes.relay.webhook.secret}") String secret,
+                       @Value("${janus.changes.relay.webhook.timeout}") Duration timeout) {
+        this.jsonMapper = jsonMapper;
+        this.url = url;
+        this.secret = secret.isEmpty() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build());
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+
+    @Override
+    public void verify() {
+        if (url.isBlank()) {
+            throw new IllegalArgumentException("janus.changes.relay.webhook.url must be set to relay to the webhook");
+        }
+    }
+
+    @Override
+    public void deliver(List<UserChangeMessage> changes) throws IOException {
+        byte[] body = jsonMapper.writeValueAsBytes(changes);
+        RestClient.RequestBodySpec request = restClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (secret != null) {
+            request.header(SIGNATURE_HEADER, "sha256=" + HexFormat.of().formatHex(sign(body)));
+        }
+        try {
+            request.body(body).retrieve().toBodilessEntity();
+        } catch (RestClientException e) {
+            throw new IOException("Webhook refused " + changes.size() + " user changes: " + e.getMessage(), e);
+        }
+    }
+
+    private byte[] sign(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.dotbrains.janus.resilience;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Guards every UserService call with the {@link DatabaseCircuitBreaker}
+ *
+ * Outermost advice on UserService, so an open circuit fails before a
+ * connection is requested or a latency sample is taken.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class CircuitBreakerAspect {
+
+    private final DatabaseCircuitBreaker circuitBreaker;
+
+    @Around("execution(public * com.dotbrains.janus.user.UserService.*(..))")
+    public Object guard(ProceedingJoinPoint call) throws Throwable {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new DatabaseUnavailableException("Database circuit is open");
+        }
+        try {
+            Object result = call.proceed();
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (isConnectionFailure(e)) {
+                circuitBreaker.onFailure();
+            } else {
+                // The database answered, e.g. with a constraint violation
+                circuitBreaker.onSuccess();
+            }
+            throw e;
+        }
+    }
+
+    static boolean isConnectionFailure(Throwable e) {
+        return e instanceof CannotCreateTransactionException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException;
+    }
+}
@@ -0,0 +1,91 @@
+package com.dotbrains.janus.resilience;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker for database calls
+ *
+ * Opens after a run of consecutive connection failures, so callers fail fast
+ * instead of each waiting for a pool timeout against a dead database. After
+ * the open duration one trial call is let through (half-open): success closes
+ * the circuit, failure opens it again. Exposed as {@code janus.db.circuit.state}
+ * (0 closed, 1 half-open, 2 open).
+ */
+@Component
+@Slf4j
+public class DatabaseCircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    public DatabaseCircuitBreaker(MeterRegistry meterRegistry,
+                                  @Value("${janus.database.circuit-breaker.failure-threshold}") int failureThreshold,
+                                  @Value("${janus.database.circuit-breaker.open-duration}") Duration openDuration) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Circuit breaker failure threshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+
+        Gauge.builder("janus.db.circuit.state", state, s -> s.get().ordinal())
+                .description("Database circuit breaker state (0 closed, 1 half-open, 2 open)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if a database call may be made
+     */
+    public boolean tryAcquire() {
+        return switch (state.get()) {
+            case CLOSED -> true;
+            // Only the caller that moves the circuit to half-open makes the trial call
+            case OPEN -> System.nanoTime() - openedAt >= openDurationNanos
+                    && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+            case HALF_OPEN -> false;
+        };
+    }
+
+    /**
+     * Record a call the database answered
+     */
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+            log.info("Database reachable again, circuit closed");
+        }
+    }
+
+    /**
+     * Record a call that failed to reach the database
+     */
+    public void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.get() == State.HALF_OPEN || failures >= failureThreshold) {
+            openedAt = System.nanoTime();
+            if (state.getAndSet(State.OPEN) != State.OPEN) {
+                log.error("Database unreachable after {} consecutive failures, circuit opened for {} ms",
+                        failures, openDurationNanos / 1_000_000);
+            }
+        }
+    }
+
+    public State state() {
+        return state.get();
+    }
+}
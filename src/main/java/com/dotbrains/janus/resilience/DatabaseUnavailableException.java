@@ -0,0 +1,13 @@
+package com.dotbrains.janus.resilience;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Thrown instead of calling the database while the {@link DatabaseCircuitBreaker} is open
+ */
+public class DatabaseUnavailableException extends DataAccessResourceFailureException {
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+}
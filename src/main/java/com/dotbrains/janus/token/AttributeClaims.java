@@ -0,0 +1,109 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JsonPointer;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Claims read from the user's attributes document by JSON path
+ *
+ * New claims such as a cost center or a manager only need an attribute and a
+ * {@code janus.token.attributes.claims} entry, not a column, entity field and mapper
+ * code. Paths are the dot and bracket subset of JSONPath ({@code $.location.city},
+ * {@code $['cost-center']}, {@code $.managers[0]}), compiled once at startup.
+ * Documents come from {@link UserAttributes}, parsed once per user version;
+ * absent and null values are left out, as other unset claims are.
+ */
+@Component
+@EnableConfigurationProperties(AttributeClaimsProperties.class)
+@Slf4j
+public class AttributeClaims {
+
+    // One step of a path: .name, ['name'], ["name"] or [index]
+    private static final Pattern STEP = Pattern.compile("\\.([^.\\[\\]]+)|\\['([^']*)']|\\[\"([^\"]*)\"]|\\[(\\d+)]");
+
+    private final UserAttributes userAttributes;
+    private final JsonMapper jsonMapper;
+    private final List<Mapping> mappings;
+
+    public AttributeClaims(UserAttributes userAttributes, JsonMapper jsonMapper, AttributeClaimsProperties properties) {
+        this.userAttributes = userAttributes;
+        this.jsonMapper = jsonMapper;
+        List<Mapping> compiled = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (AttributeClaimsProperties.Claim claim : properties.claims()) {
+            String name = claim.name();
+            if (name == null || name.isBlank() || UserClaims.isStandard(name) || !names.add(name)) {
+                throw new IllegalArgumentException("janus.token.attributes.claims: invalid or duplicate claim name " + name);
+            }
+            compiled.add(new Mapping(name, compile(claim.path())));
+        }
+        this.mappings = List.copyOf(compiled);
+        if (!mappings.isEmpty()) {
+            log.info("Mapping {} claims from user attributes: {}", mappings.size(), names);
+        }
+    }
+
+    /**
+     * @param user the user, as loaded
+     * @return the attribute claims of the user, in configuration order
+     */
+    public Map<String, Object> claimsOf(User user) {
+        if (mappings.isEmpty()) {
+            return Map.of();
+        }
+        JsonNode attributes = userAttributes.of(user);
+        Map<String, Object> claims = new LinkedHashMap<>();
+        for (Mapping mapping : mappings) {
+            JsonNode value = attributes.at(mapping.pointer());
+            if (!value.isMissingNode() && !value.isNull()) {
+                claims.put(mapping.claim(), jsonMapper.treeToValue(value, Object.class));
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Translate a JSON path into the equivalent JSON Pointer
+     * @param path e.g. {@code $.location.city}
+     * @return the pointer, e.g. {@code /location/city}
+     * @throws IllegalArgumentException if the path is not of the supported subset
+     */
+    static JsonPointer compile(String path) {
+        if (path == null || !path.startsWith("$") || path.length() == 1) {
+            throw new IllegalArgumentException("JSON path must start with $ and select a member: " + path);
+        }
+        StringBuilder pointer = new StringBuilder();
+        Matcher step = STEP.matcher(path);
+        int position = 1;
+        while (position < path.length()) {
+            if (!step.find(position) || step.start() != position) {
+                throw new IllegalArgumentException("Unsupported JSON path " + path + " at offset " + position);
+            }
+            for (int group = 1; group <= 4; group++) {
+                if (step.group(group) != null) {
+                    pointer.append('/').append(step.group(group).replace("~", "~0").replace("/", "~1"));
+                }
+            }
+            position = step.end();
+        }
+        return JsonPointer.compile(pointer.toString());
+    }
+
+    private record Mapping(String claim, JsonPointer pointer) {
+    }
+}
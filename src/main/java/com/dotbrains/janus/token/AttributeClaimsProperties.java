@@ -0,0 +1,25 @@
+package com.dotbrains.janus.token;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Claims mapped from the users' attributes documents ({@code janus.token.attributes.*})
+ *
+ * @param claims the claims, in the order they are added to tokens
+ */
+@ConfigurationProperties("janus.token.attributes")
+public record AttributeClaimsProperties(List<Claim> claims) {
+
+    public AttributeClaimsProperties {
+        claims = claims != null ? List.copyOf(claims) : List.of();
+    }
+
+    /**
+     * @param name the claim name
+     * @param path JSON path of the value in {@code users.attributes}, e.g. {@code $.location.city}
+     */
+    public record Claim(String name, String path) {
+    }
+}
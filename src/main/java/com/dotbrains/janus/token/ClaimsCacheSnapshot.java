@@ -0,0 +1,183 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.token.EncodedClaimsCache.CachedClaims;
+import com.dotbrains.janus.user.UserService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the encoded claims cache for warm restarts
+ *
+ * On graceful shutdown the cached claims are written, hottest first, to a local
+ * memory-mapped file. At startup, before the node reports ready, the file is mapped
+ * back and every entry is checked against {@code users.version} in one bulk query;
+ * only claims of active users whose version is unchanged are restored, so nothing
+ * stale is served and the hot users skip the database from the first request.
+ */
+@Component
+@Slf4j
+public class ClaimsCacheSnapshot {
+
+    private static final int FILE_MAGIC = 0x4A434353; // "JCCS"
+    private static final int FILE_VERSION = 2;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final TypeReference<Map<String, Object>> CLAIMS_TYPE = new TypeReference<>() {
+    };
+
+    private final EncodedClaimsCache claimsCache;
+    private final UserService userService;
+    private final JsonMapper jsonMapper;
+    private final boolean enabled;
+    private final Path path;
+
+    public ClaimsCacheSnapshot(EncodedClaimsCache claimsCache,
+                               UserService userService,
+                               JsonMapper jsonMapper,
+                               @Value("${janus.token.claims-cache.snapshot.enabled}") boolean enabled,
+                               @Value("${janus.token.claims-cache.snapshot.path}") Path path) {
+        this.claimsCache = claimsCache;
+        this.userService = userService;
+        this.jsonMapper = jsonMapper;
+        this.enabled = enabled;
+        this.path = path;
+    }
+
+    /**
+     * Write the cached claims to the snapshot file
+     */
+    @PreDestroy
+    public void save() {
+        if (!enabled) {
+            return;
+        }
+        List<CachedClaims> entries = claimsCache.hottest();
+        List<byte[]> claims = new ArrayList<>(entries.size());
+        long size = HEADER_BYTES;
+        for (CachedClaims entry : entries) {
+            byte[] json = entry.claims().toJson();
+            claims.add(json);
+            size += Long.BYTES + 2L * Integer.BYTES + json.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            log.warn("Claims cache snapshot of {} bytes is too large to map, not saved", size);
+            return;
+        }
+
+        try {
+            long mappedSize = size;
+            SnapshotFiles.replace(path, file -> {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+                    buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(entries.size());
+                    for (int i = 0; i < entries.size(); i++) {
+                        buffer.putLong(entries.get(i).userId());
+                        buffer.putInt(entries.get(i).version());
+                        buffer.putInt(claims.get(i).length).put(claims.get(i));
+                    }
+                    buffer.force();
+                }
+            });
+            log.info("Saved {} cached claims ({} bytes) to {}", entries.size(), size, path);
+        } catch (IOException e) {
+            log.warn("Could not save the claims cache snapshot to {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Restore the claims saved at the last shutdown that are still current
+     * Runs before the warm-up, once liveness is up but before readiness is
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void restore() {
+        if (!enabled || !Files.exists(path)) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<CachedClaims> entries;
+        try {
+            entries = read();
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("Could not read the claims cache snapshot from {}: {}", path, e.getMessage());
+            return;
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> current;
+        try {
+            current = userService.findActiveVersionsByIds(
+                    entries.stream().map(CachedClaims::userId).distinct().toList());
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Could not validate the claims cache snapshot, starting cold: {}", e.getMessage());
+            return;
+        }
+
+        // Coldest first, so the hottest entries are the last ones the cache would evict
+        int restored = 0;
+        for (CachedClaims entry : entries.reversed()) {
+            if (entry.version().equals(current.get(entry.userId()))) {
+                claimsCache.restore(entry);
+                restored++;
+            }
+        }
+        log.info("Restored {} of {} cached claims from {} in {} ms",
+                restored, entries.size(), path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private List<CachedClaims> read() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+                throw new IllegalArgumentException("unknown format");
+            }
+            int count = buffer.getInt();
+            List<CachedClaims> entries = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                long userId = buffer.getLong();
+                int version = buffer.getInt();
+                byte[] json = bytes(buffer);
+                try {
+                    entries.add(new CachedClaims(userId, version,
+                            EncodedClaims.encode(jsonMapper, jsonMapper.readValue(json, CLAIMS_TYPE))));
+                } catch (JacksonException e) {
+                    throw new IllegalArgumentException("corrupt claims for user " + userId, e);
+                }
+            }
+            return entries;
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
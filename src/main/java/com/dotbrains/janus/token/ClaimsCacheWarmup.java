@@ -0,0 +1,124 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.user.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps the claims of the most recently active users into the claims cache at boot
+ *
+ * Runs on {@link ApplicationReadyEvent}, which Spring Boot publishes after liveness
+ * is {@code CORRECT} and before readiness turns {@code ACCEPTING_TRAFFIC}. So
+ * {@code /actuator/health/liveness} is up during the warm-up while
+ * {@code /actuator/health/readiness} stays {@code OUT_OF_SERVICE} until the cache is
+ * warm or {@code timeout} has passed. Users are read from a database cursor, most
+ * recent login first, and their claims are mapped on {@code parallelism} threads;
+ * the cursor thread maps claims itself when the workers fall behind. Realms are
+ * warmed one after the other, sharing the {@code max-users} budget.
+ */
+@Component
+@Slf4j
+public class ClaimsCacheWarmup {
+
+    private final UserService userService;
+    private final TokenCustomizer tokenCustomizer;
+    private final Realms realms;
+    private final boolean enabled;
+    private final int maxUsers;
+    private final Duration timeout;
+    private final int parallelism;
+
+    public ClaimsCacheWarmup(UserService userService,
+                             TokenCustomizer tokenCustomizer,
+                             Realms realms,
+                             @Value("${janus.token.claims-cache.warmup.enabled}") boolean enabled,
+                             @Value("${janus.token.claims-cache.warmup.max-users}") int maxUsers,
+                             @Value("${janus.token.claims-cache.warmup.timeout}") Duration timeout,
+                             @Value("${janus.token.claims-cache.warmup.parallelism}") int parallelism) {
+        this.userService = userService;
+        this.tokenCustomizer = tokenCustomizer;
+        this.realms = realms;
+        this.enabled = enabled;
+        this.maxUsers = maxUsers;
+        this.timeout = timeout;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Warm the claims cache, giving up once the timeout has passed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void warmUp() {
+        if (!enabled || maxUsers <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        AtomicInteger mapped = new AtomicInteger();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(parallelism * 64), Thread.ofPlatform().name("claims-warmup-", 0).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        int visited = 0;
+        try {
+            for (String realm : realms.names()) {
+                if (visited >= maxUsers || timedOut.get()) {
+                    break;
+                }
+                int limit = maxUsers - visited;
+                visited += realms.callAs(realm, () -> userService.forEachRecentlyActiveUser(limit, user -> {
+                    workers.execute(() -> {
+                        if (System.nanoTime() < deadline && tokenCustomizer.prewarm(user)) {
+                            mapped.incrementAndGet();
+                        }
+                    });
+                    if (System.nanoTime() >= deadline) {
+                        timedOut.set(true);
+                        return false;
+                    }
+                    return true;
+                }));
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Claims cache warm-up stopped, database unavailable: {}", e.getMessage());
+        } finally {
+            workers.shutdown();
+        }
+
+        boolean finished;
+        try {
+            finished = workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+        if (!finished) {
+            workers.shutdownNow();
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (timedOut.get() || !finished) {
+            log.warn("Claims cache warm-up timed out after {} ms, mapped {} of {} users read",
+                    elapsedMillis, mapped.get(), visited);
+        } else {
+            log.info("Warmed up claims of {} recently active users ({} read) in {} ms",
+                    mapped.get(), visited, elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.dotbrains.janus.token;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.io.JsonStringEncoder;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ValueSerializer;
+import tools.jackson.databind.annotation.JsonSerialize;
+import tools.jackson.databind.ser.std.StdSerializer;
+import tools.jackson.databind.util.NameTransformer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Custom claims serialized once to UTF-8 JSON
+ *
+ * Holds the members of the claims object without the surrounding braces, so the
+ * same bytes can be written either as a nested object ({@code custom_claims}) or
+ * spliced into an enclosing object with {@code @JsonUnwrapped}. The first
+ * property name is kept apart and written through the generator, which keeps
+ * comma handling correct wherever the claims appear in the enclosing object.
+ */
+@JsonSerialize(using = EncodedClaims.Serializer.class)
+public final class EncodedClaims {
+
+    public static final EncodedClaims EMPTY = new EncodedClaims(null, new byte[0], Set.of());
+
+    private final String firstName;
+    // Value of the first property followed by the remaining members
+    private final RawJson rest;
+    private final Set<String> names;
+
+    private EncodedClaims(String firstName, byte[] rest, Set<String> names) {
+        this.firstName = firstName;
+        this.rest = new RawJson(rest);
+        this.names = names;
+    }
+
+    /**
+     * Serialize claims with the given mapper
+     * @param mapper the mapper used for HTTP responses
+     * @param claims the claims from the CustomClaimsMapper
+     * @return the encoded claims
+     */
+    public static EncodedClaims encode(ObjectMapper mapper, Map<String, Object> claims) {
+        if (claims.isEmpty()) {
+            return EMPTY;
+        }
+        return split(mapper, mapper.writeValueAsBytes(claims), Set.copyOf(claims.keySet()));
+    }
+
+    /**
+     * Take claims already serialized, e.g. by {@link #toJson()}, without mapping them again
+     * @param mapper the mapper used for HTTP responses
+     * @param json the claims as a JSON object
+     * @return the encoded claims, holding the same bytes
+     */
+    public static EncodedClaims decode(ObjectMapper mapper, byte[] json) {
+        Set<String> names = new HashSet<>();
+        try (JsonParser parser = mapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Claims are not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                names.add(parser.getString());
+                parser.nextToken();
+                parser.skipChildren();
+            }
+        }
+        return names.isEmpty() ? EMPTY : split(mapper, json, Set.copyOf(names));
+    }
+
+    private static EncodedClaims split(ObjectMapper mapper, byte[] json, Set<String> names) {
+        String firstName;
+        int nameStart;
+        try (JsonParser parser = mapper.createParser(json)) {
+            parser.nextToken();
+            if (parser.nextToken() != JsonToken.PROPERTY_NAME) {
+                throw new IllegalStateException("Claims did not serialize to a JSON object");
+            }
+            firstName = parser.getString();
+            nameStart = (int) parser.currentTokenLocation().getByteOffset();
+        }
+
+        // Skip the rest of the quoted (possibly escaped) first name and the colon after it
+        int start = json[nameStart] == '"' ? nameStart + 1 : nameStart;
+        while (json[start] != '"') {
+            start += json[start] == '\\' ? 2 : 1;
+        }
+        while (json[start] != ':') {
+            start++;
+        }
+        int end = json.length - 1;
+        while (json[end] != '}') {
+            end--;
+        }
+        return new EncodedClaims(firstName, Arrays.copyOfRange(json, start + 1, end), names);
+    }
+
+    public boolean isEmpty() {
+        return firstName == null;
+    }
+
+    /**
+     * @param name a claim name
+     * @return true if the claims contain the name
+     */
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    public Set<String> names() {
+        return names;
+    }
+
+    /**
+     * @return encoded size in bytes
+     */
+    public int byteSize() {
+        return firstName == null ? 0 : firstName.length() + rest.bytes.length;
+    }
+
+    /**
+     * @return the claims as a standalone JSON object
+     */
+    public byte[] toJson() {
+        if (isEmpty()) {
+            return "{}".getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] name = JsonStringEncoder.getInstance().quoteAsUTF8(firstName);
+        // {"<name>":<rest>}
+        byte[] value = rest.bytes;
+        byte[] json = new byte[name.length + value.length + 5];
+        json[0] = '{';
+        json[1] = '"';
+        System.arraycopy(name, 0, json, 2, name.length);
+        json[name.length + 2] = '"';
+        json[name.length + 3] = ':';
+        System.arraycopy(value, 0, json, name.length + 4, value.length);
+        json[json.length - 1] = '}';
+        return json;
+    }
+
+    /**
+     * Writes the encoded claims as an object, or inline when unwrapped
+     */
+    public static class Serializer extends StdSerializer<EncodedClaims> {
+
+        private final boolean unwrapping;
+
+        public Serializer() {
+            this(false);
+        }
+
+        private Serializer(boolean unwrapping) {
+            super(EncodedClaims.class);
+            this.unwrapping = unwrapping;
+        }
+
+        @Override
+        public void serialize(EncodedClaims value, JsonGenerator gen, SerializationContext ctxt) {
+            if (!unwrapping) {
+                gen.writeStartObject(value);
+            }
+            if (!value.isEmpty()) {
+                gen.writeName(value.firstName);
+                gen.writeRawValue(value.rest);
+            }
+            if (!unwrapping) {
+                gen.writeEndObject();
+            }
+        }
+
+        @Override
+        public boolean isEmpty(SerializationContext ctxt, EncodedClaims value) {
+            return value == null || value.isEmpty();
+        }
+
+        @Override
+        public boolean isUnwrappingSerializer() {
+            return unwrapping;
+        }
+
+        @Override
+        public ValueSerializer<EncodedClaims> unwrappingSerializer(NameTransformer unwrapper) {
+            return new Serializer(true);
+        }
+    }
+
+    /**
+     * UTF-8 JSON written as is by {@link JsonGenerator#writeRawValue(SerializableString)}
+     *
+     * UTF-8 generators copy the bytes straight into their buffer; the character
+     * and quoted forms are decoded on demand for other generators.
+     */
+    private static final class RawJson implements SerializableString {
+
+        private final byte[] bytes;
+
+        private RawJson(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getValue() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return JsonStringEncoder.getInstance().quoteAsCharArray(getValue());
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return bytes;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return append(asQuotedUTF8(), buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return append(asQuotedChars(), buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            return append(bytes, buffer, offset);
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            return append(getValue().toCharArray(), buffer, offset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            byte[] quoted = asQuotedUTF8();
+            out.write(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(bytes);
+            return bytes.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            return put(asQuotedUTF8(), buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            return put(bytes, buffer);
+        }
+
+        private static int append(byte[] source, byte[] buffer, int offset) {
+            if (offset + source.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(source, 0, buffer, offset, source.length);
+            return source.length;
+        }
+
+        private static int append(char[] source, char[] buffer, int offset) {
+            if (offset + source.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(source, 0, buffer, offset, source.length);
+            return source.length;
+        }
+
+        private static int put(byte[] source, ByteBuffer buffer) {
+            if (source.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(source);
+            return source.length;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.user.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of encoded custom claims keyed by (user id, version)
+ *
+ * The claims of a user only change when the user row is updated, which bumps
+ * its version, so entries never need invalidation; superseded versions are
+ * evicted by the byte bound. Keyed by user id rather than Keycloak ID, which is
+ * only unique within a realm. Exposed as the {@code janus.claims} cache metrics
+ * plus {@code janus.claims.cache.bytes}.
+ */
+@Component
+@Slf4j
+public class EncodedClaimsCache {
+
+    private final JsonMapper jsonMapper;
+    private final Cache<Key, EncodedClaims> cache;
+
+    public EncodedClaimsCache(JsonMapper jsonMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${janus.token.claims-cache.max-bytes}") long maxBytes) {
+        this.jsonMapper = jsonMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, EncodedClaims claims) -> Long.BYTES + Integer.BYTES + claims.byteSize())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "janus.claims");
+        Gauge.builder("janus.claims.cache.bytes", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Encoded size of the cached custom claims")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.debug("Encoded claims cache bounded to {} bytes", maxBytes);
+    }
+
+    /**
+     * Look up encoded claims
+     * @param userId the user id
+     * @param version the current user version
+     * @return the encoded claims, or null on a miss
+     */
+    public EncodedClaims get(Long userId, Integer version) {
+        return cache.getIfPresent(new Key(userId, version));
+    }
+
+    /**
+     * Encode claims and cache them under the version of the user they were mapped from
+     * @param user the user the claims were mapped from
+     * @param claims the claims
+     * @return the encoded claims
+     */
+    public EncodedClaims put(User user, Map<String, Object> claims) {
+        EncodedClaims encoded = EncodedClaims.encode(jsonMapper, claims);
+        if (user.getId() != null && user.getVersion() != null) {
+            cache.put(new Key(user.getId(), user.getVersion()), encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Cached claims from most to least frequently used
+     * @return snapshot of the entries, hottest first
+     */
+    List<CachedClaims> hottest() {
+        List<CachedClaims> entries = new ArrayList<>();
+        cache.policy().eviction().ifPresent(eviction -> eviction.hottest(Integer.MAX_VALUE)
+                .forEach((key, claims) -> entries.add(new CachedClaims(key.userId(), key.version(), claims))));
+        return entries;
+    }
+
+    /**
+     * Put previously encoded claims back, e.g. from the restart snapshot
+     * @param entry the claims and the user version they were mapped from
+     */
+    void restore(CachedClaims entry) {
+        cache.put(new Key(entry.userId(), entry.version()), entry.claims());
+    }
+
+    /**
+     * Apply pending size accounting and evictions, which Caffeine otherwise runs asynchronously
+     */
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    private record Key(Long userId, Integer version) {
+    }
+
+    record CachedClaims(Long userId, Integer version, EncodedClaims claims) {
+    }
+}
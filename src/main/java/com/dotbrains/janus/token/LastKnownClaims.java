@@ -0,0 +1,209 @@
+package com.dotbrains.janus.token;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Last enhanced claims served per subject and realm, for logins while the database is down
+ *
+ * Every successful enhancement records the claims and when they were confirmed
+ * against the database. The entries are kept in a bounded in-memory map that is
+ * written to a local file (owner read/write only) periodically and on shutdown,
+ * and read back at startup, so the last-known claims survive a restart during an
+ * outage. Claims older than {@code janus.token.last-known.max-staleness} are not
+ * served.
+ */
+@Component
+@Slf4j
+public class LastKnownClaims {
+
+    public static final String DEGRADED = "degraded";
+    public static final String CLAIMS_AS_OF = "claims_as_of";
+
+    private static final int FILE_MAGIC = 0x4A4C4B43; // "JLKC"
+    private static final int FILE_VERSION = 2;
+    private static final TypeReference<Map<String, Object>> CLAIMS_TYPE = new TypeReference<>() {
+    };
+
+    private final JsonMapper jsonMapper;
+    private final Path path;
+    private final Duration maxStaleness;
+    private final Clock clock;
+    private final Cache<Subject, Entry> entries;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Counter servedLastKnown;
+    private final Counter servedOidcOnly;
+
+    @Autowired
+    public LastKnownClaims(JsonMapper jsonMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${janus.token.last-known.path}") Path path,
+                           @Value("${janus.token.last-known.max-staleness}") Duration maxStaleness,
+                           @Value("${janus.token.last-known.max-entries}") long maxEntries) {
+        this(jsonMapper, meterRegistry, path, maxStaleness, maxEntries, Clock.systemUTC());
+    }
+
+    LastKnownClaims(JsonMapper jsonMapper, MeterRegistry meterRegistry, Path path,
+                    Duration maxStaleness, long maxEntries, Clock clock) {
+        this.jsonMapper = jsonMapper;
+        this.path = path;
+        this.maxStaleness = maxStaleness;
+        this.clock = clock;
+        this.entries = Caffeine.newBuilder().maximumSize(maxEntries).build();
+        this.servedLastKnown = Counter.builder("janus.token.degraded")
+                .description("Logins served without the database")
+                .tag("source", "last-known")
+                .register(meterRegistry);
+        this.servedOidcOnly = Counter.builder("janus.token.degraded")
+                .description("Logins served without the database")
+                .tag("source", "oidc")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record the claims just served for a subject
+     * @param realm the realm of the subject
+     * @param keycloakId the Keycloak user ID
+     * @param claims the encoded claims
+     */
+    public void remember(String realm, String keycloakId, EncodedClaims claims) {
+        if (claims.isEmpty()) {
+            return;
+        }
+        entries.put(new Subject(realm, keycloakId), new Entry(claims, clock.millis()));
+        dirty.set(true);
+    }
+
+    /**
+     * Claims to serve while the database is unavailable
+     * @param realm the realm of the subject
+     * @param keycloakId the Keycloak user ID
+     * @return the last-known claims if fresh enough, else none; marked {@value #DEGRADED}
+     */
+    public Map<String, Object> degradedClaims(String realm, String keycloakId) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        Entry entry = entries.getIfPresent(new Subject(realm, keycloakId));
+        if (entry != null && clock.millis() - entry.confirmedAt() <= maxStaleness.toMillis()) {
+            claims.putAll(jsonMapper.readValue(entry.claims().toJson(), CLAIMS_TYPE));
+            claims.put(CLAIMS_AS_OF, Instant.ofEpochMilli(entry.confirmedAt()).toString());
+            servedLastKnown.increment();
+        } else {
+            servedOidcOnly.increment();
+        }
+        claims.put(DEGRADED, true);
+        return claims;
+    }
+
+    /**
+     * {@link #degradedClaims(String, String)} encoded for the response writer
+     * @param realm the realm of the subject
+     * @param keycloakId the Keycloak user ID
+     * @return the encoded degraded claims
+     */
+    public EncodedClaims degradedEncoded(String realm, String keycloakId) {
+        return EncodedClaims.encode(jsonMapper, degradedClaims(realm, keycloakId));
+    }
+
+    /**
+     * Write the entries to the snapshot file if they changed since the last write
+     */
+    @Scheduled(fixedDelayString = "${janus.token.last-known.flush-interval}",
+            initialDelayString = "${janus.token.last-known.flush-interval}")
+    @PreDestroy
+    public void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            write();
+        } catch (IOException | UncheckedIOException e) {
+            dirty.set(true);
+            log.warn("Could not write last-known claims to {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Read the snapshot file written before the last shutdown, if any
+     */
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        long oldest = clock.millis() - maxStaleness.toMillis();
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                log.warn("Ignoring last-known claims file {} of an unknown format", path);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Subject subject = new Subject(in.readUTF(), in.readUTF());
+                long confirmedAt = in.readLong();
+                byte[] json = in.readNBytes(in.readInt());
+                if (confirmedAt >= oldest) {
+                    EncodedClaims claims = EncodedClaims.encode(jsonMapper, jsonMapper.readValue(json, CLAIMS_TYPE));
+                    entries.put(subject, new Entry(claims, confirmedAt));
+                    loaded++;
+                }
+            }
+            log.info("Loaded {} last-known claims from {}", loaded, path);
+        } catch (IOException | JacksonException e) {
+            log.warn("Could not read last-known claims from {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void write() throws IOException {
+        Map<Subject, Entry> snapshot = Map.copyOf(entries.asMap());
+        SnapshotFiles.replace(path, file -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<Subject, Entry> e : snapshot.entrySet()) {
+                    out.writeUTF(e.getKey().realm());
+                    out.writeUTF(e.getKey().keycloakId());
+                    out.writeLong(e.getValue().confirmedAt());
+                    byte[] json = e.getValue().claims().toJson();
+                    out.writeInt(json.length);
+                    out.write(json);
+                }
+            }
+        });
+        log.debug("Wrote {} last-known claims to {}", snapshot.size(), path);
+    }
+
+    private record Subject(String realm, String keycloakId) {
+    }
+
+    private record Entry(EncodedClaims claims, long confirmedAt) {
+    }
+}
@@ -1,15 +1,18 @@
 package com.dotbrains.janus.token;
 
+import com.dotbrains.janus.logging.SampledLogger;
+import com.dotbrains.janus.realm.Realms;
 import com.dotbrains.janus.user.User;
 import com.dotbrains.janus.user.UserService;
+import com.dotbrains.janus.user.UserVersion;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -20,8 +23,17 @@
 @Slf4j
 public class TokenCustomizer {
 
+    // Per-login logging, sampled so a login flood does not back up the log pipeline
+    private static final SampledLogger enhanceLog = SampledLogger.of(log, "token.enhance");
+    private static final SampledLogger syncLog = SampledLogger.of(log, "token.sync");
+    private static final SampledLogger degradedLog = SampledLogger.of(log, "token.degraded");
+
     private final UserService userService;
     private final CustomClaimsMapper claimsMapper;
+    private final EncodedClaimsCache claimsCache;
+    private final UserClaimsTable claimsTable;
+    private final LastKnownClaims lastKnownClaims;
+    private final Realms realms;
 
     @Value("${janus.token.enhancement.enabled}")
     private boolean enhancementEnabled;
@@ -36,50 +48,127 @@ public class TokenCustomizer {
      * Enhance token with custom claims from a database
      *
      * @param oidcUser the OIDC user from Keycloak
-     * @return Map of enhanced claims
+     * @return enhanced claims
      */
-    public Map<String, Object> enhanceToken(OidcUser oidcUser) {
-        Map<String, Object> enhancedClaims = new HashMap<>();
+    public UserClaims enhanceToken(OidcUser oidcUser) {
+        if (!enhancementEnabled) {
+            enhanceLog.debug("Token enhancement is disabled");
+            return UserClaims.EMPTY;
+        }
 
+        try {
+            return resolveUser(oidcUser)
+                    .map(this::claimsFor)
+                    .orElse(UserClaims.EMPTY);
+        } catch (DataAccessException | TransactionException e) {
+            degradedLog.warn("Database unavailable, serving degraded claims: {}", e.getMessage());
+            return UserClaims.builder()
+                    .extras(lastKnownClaims.degradedClaims(realms.current(), oidcUser.getSubject()))
+                    .build();
+        }
+    }
+
+    /**
+     * Enhanced claims as pre-encoded JSON for the response writer
+     * Served from the cache while the user version is unchanged, so the claims
+     * are only mapped and serialized once per version, or from the user's row in
+     * the {@link UserClaimsTable} when enabled. While the database is
+     * unavailable the last-known claims are served instead, marked degraded
+     *
+     * @param oidcUser the OIDC user from Keycloak
+     * @return encoded enhanced claims
+     */
+    public EncodedClaims enhanceTokenEncoded(OidcUser oidcUser) {
         if (!enhancementEnabled) {
-            log.debug("Token enhancement is disabled");
-            return enhancedClaims;
+            enhanceLog.debug("Token enhancement is disabled");
+            return EncodedClaims.EMPTY;
+        }
+
+        String realm = realms.current();
+        String keycloakId = oidcUser.getSubject();
+        try {
+            EncodedClaims claims = lookupEncoded(oidcUser, realm, keycloakId);
+            lastKnownClaims.remember(realm, keycloakId, claims);
+            return claims;
+        } catch (DataAccessException | TransactionException e) {
+            // Keep logins flowing through a database outage
+            degradedLog.warn("Database unavailable, serving degraded claims: {}", e.getMessage());
+            return lastKnownClaims.degradedEncoded(realm, keycloakId);
+        }
+    }
+
+    /**
+     * Map and cache the claims of a user ahead of its first request
+     * @param user an active user with roles
+     * @return true if the claims were mapped, false if enhancement is disabled or they were cached
+     */
+    public boolean prewarm(User user) {
+        if (!enhancementEnabled || claimsCache.get(user.getId(), user.getVersion()) != null) {
+            return false;
         }
+        claimsCache.put(user, claimsFor(user));
+        return true;
+    }
+
+    private EncodedClaims lookupEncoded(OidcUser oidcUser, String realm, String keycloakId) {
+        if (claimsTable.isEnabled()) {
+            Optional<EncodedClaims> stored = claimsTable.find(realm, keycloakId);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+        } else {
+            Optional<UserVersion> version = userService.findActiveVersionByKeycloakId(keycloakId);
+            if (version.isPresent()) {
+                EncodedClaims cached = claimsCache.get(version.get().id(), version.get().version());
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        return resolveUser(oidcUser)
+                .map(user -> {
+                    EncodedClaims claims = claimsCache.put(user, claimsFor(user));
+                    claimsTable.store(realm, user, claims);
+                    return claims;
+                })
+                .orElse(EncodedClaims.EMPTY);
+    }
 
+    /**
+     * Load the active user with roles, syncing from Keycloak when not in the database
+     */
+    private Optional<User> resolveUser(OidcUser oidcUser) {
         // Extract user identifier from Keycloak token
         String keycloakId = oidcUser.getSubject(); // Subject claim contains user ID
         String username = oidcUser.getPreferredUsername();
 
-        log.debug("Enhancing token for user: {} (Keycloak ID: {})", username, keycloakId);
+        enhanceLog.debug("Enhancing token for user: {} (Keycloak ID: {})", username, keycloakId);
 
         // Fetch user from a database
         Optional<User> userOptional = userService.findActiveUserWithRoles(keycloakId);
 
         if (userOptional.isEmpty()) {
-            log.warn("User not found in database: {}", keycloakId);
+            enhanceLog.warn("User not found in database: {}", keycloakId);
             // Optionally sync user from Keycloak
-            User syncedUser = syncUserFromKeycloak(oidcUser);
-            if (syncedUser == null) {
-                return enhancedClaims;
-            }
-
-            userOptional = Optional.of(syncedUser);
+            return Optional.ofNullable(syncUserFromKeycloak(oidcUser));
         }
 
-        User user = userOptional.get();
+        return userOptional;
+    }
+
+    private UserClaims claimsFor(User user) {
+        UserClaims enhancedClaims = UserClaims.EMPTY;
 
         // Add custom claims based on configuration
         if (includeUserAttributes) {
-            Map<String, Object> customClaims = claimsMapper.mapUserToClaims(user);
-            enhancedClaims.putAll(customClaims);
-        }
-
-        // Explicitly add roles if configured (even if attributes are disabled)
-        if (includeUserRoles && !includeUserAttributes) {
-            enhancedClaims.put("roles", user.getRoleNames());
+            enhancedClaims = claimsMapper.mapUserToClaims(user);
+        } else if (includeUserRoles) {
+            // Explicitly add roles if configured (even if attributes are disabled)
+            enhancedClaims = UserClaims.builder().roles(user.getRoleNames()).build();
         }
 
-        log.debug("Enhanced token with {} additional claims", enhancedClaims.size());
+        enhanceLog.debug("Enhanced token with {} additional claims", enhancedClaims.size());
         return enhancedClaims;
     }
 
@@ -91,7 +180,7 @@ public Map<String, Object> enhanceToken(OidcUser oidcUser) {
      */
     private User syncUserFromKeycloak(OidcUser oidcUser) {
         try {
-            log.info("Syncing user from Keycloak: {}", oidcUser.getPreferredUsername());
+            syncLog.info("Syncing user from Keycloak: {}", oidcUser.getPreferredUsername());
 
             String keycloakId = oidcUser.getSubject();
             String username = oidcUser.getPreferredUsername();
@@ -107,7 +196,7 @@ private User syncUserFromKeycloak(OidcUser oidcUser) {
                     lastName
             );
         } catch (Exception e) {
-            log.error("Failed to sync user from Keycloak", e);
+            syncLog.error("Failed to sync user from Keycloak", e);
             return null;
         }
     }
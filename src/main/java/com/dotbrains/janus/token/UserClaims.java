@@ -0,0 +1,335 @@
+package com.dotbrains.janus.token;
+
+import lombok.Builder;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.annotation.JsonSerialize;
+import tools.jackson.databind.ser.std.StdSerializer;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Custom claims of a user with a fixed set of known claims plus extras
+ *
+ * The standard claims are plain fields, written straight to the generator by
+ * {@link Serializer}; additional claims go to an overflow map. Immutable. The
+ * {@link Map} view is computed on access, for callers that still treat claims as
+ * a map. Unset (null) claims are omitted, as they were from the map. Extras never
+ * hold a standard name: the builder routes those to their fields.
+ */
+@Builder
+@JsonSerialize(using = UserClaims.Serializer.class)
+public final class UserClaims extends AbstractMap<String, Object> {
+
+    public static final UserClaims EMPTY = UserClaims.builder().build();
+
+    public static final String USER_ID = "user_id";
+    public static final String KEYCLOAK_ID = "keycloak_id";
+    public static final String USERNAME = "username";
+    public static final String EMAIL = "email";
+    public static final String FULL_NAME = "full_name";
+    public static final String EMPLOYEE_ID = "employee_id";
+    public static final String DEPARTMENT = "department";
+    public static final String JOB_TITLE = "job_title";
+    public static final String PHONE_NUMBER = "phone_number";
+    public static final String IS_ACTIVE = "is_active";
+    public static final String ROLES = "roles";
+    public static final String IS_ADMIN = "is_admin";
+    public static final String CREATED_AT = "created_at";
+    public static final String UPDATED_AT = "updated_at";
+
+    // Slot order, which is also the serialization order
+    private static final String[] NAMES = {
+            USER_ID, KEYCLOAK_ID, USERNAME, EMAIL, FULL_NAME, EMPLOYEE_ID, DEPARTMENT, JOB_TITLE,
+            PHONE_NUMBER, IS_ACTIVE, ROLES, IS_ADMIN, CREATED_AT, UPDATED_AT
+    };
+
+    private final Long userId;
+    private final String keycloakId;
+    private final String username;
+    private final String email;
+    private final String fullName;
+    private final String employeeId;
+    private final String department;
+    private final String jobTitle;
+    private final String phoneNumber;
+    private final Boolean isActive;
+    private final Set<String> roles;
+    private final Boolean isAdmin;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    private final Map<String, Object> extras;
+
+    private UserClaims(Long userId, String keycloakId, String username, String email, String fullName,
+                       String employeeId, String department, String jobTitle, String phoneNumber,
+                       Boolean isActive, Set<String> roles, Boolean isAdmin,
+                       LocalDateTime createdAt, LocalDateTime updatedAt, Map<String, Object> extras) {
+        this.userId = userId;
+        this.keycloakId = keycloakId;
+        this.username = username;
+        this.email = email;
+        this.fullName = fullName;
+        this.employeeId = employeeId;
+        this.department = department;
+        this.jobTitle = jobTitle;
+        this.phoneNumber = phoneNumber;
+        this.isActive = isActive;
+        this.roles = roles;
+        this.isAdmin = isAdmin;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.extras = extras == null || extras.isEmpty() ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(extras));
+    }
+
+    public static class UserClaimsBuilder {
+
+        /**
+         * Add a claim by name; a standard name sets its field, from the value or its
+         * JSON form (a number, a list of role names, an ISO date-time string)
+         * @param name the claim name
+         * @param value the claim value
+         * @return this builder
+         * @throws IllegalArgumentException if the value does not fit a standard claim
+         */
+        public UserClaimsBuilder extra(String name, Object value) {
+            switch (name) {
+                case USER_ID -> userId(value == null ? null : as(Number.class, name, value).longValue());
+                case KEYCLOAK_ID -> keycloakId(as(String.class, name, value));
+                case USERNAME -> username(as(String.class, name, value));
+                case EMAIL -> email(as(String.class, name, value));
+                case FULL_NAME -> fullName(as(String.class, name, value));
+                case EMPLOYEE_ID -> employeeId(as(String.class, name, value));
+                case DEPARTMENT -> department(as(String.class, name, value));
+                case JOB_TITLE -> jobTitle(as(String.class, name, value));
+                case PHONE_NUMBER -> phoneNumber(as(String.class, name, value));
+                case IS_ACTIVE -> isActive(as(Boolean.class, name, value));
+                case ROLES -> roles(value == null ? null : roleNames(as(Collection.class, name, value)));
+                case IS_ADMIN -> isAdmin(as(Boolean.class, name, value));
+                case CREATED_AT -> createdAt(dateTime(name, value));
+                case UPDATED_AT -> updatedAt(dateTime(name, value));
+                default -> {
+                    if (extras == null) {
+                        extras = new LinkedHashMap<>();
+                    }
+                    extras.put(name, value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Add claims by name, see {@link #extra(String, Object)}
+         * @param claims the claims
+         * @return this builder
+         */
+        public UserClaimsBuilder extras(Map<String, ?> claims) {
+            claims.forEach(this::extra);
+            return this;
+        }
+
+        private static <T> T as(Class<T> type, String name, Object value) {
+            if (value != null && !type.isInstance(value)) {
+                throw new IllegalArgumentException("Claim " + name + " is not a " + type.getSimpleName());
+            }
+            return type.cast(value);
+        }
+
+        private static Set<String> roleNames(Collection<?> values) {
+            Set<String> names = new LinkedHashSet<>();
+            for (Object value : values) {
+                names.add(as(String.class, ROLES, value));
+            }
+            return names;
+        }
+
+        private static LocalDateTime dateTime(String name, Object value) {
+            if (value instanceof String text) {
+                try {
+                    return LocalDateTime.parse(text);
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Claim " + name + " is not a date-time", e);
+                }
+            }
+            return as(LocalDateTime.class, name, value);
+        }
+    }
+
+    private Object slot(int index) {
+        return switch (index) {
+            case 0 -> userId;
+            case 1 -> keycloakId;
+            case 2 -> username;
+            case 3 -> email;
+            case 4 -> fullName;
+            case 5 -> employeeId;
+            case 6 -> department;
+            case 7 -> jobTitle;
+            case 8 -> phoneNumber;
+            case 9 -> isActive;
+            case 10 -> roles;
+            case 11 -> isAdmin;
+            case 12 -> createdAt;
+            case 13 -> updatedAt;
+            default -> throw new IndexOutOfBoundsException(index);
+        };
+    }
+
+    /**
+     * @param name a claim name
+     * @return true if the name is one of the standard claims rather than an extra
+     */
+    static boolean isStandard(String name) {
+        return slotIndex(name) >= 0;
+    }
+
+    private static int slotIndex(Object name) {
+        if (name instanceof String claim) {
+            for (int i = 0; i < NAMES.length; i++) {
+                if (NAMES[i].equals(claim)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = slotIndex(key);
+        return index >= 0 ? slot(index) : extras.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = slotIndex(key);
+        return index >= 0 ? slot(index) != null : extras.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        int size = extras.size();
+        for (int i = 0; i < NAMES.length; i++) {
+            if (slot(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, Object>> extraEntries = extras.entrySet().iterator();
+                return new Iterator<>() {
+                    private int next = nextSlot(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < NAMES.length || extraEntries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next < NAMES.length) {
+                            Entry<String, Object> entry = new SimpleImmutableEntry<>(NAMES[next], slot(next));
+                            next = nextSlot(next + 1);
+                            return entry;
+                        }
+                        if (!extraEntries.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return extraEntries.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return UserClaims.this.size();
+            }
+        };
+    }
+
+    private int nextSlot(int from) {
+        int index = from;
+        while (index < NAMES.length && slot(index) == null) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Writes the known claims field by field, then the extras
+     */
+    public static class Serializer extends StdSerializer<UserClaims> {
+
+        public Serializer() {
+            super(UserClaims.class);
+        }
+
+        @Override
+        public void serialize(UserClaims claims, JsonGenerator gen, SerializationContext ctxt) {
+            gen.writeStartObject(claims);
+            if (claims.userId != null) {
+                gen.writeNumberProperty(USER_ID, claims.userId);
+            }
+            writeString(gen, KEYCLOAK_ID, claims.keycloakId);
+            writeString(gen, USERNAME, claims.username);
+            writeString(gen, EMAIL, claims.email);
+            writeString(gen, FULL_NAME, claims.fullName);
+            writeString(gen, EMPLOYEE_ID, claims.employeeId);
+            writeString(gen, DEPARTMENT, claims.department);
+            writeString(gen, JOB_TITLE, claims.jobTitle);
+            writeString(gen, PHONE_NUMBER, claims.phoneNumber);
+            if (claims.isActive != null) {
+                gen.writeBooleanProperty(IS_ACTIVE, claims.isActive);
+            }
+            if (claims.roles != null) {
+                gen.writeArrayPropertyStart(ROLES);
+                for (String role : claims.roles) {
+                    gen.writeString(role);
+                }
+                gen.writeEndArray();
+            }
+            if (claims.isAdmin != null) {
+                gen.writeBooleanProperty(IS_ADMIN, claims.isAdmin);
+            }
+            // Dates through the context so the mapper's date format applies
+            if (claims.createdAt != null) {
+                ctxt.defaultSerializeProperty(CREATED_AT, claims.createdAt, gen);
+            }
+            if (claims.updatedAt != null) {
+                ctxt.defaultSerializeProperty(UPDATED_AT, claims.updatedAt, gen);
+            }
+            for (Entry<String, Object> extra : claims.extras.entrySet()) {
+                ctxt.defaultSerializeProperty(extra.getKey(), extra.getValue(), gen);
+            }
+            gen.writeEndObject();
+        }
+
+        @Override
+        public boolean isEmpty(SerializationContext ctxt, UserClaims claims) {
+            return claims == null || claims.isEmpty();
+        }
+
+        private static void writeString(JsonGenerator gen, String name, String value) {
+            if (value != null) {
+                gen.writeStringProperty(name, value);
+            }
+        }
+    }
+}
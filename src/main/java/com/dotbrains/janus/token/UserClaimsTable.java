@@ -0,0 +1,188 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.user.RoleRegistry;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserRole;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The {@code user_claims} table: the encoded claims of each active user
+ *
+ * Rewritten by every transaction changing users, after the users are written and
+ * before the change is published, so a row is committed with the user it was mapped
+ * from and enrichment reads one row by primary key instead of joining users and
+ * roles into entities. Rows are read through the {@link EncodedClaimsCache}, so a
+ * document is only decoded once per user version. A user without a row, e.g. from
+ * before the table was enabled, is mapped the usual way and its row stored then.
+ *
+ * While disabled, changed users only have their rows deleted, so no instance that
+ * is still writing leaves a row behind for instances reading the table to serve.
+ * Only used with {@code include-user-attributes}, the claims the table holds.
+ */
+@Component
+@Slf4j
+public class UserClaimsTable {
+
+    private static final RowMapper<User> USER = (rs, rowNum) -> User.builder()
+            .id(rs.getLong("id"))
+            .realm(rs.getString("realm"))
+            .keycloakId(rs.getString("keycloak_id"))
+            .username(rs.getString("username"))
+            .email(rs.getString("email"))
+            .firstName(rs.getString("first_name"))
+            .lastName(rs.getString("last_name"))
+            .department(rs.getString("department"))
+            .jobTitle(rs.getString("job_title"))
+            .phoneNumber(rs.getString("phone_number"))
+            .employeeId(rs.getString("employee_id"))
+            .isActive(rs.getBoolean("is_active"))
+            .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+            .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+            .version(rs.getInt("version"))
+            .attributes(rs.getString("attributes"))
+            .roles(roles((Number[]) rs.getArray("role_ids").getArray(), (String[]) rs.getArray("roles").getArray()))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+    private final CustomClaimsMapper claimsMapper;
+    private final EncodedClaimsCache claimsCache;
+    private final boolean enabled;
+
+    public UserClaimsTable(JdbcTemplate jdbcTemplate,
+                           JsonMapper jsonMapper,
+                           CustomClaimsMapper claimsMapper,
+                           EncodedClaimsCache claimsCache,
+                           @Value("${janus.token.claims-table.enabled}") boolean enabled,
+                           @Value("${janus.token.enhancement.include-user-attributes}") boolean includeUserAttributes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonMapper = jsonMapper;
+        this.claimsMapper = claimsMapper;
+        this.claimsCache = claimsCache;
+        this.enabled = enabled && includeUserAttributes;
+        if (enabled && !includeUserAttributes) {
+            log.warn("janus.token.claims-table.enabled is ignored without janus.token.enhancement.include-user-attributes");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Read the claims of an active user
+     * @param realm the realm of the user
+     * @param keycloakId the Keycloak ID of the user
+     * @return the claims, or empty if the user has no row
+     */
+    public Optional<EncodedClaims> find(String realm, String keycloakId) {
+        List<EncodedClaims> found = jdbcTemplate.query(
+                "SELECT user_id, version, claims FROM user_claims WHERE realm = ? AND keycloak_id = ?",
+                (rs, rowNum) -> decode(rs.getLong("user_id"), rs.getInt("version"), rs.getString("claims")),
+                realm, keycloakId);
+        return found.stream().findFirst();
+    }
+
+    /**
+     * Rewrite the rows of users in the current transaction
+     * Must run after the users are written, and before anything that waits on other writers
+     * @param realm the realm of the users
+     * @param keycloakIds the Keycloak IDs of the changed users
+     */
+    public void refresh(String realm, Collection<String> keycloakIds) {
+        if (keycloakIds.isEmpty()) {
+            return;
+        }
+        String[] ids = keycloakIds.toArray(String[]::new);
+        jdbcTemplate.update("DELETE FROM user_claims WHERE realm = ? AND keycloak_id = ANY(CAST(? AS TEXT[]))",
+                realm, ids);
+        if (!enabled) {
+            return;
+        }
+
+        List<User> users = jdbcTemplate.query("""
+                SELECT u.id, u.realm, u.keycloak_id, u.username, u.email, u.first_name, u.last_name, u.department,
+                       u.job_title, u.phone_number, u.employee_id, u.is_active, u.created_at, u.updated_at, u.version,
+                       u.attributes,
+                       ARRAY(SELECT r.id FROM user_roles ur JOIN roles r ON r.id = ur.role_id
+                             WHERE ur.user_id = u.id ORDER BY r.id) AS role_ids,
+                       ARRAY(SELECT r.name FROM user_roles ur JOIN roles r ON r.id = ur.role_id
+                             WHERE ur.user_id = u.id ORDER BY r.id) AS roles
+                FROM users u
+                WHERE u.realm = ? AND u.keycloak_id = ANY(CAST(? AS TEXT[])) AND u.is_active = true
+                """, USER, realm, ids);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO user_claims (realm, keycloak_id, user_id, version, claims)
+                VALUES (?, ?, ?, ?, CAST(? AS JSON))
+                ON CONFLICT (realm, keycloak_id) DO UPDATE
+                SET user_id = EXCLUDED.user_id, version = EXCLUDED.version, claims = EXCLUDED.claims
+                """, users.stream()
+                .map(user -> new Object[]{realm, user.getKeycloakId(), user.getId(), user.getVersion(),
+                        jsonMapper.writeValueAsString(claimsMapper.mapUserToClaims(user))})
+                .toList());
+    }
+
+    /**
+     * Store the claims of a user mapped outside a write, unless the user has changed since
+     * @param realm the realm of the user
+     * @param user the active user the claims were mapped from
+     * @param claims the claims
+     */
+    public void store(String realm, User user, EncodedClaims claims) {
+        if (!enabled || claims.isEmpty() || user.getId() == null || user.getVersion() == null) {
+            return;
+        }
+        // The share lock waits out a writer of the user, whose version then no longer matches
+        jdbcTemplate.update("""
+                INSERT INTO user_claims (realm, keycloak_id, user_id, version, claims)
+                SELECT ?, keycloak_id, id, version, CAST(? AS JSON) FROM users
+                WHERE id = ? AND version = ? AND is_active = true
+                FOR SHARE
+                ON CONFLICT (realm, keycloak_id) DO NOTHING
+                """, realm, new String(claims.toJson(), StandardCharsets.UTF_8), user.getId(), user.getVersion());
+    }
+
+    private EncodedClaims decode(long userId, int version, String json) {
+        EncodedClaims cached = claimsCache.get(userId, version);
+        if (cached != null) {
+            return cached;
+        }
+        EncodedClaims claims = EncodedClaims.decode(jsonMapper, json.getBytes(StandardCharsets.UTF_8));
+        claimsCache.restore(new EncodedClaimsCache.CachedClaims(userId, version, claims));
+        return claims;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    /**
+     * Roles read by id and name, registering names another instance created
+     * since this one loaded the roles table
+     */
+    private static Set<UserRole> roles(Number[] ids, String[] names) {
+        RoleRegistry registry = RoleRegistry.getInstance();
+        Set<UserRole> roles = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (registry.find(names[i]) < 0) {
+                registry.register(ids[i].shortValue(), names[i]);
+            }
+            roles.add(UserRole.builder().roleName(registry.intern(names[i])).build());
+        }
+        return roles;
+    }
+}
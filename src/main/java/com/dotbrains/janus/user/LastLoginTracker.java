@@ -0,0 +1,139 @@
+package com.dotbrains.janus.user;
+
+import com.dotbrains.janus.realm.Realms;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records {@code users.last_login_at} without a database write per login
+ *
+ * Logins are coalesced in memory, the latest timestamp per user winning, and
+ * written periodically with one {@code UPDATE ... FROM (VALUES ...)} statement
+ * per {@code max-batch-size} users. The statement sets only {@code last_login_at},
+ * so neither the {@code @Version} column nor the {@code updated_at} trigger is
+ * touched. Rows whose timestamp is already as recent, e.g. after an overlapping flush
+ * of another instance, are not updated at all: an update leaving the column as it was
+ * would fire the trigger. Logins that could not be written
+ * are kept for the next flush. Users are matched by realm and Keycloak ID.
+ */
+@Component
+@Slf4j
+public class LastLoginTracker {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Realms realms;
+    private final int maxBatchSize;
+    private final Clock clock;
+    private final Map<Subject, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LastLoginTracker(JdbcTemplate jdbcTemplate,
+                            Realms realms,
+                            MeterRegistry meterRegistry,
+                            @Value("${janus.users.last-login.max-batch-size}") int maxBatchSize) {
+        this(jdbcTemplate, realms, meterRegistry, maxBatchSize, Clock.systemDefaultZone());
+    }
+
+    LastLoginTracker(JdbcTemplate jdbcTemplate, Realms realms, MeterRegistry meterRegistry, int maxBatchSize,
+                     Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.realms = realms;
+        this.maxBatchSize = maxBatchSize;
+        this.clock = clock;
+        Gauge.builder("janus.users.last-login.pending", pending, Map::size)
+                .description("Logins waiting to be written to users.last_login_at")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record a login now in the current realm
+     * @param keycloakId the Keycloak user ID
+     */
+    public void recordLogin(String keycloakId) {
+        record(new Subject(realms.current(), keycloakId), LocalDateTime.now(clock));
+    }
+
+    /**
+     * Write the pending logins
+     */
+    @Scheduled(fixedDelayString = "${janus.users.last-login.flush-interval}",
+            initialDelayString = "${janus.users.last-login.flush-interval}")
+    @PreDestroy
+    public void flush() {
+        int written = 0;
+        while (!pending.isEmpty()) {
+            List<Map.Entry<Subject, LocalDateTime>> batch = takeBatch();
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                write(batch);
+                written += batch.size();
+            } catch (DataAccessException e) {
+                batch.forEach(login -> record(login.getKey(), login.getValue()));
+                log.warn("Could not write {} last logins, retrying on the next flush: {}", pending.size(), e.getMessage());
+                return;
+            }
+        }
+        if (written > 0) {
+            log.debug("Wrote last login of {} users", written);
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private void record(Subject subject, LocalDateTime loginAt) {
+        pending.merge(subject, loginAt, (current, next) -> next.isAfter(current) ? next : current);
+    }
+
+    /**
+     * Remove up to a batch of pending logins; a login recorded meanwhile stays pending
+     */
+    private List<Map.Entry<Subject, LocalDateTime>> takeBatch() {
+        List<Map.Entry<Subject, LocalDateTime>> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+        for (Map.Entry<Subject, LocalDateTime> login : pending.entrySet()) {
+            if (batch.size() == maxBatchSize) {
+                break;
+            }
+            if (pending.remove(login.getKey(), login.getValue())) {
+                batch.add(Map.entry(login.getKey(), login.getValue()));
+            }
+        }
+        return batch;
+    }
+
+    private void write(List<Map.Entry<Subject, LocalDateTime>> batch) {
+        StringBuilder sql = new StringBuilder(
+                "UPDATE users AS u SET last_login_at = v.login_at FROM (VALUES ");
+        Object[] args = new Object[batch.size() * 3];
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, CAST(? AS TIMESTAMP))" : ", (?, ?, ?)");
+            args[3 * i] = batch.get(i).getKey().realm();
+            args[3 * i + 1] = batch.get(i).getKey().keycloakId();
+            args[3 * i + 2] = batch.get(i).getValue();
+        }
+        sql.append(") AS v(realm, keycloak_id, login_at) WHERE u.realm = v.realm AND u.keycloak_id = v.keycloak_id"
+                + " AND (u.last_login_at IS NULL OR u.last_login_at < v.login_at)");
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private record Subject(String realm, String keycloakId) {
+    }
+}
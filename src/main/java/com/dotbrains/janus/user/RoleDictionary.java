@@ -0,0 +1,70 @@
+package com.dotbrains.janus.user;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Backs the {@link RoleRegistry} with the {@code roles} table
+ */
+@Component
+@DependsOnDatabaseInitialization
+@RequiredArgsConstructor
+@Slf4j
+public class RoleDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Load all roles into the registry, allocate new names in the database and
+     * read ids that other replicas allocate later
+     */
+    @PostConstruct
+    void load() {
+        RoleRegistry registry = RoleRegistry.getInstance();
+        jdbcTemplate.query("SELECT id, name FROM roles",
+                rs -> {
+                    registry.register(rs.getShort("id"), rs.getString("name"));
+                });
+        registry.setAllocator(this::insert);
+        registry.setLoader(this::select);
+        log.info("Loaded {} roles into the role registry", registry.size());
+    }
+
+    /**
+     * Read a role another replica inserted after this one loaded the table
+     */
+    private String select(short id) {
+        List<String> names = jdbcTemplate.queryForList("SELECT name FROM roles WHERE id = ?", String.class, id);
+        if (names.isEmpty()) {
+            return null;
+        }
+        log.info("Loaded role {} with id {}", names.getFirst(), id);
+        return names.getFirst();
+    }
+
+    /**
+     * Insert a new role name in its own transaction, so a rolled back user
+     * update does not leave the registry with an id that was never committed
+     * Called from within the saving transaction, so it takes a second pooled
+     * connection while the first is held; only once per new name and replica.
+     */
+    private short insert(String name) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Short id = transaction.execute(status -> jdbcTemplate.queryForObject(
+                "INSERT INTO roles (name) VALUES (?) ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name RETURNING id",
+                Short.class, name));
+        log.info("Registered new role {} with id {}", name, id);
+        return id;
+    }
+}
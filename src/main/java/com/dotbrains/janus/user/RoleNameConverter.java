@@ -0,0 +1,32 @@
+package com.dotbrains.janus.user;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores role names as their {@code roles.id} and reads them back as the
+ * canonical instances from the {@link RoleRegistry}
+ *
+ * Never allocates: also used for query parameters, and new names are
+ * registered by {@link UserService#save} before the roles are flushed.
+ */
+@Converter
+public class RoleNameConverter implements AttributeConverter<String, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(String roleName) {
+        if (roleName == null) {
+            return null;
+        }
+        short id = RoleRegistry.getInstance().find(roleName);
+        if (id < 0) {
+            throw new IllegalStateException("Role " + roleName + " has no id; save users through UserService");
+        }
+        return id;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short roleId) {
+        return roleId == null ? null : RoleRegistry.getInstance().nameOf(roleId);
+    }
+}
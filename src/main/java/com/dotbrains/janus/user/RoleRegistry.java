@@ -0,0 +1,152 @@
+package com.dotbrains.janus.user;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary of role names and their small integer ids
+ *
+ * Mirrors the {@code roles} table. Every role name read from the database is the
+ * canonical instance held here, so users share one String per role, and role
+ * sets are stored as bitsets of ids (see {@link RoleSet}).
+ *
+ * Static because JPA entities and converters are not Spring beans;
+ * {@link RoleDictionary} loads the table at startup and installs an allocator
+ * that inserts unknown names, and a loader for ids that other replicas allocated
+ * since. Without it (unit tests) ids are assigned locally.
+ * Only the write path allocates ({@link UserService#save}); reads and mappings
+ * use {@link #find(String)}, so they never wait on the database.
+ */
+public final class RoleRegistry {
+
+    /**
+     * Assigns the id of a role name not in the registry yet
+     */
+    @FunctionalInterface
+    public interface Allocator {
+        short allocate(String name);
+    }
+
+    /**
+     * Reads the name of a role id not in the registry yet
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @param id the role id
+         * @return the role name, or null if there is no such role
+         */
+        String load(short id);
+    }
+
+    private static final RoleRegistry INSTANCE = new RoleRegistry();
+
+    private final Map<String, Short> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile Allocator allocator = this::allocateLocally;
+    private volatile Loader loader = id -> null;
+
+    private RoleRegistry() {
+    }
+
+    public static RoleRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Id of a role name, allocating one for a new name
+     * For the write path only: the allocator may insert into the roles table.
+     * @param name the role name
+     * @return the role id
+     */
+    public short idOf(String name) {
+        Short id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        // Outside the monitor, as the allocator may wait on the database;
+        // concurrent allocations of one name get the same id back
+        short allocated = allocator.allocate(name);
+        register(allocated, name);
+        return allocated;
+    }
+
+    /**
+     * Id of a known role name, without allocating
+     * @param name the role name
+     * @return the role id, or -1 if the name is unknown
+     */
+    public short find(String name) {
+        Short id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Canonical name of a role id, loading ids allocated by other replicas
+     * @param id the role id
+     * @return the role name
+     * @throws IllegalArgumentException if the id is not in the roles table
+     */
+    public String nameOf(short id) {
+        String[] current = names;
+        String name = id >= 0 && id < current.length ? current[id] : null;
+        if (name != null) {
+            return name;
+        }
+        // Outside the monitor, as the loader reads the database
+        String loaded = id >= 0 ? loader.load(id) : null;
+        if (loaded == null) {
+            throw new IllegalArgumentException("Unknown role id: " + id);
+        }
+        register(id, loaded);
+        return names[id];
+    }
+
+    /**
+     * Canonical instance of a role name
+     * @param name the role name
+     * @return the interned role name, or the name itself if it is unknown
+     */
+    public String intern(String name) {
+        short id = find(name);
+        return id >= 0 ? nameOf(id) : name;
+    }
+
+    /**
+     * Register a role read from the database
+     * @param id the roles.id of the name
+     * @param name the role name
+     */
+    public synchronized void register(short id, String name) {
+        String[] current = names;
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, Math.max(id + 1, current.length * 2));
+        }
+        current[id] = name;
+        names = current;
+        ids.put(name, id);
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    synchronized void setAllocator(Allocator allocator) {
+        this.allocator = allocator;
+    }
+
+    void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    private synchronized short allocateLocally(String name) {
+        Short existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        short id = (short) ids.size();
+        register(id, name);
+        return id;
+    }
+}
@@ -0,0 +1,168 @@
+package com.dotbrains.janus.user;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable set of roles as a bitset of {@link RoleRegistry} ids
+ *
+ * A role check is a registry lookup plus a bit test, and a user's roles take
+ * one long per 64 role ids instead of a HashSet of names. Names added to a user
+ * before {@link UserService#save} allocated their id are kept as names and
+ * compared as such.
+ */
+public final class RoleSet {
+
+    private static final String[] NO_NAMES = new String[0];
+
+    public static final RoleSet EMPTY = new RoleSet(new long[0], NO_NAMES);
+
+    private final long[] bits;
+    // Role names without an id yet, usually none
+    private final String[] unregistered;
+
+    private RoleSet(long[] bits, String[] unregistered) {
+        this.bits = bits;
+        this.unregistered = unregistered;
+    }
+
+    /**
+     * @param roles the user roles
+     * @return the role set
+     */
+    public static RoleSet of(Collection<UserRole> roles) {
+        if (roles.isEmpty()) {
+            return EMPTY;
+        }
+        RoleRegistry registry = RoleRegistry.getInstance();
+        long[] bits = new long[1];
+        String[] unregistered = NO_NAMES;
+        for (UserRole role : roles) {
+            short id = registry.find(role.getRoleName());
+            if (id < 0) {
+                if (!Arrays.asList(unregistered).contains(role.getRoleName())) {
+                    unregistered = Arrays.copyOf(unregistered, unregistered.length + 1);
+                    unregistered[unregistered.length - 1] = role.getRoleName();
+                }
+                continue;
+            }
+            int word = id >>> 6;
+            if (word >= bits.length) {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            bits[word] |= 1L << id;
+        }
+        return new RoleSet(bits, unregistered);
+    }
+
+    /**
+     * @param id a role id
+     * @return true if the set contains the role
+     */
+    public boolean contains(short id) {
+        int word = id >>> 6;
+        return id >= 0 && word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * @param name a role name
+     * @return true if the set contains the role
+     */
+    public boolean contains(String name) {
+        if (contains(RoleRegistry.getInstance().find(name))) {
+            return true;
+        }
+        // The registry may have allocated the id since this set was built
+        for (String unregisteredName : unregistered) {
+            if (unregisteredName.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        if (unregistered.length > 0) {
+            return false;
+        }
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        int size = unregistered.length;
+        for (long word : bits) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * @return read-only view of the canonical role names, in id order, followed by
+     *         the names without an id
+     */
+    public Set<String> names() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int next = nextId(0);
+                    private int nextUnregistered;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0 || nextUnregistered < unregistered.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= 0) {
+                            String name = RoleRegistry.getInstance().nameOf((short) next);
+                            next = nextId(next + 1);
+                            return name;
+                        }
+                        if (nextUnregistered < unregistered.length) {
+                            return unregistered[nextUnregistered++];
+                        }
+                        throw new NoSuchElementException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return RoleSet.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String name && RoleSet.this.contains(name);
+            }
+        };
+    }
+
+    private int nextId(int from) {
+        int word = from >>> 6;
+        if (word >= bits.length) {
+            return -1;
+        }
+        long remaining = bits[word] & (-1L << from);
+        while (true) {
+            if (remaining != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(remaining);
+            }
+            if (++word == bits.length) {
+                return -1;
+            }
+            remaining = bits[word];
+        }
+    }
+}
@@ -3,20 +3,29 @@
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.TenantId;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"realm", "keycloak_id"}),
+        @UniqueConstraint(columnNames = {"realm", "username"}),
+        @UniqueConstraint(columnNames = {"realm", "email"})
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@ToString(exclude = "roles")
+@ToString(exclude = {"roles", "roleSet", "attributes"})
 @EqualsAndHashCode(of = {"id", "keycloakId"})
 public class User {
 
@@ -24,13 +33,18 @@ public class User {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "keycloak_id", nullable = false, unique = true)
+    // Set by Hibernate from the current realm; every entity query is scoped to it
+    @TenantId
+    @Column(nullable = false, updatable = false, length = 100)
+    private String realm;
+
+    @Column(name = "keycloak_id", nullable = false)
     private String keycloakId;
 
-    @Column(nullable = false, unique = true, length = 100)
+    @Column(nullable = false, length = 100)
     private String username;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String email;
 
     @Column(name = "first_name", length = 100)
@@ -54,6 +68,12 @@ public class User {
     @Column(name = "is_active")
     private Boolean isActive = true;
 
+    // Free-form JSON object, read through UserAttributes
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb")
+    @Builder.Default
+    private String attributes = "{}";
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -62,6 +82,10 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Written only by the LastLoginTracker, never through the entity
+    @Column(name = "last_login_at", insertable = false, updatable = false)
+    private LocalDateTime lastLoginAt;
+
     @Version
     private Integer version;
 
@@ -69,10 +93,65 @@ public class User {
     @Builder.Default
     private Set<UserRole> roles = new HashSet<>();
 
+    // Bitset of the roles, built on first use and reset by the role mutators below;
+    // final so the builder and constructors leave it out
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<RoleSet> roleSet = new AtomicReference<>();
+
+    /**
+     * @return read-only view of the roles; change them with the role mutators
+     */
+    public Set<UserRole> getRoles() {
+        return Collections.unmodifiableSet(roles);
+    }
+
+    public void setRoles(Set<UserRole> roles) {
+        this.roles = roles;
+        roleSet.set(null);
+    }
+
+    /**
+     * Add a role, unless the user has it already
+     * @param roleName the role name
+     */
+    public void addRole(String roleName) {
+        if (!hasRole(roleName)) {
+            roles.add(UserRole.builder().user(this).roleName(roleName).build());
+            roleSet.set(null);
+        }
+    }
+
+    /**
+     * @param roleName the role name
+     * @return true if the user had the role
+     */
+    public boolean removeRole(String roleName) {
+        roleSet.set(null);
+        return roles.removeIf(role -> roleName.equals(role.getRoleName()));
+    }
+
+    /**
+     * @return the roles as a bitset of role ids
+     */
+    public RoleSet getRoleSet() {
+        RoleSet current = roleSet.get();
+        if (current == null) {
+            current = RoleSet.of(roles);
+            roleSet.set(current);
+        }
+        return current;
+    }
+
+    /**
+     * @return read-only view of the role names
+     */
     public Set<String> getRoleNames() {
-        return roles.stream()
-                .map(UserRole::getRoleName)
-                .collect(java.util.stream.Collectors.toSet());
+        return getRoleSet().names();
+    }
+
+    public boolean hasRole(String roleName) {
+        return getRoleSet().contains(roleName);
     }
 
     public String getFullName() {
@@ -0,0 +1,142 @@
+package com.dotbrains.janus.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The free-form {@code users.attributes} documents, parsed once per user version
+ *
+ * A document only changes with the user row, which bumps its version, so however
+ * many claims, token enhancements or attribute reads use a user's attributes, they
+ * are parsed once per version; superseded versions are evicted by the
+ * {@code max-entries} bound. Exposed as the {@code janus.users.attributes} cache
+ * metrics. Parsed documents are shared and must not be modified.
+ *
+ * Documents seen inside a read-write transaction are parsed but neither cached nor
+ * read from the cache: they may be uncommitted, e.g. when {@code user_claims} rows
+ * are rewritten after a flush, and a rolled back version is reused by the next change.
+ */
+@Component
+public class UserAttributes {
+
+    private final JsonMapper jsonMapper;
+    private final int maxBytes;
+    private final ObjectNode empty;
+    private final Cache<Key, JsonNode> documents;
+
+    public UserAttributes(JsonMapper jsonMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${janus.users.attributes.max-bytes}") int maxBytes,
+                          @Value("${janus.users.attributes.cache.max-entries}") long maxEntries) {
+        this.jsonMapper = jsonMapper;
+        this.maxBytes = maxBytes;
+        this.empty = jsonMapper.createObjectNode();
+        this.documents = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, documents, "janus.users.attributes");
+    }
+
+    /**
+     * @param user a user as stored, not modified since it was loaded
+     * @return the user's attributes, an empty object if it has none
+     */
+    public JsonNode of(User user) {
+        String json = user.getAttributes();
+        if (json == null || json.isEmpty() || json.equals("{}")) {
+            return empty;
+        }
+        if (user.getId() == null || user.getVersion() == null || inWriteTransaction()) {
+            return parse(json);
+        }
+        return documents.get(new Key(user.getId(), user.getVersion()), key -> parse(json));
+    }
+
+    /**
+     * Parse a document from a client
+     * @param json the JSON text
+     * @return the parsed document
+     * @throws IllegalArgumentException if it is not valid JSON
+     */
+    public JsonNode read(String json) {
+        try {
+            return parse(json);
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Serialize attributes for {@code users.attributes}
+     * @param attributes the new document
+     * @return the document as JSON
+     * @throws IllegalArgumentException if it is not an object or larger than {@code max-bytes}
+     */
+    public String write(JsonNode attributes) {
+        if (attributes == null || !attributes.isObject()) {
+            throw new IllegalArgumentException("User attributes must be a JSON object");
+        }
+        byte[] json = jsonMapper.writeValueAsBytes(attributes);
+        if (json.length > maxBytes) {
+            throw new IllegalArgumentException("User attributes exceed " + maxBytes + " bytes");
+        }
+        return new String(json, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Apply a JSON merge patch (RFC 7396): members of the patch replace those of the
+     * document, objects are merged recursively and null removes a member
+     * @param document the current document, left unchanged
+     * @param patch the patch
+     * @return the patched document
+     */
+    public JsonNode merge(JsonNode document, JsonNode patch) {
+        if (!patch.isObject()) {
+            return patch;
+        }
+        ObjectNode merged = document.isObject() ? ((ObjectNode) document).deepCopy() : jsonMapper.createObjectNode();
+        apply(merged, patch);
+        return merged;
+    }
+
+    private static void apply(ObjectNode target, JsonNode patch) {
+        for (Map.Entry<String, JsonNode> member : patch.properties()) {
+            JsonNode value = member.getValue();
+            if (value.isNull()) {
+                target.remove(member.getKey());
+            } else if (value.isObject() && target.get(member.getKey()) instanceof ObjectNode nested) {
+                apply(nested, value);
+            } else if (value.isObject()) {
+                ObjectNode nested = target.putObject(member.getKey());
+                apply(nested, value);
+            } else {
+                target.set(member.getKey(), value);
+            }
+        }
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private JsonNode parse(String json) {
+        return jsonMapper.readTree(json);
+    }
+
+    private record Key(Long userId, Integer version) {
+    }
+}
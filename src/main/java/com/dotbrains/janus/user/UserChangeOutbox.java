@@ -0,0 +1,151 @@
+package com.dotbrains.janus.user;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The {@code user_change_outbox} table: committed user changes in commit order
+ *
+ * Rows are appended in the transaction making the change, under a transaction-level
+ * advisory lock held until commit. A row's sequence number is therefore drawn only
+ * after every earlier row is committed or rolled back, and readers following
+ * {@code seq} never pass a row that is still to commit. Writers must have written
+ * the users before appending, so no transaction waits for a row lock while holding
+ * the advisory lock.
+ *
+ * Rows also carry their relay state for the {@code UserChangeRelay}: claimed by a
+ * relay until a point in time, and delivered at.
+ */
+@Component
+public class UserChangeOutbox {
+
+    // "janus" in ASCII, shared by every instance appending to the table
+    private static final long APPEND_LOCK = 0x6a616e7573L;
+
+    private static final RowMapper<UserChanges.Change> CHANGE = (rs, rowNum) -> new UserChanges.Change(
+            rs.getLong("seq"),
+            rs.getString("realm"),
+            rs.getString("keycloak_id"),
+            UserChanges.Type.valueOf(rs.getString("change_type")),
+            rs.getTimestamp("changed_at").getTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserChangeOutbox(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Append changes in the current transaction, or on their own outside one
+     * @param realm the realm of the users
+     * @param keycloakIds the Keycloak IDs of the users
+     * @param type what happened to them
+     */
+    public void append(String realm, Collection<String> keycloakIds, UserChanges.Type type) {
+        // One statement, so the lock is taken before the sequence is drawn even in autocommit
+        jdbcTemplate.update("""
+                WITH append_lock AS (SELECT pg_advisory_xact_lock(?))
+                INSERT INTO user_change_outbox (realm, keycloak_id, change_type)
+                SELECT ?, id.keycloak_id, ? FROM append_lock, unnest(CAST(? AS TEXT[])) AS id(keycloak_id)
+                """, APPEND_LOCK, realm, type.name(), keycloakIds.toArray(String[]::new));
+    }
+
+    /**
+     * @param afterSeq the last sequence number already seen
+     * @param limit the most changes to return
+     * @return the changes of every realm after {@code afterSeq}, oldest first
+     */
+    public List<UserChanges.Change> readAfter(long afterSeq, int limit) {
+        return jdbcTemplate.query("""
+                SELECT seq, realm, keycloak_id, change_type, changed_at FROM user_change_outbox
+                WHERE seq > ? ORDER BY seq LIMIT ?
+                """, CHANGE, afterSeq, limit);
+    }
+
+    /**
+     * @param realm the realm
+     * @param afterSeq the last sequence number already seen
+     * @param limit the most changes to return
+     * @return the changes of the realm after {@code afterSeq}, oldest first
+     */
+    public List<UserChanges.Change> readAfter(String realm, long afterSeq, int limit) {
+        return jdbcTemplate.query("""
+                SELECT seq, realm, keycloak_id, change_type, changed_at FROM user_change_outbox
+                WHERE seq > ? AND realm = ? ORDER BY seq LIMIT ?
+                """, CHANGE, afterSeq, realm, limit);
+    }
+
+    /**
+     * @return the sequence number of the newest change, or 0 if there is none
+     */
+    public long head() {
+        Long head = jdbcTemplate.queryForObject("SELECT MAX(seq) FROM user_change_outbox", Long.class);
+        return head != null ? head : 0;
+    }
+
+    /**
+     * @return the sequence number of the oldest change kept, or 0 if there is none
+     */
+    public long oldest() {
+        Long oldest = jdbcTemplate.queryForObject("SELECT MIN(seq) FROM user_change_outbox", Long.class);
+        return oldest != null ? oldest : 0;
+    }
+
+    /**
+     * Claim changes not relayed yet and not claimed by another relay, oldest first
+     *
+     * Rows locked by a concurrent claim are skipped rather than waited for, so relays
+     * on several instances claim disjoint batches. A claim is not a transaction: it
+     * lapses after the lease, and the changes are claimed again unless marked relayed.
+     * @param limit the most changes to claim
+     * @param lease how long the claim holds
+     * @return the claimed changes in sequence order
+     */
+    public List<UserChanges.Change> claim(int limit, Duration lease) {
+        List<UserChanges.Change> claimed = new ArrayList<>(jdbcTemplate.query("""
+                UPDATE user_change_outbox SET relay_claimed_until = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond'
+                WHERE seq IN (
+                    SELECT seq FROM user_change_outbox
+                    WHERE relayed_at IS NULL AND (relay_claimed_until IS NULL OR relay_claimed_until < CURRENT_TIMESTAMP)
+                    ORDER BY seq LIMIT ?
+                    FOR UPDATE SKIP LOCKED)
+                RETURNING seq, realm, keycloak_id, change_type, changed_at
+                """, CHANGE, lease.toMillis(), limit));
+        claimed.sort(Comparator.comparingLong(UserChanges.Change::seq));
+        return claimed;
+    }
+
+    /**
+     * @param seqs the sequence numbers of claimed changes delivered to every sink
+     */
+    public void markRelayed(Collection<Long> seqs) {
+        jdbcTemplate.update("""
+                UPDATE user_change_outbox SET relayed_at = CURRENT_TIMESTAMP, relay_claimed_until = NULL
+                WHERE seq = ANY(CAST(? AS BIGINT[]))
+                """, (Object) seqs.toArray(Long[]::new));
+    }
+
+    /**
+     * Delete changes older than a point in time, always keeping the newest change
+     * so that {@link #oldest()} still tells how far back changes are kept
+     * @param before the cut-off
+     * @param keepUnrelayed whether changes not relayed yet are kept regardless of age
+     * @return the number of changes deleted
+     */
+    public int purge(Instant before, boolean keepUnrelayed) {
+        return jdbcTemplate.update("""
+                DELETE FROM user_change_outbox
+                WHERE changed_at < ? AND seq < (SELECT MAX(seq) FROM user_change_outbox)
+                  AND (relayed_at IS NOT NULL OR NOT ?)
+                """, Timestamp.from(before), keepUnrelayed);
+    }
+}
@@ -0,0 +1,208 @@
+package com.dotbrains.janus.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Committed changes to users, from every instance, in commit order
+ *
+ * Changes are written to the {@link UserChangeOutbox} in the transaction making
+ * them, so a change is recorded if and only if it commits. This instance follows
+ * the outbox, right after its own commits and every {@code janus.changes.poll-interval}
+ * for the commits of other instances, and hands each new change to the in-process
+ * subscribers, one thread at a time and in sequence order: subscribers must not
+ * block. Subscribers that were not connected catch up with {@link #replay}.
+ */
+@Component
+@Slf4j
+public class UserChanges {
+
+    /**
+     * What happened to a user
+     */
+    public enum Type {
+        /** Created or updated */
+        UPDATED,
+        DEACTIVATED
+    }
+
+    /**
+     * A committed change to a user
+     * @param seq position in the outbox, increasing in commit order
+     * @param realm the realm of the user
+     * @param keycloakId the Keycloak ID of the user
+     * @param type what happened
+     * @param changedAt epoch milliseconds of the change
+     */
+    public record Change(long seq, String realm, String keycloakId, Type type, long changedAt) {
+    }
+
+    private final List<Consumer<Change>> subscribers = new CopyOnWriteArrayList<>();
+    private final UserChangeOutbox outbox;
+    private final int pageSize;
+    private final Duration retention;
+    private final boolean relayEnabled;
+    private final ReentrantLock polling = new ReentrantLock();
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+
+    // Sequence number of the last change handed to subscribers; -1 until first read
+    private volatile long position = -1;
+
+    public UserChanges(UserChangeOutbox outbox,
+                       @Value("${janus.changes.page-size}") int pageSize,
+                       @Value("${janus.changes.retention}") Duration retention,
+                       @Value("${janus.changes.relay.enabled}") boolean relayEnabled) {
+        this.outbox = outbox;
+        this.pageSize = pageSize;
+        this.retention = retention;
+        this.relayEnabled = relayEnabled;
+    }
+
+    /**
+     * Record changes in the current transaction; subscribers see them after it commits
+     *
+     * Callers write the users first: the outbox is appended under a lock held until
+     * commit, which must not be waiting on row locks.
+     * @param realm the realm of the users
+     * @param keycloakIds the Keycloak IDs of the users
+     * @param type what happened to them
+     */
+    public void publish(String realm, Collection<String> keycloakIds, Type type) {
+        if (keycloakIds.isEmpty()) {
+            return;
+        }
+        outbox.append(realm, keycloakIds, type);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake();
+                }
+            });
+        } else {
+            wake();
+        }
+    }
+
+    /**
+     * @param subscriber receives each committed change once, in sequence order; must not block
+     * @return closes the subscription
+     */
+    public Runnable subscribe(Consumer<Change> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Changes of a realm recorded after a sequence number, for a subscriber catching up
+     * @param realm the realm
+     * @param afterSeq the last sequence number the subscriber saw
+     * @return up to a page of changes, oldest first; fewer than a page means none are left
+     */
+    public List<Change> replay(String realm, long afterSeq) {
+        return outbox.readAfter(realm, afterSeq, pageSize);
+    }
+
+    /**
+     * @param afterSeq the last sequence number a subscriber saw
+     * @return whether every change after it is still kept in the outbox
+     */
+    public boolean retained(long afterSeq) {
+        long oldest = outbox.oldest();
+        return oldest == 0 || afterSeq >= oldest - 1;
+    }
+
+    /**
+     * @return the sequence number of the last change handed to subscribers
+     */
+    public long position() {
+        long current = position;
+        return current >= 0 ? current : outbox.head();
+    }
+
+    /**
+     * @return the number of subscribers
+     */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Hand the changes committed since the last poll to the subscribers
+     */
+    @Scheduled(fixedDelayString = "${janus.changes.poll-interval}")
+    public void poll() {
+        polling.lock();
+        try {
+            if (position < 0) {
+                // Subscribers see changes from startup on; earlier ones are replayed on request
+                position = outbox.head();
+                return;
+            }
+            List<Change> changes;
+            do {
+                changes = outbox.readAfter(position, pageSize);
+                for (Change change : changes) {
+                    deliver(change);
+                    position = change.seq();
+                }
+            } while (changes.size() == pageSize);
+        } catch (DataAccessException e) {
+            log.warn("Could not read user changes after {}: {}", position, e.getMessage());
+        } finally {
+            polling.unlock();
+        }
+    }
+
+    /**
+     * Delete changes older than {@code janus.changes.retention}, unless the relay
+     * is enabled and has not delivered them yet
+     */
+    @Scheduled(fixedDelayString = "${janus.changes.purge-interval}", initialDelayString = "${janus.changes.purge-interval}")
+    public void purge() {
+        try {
+            int purged = outbox.purge(Instant.now().minus(retention), relayEnabled);
+            if (purged > 0) {
+                log.info("Purged {} user changes older than {}", purged, retention);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not purge user changes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Poll on a virtual thread, once for any number of commits requesting it meanwhile
+     */
+    private void wake() {
+        if (wakeRequested.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("user-changes-poll").start(() -> {
+                wakeRequested.set(false);
+                poll();
+            });
+        }
+    }
+
+    private void deliver(Change change) {
+        for (Consumer<Change> subscriber : subscribers) {
+            try {
+                subscriber.accept(change);
+            } catch (RuntimeException e) {
+                log.warn("User change subscriber failed on {}: {}", change.keycloakId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.dotbrains.janus.user;
+
+/**
+ * Keycloak ID and username of a user
+ * Used to compare the local users with Keycloak without loading the entities
+ *
+ * @param keycloakId the Keycloak user ID
+ * @param username the username
+ */
+public record UserIdentity(String keycloakId, String username) {
+}
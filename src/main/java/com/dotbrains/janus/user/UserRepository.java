@@ -1,11 +1,18 @@
 package com.dotbrains.janus.user;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -33,6 +40,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.keycloakId = :keycloakId AND u.isActive = true")
     Optional<User> findActiveUserWithRolesByKeycloakId(@Param("keycloakId") String keycloakId);
 
+    /**
+     * Find active users with roles by Keycloak IDs, in one query
+     * @param keycloakIds the Keycloak user IDs
+     * @return the active users among them, in no particular order
+     */
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.keycloakId IN :keycloakIds AND u.isActive = true")
+    List<User> findActiveUsersWithRolesByKeycloakIds(@Param("keycloakIds") Collection<String> keycloakIds);
+
     /**
      * Find user by username with roles
      * Uses JPQL with JOIN FETCH to avoid N+1 queries
@@ -41,4 +56,95 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = :username")
     Optional<User> findByUsernameWithRoles(@Param("username") String username);
+
+    /**
+     * Find the id, version and last login of a user by Keycloak ID
+     * Single-row projection without roles, used for ETag revalidation
+     * @param keycloakId the Keycloak user ID
+     * @return Optional containing the user version if found
+     */
+    @Query("SELECT new com.dotbrains.janus.user.UserVersion(u.id, u.version, u.lastLoginAt) FROM User u WHERE u.keycloakId = :keycloakId")
+    Optional<UserVersion> findVersionByKeycloakId(@Param("keycloakId") String keycloakId);
+
+    /**
+     * Find the id, version and last login of a user by username
+     * Single-row projection without roles, used for ETag revalidation
+     * @param username the username
+     * @return Optional containing the user version if found
+     */
+    @Query("SELECT new com.dotbrains.janus.user.UserVersion(u.id, u.version, u.lastLoginAt) FROM User u WHERE u.username = :username")
+    Optional<UserVersion> findVersionByUsername(@Param("username") String username);
+
+    /**
+     * Find the id and version of an active user by Keycloak ID
+     * Single-row projection without roles, used to look up cached claims
+     * @param keycloakId the Keycloak user ID
+     * @return Optional containing the user version if found and active
+     */
+    @Query("SELECT new com.dotbrains.janus.user.UserVersion(u.id, u.version) FROM User u WHERE u.keycloakId = :keycloakId AND u.isActive = true")
+    Optional<UserVersion> findActiveVersionByKeycloakId(@Param("keycloakId") String keycloakId);
+
+    /**
+     * Find the versions of the active users among the given ids, in any realm
+     * One round trip for any number of ids, bound as a single array parameter
+     * @param ids the user ids
+     * @return the id and version of each active user found
+     */
+    @Query(value = "SELECT id, version FROM users WHERE id = ANY(:ids) AND is_active = true", nativeQuery = true)
+    List<UserVersion> findActiveVersionsByIds(@Param("ids") Long[] ids);
+
+    /**
+     * Stream active users with roles, most recent login first, users who never logged in last
+     * Read through a server-side cursor; rows of one user are adjacent, so the fetch join
+     * yields each user once. Must be consumed inside a transaction.
+     * @return the active users with roles
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.isActive = true ORDER BY u.lastLoginAt DESC NULLS LAST, u.id")
+    Stream<User> streamActiveUsersWithRolesByRecentActivity();
+
+    /**
+     * Find the next page of active users of a realm in Keycloak ID order
+     * Keyset pagination over the unique (realm, keycloak_id) index; pass the last ID
+     * of the previous page (or the empty string) to continue
+     * @param realm the realm
+     * @param afterKeycloakId the exclusive lower bound
+     * @param limit the page size
+     * @return the Keycloak ID and username of up to limit active users
+     */
+    @Query(value = "SELECT keycloak_id AS keycloakId, username FROM users"
+            + " WHERE realm = :realm AND is_active = true AND keycloak_id > :after ORDER BY keycloak_id LIMIT :limit",
+            nativeQuery = true)
+    List<UserIdentity> findActiveIdentitiesAfter(@Param("realm") String realm,
+                                                 @Param("after") String afterKeycloakId,
+                                                 @Param("limit") int limit);
+
+    /**
+     * Find active users of a realm whose attributes contain the given document
+     * Uses the GIN index on attributes through the jsonb containment operator
+     * @param realm the realm
+     * @param match a JSON object the attributes must contain
+     * @param limit the maximum number of users
+     * @return the Keycloak ID and username of up to limit active users, in Keycloak ID order
+     */
+    @Query(value = "SELECT keycloak_id AS keycloakId, username FROM users"
+            + " WHERE realm = :realm AND is_active = true AND attributes @> CAST(:match AS JSONB)"
+            + " ORDER BY keycloak_id LIMIT :limit",
+            nativeQuery = true)
+    List<UserIdentity> findActiveIdentitiesByAttributes(@Param("realm") String realm,
+                                                        @Param("match") String match,
+                                                        @Param("limit") int limit);
+
+    /**
+     * Deactivate the active users among the given Keycloak IDs in one statement
+     * Bumps the version so cached claims and ETags of these users are invalidated
+     * @param keycloakIds the Keycloak user IDs
+     * @return the number of users deactivated
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE User u SET u.isActive = false, u.version = u.version + 1 WHERE u.keycloakId IN :keycloakIds AND u.isActive = true")
+    int deactivateActiveByKeycloakIds(@Param("keycloakIds") Collection<String> keycloakIds);
 }
@@ -8,7 +8,7 @@
 
 @Entity
 @Table(name = "user_roles", uniqueConstraints = {
-        @UniqueConstraint(columnNames = {"user_id", "role_name"})
+        @UniqueConstraint(columnNames = {"user_id", "role_id"})
 })
 @Getter
 @Setter
@@ -27,7 +27,9 @@ public class UserRole {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(name = "role_name", nullable = false, length = 50)
+    // Stored as the roles.id of the name, see RoleRegistry
+    @Convert(converter = RoleNameConverter.class)
+    @Column(name = "role_id", nullable = false)
     private String roleName;
 
     @CreationTimestamp
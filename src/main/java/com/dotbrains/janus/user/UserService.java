@@ -1,18 +1,43 @@
 package com.dotbrains.janus.user;
 
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.logging.SampledLogger;
+import com.dotbrains.janus.ratelimit.BackgroundWork;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.token.UserClaimsTable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.JsonNode;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
 
+    // Lookups run on every login and user request
+    private static final SampledLogger lookupLog = SampledLogger.of(log, "user.lookup");
+
     private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final AuditLog auditLog;
+    private final Realms realms;
+    private final UserChanges userChanges;
+    private final UserClaimsTable userClaimsTable;
+    private final UserAttributes userAttributes;
 
     /**
      * Find user by Keycloak ID
@@ -21,7 +46,7 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public Optional<User> findByKeycloakId(String keycloakId) {
-        log.debug("Finding user by Keycloak ID: {}", keycloakId);
+        lookupLog.debug("Finding user by Keycloak ID: {}", keycloakId);
         return userRepository.findByKeycloakId(keycloakId);
     }
 
@@ -32,10 +57,24 @@ public Optional<User> findByKeycloakId(String keycloakId) {
      */
     @Transactional(readOnly = true)
     public Optional<User> findActiveUserWithRoles(String keycloakId) {
-        log.debug("Finding active user with roles by Keycloak ID: {}", keycloakId);
+        lookupLog.debug("Finding active user with roles by Keycloak ID: {}", keycloakId);
         return userRepository.findActiveUserWithRolesByKeycloakId(keycloakId);
     }
 
+    /**
+     * Find active users with roles by Keycloak IDs
+     * @param keycloakIds the Keycloak user IDs
+     * @return the active users among them, in no particular order
+     */
+    @Transactional(readOnly = true)
+    public List<User> findActiveUsersWithRoles(Collection<String> keycloakIds) {
+        if (keycloakIds.isEmpty()) {
+            return List.of();
+        }
+        lookupLog.debug("Finding {} active users with roles", keycloakIds.size());
+        return userRepository.findActiveUsersWithRolesByKeycloakIds(keycloakIds);
+    }
+
     /**
      * Find a user by username with roles
      * @param username the username
@@ -43,19 +82,106 @@ public Optional<User> findActiveUserWithRoles(String keycloakId) {
      */
     @Transactional(readOnly = true)
     public Optional<User> findByUsernameWithRoles(String username) {
-        log.debug("Finding user with roles by username: {}", username);
+        lookupLog.debug("Finding user with roles by username: {}", username);
         return userRepository.findByUsernameWithRoles(username);
     }
 
+    /**
+     * Find the current version of a user by Keycloak ID
+     * @param keycloakId the Keycloak user ID
+     * @return Optional containing the user version if found
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserVersion> findVersionByKeycloakId(String keycloakId) {
+        return userRepository.findVersionByKeycloakId(keycloakId);
+    }
+
+    /**
+     * Find the current version of an active user by Keycloak ID
+     * @param keycloakId the Keycloak user ID
+     * @return Optional containing the user version if found and active
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserVersion> findActiveVersionByKeycloakId(String keycloakId) {
+        return userRepository.findActiveVersionByKeycloakId(keycloakId);
+    }
+
+    /**
+     * Find the current versions of the active users among the given ids, in any realm
+     * @param ids the user ids
+     * @return version by user id; inactive and unknown users are absent
+     */
+    @Transactional(readOnly = true)
+    @BackgroundWork
+    public Map<Long, Integer> findActiveVersionsByIds(Collection<Long> ids) {
+        Map<Long, Integer> versions = new HashMap<>();
+        for (UserVersion version : userRepository.findActiveVersionsByIds(ids.toArray(Long[]::new))) {
+            versions.put(version.id(), version.version());
+        }
+        return versions;
+    }
+
+    /**
+     * Visit active users with roles, most recent login first
+     * Users are streamed from a database cursor and detached once visited, so the
+     * persistence context stays small however many users are read.
+     * @param limit the maximum number of users to visit
+     * @param action receives each user; returns false to stop early
+     * @return the number of users visited
+     */
+    @Transactional(readOnly = true)
+    @BackgroundWork
+    public int forEachRecentlyActiveUser(int limit, Predicate<User> action) {
+        int visited = 0;
+        try (Stream<User> users = userRepository.streamActiveUsersWithRolesByRecentActivity()) {
+            Iterator<User> iterator = users.iterator();
+            while (visited < limit && iterator.hasNext()) {
+                User user = iterator.next();
+                visited++;
+                boolean proceed = action.test(user);
+                entityManager.detach(user);
+                if (!proceed) {
+                    break;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Find the current version of a user by username
+     * @param username the username
+     * @return Optional containing the user version if found
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserVersion> findVersionByUsername(String username) {
+        return userRepository.findVersionByUsername(username);
+    }
+
     /**
      * Create or update user
+     * Saving an existing user always moves its version, so ETags and cached claims
+     * follow changes to its roles too.
      * @param user the user to save
      * @return the saved user
      */
     @Transactional
     public User save(User user) {
         log.debug("Saving user: {}", user.getUsername());
-        return userRepository.save(user);
+        boolean existing = user.getId() != null;
+        // The write path is the only one allocating ids for new role names; a new name
+        // is inserted on a second pooled connection (see RoleDictionary)
+        RoleRegistry registry = RoleRegistry.getInstance();
+        user.getRoles().forEach(role -> registry.idOf(role.getRoleName()));
+        User saved = userRepository.save(user);
+        if (existing) {
+            // Roles live in user_roles and never dirty the users row; bump now, not at commit,
+            // so the claims row written by publish carries the new version
+            entityManager.lock(saved, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        }
+        publish(List.of(saved.getKeycloakId()),
+                Boolean.FALSE.equals(saved.getIsActive()) ? UserChanges.Type.DEACTIVATED : UserChanges.Type.UPDATED);
+        return saved;
     }
 
     /**
@@ -92,7 +218,7 @@ public User syncUserFromKeycloak(String keycloakId, String username, String emai
             user.setFirstName(firstName);
             user.setLastName(lastName);
             user.setIsActive(true);
-            return userRepository.save(user);
+            return updated(userRepository.save(user));
         }
 
         User newUser = User.builder()
@@ -103,7 +229,22 @@ public User syncUserFromKeycloak(String keycloakId, String username, String emai
                     .lastName(lastName)
                     .isActive(true)
                     .build();
-        return userRepository.save(newUser);
+        return updated(userRepository.save(newUser));
+    }
+
+    private User updated(User user) {
+        publish(List.of(user.getKeycloakId()), UserChanges.Type.UPDATED);
+        return user;
+    }
+
+    /**
+     * Record changes to users of the current realm in the current transaction
+     * The users are flushed first, so their row locks are held before the outbox lock
+     */
+    private void publish(Collection<String> keycloakIds, UserChanges.Type type) {
+        entityManager.flush();
+        userClaimsTable.refresh(realms.current(), keycloakIds);
+        userChanges.publish(realms.current(), keycloakIds, type);
     }
 
     /**
@@ -116,6 +257,91 @@ public void deactivateUser(String keycloakId) {
         userRepository.findByKeycloakId(keycloakId).ifPresent(user -> {
             user.setIsActive(false);
             userRepository.save(user);
+            auditLog.userDeactivated(user.getKeycloakId(), user.getUsername());
+            publish(List.of(user.getKeycloakId()), UserChanges.Type.DEACTIVATED);
+        });
+    }
+
+    /**
+     * Find the next page of active users of the current realm in Keycloak ID order
+     * @param afterKeycloakId the last Keycloak ID of the previous page, or the empty string
+     * @param limit the page size
+     * @return the Keycloak ID and username of up to limit active users
+     */
+    @Transactional(readOnly = true)
+    @BackgroundWork
+    public List<UserIdentity> findActiveUsersAfter(String afterKeycloakId, int limit) {
+        return userRepository.findActiveIdentitiesAfter(realms.current(), afterKeycloakId, limit);
+    }
+
+    /**
+     * Find active users of the current realm by attributes
+     * @param match a JSON object the attributes must contain, e.g. {@code {"location":{"city":"Oslo"}}}
+     * @param limit the maximum number of users
+     * @return the Keycloak ID and username of up to limit active users, in Keycloak ID order
+     * @throws IllegalArgumentException if match is not a JSON object
+     */
+    @Transactional(readOnly = true)
+    public List<UserIdentity> findActiveUsersByAttributes(JsonNode match, int limit) {
+        return userRepository.findActiveIdentitiesByAttributes(realms.current(), userAttributes.write(match), limit);
+    }
+
+    /**
+     * Replace the attributes of a user
+     * @param keycloakId the Keycloak user ID
+     * @param attributes the new attributes document
+     * @return the user, or empty if not found
+     * @throws IllegalArgumentException if the document is not an object or too large
+     */
+    @Transactional
+    public Optional<User> replaceAttributes(String keycloakId, JsonNode attributes) {
+        return updateAttributes(keycloakId, user -> attributes);
+    }
+
+    /**
+     * Apply a JSON merge patch to the attributes of a user
+     * @param keycloakId the Keycloak user ID
+     * @param patch the merge patch; null members remove attributes
+     * @return the user, or empty if not found
+     * @throws IllegalArgumentException if the result is not an object or too large
+     */
+    @Transactional
+    public Optional<User> mergeAttributes(String keycloakId, JsonNode patch) {
+        return updateAttributes(keycloakId, user -> userAttributes.merge(userAttributes.of(user), patch));
+    }
+
+    private Optional<User> updateAttributes(String keycloakId, Function<User, JsonNode> update) {
+        return userRepository.findByKeycloakId(keycloakId).map(user -> {
+            JsonNode current = userAttributes.of(user);
+            JsonNode updated = update.apply(user);
+            // Unchanged documents keep the version, and so cached claims and ETags
+            if (!updated.equals(current)) {
+                log.debug("Updating attributes of user: {}", user.getUsername());
+                user.setAttributes(userAttributes.write(updated));
+                publish(List.of(user.getKeycloakId()), UserChanges.Type.UPDATED);
+            }
+            return user;
         });
     }
+
+    /**
+     * Deactivate a batch of users in one statement
+     * The caller records the audit events
+     * @param keycloakIds the Keycloak user IDs
+     * @return the number of users deactivated; users already inactive are not counted
+     */
+    @Transactional
+    @BackgroundWork
+    public int deactivateUsers(Collection<String> keycloakIds) {
+        if (keycloakIds.isEmpty()) {
+            return 0;
+        }
+        log.debug("Deactivating {} users", keycloakIds.size());
+        int deactivated = userRepository.deactivateActiveByKeycloakIds(keycloakIds);
+        if (deactivated > 0) {
+            // Users already inactive are included; subscribers treat changes as idempotent
+            publish(keycloakIds, UserChanges.Type.DEACTIVATED);
+        }
+        return deactivated;
+    }
 }
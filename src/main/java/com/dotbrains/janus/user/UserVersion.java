@@ -0,0 +1,42 @@
+package com.dotbrains.janus.user;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Lightweight projection of a user's identity and optimistic-lock version
+ * Used to answer conditional requests without loading roles or the full entity
+ *
+ * @param id the user ID
+ * @param version the @Version column value
+ * @param lastLoginAt the last login, part of the ETag as logins do not bump the version;
+ *                    null where only the version is needed
+ */
+public record UserVersion(Long id, Integer version, LocalDateTime lastLoginAt) {
+
+    public UserVersion(Long id, Integer version) {
+        this(id, version, null);
+    }
+
+    /**
+     * Build the projection from a loaded user
+     * @param user the user entity
+     * @return the user's current version
+     */
+    public static UserVersion of(User user) {
+        return new UserVersion(user.getId(), user.getVersion(), user.getLastLoginAt());
+    }
+
+    /**
+     * Strong entity tag derived from id, version and last login, e.g. "42-3" or
+     * "42-3-1736766000123456" (microseconds since the epoch)
+     * @return quoted ETag value
+     */
+    public String eTag() {
+        String tag = id + "-" + (version != null ? version : 0);
+        if (lastLoginAt != null) {
+            tag += "-" + (lastLoginAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + lastLoginAt.getNano() / 1_000);
+        }
+        return "\"" + tag + "\"";
+    }
+}
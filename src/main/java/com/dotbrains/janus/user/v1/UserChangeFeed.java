@@ -0,0 +1,248 @@
+package com.dotbrains.janus.user.v1;
+
+import com.dotbrains.janus.user.UserChanges;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent events of the committed {@link UserChanges} of a realm
+ *
+ * Every event carries its outbox sequence number as id, so a client reconnecting
+ * with {@code Last-Event-ID} resumes right after the last event it saw. A connection
+ * costs a queue and no thread: changes are queued by the single {@link UserChanges}
+ * subscription of this feed and written by a virtual thread started only while the
+ * queue is not empty. A new or resuming subscriber, or one that falls more than
+ * {@code max-queued} changes behind, first catches up from the outbox and then
+ * continues from the queue, skipping changes it has already sent.
+ */
+@Component
+@Slf4j
+public class UserChangeFeed {
+
+    static final String RESET_EVENT = "reset";
+
+    private final UserChanges userChanges;
+    private final int maxSubscribers;
+    private final int maxQueued;
+    private final Duration timeout;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    public UserChangeFeed(UserChanges userChanges,
+                          MeterRegistry meterRegistry,
+                          @Value("${janus.changes.stream.max-subscribers}") int maxSubscribers,
+                          @Value("${janus.changes.stream.max-queued}") int maxQueued,
+                          @Value("${janus.changes.stream.timeout}") Duration timeout) {
+        this.userChanges = userChanges;
+        this.maxSubscribers = maxSubscribers;
+        this.maxQueued = maxQueued;
+        this.timeout = timeout;
+        userChanges.subscribe(this::dispatch);
+        Gauge.builder("janus.changes.stream.subscribers", subscribers, Set::size)
+                .description("Open server-sent event streams of user changes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open a stream of the changes of a realm
+     * @param realm the realm of the caller
+     * @param afterSeq the last sequence number the client saw, or null for changes from now on
+     * @return the stream, or empty if {@code max-subscribers} streams are open
+     */
+    public Optional<SseEmitter> subscribe(String realm, Long afterSeq) {
+        if (subscribers.size() >= maxSubscribers) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, realm);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        // Registered before its position is taken, so no change falls in between;
+        // changes arriving meanwhile are queued until the first drain starts
+        subscribers.add(subscriber);
+        subscriber.position = afterSeq != null ? afterSeq : userChanges.position();
+        subscriber.behind.set(true);
+        subscriber.start();
+        return Optional.of(emitter);
+    }
+
+    /**
+     * @return the number of open streams
+     */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Send a comment on every stream, so proxies keep idle connections open
+     * and closed connections are noticed
+     */
+    @Scheduled(fixedDelayString = "${janus.changes.stream.heartbeat}", initialDelayString = "${janus.changes.stream.heartbeat}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    private void dispatch(UserChanges.Change change) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.realm.equals(change.realm())) {
+                subscriber.offer(change);
+            }
+        }
+    }
+
+    /**
+     * An open stream, written by at most one thread at a time
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final String realm;
+        private final Queue<UserChanges.Change> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        // Held from creation until start(), so nothing is sent before the position is known
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+        // Set when the changes to send next must be read from the outbox
+        private final AtomicBoolean behind = new AtomicBoolean();
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+        // Sequence number of the last change sent; written by the draining thread only
+        private volatile long position;
+
+        private Subscriber(SseEmitter emitter, String realm) {
+            this.emitter = emitter;
+            this.realm = realm;
+        }
+
+        private void offer(UserChanges.Change change) {
+            if (queued.incrementAndGet() > maxQueued) {
+                // The outbox has them all; catching up from it costs no memory here
+                queued.decrementAndGet();
+                behind.set(true);
+            } else {
+                queue.add(change);
+            }
+            schedule();
+        }
+
+        private void start() {
+            Thread.ofVirtual().name("user-change-feed").start(this::drain);
+        }
+
+        private void schedule() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                start();
+            }
+        }
+
+        private void drain() {
+            try {
+                if (behind.getAndSet(false)) {
+                    discardQueue();
+                    catchUp();
+                }
+                UserChanges.Change change;
+                while (!closed && !behind.get() && (change = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    if (change.seq() > position) {
+                        send(change);
+                    }
+                }
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client is gone or the stream completed
+                close();
+            } catch (DataAccessException e) {
+                log.warn("Could not read user changes after {}: {}", position, e.getMessage());
+                // The client reconnects with the id of the last event it received
+                close();
+                emitter.complete();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && (behind.get() || heartbeatDue || !queue.isEmpty())) {
+                schedule();
+            }
+        }
+
+        private void catchUp() throws IOException {
+            if (!userChanges.retained(position)) {
+                // Changes were purged since; the client must reload what it holds
+                emitter.send(SseEmitter.event().name(RESET_EVENT).data(new ResetEvent(position)));
+            }
+            List<UserChanges.Change> changes;
+            do {
+                changes = userChanges.replay(realm, position);
+                for (UserChanges.Change change : changes) {
+                    send(change);
+                }
+            } while (!changes.isEmpty() && !closed);
+        }
+
+        private void send(UserChanges.Change change) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(Long.toString(change.seq()))
+                    .name("user." + change.type().name().toLowerCase(Locale.ROOT))
+                    .data(UserChangeEvent.of(change)));
+            position = change.seq();
+        }
+
+        private void discardQueue() {
+            while (queue.poll() != null) {
+                queued.decrementAndGet();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+            discardQueue();
+        }
+    }
+
+    /**
+     * Data of a {@code user.updated} or {@code user.deactivated} event
+     * @param seq the event id
+     * @param keycloakId the Keycloak ID of the user
+     * @param type what happened to the user
+     * @param changedAt when it was committed
+     */
+    public record UserChangeEvent(long seq, String keycloakId, UserChanges.Type type, Instant changedAt) {
+
+        static UserChangeEvent of(UserChanges.Change change) {
+            return new UserChangeEvent(change.seq(), change.keycloakId(), change.type(), Instant.ofEpochMilli(change.changedAt()));
+        }
+    }
+
+    /**
+     * Data of a {@code reset} event: changes after {@code afterSeq} were purged
+     * before they could be sent, so the client must reload the users it holds
+     * @param afterSeq the position the client resumed from
+     */
+    public record ResetEvent(long afterSeq) {
+    }
+}
@@ -1,15 +1,27 @@
 package com.dotbrains.janus.user.v1;
 
 import com.dotbrains.janus.api.v1.UserAPI;
+import com.dotbrains.janus.realm.Realms;
 import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
 import com.dotbrains.janus.user.UserService;
+import com.dotbrains.janus.user.UserVersion;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.JsonNode;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * User Management Controller - Version 1
@@ -17,6 +29,14 @@
  * Implements user management endpoints for querying and managing users.
  * All Swagger documentation and request mapping are defined in the UserAPI interface.
  * 
+ * User lookups are conditional: the ETag is derived from the user's id and @Version,
+ * and a matching If-None-Match is answered with 304 from a version-only query,
+ * without fetching roles or building the response body.
+ * 
+ * Attributes share the user's ETag, as any change to them bumps the version.
+ * 
+ * The change feed is served by {@link UserChangeFeed}.
+ * 
  * @version 1.0
  * @since 1.0
  */
@@ -25,11 +45,28 @@
 @Slf4j
 public class UserController implements UserAPI {
 
+    private static final int MAX_ATTRIBUTE_MATCHES = 1000;
+
     private final UserService userService;
+    private final UserChangeFeed userChangeFeed;
+    private final Realms realms;
+    private final UserAttributes userAttributes;
+
+    /**
+     * Seconds a client may reuse a user response without revalidating (0 = always revalidate)
+     */
+    @Value("${janus.users.cache-control.max-age:0}")
+    private long cacheMaxAgeSeconds;
 
     @Override
-    public Map<String, Object> getUserByKeycloakId(String keycloakId) {
+    public ResponseEntity<?> getUserByKeycloakId(String keycloakId, String ifNoneMatch) {
         log.debug("Fetching user by Keycloak ID: {}", keycloakId);
+
+        ResponseEntity<UserResponse> notModified =
+                checkNotModified(ifNoneMatch, keycloakId, userService::findVersionByKeycloakId);
+        if (notModified != null) {
+            return notModified;
+        }
         
         Optional<User> userOptional = userService.findByKeycloakId(keycloakId);
         
@@ -38,15 +75,21 @@ public Map<String, Object> getUserByKeycloakId(String keycloakId) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "User not found");
             errorResponse.put("keycloakId", keycloakId);
-            return errorResponse;
+            return ResponseEntity.ok(errorResponse);
         }
         
-        return convertUserToMap(userOptional.get());
+        return userResponse(userOptional.get());
     }
 
     @Override
-    public Map<String, Object> getUserByUsername(String username) {
+    public ResponseEntity<?> getUserByUsername(String username, String ifNoneMatch) {
         log.debug("Fetching user by username: {}", username);
+
+        ResponseEntity<UserResponse> notModified =
+                checkNotModified(ifNoneMatch, username, userService::findVersionByUsername);
+        if (notModified != null) {
+            return notModified;
+        }
         
         Optional<User> userOptional = userService.findByUsernameWithRoles(username);
         
@@ -55,10 +98,44 @@ public Map<String, Object> getUserByUsername(String username) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "User not found");
             errorResponse.put("username", username);
-            return errorResponse;
+            return ResponseEntity.ok(errorResponse);
         }
         
-        return convertUserToMap(userOptional.get());
+        return userResponse(userOptional.get());
+    }
+
+    @Override
+    public ResponseEntity<?> getUserAttributes(String keycloakId, String ifNoneMatch) {
+        log.debug("Fetching attributes of user with Keycloak ID: {}", keycloakId);
+
+        ResponseEntity<JsonNode> notModified =
+                checkNotModified(ifNoneMatch, keycloakId, userService::findVersionByKeycloakId);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        return attributesResponse(keycloakId, userService.findByKeycloakId(keycloakId));
+    }
+
+    @Override
+    public ResponseEntity<?> replaceUserAttributes(String keycloakId, JsonNode attributes) {
+        log.info("Replacing attributes of user with Keycloak ID: {}", keycloakId);
+        return attributesResponse(keycloakId, userService.replaceAttributes(keycloakId, attributes));
+    }
+
+    @Override
+    public ResponseEntity<?> mergeUserAttributes(String keycloakId, JsonNode patch) {
+        log.info("Updating attributes of user with Keycloak ID: {}", keycloakId);
+        return attributesResponse(keycloakId, userService.mergeAttributes(keycloakId, patch));
+    }
+
+    @Override
+    public ResponseEntity<?> findUsersByAttributes(String match, int limit) {
+        if (limit < 1 || limit > MAX_ATTRIBUTE_MATCHES) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_ATTRIBUTE_MATCHES);
+        }
+        log.debug("Finding up to {} users by attributes", limit);
+        return ResponseEntity.ok(userService.findActiveUsersByAttributes(userAttributes.read(match), limit));
     }
 
     @Override
@@ -99,29 +176,112 @@ public Map<String, Object> deactivateUser(String keycloakId) {
         return response;
     }
 
+    @Override
+    public ResponseEntity<SseEmitter> streamChanges(String lastEventId, Long after) {
+        Long afterSeq = after;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                afterSeq = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                afterSeq = -1L;
+            }
+        }
+        // No body: the client asked for an event stream, not JSON
+        if (afterSeq != null && afterSeq < 0) {
+            log.debug("Rejected change stream resuming after {}", lastEventId != null ? lastEventId : after);
+            return ResponseEntity.badRequest().build();
+        }
+        log.debug("Streaming user changes after {}", afterSeq);
+
+        return userChangeFeed.subscribe(realms.current(), afterSeq)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build());
+    }
+
     /**
-     * Convert User entity to a Map for API response
-     * 
-     * @param user the user entity
-     * @return Map representation of the user
+     * Answer a conditional request from the version-only query
+     *
+     * @param ifNoneMatch the If-None-Match header, may be null
+     * @param key the lookup key (Keycloak ID or username)
+     * @param versionLookup loads the current version for the key
+     * @return 304 response if the client's ETag is current, null otherwise
      */
-    private Map<String, Object> convertUserToMap(User user) {
-        Map<String, Object> userMap = new HashMap<>();
-        userMap.put("id", user.getId());
-        userMap.put("keycloakId", user.getKeycloakId());
-        userMap.put("username", user.getUsername());
-        userMap.put("email", user.getEmail());
-        userMap.put("firstName", user.getFirstName());
-        userMap.put("lastName", user.getLastName());
-        userMap.put("employeeId", user.getEmployeeId());
-        userMap.put("department", user.getDepartment());
-        userMap.put("jobTitle", user.getJobTitle());
-        userMap.put("phoneNumber", user.getPhoneNumber());
-        userMap.put("isActive", user.getIsActive());
-        userMap.put("roles", user.getRoleNames());
-        userMap.put("createdAt", user.getCreatedAt());
-        userMap.put("updatedAt", user.getUpdatedAt());
-        
-        return userMap;
+    private <T> ResponseEntity<T> checkNotModified(
+            String ifNoneMatch, String key, Function<String, Optional<UserVersion>> versionLookup) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return null;
+        }
+
+        Optional<UserVersion> current = versionLookup.apply(key);
+        if (current.isEmpty() || !eTagMatches(ifNoneMatch, current.get().eTag())) {
+            return null;
+        }
+
+        log.debug("User {} not modified", key);
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(current.get().eTag())
+                .cacheControl(cacheControl())
+                .build();
+    }
+
+    /**
+     * Build a 200 response for the user with ETag and Cache-Control headers
+     */
+    private ResponseEntity<UserResponse> userResponse(User user) {
+        return ResponseEntity.ok()
+                .eTag(UserVersion.of(user).eTag())
+                .cacheControl(cacheControl())
+                .body(UserResponse.of(user));
+    }
+
+    /**
+     * Build the response for a user's attributes, or the not found body
+     */
+    private ResponseEntity<?> attributesResponse(String keycloakId, Optional<User> userOptional) {
+        if (userOptional.isEmpty()) {
+            log.warn("User not found with Keycloak ID: {}", keycloakId);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "User not found");
+            errorResponse.put("keycloakId", keycloakId);
+            return ResponseEntity.ok(errorResponse);
+        }
+
+        User user = userOptional.get();
+        return ResponseEntity.ok()
+                .eTag(UserVersion.of(user).eTag())
+                .cacheControl(cacheControl())
+                .body(userAttributes.of(user));
+    }
+
+    /**
+     * User data is per-principal, so only private caches may store it
+     */
+    private CacheControl cacheControl() {
+        if (cacheMaxAgeSeconds <= 0) {
+            return CacheControl.noCache().cachePrivate();
+        }
+        return CacheControl.maxAge(Duration.ofSeconds(cacheMaxAgeSeconds)).cachePrivate().mustRevalidate();
+    }
+
+    /**
+     * Weak comparison as required for If-None-Match (RFC 9110 13.1.2)
+     * Accepts "*", a single tag or a comma-separated list, with or without W/ prefixes
+     */
+    static boolean eTagMatches(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,51 @@
+package com.dotbrains.janus.user.v1;
+
+import com.dotbrains.janus.user.User;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * API representation of a user
+ */
+@JsonPropertyOrder({"id", "keycloakId", "username", "email", "firstName", "lastName", "employeeId",
+        "department", "jobTitle", "phoneNumber", "isActive", "roles", "createdAt", "updatedAt", "lastLoginAt"})
+public record UserResponse(
+        Long id,
+        String keycloakId,
+        String username,
+        String email,
+        String firstName,
+        String lastName,
+        String employeeId,
+        String department,
+        String jobTitle,
+        String phoneNumber,
+        Boolean isActive,
+        Set<String> roles,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        LocalDateTime lastLoginAt
+) {
+
+    public static UserResponse of(User user) {
+        return new UserResponse(
+                user.getId(),
+                user.getKeycloakId(),
+                user.getUsername(),
+                user.getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getEmployeeId(),
+                user.getDepartment(),
+                user.getJobTitle(),
+                user.getPhoneNumber(),
+                user.getIsActive(),
+                user.getRoleNames(),
+                user.getCreatedAt(),
+                user.getUpdatedAt(),
+                user.getLastLoginAt()
+        );
+    }
+}
@@ -9,37 +9,54 @@ VALUES
     ('kc-user-006', 'diana.prince', 'diana.prince@dotbrains.com', 'Diana', 'Prince', 'Security', 'Security Architect', '+1-555-0106', 'EMP006', true),
     ('kc-user-007', 'admin.user', 'admin@dotbrains.com', 'Admin', 'User', 'IT', 'System Administrator', '+1-555-0100', 'EMP000', true)^
 
--- Insert user roles
-INSERT INTO user_roles (user_id, role_name)
+-- Insert role dictionary
+INSERT INTO roles (name)
 VALUES
+    ('USER'),
+    ('DEVELOPER'),
+    ('SENIOR'),
+    ('PRODUCT_MANAGER'),
+    ('DEVOPS'),
+    ('DESIGNER'),
+    ('SECURITY'),
+    ('ADMIN'),
+    ('SUPER_ADMIN')^
+
+-- Insert user roles
+INSERT INTO user_roles (user_id, role_id)
+SELECT u.id, r.id
+FROM (VALUES
     -- John Doe - Senior Engineer
-    ((SELECT id FROM users WHERE username = 'john.doe'), 'USER'),
-    ((SELECT id FROM users WHERE username = 'john.doe'), 'DEVELOPER'),
-    ((SELECT id FROM users WHERE username = 'john.doe'), 'SENIOR'),
-    
+    ('john.doe', 'USER'),
+    ('john.doe', 'DEVELOPER'),
+    ('john.doe', 'SENIOR'),
+
     -- Jane Smith - Product Manager
-    ((SELECT id FROM users WHERE username = 'jane.smith'), 'USER'),
-    ((SELECT id FROM users WHERE username = 'jane.smith'), 'PRODUCT_MANAGER'),
-    
+    ('jane.smith', 'USER'),
+    ('jane.smith', 'PRODUCT_MANAGER'),
+
     -- Bob Johnson - DevOps
-    ((SELECT id FROM users WHERE username = 'bob.johnson'), 'USER'),
-    ((SELECT id FROM users WHERE username = 'bob.johnson'), 'DEVELOPER'),
-    ((SELECT id FROM users WHERE username = 'bob.johnson'), 'DEVOPS'),
-    
+    ('bob.johnson', 'USER'),
+    ('bob.johnson', 'DEVELOPER'),
+    ('bob.johnson', 'DEVOPS'),
+
     -- Alice Williams - Designer
-    ((SELECT id FROM users WHERE username = 'alice.williams'), 'USER'),
-    ((SELECT id FROM users WHERE username = 'alice.williams'), 'DESIGNER'),
-    
+    ('alice.williams', 'USER'),
+    ('alice.williams', 'DESIGNER'),
+
     -- Charlie Brown - Junior Dev
-    ((SELECT id FROM users WHERE username = 'charlie.brown'), 'USER'),
-    ((SELECT id FROM users WHERE username = 'charlie.brown'), 'DEVELOPER'),
-    
+    ('charlie.brown', 'USER'),
+    ('charlie.brown', 'DEVELOPER'),
+
     -- Diana Prince - Security
-    ((SELECT id FROM users WHERE username = 'diana.prince'), 'USER'),
-    ((SELECT id FROM users WHERE username = 'diana.prince'), 'SECURITY'),
-    ((SELECT id FROM users WHERE username = 'diana.prince'), 'ADMIN'),
-    
+    ('diana.prince', 'USER'),
+    ('diana.prince', 'SECURITY'),
+    ('diana.prince', 'ADMIN'),
+
     -- Admin User - Full access
-    ((SELECT id FROM users WHERE username = 'admin.user'), 'USER'),
-    ((SELECT id FROM users WHERE username = 'admin.user'), 'ADMIN'),
-    ((SELECT id FROM users WHERE username = 'admin.user'), 'SUPER_ADMIN')^
+    ('admin.user', 'USER'),
+    ('admin.user', 'ADMIN'),
+    ('admin.user', 'SUPER_ADMIN')
+) AS v(username, role_name)
+JOIN users u ON u.username = v.username
+JOIN roles r ON r.name = v.role_name^
@@ -1,13 +1,19 @@
 -- Drop tables if they exist (for clean re-initialization)
 DROP TABLE IF EXISTS users CASCADE^
 DROP TABLE IF EXISTS user_roles CASCADE^
+DROP TABLE IF EXISTS roles CASCADE^
+DROP TABLE IF EXISTS auth_audit CASCADE^
+DROP TABLE IF EXISTS user_change_outbox CASCADE^
+DROP TABLE IF EXISTS user_claims CASCADE^
 
 -- Users table with custom attributes
+-- Keycloak IDs, usernames and emails are unique within a realm, not across realms
 CREATE TABLE users (
     id BIGSERIAL PRIMARY KEY,
-    keycloak_id VARCHAR(255) UNIQUE NOT NULL,
-    username VARCHAR(100) UNIQUE NOT NULL,
-    email VARCHAR(255) UNIQUE NOT NULL,
+    realm VARCHAR(100) NOT NULL DEFAULT 'janus',
+    keycloak_id VARCHAR(255) NOT NULL,
+    username VARCHAR(100) NOT NULL,
+    email VARCHAR(255) NOT NULL,
     first_name VARCHAR(100),
     last_name VARCHAR(100),
     department VARCHAR(100),
@@ -17,27 +23,42 @@ CREATE TABLE users (
     is_active BOOLEAN DEFAULT TRUE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    version INTEGER DEFAULT 0
+    last_login_at TIMESTAMP,
+    version INTEGER DEFAULT 0,
+    -- Free-form attributes (cost center, location, ...) that claims can map without a column each
+    attributes JSONB NOT NULL DEFAULT '{}',
+    UNIQUE (realm, keycloak_id),
+    UNIQUE (realm, username),
+    UNIQUE (realm, email)
+)^
+
+-- Role dictionary: each role name stored once, referenced by a small id
+CREATE TABLE roles (
+    id SMALLSERIAL PRIMARY KEY,
+    name VARCHAR(50) UNIQUE NOT NULL
 )^
 
 -- User roles table for additional role management
 CREATE TABLE user_roles (
     id BIGSERIAL PRIMARY KEY,
     user_id BIGINT NOT NULL,
-    role_name VARCHAR(50) NOT NULL,
+    role_id SMALLINT NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
-    UNIQUE(user_id, role_name)
+    FOREIGN KEY (role_id) REFERENCES roles(id),
+    UNIQUE(user_id, role_id)
 )^
 
 -- Indexes to prevent deadlocks and improve query performance
-CREATE INDEX idx_users_keycloak_id ON users(keycloak_id)^
-CREATE INDEX idx_users_username ON users(username)^
-CREATE INDEX idx_users_email ON users(email)^
+-- Lookups by Keycloak ID, username and email always include the realm and use the unique indexes
 CREATE INDEX idx_users_employee_id ON users(employee_id)^
 CREATE INDEX idx_users_is_active ON users(is_active)^
 CREATE INDEX idx_user_roles_user_id ON user_roles(user_id)^
-CREATE INDEX idx_user_roles_role_name ON user_roles(role_name)^
+CREATE INDEX idx_user_roles_role_id ON user_roles(role_id)^
+-- Claims cache warm-up reads active users by their latest login
+CREATE INDEX idx_users_active_last_login ON users(last_login_at DESC NULLS LAST, id) WHERE is_active = true^
+-- Containment (@>) searches on attributes; jsonb_path_ops is smaller than the default operator class
+CREATE INDEX idx_users_attributes ON users USING GIN (attributes jsonb_path_ops)^
 
 -- Function to update updated_at timestamp
 CREATE OR REPLACE FUNCTION update_updated_at_column()
@@ -48,6 +69,52 @@ BEGIN
 END;
 $$ language 'plpgsql'^
 
--- Trigger to automatically update updated_at
+-- Trigger to automatically update updated_at; recording a login is not a change to the user
 CREATE TRIGGER update_users_updated_at BEFORE UPDATE ON users
-    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column()^
+    FOR EACH ROW WHEN (OLD.last_login_at IS NOT DISTINCT FROM NEW.last_login_at) EXECUTE FUNCTION update_updated_at_column()^
+
+-- Authentication audit trail, range-partitioned by month; monthly partitions are created by the application
+CREATE TABLE auth_audit (
+    occurred_at TIMESTAMPTZ NOT NULL,
+    event_type VARCHAR(32) NOT NULL,
+    realm VARCHAR(100),
+    subject VARCHAR(255),
+    username VARCHAR(100),
+    actor VARCHAR(255),
+    client_ip VARCHAR(45)
+) PARTITION BY RANGE (occurred_at)^
+
+CREATE TABLE auth_audit_default PARTITION OF auth_audit DEFAULT^
+
+-- Rows arrive in time order, so a BRIN index answers time-range queries at a fraction of a B-tree's size
+CREATE INDEX idx_auth_audit_occurred_at ON auth_audit USING BRIN (occurred_at)^
+
+-- Committed changes to users, appended in the changing transaction under an advisory lock
+-- so that seq order is commit order; change feeds follow seq and resume from it
+CREATE TABLE user_change_outbox (
+    seq BIGSERIAL PRIMARY KEY,
+    realm VARCHAR(100) NOT NULL,
+    keycloak_id VARCHAR(255) NOT NULL,
+    change_type VARCHAR(16) NOT NULL,
+    changed_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- Relay state: claimed by a relay until, and delivered to the sinks at
+    relay_claimed_until TIMESTAMPTZ,
+    relayed_at TIMESTAMPTZ
+)^
+
+CREATE INDEX idx_user_change_outbox_changed_at ON user_change_outbox USING BRIN (changed_at)^
+
+-- Only the rows still to relay, so claiming stays cheap however long changes are kept
+CREATE INDEX idx_user_change_outbox_unrelayed ON user_change_outbox (seq) WHERE relayed_at IS NULL^
+
+-- Claims of each active user as served in tokens, rewritten in every transaction changing the user,
+-- so enrichment reads one row by primary key; JSON rather than JSONB keeps the document byte for byte
+-- as encoded, so a token is the same whichever path served its claims
+CREATE TABLE user_claims (
+    realm VARCHAR(100) NOT NULL,
+    keycloak_id VARCHAR(255) NOT NULL,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    version INTEGER NOT NULL,
+    claims JSON NOT NULL,
+    PRIMARY KEY (realm, keycloak_id)
+)^
@@ -0,0 +1,154 @@
+package com.dotbrains.janus.audit;
+
+import com.dotbrains.janus.audit.AuditLog.Overflow;
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("AuditLog Unit Tests")
+class AuditLogTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private Realms realms;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        realms = new Realms(new RealmProperties("janus", List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    private List<AuditEvent> drain(AuditLog auditLog) {
+        List<AuditEvent> events = new ArrayList<>();
+        auditLog.drainTo(events, 100);
+        return events;
+    }
+
+    private double dropped(AuditEvent.Type type) {
+        return meterRegistry.get("janus.audit.dropped").tag("type", type.name()).counter().count();
+    }
+
+    @Test
+    @DisplayName("Should capture the client address and acting user on the request thread")
+    void shouldCaptureRequestContext() {
+        // Given
+        AuditLog auditLog = new AuditLog(meterRegistry, realms, true, 16, Overflow.DROP_NEWEST);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.7");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("kc-admin", null));
+
+        // When
+        auditLog.loginSucceeded("kc-123", "john.doe");
+        auditLog.userDeactivated("kc-456", "jane.smith");
+
+        // Then
+        List<AuditEvent> events = drain(auditLog);
+        assertThat(events).extracting(AuditEvent::type)
+                .containsExactly(AuditEvent.Type.LOGIN_SUCCESS, AuditEvent.Type.USER_DEACTIVATED);
+        assertThat(events.get(0)).extracting(AuditEvent::realm, AuditEvent::subject, AuditEvent::username,
+                        AuditEvent::actor, AuditEvent::clientIp)
+                .containsExactly("janus", "kc-123", "john.doe", null, "10.0.0.7");
+        assertThat(events.get(1).actor()).isEqualTo("kc-admin");
+        assertThat(events.get(1).occurredAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should record the realm the event happened in")
+    void shouldRecordRealm() {
+        // Given
+        AuditLog auditLog = new AuditLog(meterRegistry, realms, true, 16, Overflow.DROP_NEWEST);
+
+        // When
+        realms.callAs("partners", () -> {
+            auditLog.userDeactivated("kc-456", "jane.smith", "keycloak-events");
+            return null;
+        });
+
+        // Then
+        assertThat(drain(auditLog)).extracting(AuditEvent::realm).containsExactly("partners");
+    }
+
+    @Test
+    @DisplayName("Should drop new events when the buffer is full")
+    void shouldDropNewestWhenFull() {
+        // Given
+        AuditLog auditLog = new AuditLog(meterRegistry, realms, true, 2, Overflow.DROP_NEWEST);
+
+        // When
+        auditLog.loginSucceeded("kc-1", "one");
+        auditLog.loginSucceeded("kc-2", "two");
+        auditLog.loginFailed();
+
+        // Then
+        assertThat(drain(auditLog)).extracting(AuditEvent::subject).containsExactly("kc-1", "kc-2");
+        assertThat(dropped(AuditEvent.Type.LOGIN_FAILURE)).isEqualTo(1.0);
+        assertThat(dropped(AuditEvent.Type.LOGIN_SUCCESS)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest events when configured to")
+    void shouldDropOldestWhenFull() {
+        // Given
+        AuditLog auditLog = new AuditLog(meterRegistry, realms, true, 2, Overflow.DROP_OLDEST);
+
+        // When
+        auditLog.loginSucceeded("kc-1", "one");
+        auditLog.loginSucceeded("kc-2", "two");
+        auditLog.loginSucceeded("kc-3", "three");
+
+        // Then
+        assertThat(drain(auditLog)).extracting(AuditEvent::subject).containsExactly("kc-2", "kc-3");
+        assertThat(dropped(AuditEvent.Type.LOGIN_SUCCESS)).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should wait for a first event and then take up to a batch")
+    void shouldDrainBatches() throws InterruptedException {
+        // Given
+        AuditLog auditLog = new AuditLog(meterRegistry, realms, true, 16, Overflow.DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            auditLog.loginFailed();
+        }
+        List<AuditEvent> batch = new ArrayList<>();
+
+        // When / Then
+        assertThat(auditLog.drainTo(batch, 3, Duration.ofMillis(10))).isEqualTo(3);
+        assertThat(auditLog.drainTo(batch, 3, Duration.ofMillis(10))).isEqualTo(2);
+        assertThat(auditLog.drainTo(batch, 3, Duration.ofMillis(10))).isZero();
+        assertThat(batch).hasSize(5);
+    }
+
+    @Test
+    @DisplayName("Should not buffer events when disabled")
+    void shouldNotBufferWhenDisabled() {
+        // Given
+        AuditLog auditLog = new AuditLog(meterRegistry, realms, false, 16, Overflow.DROP_NEWEST);
+
+        // When
+        auditLog.loginFailed();
+
+        // Then
+        assertThat(drain(auditLog)).isEmpty();
+    }
+}
@@ -0,0 +1,131 @@
+package com.dotbrains.janus.audit;
+
+import com.dotbrains.janus.audit.AuditLog.Overflow;
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AuditWriter Unit Tests")
+class AuditWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Realms realms;
+    private AuditLog auditLog;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        realms = new Realms(new RealmProperties("janus", List.of()));
+        auditLog = new AuditLog(meterRegistry, realms, true, 1024, Overflow.DROP_NEWEST);
+    }
+
+    private AuditWriter writer(int maxBatchSize) {
+        return new AuditWriter(auditLog, jdbcTemplate, meterRegistry, maxBatchSize, Duration.ofMillis(10));
+    }
+
+    @Test
+    @DisplayName("Should insert a batch with one multi-row statement")
+    void shouldInsertBatchWithOneStatement() {
+        // Given
+        Instant now = Instant.parse("2026-01-01T12:00:00Z");
+        List<AuditEvent> batch = List.of(
+                new AuditEvent(now, AuditEvent.Type.LOGIN_SUCCESS, "janus", "kc-1", "one", null, "10.0.0.1"),
+                new AuditEvent(now, AuditEvent.Type.USER_DEACTIVATED, "partners", "kc-2", "two", "kc-admin", "10.0.0.2"));
+
+        // When
+        writer(100).write(batch);
+
+        // Then
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(eq("INSERT INTO auth_audit (occurred_at, event_type, realm, subject, username, actor, client_ip)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?), (?, ?, ?, ?, ?, ?, ?)"), args.capture());
+        assertThat(args.getValue()).containsExactly(
+                OffsetDateTime.of(2026, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC), "LOGIN_SUCCESS", "janus", "kc-1", "one", null, "10.0.0.1",
+                OffsetDateTime.of(2026, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC), "USER_DEACTIVATED", "partners", "kc-2", "two", "kc-admin", "10.0.0.2");
+        assertThat(meterRegistry.get("janus.audit.written").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should write buffered events in batches and drain them on stop")
+    void shouldWriteBufferedEventsAndDrainOnStop() {
+        // Given
+        AuditWriter writer = writer(2);
+        for (int i = 0; i < 5; i++) {
+            auditLog.loginFailed();
+        }
+
+        // When
+        writer.start();
+        writer.stop();
+
+        // Then
+        assertThat(writer.isRunning()).isFalse();
+        assertThat(meterRegistry.get("janus.audit.written").counter().count()).isEqualTo(5.0);
+        verify(jdbcTemplate, atLeast(3)).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Should retry a failed batch")
+    void shouldRetryFailedBatch() {
+        // Given
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(1);
+        AuditWriter writer = writer(10);
+        auditLog.loginFailed();
+
+        // When
+        writer.start();
+        verify(jdbcTemplate, timeout(2000).times(2)).update(anyString(), any(Object[].class));
+        writer.stop();
+
+        // Then
+        assertThat(meterRegistry.get("janus.audit.written").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should not start when auditing is disabled")
+    void shouldNotStartWhenDisabled() {
+        // Given
+        AuditWriter writer = new AuditWriter(new AuditLog(meterRegistry, realms, false, 16, Overflow.DROP_NEWEST),
+                jdbcTemplate, meterRegistry, 10, Duration.ofMillis(10));
+
+        // When
+        writer.start();
+
+        // Then
+        assertThat(writer.isRunning()).isFalse();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Should reject batch sizes beyond the statement parameter limit")
+    void shouldRejectOversizedBatches() {
+        assertThatThrownBy(() -> writer(10_000)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,141 @@
+package com.dotbrains.janus.auth;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("AuthCookies Unit Tests")
+class AuthCookiesTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private static AuthCookies authCookies(String key, Instant now) {
+        return new AuthCookies(new AuthCookieProperties(key, Duration.ofMinutes(30), Duration.ofMinutes(5), true, "Lax"),
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    /**
+     * The request a browser sends back after storing the cookies of a response
+     */
+    private static MockHttpServletRequest sendBack(MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(Arrays.stream(response.getCookies()).filter(cookie -> cookie.getMaxAge() != 0)
+                .toArray(Cookie[]::new));
+        return request;
+    }
+
+    private static MockHttpServletResponse write(AuthCookies cookies, String name, byte[] value) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cookies.write(new MockHttpServletRequest(), response, name, value, Duration.ofMinutes(30));
+        return response;
+    }
+
+    @Test
+    @DisplayName("Should read back a written value as an HttpOnly, Secure, SameSite=Lax cookie")
+    void shouldRoundTripValue() {
+        // Given
+        AuthCookies cookies = authCookies(KEY, NOW);
+
+        // When
+        MockHttpServletResponse response = write(cookies, "JANUS_AUTH", "hello".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        Cookie cookie = response.getCookie("JANUS_AUTH");
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getValue()).doesNotContain("hello");
+        assertThat(cookie.isHttpOnly()).isTrue();
+        assertThat(cookie.getSecure()).isTrue();
+        assertThat(cookie.getAttribute("SameSite")).isEqualTo("Lax");
+        assertThat(cookies.read(sendBack(response), "JANUS_AUTH"))
+                .hasValueSatisfying(value -> assertThat(new String(value, StandardCharsets.UTF_8)).isEqualTo("hello"));
+    }
+
+    @Test
+    @DisplayName("Should be readable by another instance sharing the key")
+    void shouldBeReadableByAnotherInstance() {
+        // Given
+        MockHttpServletResponse response = write(authCookies(KEY, NOW), "JANUS_AUTH", new byte[]{1, 2, 3});
+
+        // Then
+        assertThat(authCookies(KEY, NOW).read(sendBack(response), "JANUS_AUTH")).hasValue(new byte[]{1, 2, 3});
+        assertThat(authCookies(Base64.getEncoder().encodeToString(new byte[16]), NOW)
+                .read(sendBack(response), "JANUS_AUTH")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject a tampered value or a value replayed under another name")
+    void shouldRejectTamperedOrRenamedValue() {
+        // Given
+        AuthCookies cookies = authCookies(KEY, NOW);
+        String sealed = write(cookies, "JANUS_AUTH", new byte[]{1, 2, 3}).getCookie("JANUS_AUTH").getValue();
+        int middle = sealed.length() / 2;
+        String tampered = sealed.substring(0, middle) + (sealed.charAt(middle) == 'A' ? 'B' : 'A')
+                + sealed.substring(middle + 1);
+
+        // When
+        MockHttpServletRequest tamperedRequest = new MockHttpServletRequest();
+        tamperedRequest.setCookies(new Cookie("JANUS_AUTH", tampered));
+        MockHttpServletRequest renamedRequest = new MockHttpServletRequest();
+        renamedRequest.setCookies(new Cookie("JANUS_OAUTH2_REQUEST", sealed));
+
+        // Then
+        assertThat(cookies.read(tamperedRequest, "JANUS_AUTH")).isEmpty();
+        assertThat(cookies.read(renamedRequest, "JANUS_OAUTH2_REQUEST")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should ignore a value past its own expiry")
+    void shouldIgnoreExpiredValue() {
+        // Given
+        MockHttpServletResponse response = write(authCookies(KEY, NOW), "JANUS_AUTH", new byte[]{1});
+
+        // Then
+        assertThat(authCookies(KEY, NOW.plus(Duration.ofMinutes(29))).read(sendBack(response), "JANUS_AUTH")).isPresent();
+        assertThat(authCookies(KEY, NOW.plus(Duration.ofMinutes(31))).read(sendBack(response), "JANUS_AUTH")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should split a large value over several cookies and expire chunks no longer needed")
+    void shouldChunkLargeValue() {
+        // Given
+        AuthCookies cookies = authCookies(KEY, NOW);
+        byte[] large = new byte[5000];
+        new Random(42).nextBytes(large);
+
+        // When
+        MockHttpServletResponse response = write(cookies, "JANUS_AUTH", large);
+        MockHttpServletResponse smaller = new MockHttpServletResponse();
+        cookies.write(sendBack(response), smaller, "JANUS_AUTH", new byte[]{1}, Duration.ofMinutes(30));
+
+        // Then
+        assertThat(response.getCookie("JANUS_AUTH.1")).isNotNull();
+        assertThat(cookies.read(sendBack(response), "JANUS_AUTH")).hasValue(large);
+        assertThat(smaller.getCookie("JANUS_AUTH.1").getMaxAge()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject keys of the wrong length and SameSite=Strict")
+    void shouldRejectInvalidConfiguration() {
+        // Then
+        assertThatThrownBy(() -> authCookies(Base64.getEncoder().encodeToString(new byte[10]), NOW))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AuthCookies(new AuthCookieProperties(KEY, Duration.ofMinutes(30),
+                Duration.ofMinutes(5), true, "Strict")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,79 @@
+package com.dotbrains.janus.auth;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CookieAuthorizationRequestRepository Unit Tests")
+class CookieAuthorizationRequestRepositoryTest {
+
+    private static final AuthCookieProperties PROPERTIES = new AuthCookieProperties(
+            Base64.getEncoder().encodeToString(new byte[32]), Duration.ofMinutes(30), Duration.ofMinutes(5), false, "Lax");
+
+    private final CookieAuthorizationRequestRepository repository = new CookieAuthorizationRequestRepository(
+            new AuthCookies(PROPERTIES), JsonMapper.builder().build(), PROPERTIES);
+
+    private static OAuth2AuthorizationRequest authorizationRequest() {
+        return OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("http://localhost:8080/realms/janus/protocol/openid-connect/auth")
+                .clientId("janus-client")
+                .redirectUri("http://localhost:9090/login/oauth2/code/keycloak")
+                .scopes(Set.of("openid", "profile"))
+                .state("state-123")
+                .additionalParameters(Map.of("nonce", "hashed-nonce"))
+                .attributes(Map.of("registration_id", "keycloak", "nonce", "nonce-123"))
+                .build();
+    }
+
+    private static MockHttpServletRequest callback(MockHttpServletResponse response, String state) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(response.getCookies());
+        request.setParameter("state", state);
+        return request;
+    }
+
+    @Test
+    @DisplayName("Should return the saved request on the callback carrying its state, then clear it")
+    void shouldRoundTripAuthorizationRequest() {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveAuthorizationRequest(authorizationRequest(), new MockHttpServletRequest(), response);
+
+        // When
+        MockHttpServletResponse callbackResponse = new MockHttpServletResponse();
+        OAuth2AuthorizationRequest removed = repository.removeAuthorizationRequest(
+                callback(response, "state-123"), callbackResponse);
+
+        // Then
+        assertThat(response.getCookie(CookieAuthorizationRequestRepository.COOKIE).getMaxAge()).isEqualTo(300);
+        assertThat(removed).isNotNull();
+        assertThat(removed.getState()).isEqualTo("state-123");
+        assertThat(removed.getScopes()).containsExactlyInAnyOrder("openid", "profile");
+        assertThat(removed.getRedirectUri()).isEqualTo("http://localhost:9090/login/oauth2/code/keycloak");
+        assertThat(removed.<String>getAttribute("nonce")).isEqualTo("nonce-123");
+        assertThat(removed.getAdditionalParameters()).containsEntry("nonce", "hashed-nonce");
+        assertThat(callbackResponse.getCookie(CookieAuthorizationRequestRepository.COOKIE).getMaxAge()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not return the saved request for a callback with another state")
+    void shouldRejectOtherState() {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveAuthorizationRequest(authorizationRequest(), new MockHttpServletRequest(), response);
+
+        // Then
+        assertThat(repository.loadAuthorizationRequest(callback(response, "forged"))).isNull();
+        assertThat(repository.loadAuthorizationRequest(new MockHttpServletRequest())).isNull();
+    }
+}
@@ -0,0 +1,265 @@
+package com.dotbrains.janus.auth;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CookieSecurityContextRepository Unit Tests")
+class CookieSecurityContextRepositoryTest {
+
+    private static final AuthCookieProperties PROPERTIES = new AuthCookieProperties(
+            Base64.getEncoder().encodeToString(new byte[32]), Duration.ofMinutes(30), Duration.ofMinutes(5), false, "Lax");
+
+    private final ClientRegistration registration = ClientRegistration.withRegistrationId("keycloak")
+            .clientId("janus-client")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+            .authorizationUri("http://localhost:8080/auth")
+            .tokenUri("http://localhost:8080/token")
+            .userNameAttributeName("preferred_username")
+            .build();
+
+    private final CookieSecurityContextRepository repository = new CookieSecurityContextRepository(
+            new AuthCookies(PROPERTIES), JsonMapper.builder().build(),
+            new InMemoryClientRegistrationRepository(registration), PROPERTIES);
+
+    private static OAuth2AuthenticationToken oidcLogin() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        String raw = new PlainJWT(new JWTClaimsSet.Builder()
+                .issuer("http://localhost:8080/realms/janus")
+                .subject("kc-123")
+                .audience("janus-client")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(300)))
+                .claim("preferred_username", "john.doe")
+                .build()).serialize();
+        OidcIdToken idToken = OidcIdToken.withTokenValue(raw)
+                .issuer("http://localhost:8080/realms/janus")
+                .subject("kc-123")
+                .audience(List.of("janus-client"))
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(300))
+                .claim("preferred_username", "john.doe")
+                .build();
+        OidcUserInfo userInfo = new OidcUserInfo(Map.of("sub", "kc-123", "email", "john.doe@dotbrains.com"));
+        List<GrantedAuthority> authorities = List.of(
+                new OidcUserAuthority(idToken, userInfo), new SimpleGrantedAuthority("SCOPE_email"));
+        DefaultOidcUser user = new DefaultOidcUser(authorities, idToken, userInfo, "preferred_username");
+        return new OAuth2AuthenticationToken(user, authorities, "keycloak");
+    }
+
+    private static MockHttpServletRequest sendBack(MockHttpServletResponse response) {
+        return sendBack(response, "/api/v1/auth/user");
+    }
+
+    private static MockHttpServletRequest sendBack(MockHttpServletResponse response, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setCookies(Arrays.stream(response.getCookies()).filter(cookie -> cookie.getMaxAge() != 0)
+                .toArray(Cookie[]::new));
+        return request;
+    }
+
+    @Test
+    @DisplayName("Should restore an OIDC login saved on another request")
+    void shouldRestoreOidcLogin() {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveContext(new SecurityContextImpl(oidcLogin()), new MockHttpServletRequest(), response);
+
+        // When
+        MockHttpServletRequest next = sendBack(response);
+        SecurityContext context = repository.loadDeferredContext(next).get();
+
+        // Then
+        assertThat(repository.containsContext(next)).isTrue();
+        assertThat(context.getAuthentication()).isInstanceOf(OAuth2AuthenticationToken.class);
+        OAuth2AuthenticationToken token = (OAuth2AuthenticationToken) context.getAuthentication();
+        OidcUser user = (OidcUser) token.getPrincipal();
+        assertThat(token.getName()).isEqualTo("john.doe");
+        assertThat(token.getAuthorizedClientRegistrationId()).isEqualTo("keycloak");
+        assertThat(user.getSubject()).isEqualTo("kc-123");
+        assertThat(user.getEmail()).isEqualTo("john.doe@dotbrains.com");
+        assertThat(user.getIssuedAt()).isNotNull();
+        assertThat(token.getAuthorities()).extracting("authority").containsExactly("OIDC_USER", "SCOPE_email");
+    }
+
+    @Test
+    @DisplayName("Should load an empty, generated context without a cookie")
+    void shouldLoadEmptyContextWithoutCookie() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/auth/user");
+
+        // Then
+        assertThat(repository.containsContext(request)).isFalse();
+        assertThat(repository.loadDeferredContext(request).isGenerated()).isTrue();
+        assertThat(repository.loadDeferredContext(request).get().getAuthentication()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should clear the cookie on logout and never store bearer token authentications")
+    void shouldClearOnLogoutAndIgnoreBearerTokens() {
+        // Given
+        MockHttpServletResponse login = new MockHttpServletResponse();
+        repository.saveContext(new SecurityContextImpl(oidcLogin()), new MockHttpServletRequest(), login);
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "RS256").claim("sub", "kc-123").build();
+
+        // When
+        MockHttpServletResponse logout = new MockHttpServletResponse();
+        repository.saveContext(new SecurityContextImpl(), sendBack(login), logout);
+        MockHttpServletResponse bearer = new MockHttpServletResponse();
+        repository.saveContext(new SecurityContextImpl(new JwtAuthenticationToken(jwt)), new MockHttpServletRequest(), bearer);
+
+        // Then
+        assertThat(logout.getCookie(CookieSecurityContextRepository.COOKIE).getMaxAge()).isZero();
+        assertThat(bearer.getCookies()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should only send and read the login cookie under /api/v1/auth")
+    void shouldOnlySendAndReadLoginCookieUnderAuthPath() {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveContext(new SecurityContextImpl(oidcLogin()), new MockHttpServletRequest(), response);
+
+        // When
+        MockHttpServletRequest users = sendBack(response, "/api/v1/users/kc-123/deactivate");
+
+        // Then
+        assertThat(response.getCookie(CookieSecurityContextRepository.COOKIE).getPath()).isEqualTo("/api/v1/auth");
+        assertThat(repository.containsContext(users)).isFalse();
+        assertThat(repository.loadDeferredContext(users).get().getAuthentication()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should fit the cookies of a realistic Keycloak login in the request header limit")
+    void shouldFitKeycloakLoginInRequestHeaderLimit() {
+        // Given - token sizes as Keycloak issues them for a user with a dozen roles and groups
+        List<String> roles = List.of("default-roles-janus", "offline_access", "uma_authorization", "USER",
+                "DEVELOPER", "SENIOR", "REPORTING_VIEWER", "BILLING_READER", "ONCALL", "RELEASE_MANAGER");
+        List<String> groups = List.of("/engineering", "/engineering/platform", "/engineering/platform/identity",
+                "/oncall/primary", "/projects/janus", "/projects/atlas", "/office/oslo", "/guilds/security");
+        String idToken = keycloakJwt("ID", Map.of("at_hash", "x".repeat(22), "groups", groups));
+        String accessToken = keycloakJwt("Bearer", Map.of("groups", groups,
+                "realm_access", Map.of("roles", roles),
+                "resource_access", Map.of("janus-client", Map.of("roles", roles), "account",
+                        Map.of("roles", List.of("manage-account", "manage-account-links", "view-profile"))),
+                "allowed-origins", List.of("http://localhost:3000", "https://app.dotbrains.com"),
+                "scope", "openid profile email roles groups"));
+        String refreshToken = keycloakJwt("Refresh", Map.of("scope", "openid profile email roles groups"));
+        Instant now = Instant.now();
+        OidcIdToken oidcIdToken = OidcIdToken.withTokenValue(idToken).subject("kc-123").issuedAt(now)
+                .expiresAt(now.plusSeconds(300)).claim("preferred_username", "john.doe").build();
+        OidcUserInfo userInfo = new OidcUserInfo(Map.of("sub", "kc-123", "email", "john.doe@dotbrains.com",
+                "name", "John Doe", "groups", groups));
+        List<GrantedAuthority> authorities = new ArrayList<>(List.of(
+                new OidcUserAuthority(oidcIdToken, userInfo)));
+        for (String scope : List.of("openid", "profile", "email", "roles", "groups")) {
+            authorities.add(new SimpleGrantedAuthority("SCOPE_" + scope));
+        }
+        OAuth2AuthenticationToken login = new OAuth2AuthenticationToken(
+                new DefaultOidcUser(authorities, oidcIdToken, userInfo, "preferred_username"), authorities, "keycloak");
+        OAuth2AuthorizedClient client = new OAuth2AuthorizedClient(registration, "john.doe",
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken, now, now.plusSeconds(300),
+                        Set.of("openid", "profile", "email", "roles", "groups")),
+                new OAuth2RefreshToken(refreshToken, now, now.plusSeconds(1800)));
+        CookieOAuth2AuthorizedClientRepository clients = new CookieOAuth2AuthorizedClientRepository(
+                new AuthCookies(PROPERTIES), JsonMapper.builder().build(),
+                new InMemoryClientRegistrationRepository(registration), PROPERTIES);
+
+        // When
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveContext(new SecurityContextImpl(login), new MockHttpServletRequest(), response);
+        clients.saveAuthorizedClient(client, login, new MockHttpServletRequest(), response);
+        String header = "Cookie: " + Arrays.stream(response.getCookies())
+                .map(cookie -> cookie.getName() + "=" + cookie.getValue())
+                .collect(Collectors.joining("; "));
+
+        // Then - about 7KB, which with the other headers would not fit Tomcat's default 8KB;
+        // half the configured limit leaves room for larger realms
+        assertThat(header.length() + 2 * 1024L).isLessThan(configuredHeaderLimit().toBytes() / 2);
+    }
+
+    /**
+     * A signed-looking Keycloak token of the given type, with the claims Keycloak always sets
+     */
+    private static String keycloakJwt(String type, Map<String, Object> claims) {
+        Instant now = Instant.now();
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder()
+                .issuer("https://keycloak.dotbrains.com/realms/janus")
+                .subject("0f8fad5b-d9cb-469f-a165-70867728950e")
+                .audience(List.of("janus-client", "account", "realm-management"))
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(300)))
+                .jwtID("a9b8c7d6-e5f4-4321-9876-543210fedcba")
+                .claim("auth_time", now.getEpochSecond())
+                .claim("typ", type)
+                .claim("azp", "janus-client")
+                .claim("sid", "6c1a2b3c-4d5e-4f60-8a9b-0c1d2e3f4a5b")
+                .claim("acr", "1")
+                .claim("email_verified", true)
+                .claim("name", "John Doe")
+                .claim("preferred_username", "john.doe")
+                .claim("given_name", "John")
+                .claim("family_name", "Doe")
+                .claim("email", "john.doe@dotbrains.com");
+        claims.forEach(builder::claim);
+        String unsigned = new PlainJWT(builder.build()).serialize();
+        // An RS256 header with a key id, and a 2048-bit signature
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"alg\":\"RS256\",\"typ\":\"JWT\",\"kid\":\"Jx2Kc8ZpQm3vTgWbYhN5rLsE7dUaF1oC4iH6kM9nRqS\"}"
+                        .getBytes(StandardCharsets.UTF_8))
+                + unsigned.substring(unsigned.indexOf('.'), unsigned.length() - 1)
+                + "." + "s".repeat(342);
+    }
+
+    private static DataSize configuredHeaderLimit() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new PropertiesPropertySource("application", yaml.getObject()));
+        return DataSize.parse(environment.getProperty("server.max-http-request-header-size"));
+    }
+}
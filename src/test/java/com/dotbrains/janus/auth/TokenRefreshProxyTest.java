@@ -0,0 +1,234 @@
+package com.dotbrains.janus.auth;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TokenRefreshProxy Unit Tests")
+class TokenRefreshProxyTest {
+
+    private HttpServer server;
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final List<String> tokenForms = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean holdResponses;
+    private volatile int status = 200;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/janus/protocol/openid-connect/token", exchange -> {
+            int call = tokenRequests.incrementAndGet();
+            tokenForms.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            if (holdResponses) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, status, "{\"access_token\":\"access-" + call + "\",\"refresh_token\":\"refresh-" + call + "\"}");
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    private TokenRefreshProxy proxy(String tokenUri) {
+        return proxy(tokenUri, Duration.ofSeconds(5));
+    }
+
+    private TokenRefreshProxy proxy(String tokenUri, Duration dedupeWindow) {
+        ClientRegistration registration = ClientRegistration.withRegistrationId("keycloak")
+                .clientId("janus-client")
+                .clientSecret("secret")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                .authorizationUri("http://127.0.0.1/auth")
+                .tokenUri(tokenUri)
+                .build();
+        return new TokenRefreshProxy(new InMemoryClientRegistrationRepository(registration), meterRegistry,
+                "keycloak", dedupeWindow, 100, Duration.ofSeconds(5));
+    }
+
+    private String tokenUri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/realms/janus/protocol/openid-connect/token";
+    }
+
+    private TokenRefreshProxy proxy() {
+        return proxy(tokenUri());
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("janus.auth.refresh").tag("outcome", outcome).counter().count();
+    }
+
+    private static String body(TokenRefreshProxy.RefreshResult result) {
+        return new String(result.body(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Test
+    @DisplayName("Should make one token endpoint call for concurrent refreshes of the same token")
+    void shouldCoalesceConcurrentRefreshes() throws Exception {
+        // Given
+        TokenRefreshProxy proxy = proxy();
+        holdResponses = true;
+        ExecutorService tabs = Executors.newFixedThreadPool(8);
+
+        // When
+        List<Future<TokenRefreshProxy.RefreshResult>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(tabs.submit(() -> proxy.refresh("spa", "refresh-token")));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count("forwarded") + count("coalesced") < 8 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        // Then
+        for (Future<TokenRefreshProxy.RefreshResult> result : results) {
+            assertThat(body(result.get(5, TimeUnit.SECONDS))).contains("access-1");
+        }
+        tabs.shutdown();
+        assertThat(tokenRequests).hasValue(1);
+        assertThat(count("coalesced")).isEqualTo(7.0);
+    }
+
+    @Test
+    @DisplayName("Should keep coalescing with a call in flight for longer than the dedupe window")
+    void shouldCoalesceWithSlowCall() throws Exception {
+        // Given
+        TokenRefreshProxy proxy = proxy(tokenUri(), Duration.ofMillis(50));
+        holdResponses = true;
+        ExecutorService tabs = Executors.newFixedThreadPool(2);
+        Future<TokenRefreshProxy.RefreshResult> first = tabs.submit(() -> proxy.refresh("spa", "refresh-token"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (tokenRequests.get() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(200);
+
+        // When
+        Future<TokenRefreshProxy.RefreshResult> second = tabs.submit(() -> proxy.refresh("spa", "refresh-token"));
+        while (count("coalesced") < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        // Then
+        assertThat(body(second.get(5, TimeUnit.SECONDS))).isEqualTo(body(first.get(5, TimeUnit.SECONDS)));
+        assertThat(tokenRequests.get()).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(1.0);
+        tabs.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should replay a recent refresh of the same token and forward other tokens")
+    void shouldReplayRecentRefresh() {
+        // Given
+        TokenRefreshProxy proxy = proxy();
+
+        // When
+        TokenRefreshProxy.RefreshResult first = proxy.refresh("spa", "refresh-token");
+        TokenRefreshProxy.RefreshResult again = proxy.refresh("spa", "refresh-token");
+        TokenRefreshProxy.RefreshResult other = proxy.refresh("spa", "other-token");
+
+        // Then
+        assertThat(first.status()).isEqualTo(200);
+        assertThat(body(again)).isEqualTo(body(first));
+        assertThat(body(other)).contains("access-2");
+        assertThat(tokenRequests).hasValue(2);
+        assertThat(count("replayed")).isEqualTo(1.0);
+        assertThat(tokenForms.getFirst())
+                .contains("grant_type=refresh_token", "refresh_token=refresh-token", "client_id=spa");
+    }
+
+    @Test
+    @DisplayName("Should forward the caller's public client without the Janus client secret")
+    void shouldForwardPublicClientWithoutSecret() {
+        // Given
+        TokenRefreshProxy proxy = proxy();
+
+        // When
+        proxy.refresh("spa", "refresh-token");
+
+        // Then
+        assertThat(tokenForms.getFirst()).contains("client_id=spa").doesNotContain("client_secret");
+    }
+
+    @Test
+    @DisplayName("Should refuse refreshes for the confidential Janus client without calling Keycloak")
+    void shouldRefuseConfidentialClient() {
+        // Given
+        TokenRefreshProxy proxy = proxy();
+
+        // When
+        TokenRefreshProxy.RefreshResult named = proxy.refresh("janus-client", "refresh-token");
+        TokenRefreshProxy.RefreshResult defaulted = proxy.refresh(null, "refresh-token");
+
+        // Then
+        assertThat(named.status()).isEqualTo(400);
+        assertThat(body(named)).contains("unauthorized_client");
+        assertThat(defaulted.status()).isEqualTo(400);
+        assertThat(tokenRequests).hasValue(0);
+        assertThat(count("rejected")).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should pass rejections through and not keep server errors or unreachable endpoints")
+    void shouldNotKeepServerErrors() {
+        // Given
+        TokenRefreshProxy proxy = proxy();
+        status = 503;
+
+        // When
+        proxy.refresh("spa", "refresh-token");
+        TokenRefreshProxy.RefreshResult retried = proxy.refresh("spa", "refresh-token");
+        TokenRefreshProxy.RefreshResult unreachable = proxy("http://127.0.0.1:1/token").refresh("spa", "refresh-token");
+
+        // Then
+        assertThat(retried.status()).isEqualTo(503);
+        assertThat(tokenRequests).hasValue(2);
+        assertThat(unreachable.status()).isEqualTo(502);
+        assertThat(body(unreachable)).contains("temporarily_unavailable");
+    }
+}
@@ -1,6 +1,10 @@
 package com.dotbrains.janus.auth.v1;
 
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.auth.TokenRefreshProxy;
+import com.dotbrains.janus.token.EncodedClaims;
 import com.dotbrains.janus.token.TokenCustomizer;
+import com.dotbrains.janus.user.LastLoginTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -8,16 +12,21 @@
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.core.oidc.OidcIdToken;
 import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.module.blackbird.BlackbirdModule;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.LIST;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,9 +36,20 @@ class AuthControllerTest {
     @Mock
     private TokenCustomizer tokenCustomizer;
 
+    @Mock
+    private LastLoginTracker lastLoginTracker;
+
+    @Mock
+    private AuditLog auditLog;
+
+    @Mock
+    private TokenRefreshProxy tokenRefreshProxy;
+
     @InjectMocks
     private AuthController authController;
 
+    private final JsonMapper jsonMapper = JsonMapper.builder().addModule(new BlackbirdModule()).build();
+
     private OidcUser oidcUser;
 
     @BeforeEach
@@ -58,53 +78,50 @@ void shouldReturnSuccessResponseOnLogin() {
         Map<String, Object> enhancedClaims = new HashMap<>();
         enhancedClaims.put("department", "Engineering");
         enhancedClaims.put("job_title", "Software Engineer");
-        when(tokenCustomizer.enhanceToken(oidcUser)).thenReturn(enhancedClaims);
+        when(tokenCustomizer.enhanceTokenEncoded(oidcUser)).thenReturn(encode(enhancedClaims));
 
         // When
-        Map<String, Object> response = authController.loginSuccess(oidcUser);
+        LoginResponse response = authController.loginSuccess(oidcUser);
 
         // Then
-        assertThat(response).isNotEmpty();
-        assertThat(response).containsEntry("status", "success");
-        assertThat(response).containsEntry("message", "Authentication successful");
-        assertThat(response).containsEntry("username", "john.doe");
-        assertThat(response).containsEntry("email", "john.doe@example.com");
-        assertThat(response).containsKey("custom_claims");
-
-        @SuppressWarnings("unchecked")
-        Map<String, Object> customClaims = (Map<String, Object>) response.get("custom_claims");
-        assertThat(customClaims).containsEntry("department", "Engineering");
-        assertThat(customClaims).containsEntry("job_title", "Software Engineer");
+        assertThat(response.status()).isEqualTo("success");
+        assertThat(response.message()).isEqualTo("Authentication successful");
+        assertThat(response.username()).isEqualTo("john.doe");
+        assertThat(response.email()).isEqualTo("john.doe@example.com");
+        assertThat(toJson(response)).containsEntry("custom_claims",
+                Map.of("department", "Engineering", "job_title", "Software Engineer"));
 
-        verify(tokenCustomizer, times(1)).enhanceToken(oidcUser);
+        verify(tokenCustomizer, times(1)).enhanceTokenEncoded(oidcUser);
+        verify(lastLoginTracker).recordLogin(oidcUser.getSubject());
+        verify(auditLog).loginSucceeded(oidcUser.getSubject(), "john.doe");
     }
 
     @Test
     @DisplayName("Should not include custom_claims when enhancement returns empty map")
     void shouldNotIncludeCustomClaimsWhenEnhancementReturnsEmptyMap() {
         // Given
-        when(tokenCustomizer.enhanceToken(oidcUser)).thenReturn(new HashMap<>());
+        when(tokenCustomizer.enhanceTokenEncoded(oidcUser)).thenReturn(EncodedClaims.EMPTY);
 
         // When
-        Map<String, Object> response = authController.loginSuccess(oidcUser);
+        LoginResponse response = authController.loginSuccess(oidcUser);
 
         // Then
-        assertThat(response).containsEntry("status", "success");
-        assertThat(response).containsEntry("username", "john.doe");
-        assertThat(response).doesNotContainKey("custom_claims");
-        verify(tokenCustomizer, times(1)).enhanceToken(oidcUser);
+        assertThat(response.status()).isEqualTo("success");
+        assertThat(response.username()).isEqualTo("john.doe");
+        assertThat(toJson(response)).doesNotContainKey("custom_claims");
+        verify(tokenCustomizer, times(1)).enhanceTokenEncoded(oidcUser);
     }
 
     @Test
     @DisplayName("Should return error response on login failure")
     void shouldReturnErrorResponseOnLoginFailure() {
         // When
-        Map<String, Object> response = authController.loginFailure();
+        LoginFailureResponse response = authController.loginFailure();
 
         // Then
-        assertThat(response).containsEntry("status", "error");
-        assertThat(response).containsEntry("message", "Authentication failed");
-        verify(tokenCustomizer, never()).enhanceToken(any());
+        assertThat(response.status()).isEqualTo("error");
+        assertThat(response.message()).isEqualTo("Authentication failed");
+        verify(tokenCustomizer, never()).enhanceTokenEncoded(any());
     }
 
     @Test
@@ -114,10 +131,10 @@ void shouldReturnCurrentUserWithEnhancedClaims() {
         Map<String, Object> enhancedClaims = new HashMap<>();
         enhancedClaims.put("department", "Engineering");
         enhancedClaims.put("roles", Set.of("USER", "ADMIN"));
-        when(tokenCustomizer.enhanceToken(oidcUser)).thenReturn(enhancedClaims);
+        when(tokenCustomizer.enhanceTokenEncoded(oidcUser)).thenReturn(encode(enhancedClaims));
 
         // When
-        Map<String, Object> response = authController.getCurrentUser(oidcUser);
+        Map<String, Object> response = toJson(authController.getCurrentUser(oidcUser));
 
         // Then
         assertThat(response).isNotEmpty();
@@ -125,8 +142,8 @@ void shouldReturnCurrentUserWithEnhancedClaims() {
         assertThat(response).containsEntry("preferred_username", "john.doe");
         assertThat(response).containsEntry("email", "john.doe@example.com");
         assertThat(response).containsEntry("department", "Engineering");
-        assertThat(response).containsEntry("roles", Set.of("USER", "ADMIN"));
-        verify(tokenCustomizer, times(1)).enhanceToken(oidcUser);
+        assertThat(response.get("roles")).asInstanceOf(LIST).containsExactlyInAnyOrder("USER", "ADMIN");
+        verify(tokenCustomizer, times(1)).enhanceTokenEncoded(oidcUser);
     }
 
     @Test
@@ -136,10 +153,10 @@ void shouldReturnEnhancedTokenWithAllClaims() {
         Map<String, Object> enhancedClaims = new HashMap<>();
         enhancedClaims.put("department", "Engineering");
         enhancedClaims.put("employee_id", "EMP001");
-        when(tokenCustomizer.enhanceToken(oidcUser)).thenReturn(enhancedClaims);
+        when(tokenCustomizer.enhanceTokenEncoded(oidcUser)).thenReturn(encode(enhancedClaims));
 
         // When
-        Map<String, Object> response = authController.getEnhancedToken(oidcUser);
+        Map<String, Object> response = toJson(authController.getEnhancedToken(oidcUser));
 
         // Then
         assertThat(response).isNotEmpty();
@@ -153,7 +170,7 @@ void shouldReturnEnhancedTokenWithAllClaims() {
         // Enhanced claims
         assertThat(response).containsEntry("department", "Engineering");
         assertThat(response).containsEntry("employee_id", "EMP001");
-        verify(tokenCustomizer, times(1)).enhanceToken(oidcUser);
+        verify(tokenCustomizer, times(1)).enhanceTokenEncoded(oidcUser);
     }
 
     @Test
@@ -164,22 +181,83 @@ void shouldReturnUpStatusForHealthCheck() {
 
         // Then
         assertThat(response).containsEntry("status", "UP");
-        verify(tokenCustomizer, never()).enhanceToken(any());
+        verify(tokenCustomizer, never()).enhanceTokenEncoded(any());
     }
 
     @Test
     @DisplayName("Should handle null enhanced claims gracefully")
     void shouldHandleNullEnhancedClaimsGracefully() {
         // Given
-        when(tokenCustomizer.enhanceToken(oidcUser)).thenReturn(new HashMap<>());
+        when(tokenCustomizer.enhanceTokenEncoded(oidcUser)).thenReturn(EncodedClaims.EMPTY);
 
         // When
-        Map<String, Object> response = authController.getEnhancedToken(oidcUser);
+        Map<String, Object> response = toJson(authController.getEnhancedToken(oidcUser));
 
         // Then
         assertThat(response).isNotEmpty();
         assertThat(response).containsEntry("sub", "kc-123");
         assertThat(response).containsEntry("preferred_username", "john.doe");
-        verify(tokenCustomizer, times(1)).enhanceToken(oidcUser);
+        verify(tokenCustomizer, times(1)).enhanceTokenEncoded(oidcUser);
+    }
+
+    @Test
+    @DisplayName("Should prefer database email over OIDC email in enhanced token")
+    void shouldPreferDatabaseEmailInEnhancedToken() {
+        // Given
+        Map<String, Object> enhancedClaims = new HashMap<>();
+        enhancedClaims.put("email", "john.doe@corp.example.com");
+        when(tokenCustomizer.enhanceTokenEncoded(oidcUser)).thenReturn(encode(enhancedClaims));
+
+        // When
+        String json = jsonMapper.writeValueAsString(authController.getEnhancedToken(oidcUser));
+
+        // Then - written once, with the database value
+        assertThat(json).containsOnlyOnce("\"email\"");
+        assertThat(json).contains("\"email\":\"john.doe@corp.example.com\"");
+    }
+
+    @Test
+    @DisplayName("Should let database claims override OIDC claims for current user")
+    void shouldLetDatabaseClaimsOverrideOidcClaimsForCurrentUser() {
+        // Given
+        Map<String, Object> enhancedClaims = new HashMap<>();
+        enhancedClaims.put("email", "john.doe@corp.example.com");
+        enhancedClaims.put("user_id", 1L);
+        when(tokenCustomizer.enhanceTokenEncoded(oidcUser)).thenReturn(encode(enhancedClaims));
+
+        // When
+        String json = jsonMapper.writeValueAsString(authController.getCurrentUser(oidcUser));
+
+        // Then
+        assertThat(json).containsOnlyOnce("\"email\"");
+        assertThat(toJson(authController.getCurrentUser(oidcUser)))
+                .containsEntry("email", "john.doe@corp.example.com")
+                .containsEntry("user_id", 1)
+                .containsEntry("sub", "kc-123");
+    }
+
+    @Test
+    @DisplayName("Should pass the token endpoint response through without caching headers")
+    void shouldPassRefreshResponseThrough() {
+        // Given
+        byte[] body = "{\"error\":\"invalid_grant\"}".getBytes(StandardCharsets.UTF_8);
+        when(tokenRefreshProxy.refresh("spa", "refresh-token")).thenReturn(new TokenRefreshProxy.RefreshResult(400, body));
+
+        // When
+        ResponseEntity<byte[]> response = authController.refresh("refresh-token", "spa");
+
+        // Then
+        assertThat(response.getStatusCode().value()).isEqualTo(400);
+        assertThat(response.getBody()).isEqualTo(body);
+        assertThat(response.getHeaders().getCacheControl()).isEqualTo("no-store");
+    }
+
+    private EncodedClaims encode(Map<String, Object> claims) {
+        return EncodedClaims.encode(jsonMapper, claims);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toJson(Object response) {
+        return jsonMapper.readValue(jsonMapper.writeValueAsBytes(response), Map.class);
     }
 }
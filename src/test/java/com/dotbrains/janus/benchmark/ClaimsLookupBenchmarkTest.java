@@ -0,0 +1,186 @@
+package com.dotbrains.janus.benchmark;
+
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.RealmTenantResolver;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.token.AttributeClaims;
+import com.dotbrains.janus.token.AttributeClaimsProperties;
+import com.dotbrains.janus.token.CustomClaimsMapper;
+import com.dotbrains.janus.token.EncodedClaimsCache;
+import com.dotbrains.janus.token.UserClaimsTable;
+import com.dotbrains.janus.user.RoleRegistry;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import com.dotbrains.janus.user.UserRepository;
+import com.dotbrains.janus.user.UserRole;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.PhysicalNamingStrategySnakeCaseImpl;
+import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.cfg.MappingSettings;
+import org.hibernate.cfg.MultiTenancySettings;
+import org.hibernate.jpa.HibernatePersistenceConfiguration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lookups per second of a user's claims source on a cache miss: the active user
+ * with roles loaded as entities by {@code findActiveUserWithRolesByKeycloakId},
+ * against the user's {@code user_claims} row read by primary key.
+ * <p>
+ * Needs PostgreSQL, by default the one in docker-compose; the data goes to its
+ * own {@code janus_benchmark} schema, dropped afterwards. Skipped when the
+ * database cannot be reached.
+ * Run with {@code mvn -Pbenchmark test -Dtest=ClaimsLookupBenchmarkTest},
+ * adding {@code -Dbenchmark.database.url=...} for another database.
+ */
+@Tag("benchmark")
+@DisplayName("Claims lookup benchmark")
+class ClaimsLookupBenchmarkTest {
+
+    private static final String SCHEMA = "janus_benchmark";
+    private static final String REALM = "janus";
+    private static final int USERS = 10_000;
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+
+    private static HikariDataSource dataSource;
+    private static EntityManagerFactory entityManagerFactory;
+    private static UserRepository userRepository;
+    private static TransactionTemplate readOnlyTransaction;
+    private static UserClaimsTable claimsTable;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.database.url", "jdbc:postgresql://localhost:5432/janus"));
+        dataSource.setUsername(System.getProperty("benchmark.database.username", "janus"));
+        dataSource.setPassword(System.getProperty("benchmark.database.password", "janus123"));
+        dataSource.setSchema(SCHEMA);
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setInitializationFailTimeout(-1);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE; CREATE SCHEMA " + SCHEMA);
+        } catch (SQLException e) {
+            dataSource.close();
+            Assumptions.abort("PostgreSQL unavailable: " + e.getMessage());
+        }
+        seed();
+
+        Realms realms = new Realms(new RealmProperties(REALM, List.of()));
+        entityManagerFactory = new HibernatePersistenceConfiguration("benchmark")
+                .managedClasses(User.class, UserRole.class)
+                .property(JdbcSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource)
+                // The naming strategies Spring Boot configures
+                .property(MappingSettings.PHYSICAL_NAMING_STRATEGY, PhysicalNamingStrategySnakeCaseImpl.class.getName())
+                .property(MappingSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName())
+                .property(MultiTenancySettings.MULTI_TENANT_IDENTIFIER_RESOLVER, new RealmTenantResolver(realms))
+                .createEntityManagerFactory();
+        userRepository = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory))
+                .getRepository(UserRepository.class);
+        // As UserService.findActiveUserWithRoles runs it
+        readOnlyTransaction = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    private static void seed() {
+        DatabasePopulatorUtils.execute(schema(), dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // Role ids as this JVM's registry knows them, which the entities convert with
+        for (String role : List.of("USER", "DEVELOPER", "ADMIN")) {
+            jdbcTemplate.update("INSERT INTO roles (id, name) VALUES (?, ?)", RoleRegistry.getInstance().idOf(role), role);
+        }
+        jdbcTemplate.update("""
+                INSERT INTO users (realm, keycloak_id, username, email, first_name, last_name, department, job_title, employee_id)
+                SELECT ?, 'kc-' || i, 'user' || i, 'user' || i || '@example.com', 'First' || i, 'Last' || i,
+                       'Engineering', 'Software Engineer', 'EMP' || i
+                FROM generate_series(1, ?) AS i
+                """, REALM, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO user_roles (user_id, role_id)
+                SELECT u.id, r.id FROM users u JOIN roles r ON r.name IN ('USER', 'DEVELOPER')
+                """);
+
+        JsonMapper jsonMapper = JsonMapper.builder().build();
+        claimsTable = new UserClaimsTable(jdbcTemplate, jsonMapper,
+                new CustomClaimsMapper(new AttributeClaims(
+                        new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000),
+                        jsonMapper, new AttributeClaimsProperties(List.of()))),
+                new EncodedClaimsCache(jsonMapper, new SimpleMeterRegistry(), 64L * 1024 * 1024), true, true);
+        for (int from = 1; from <= USERS; from += 1000) {
+            claimsTable.refresh(REALM, IntStream.range(from, Math.min(from + 1000, USERS + 1)).mapToObj(i -> "kc-" + i).toList());
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private static ResourceDatabasePopulator schema() {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        populator.setSeparator("^");
+        return populator;
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+        if (dataSource != null && !dataSource.isClosed()) {
+            new JdbcTemplate(dataSource).execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Claims source lookups: users and roles as entities vs user_claims row")
+    void lookups() {
+        long entities = measure(i -> Boolean.TRUE.equals(readOnlyTransaction.execute(status ->
+                userRepository.findActiveUserWithRolesByKeycloakId("kc-" + i).isPresent())));
+        long row = measure(i -> claimsTable.find(REALM, "kc-" + i).isPresent());
+
+        System.out.printf("claims/lookup  users+roles entities: %6d lookups/s   user_claims row: %6d lookups/s%n",
+                entities, row);
+        assertThat(row).isGreaterThan(entities);
+    }
+
+    /**
+     * @return lookups per second of random users, one thread
+     */
+    private static long measure(IntPredicate lookup) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            assertThat(lookup.test(random.nextInt(1, USERS + 1))).isTrue();
+        }
+        int found = 0;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            found += lookup.test(random.nextInt(1, USERS + 1)) ? 1 : 0;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        assertThat(found).isEqualTo(MEASURED_ITERATIONS);
+        return MEASURED_ITERATIONS * 1_000_000_000L / nanos;
+    }
+}
@@ -0,0 +1,108 @@
+package com.dotbrains.janus.benchmark;
+
+import com.dotbrains.janus.token.AttributeClaims;
+import com.dotbrains.janus.token.AttributeClaimsProperties;
+import com.dotbrains.janus.token.CustomClaimsMapper;
+import com.dotbrains.janus.token.EncodedClaims;
+import com.dotbrains.janus.token.UserClaims;
+import com.dotbrains.janus.user.RoleRegistry;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import com.dotbrains.janus.user.UserRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cost of a claims cache miss: the previous chain of the mapper's HashMap copied
+ * into the TokenCustomizer's HashMap and serialized as a map, against the
+ * UserClaims built by the mapper and written field by field.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=ClaimsMappingBenchmarkTest}.
+ */
+@Tag("benchmark")
+@DisplayName("Claims mapping benchmark")
+class ClaimsMappingBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final CustomClaimsMapper claimsMapper = new CustomClaimsMapper(new AttributeClaims(
+            new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000),
+            jsonMapper, new AttributeClaimsProperties(List.of())));
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        List.of("USER", "DEVELOPER").forEach(RoleRegistry.getInstance()::idOf);
+        user = User.builder()
+                .id(1L)
+                .keycloakId("kc-user-001")
+                .username("john.doe")
+                .email("john.doe@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .employeeId("EMP001")
+                .department("Engineering")
+                .jobTitle("Software Engineer")
+                .isActive(true)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .roles(new HashSet<>(List.of(
+                        UserRole.builder().roleName("USER").build(),
+                        UserRole.builder().roleName("DEVELOPER").build())))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Map and encode claims: copied HashMaps vs UserClaims")
+    void mapAndEncode() {
+        long[] before = measure(() -> {
+            Map<String, Object> enhanced = new HashMap<>();
+            enhanced.putAll(new HashMap<>(claimsMapper.mapUserToClaims(user)));
+            return EncodedClaims.encode(jsonMapper, enhanced);
+        });
+        long[] after = measure(() -> {
+            UserClaims claims = claimsMapper.mapUserToClaims(user);
+            return EncodedClaims.encode(jsonMapper, claims);
+        });
+
+        System.out.printf("claims/miss  HashMap: %6d B/op %6d ns/op   UserClaims: %6d B/op %6d ns/op%n",
+                before[0], before[1], after[0], after[1]);
+        assertThat(after[0]).isLessThan(before[0]);
+    }
+
+    private static long[] measure(Supplier<EncodedClaims> encode) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += encode.get().byteSize();
+        }
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += encode.get().byteSize();
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+        assertThat(sink).isNotZero();
+        return new long[]{bytes / MEASURED_ITERATIONS, nanos / MEASURED_ITERATIONS};
+    }
+}
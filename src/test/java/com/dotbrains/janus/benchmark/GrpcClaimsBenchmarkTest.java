@@ -0,0 +1,243 @@
+package com.dotbrains.janus.benchmark;
+
+import com.dotbrains.janus.grpc.ClaimsGrpcService;
+import com.dotbrains.janus.grpc.v1.BatchGetClaimsRequest;
+import com.dotbrains.janus.grpc.v1.BatchGetClaimsResponse;
+import com.dotbrains.janus.grpc.v1.Claims;
+import com.dotbrains.janus.grpc.v1.ClaimsServiceGrpc;
+import com.dotbrains.janus.grpc.v1.GetClaimsRequest;
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.token.AttributeClaims;
+import com.dotbrains.janus.token.AttributeClaimsProperties;
+import com.dotbrains.janus.token.CustomClaimsMapper;
+import com.dotbrains.janus.user.RoleRegistry;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import com.dotbrains.janus.user.UserChanges;
+import com.dotbrains.janus.user.UserRole;
+import com.dotbrains.janus.user.UserService;
+import com.dotbrains.janus.user.v1.UserResponse;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Claim lookups over gRPC against the REST user endpoint: payload bytes of one
+ * user's claims as protobuf against the JSON bodies, and round trips over
+ * loopback of GetClaims on Netty against {@code GET /api/v1/users/keycloak/{id}}
+ * on an HTTP/1.1 server with keep-alive, both serving the same in-memory user.
+ * A lookup of {@value #BATCH_SIZE} users is one BatchGetClaims call against as
+ * many REST calls. Database time is left out, so the difference is transport and
+ * encoding only.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=GrpcClaimsBenchmarkTest}.
+ */
+@Tag("benchmark")
+@DisplayName("gRPC claims benchmark")
+class GrpcClaimsBenchmarkTest {
+
+    private static final int WARMUP_CALLS = 2_000;
+    private static final int MEASURED_CALLS = 5_000;
+    private static final int BATCH_SIZE = 100;
+    private static final int WARMUP_BATCHES = 10;
+    private static final int MEASURED_BATCHES = 50;
+
+    static {
+        // Without it the JDK server's small writes wait for delayed ACKs, ~40 ms per call
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final CustomClaimsMapper claimsMapper = new CustomClaimsMapper(new AttributeClaims(
+            new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000),
+            jsonMapper, new AttributeClaimsProperties(List.of())));
+    private final UserService userService = mock(UserService.class);
+
+    private Map<String, User> users;
+    private Server grpcServer;
+    private ManagedChannel channel;
+    private HttpServer httpServer;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        List.of("USER", "DEVELOPER").forEach(RoleRegistry.getInstance()::idOf);
+        users = IntStream.range(0, BATCH_SIZE)
+                .mapToObj(GrpcClaimsBenchmarkTest::user)
+                .collect(Collectors.toMap(User::getKeycloakId, Function.identity()));
+        when(userService.findActiveUserWithRoles(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(users.get(invocation.<String>getArgument(0))));
+        when(userService.findActiveUsersWithRoles(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<String>>getArgument(0).stream().map(users::get).toList());
+
+        ClaimsGrpcService service = new ClaimsGrpcService(userService, claimsMapper, mock(UserChanges.class),
+                new Realms(new RealmProperties("janus", List.of())), BATCH_SIZE, 1000);
+        grpcServer = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .addService(service)
+                .build()
+                .start();
+        channel = NettyChannelBuilder.forAddress("127.0.0.1", grpcServer.getPort()).usePlaintext().build();
+
+        httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpServer.createContext("/api/v1/users/keycloak/", exchange -> {
+            String keycloakId = exchange.getRequestURI().getPath().substring("/api/v1/users/keycloak/".length());
+            byte[] body = jsonMapper.writeValueAsBytes(UserResponse.of(userService.findActiveUserWithRoles(keycloakId).orElseThrow()));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        httpServer.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        httpServer.start();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        grpcServer.shutdownNow();
+        httpServer.stop(0);
+        httpClient.close();
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .id((long) i + 1)
+                .keycloakId("kc-user-%03d".formatted(i))
+                .username("user." + i)
+                .email("user." + i + "@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .employeeId("EMP%03d".formatted(i))
+                .department("Engineering")
+                .jobTitle("Software Engineer")
+                .isActive(true)
+                .version(1)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .updatedAt(LocalDateTime.of(2024, 6, 1, 12, 30))
+                .roles(new HashSet<>(List.of(
+                        UserRole.builder().roleName("USER").build(),
+                        UserRole.builder().roleName("DEVELOPER").build())))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Payload bytes: protobuf claims vs REST JSON")
+    void payloadSize() {
+        User user = users.get("kc-user-000");
+        Claims claims = ClaimsServiceGrpc.newBlockingStub(channel)
+                .getClaims(GetClaimsRequest.newBuilder().setKeycloakId(user.getKeycloakId()).build());
+        int protobuf = claims.getSerializedSize();
+        int claimsJson = jsonMapper.writeValueAsBytes(claimsMapper.mapUserToClaims(user)).length;
+        int userJson = jsonMapper.writeValueAsBytes(UserResponse.of(user)).length;
+
+        BatchGetClaimsResponse batch = ClaimsServiceGrpc.newBlockingStub(channel)
+                .batchGetClaims(BatchGetClaimsRequest.newBuilder().addAllKeycloakIds(users.keySet()).build());
+        int batchJson = jsonMapper.writeValueAsBytes(users.values().stream().map(UserResponse::of).toList()).length;
+
+        System.out.printf("payload/user   protobuf: %5d B   claims JSON: %5d B   user JSON: %5d B%n",
+                protobuf, claimsJson, userJson);
+        System.out.printf("payload/%d  protobuf: %6d B   user JSON: %6d B%n",
+                BATCH_SIZE, batch.getSerializedSize(), batchJson);
+        assertThat(protobuf).isLessThan(claimsJson).isLessThan(userJson);
+    }
+
+    @Test
+    @DisplayName("Round trip: GetClaims on Netty vs GET /api/v1/users/keycloak/{id} on HTTP/1.1")
+    void latency() throws Exception {
+        ClaimsServiceGrpc.ClaimsServiceBlockingStub stub = ClaimsServiceGrpc.newBlockingStub(channel);
+        GetClaimsRequest request = GetClaimsRequest.newBuilder().setKeycloakId("kc-user-000").build();
+        HttpRequest httpRequest = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + httpServer.getAddress().getPort() + "/api/v1/users/keycloak/kc-user-000"))
+                .GET()
+                .build();
+
+        long[] grpc = measure(WARMUP_CALLS, MEASURED_CALLS, () -> stub.getClaims(request).getSerializedSize());
+        long[] rest = measure(WARMUP_CALLS, MEASURED_CALLS, () -> httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).body().length);
+
+        System.out.printf("lookup/user   gRPC: p50 %6d ns p99 %7d ns   REST: p50 %6d ns p99 %7d ns%n",
+                grpc[0], grpc[1], rest[0], rest[1]);
+        assertThat(grpc[0]).isPositive();
+        assertThat(rest[0]).isPositive();
+    }
+
+    @Test
+    @DisplayName("Lookup of a batch: one BatchGetClaims vs a REST call per user")
+    void batchLatency() throws Exception {
+        ClaimsServiceGrpc.ClaimsServiceBlockingStub stub = ClaimsServiceGrpc.newBlockingStub(channel);
+        BatchGetClaimsRequest request = BatchGetClaimsRequest.newBuilder().addAllKeycloakIds(users.keySet()).build();
+        List<HttpRequest> httpRequests = users.keySet().stream()
+                .map(keycloakId -> HttpRequest.newBuilder(URI.create(
+                        "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/api/v1/users/keycloak/" + keycloakId))
+                        .GET()
+                        .build())
+                .toList();
+
+        long[] grpc = measure(WARMUP_BATCHES, MEASURED_BATCHES, () -> stub.batchGetClaims(request).getClaimsCount());
+        long[] rest = measure(WARMUP_BATCHES, MEASURED_BATCHES, () -> {
+            int received = 0;
+            for (HttpRequest httpRequest : httpRequests) {
+                received += httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+            }
+            return received;
+        });
+
+        System.out.printf("lookup/%d   gRPC: p50 %8d ns p99 %8d ns   REST: p50 %8d ns p99 %8d ns%n",
+                BATCH_SIZE, grpc[0], grpc[1], rest[0], rest[1]);
+        assertThat(grpc[0]).isLessThan(rest[0]);
+    }
+
+    /**
+     * @return the median and 99th percentile of the calls, in nanoseconds
+     */
+    private static long[] measure(int warmup, int calls, Callable<Integer> call) throws Exception {
+        int sink = 0;
+        for (int i = 0; i < warmup; i++) {
+            sink += call.call();
+        }
+        long[] nanos = new long[calls];
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            sink += call.call();
+            nanos[i] = System.nanoTime() - start;
+        }
+        assertThat(sink).isNotZero();
+        Arrays.sort(nanos);
+        return new long[]{nanos[calls / 2], nanos[calls * 99 / 100]};
+    }
+}
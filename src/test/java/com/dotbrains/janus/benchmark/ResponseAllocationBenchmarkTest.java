@@ -0,0 +1,175 @@
+package com.dotbrains.janus.benchmark;
+
+import com.dotbrains.janus.auth.v1.CurrentUserResponse;
+import com.dotbrains.janus.auth.v1.EnhancedTokenResponse;
+import com.dotbrains.janus.auth.v1.LoginResponse;
+import com.dotbrains.janus.token.EncodedClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.module.blackbird.BlackbirdModule;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocation per response for the auth endpoints: the previous HashMap bodies
+ * on a plain mapper against the typed records on a mapper with Blackbird, with
+ * the enhanced claims spliced in from their cached encoding.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=ResponseAllocationBenchmarkTest}.
+ */
+@Tag("benchmark")
+@DisplayName("Response allocation benchmark")
+class ResponseAllocationBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+
+    private final JsonMapper plainMapper = JsonMapper.builder().build();
+    private final JsonMapper blackbirdMapper = JsonMapper.builder().addModule(new BlackbirdModule()).build();
+
+    private OidcUser oidcUser;
+    private Map<String, Object> enhancedClaims;
+    private EncodedClaims encodedClaims;
+
+    @BeforeEach
+    void setUp() {
+        OidcIdToken idToken = OidcIdToken.withTokenValue("token")
+                .subject("kc-user-001")
+                .claim("preferred_username", "john.doe")
+                .claim("email", "john.doe@example.com")
+                .claim("email_verified", true)
+                .claim("given_name", "John")
+                .claim("family_name", "Doe")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+        oidcUser = new DefaultOidcUser(Set.of(), idToken);
+
+        enhancedClaims = new HashMap<>();
+        enhancedClaims.put("user_id", 1L);
+        enhancedClaims.put("keycloak_id", "kc-user-001");
+        enhancedClaims.put("username", "john.doe");
+        enhancedClaims.put("email", "john.doe@example.com");
+        enhancedClaims.put("full_name", "John Doe");
+        enhancedClaims.put("employee_id", "EMP001");
+        enhancedClaims.put("department", "Engineering");
+        enhancedClaims.put("job_title", "Software Engineer");
+        enhancedClaims.put("is_active", true);
+        enhancedClaims.put("roles", Set.of("USER", "DEVELOPER"));
+        enhancedClaims.put("is_admin", false);
+        enhancedClaims.put("created_at", LocalDateTime.of(2024, 1, 1, 0, 0));
+        encodedClaims = EncodedClaims.encode(blackbirdMapper, enhancedClaims);
+    }
+
+    @Test
+    @DisplayName("Login success: HashMap vs record")
+    void loginSuccess() {
+        long before = bytesPerResponse(() -> plainMapper.writeValueAsBytes(mapLoginSuccess()));
+        long after = bytesPerResponse(() -> blackbirdMapper.writeValueAsBytes(
+                LoginResponse.success(oidcUser.getPreferredUsername(), oidcUser.getEmail(), encodedClaims)));
+
+        report("login/success", before, after);
+        assertThat(after).isLessThanOrEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("Enhanced token: HashMap vs record")
+    void enhancedToken() {
+        long before = bytesPerResponse(() -> plainMapper.writeValueAsBytes(mapEnhancedToken()));
+        long after = bytesPerResponse(() -> blackbirdMapper.writeValueAsBytes(
+                EnhancedTokenResponse.of(oidcUser, encodedClaims)));
+
+        report("token/enhanced", before, after);
+        assertThat(after).isLessThanOrEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("Current user: merged HashMap vs cached claims")
+    void currentUser() {
+        long before = bytesPerResponse(() -> plainMapper.writeValueAsBytes(mapCurrentUser()));
+        long after = bytesPerResponse(() -> blackbirdMapper.writeValueAsBytes(
+                CurrentUserResponse.of(oidcUser, encodedClaims)));
+
+        report("auth/user", before, after);
+        assertThat(after).isLessThanOrEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("Claims encoding on a cache miss")
+    void claimsEncoding() {
+        long encode = bytesPerResponse(() -> EncodedClaims.encode(blackbirdMapper, enhancedClaims));
+
+        System.out.printf("%-16s %6d B/op, %d B retained per cached entry%n",
+                "claims/encode", encode, encodedClaims.byteSize());
+        assertThat(encode).isPositive();
+    }
+
+    // Response bodies as built before the typed records
+
+    private Map<String, Object> mapLoginSuccess() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("message", "Authentication successful");
+        response.put("username", oidcUser.getPreferredUsername());
+        response.put("email", oidcUser.getEmail());
+        response.put("custom_claims", enhancedClaims);
+        return response;
+    }
+
+    private Map<String, Object> mapEnhancedToken() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("sub", oidcUser.getSubject());
+        response.put("preferred_username", oidcUser.getPreferredUsername());
+        response.put("email", oidcUser.getEmail());
+        response.put("email_verified", oidcUser.getEmailVerified());
+        response.put("given_name", oidcUser.getGivenName());
+        response.put("family_name", oidcUser.getFamilyName());
+        response.putAll(enhancedClaims);
+        return response;
+    }
+
+    private Map<String, Object> mapCurrentUser() {
+        Map<String, Object> claims = oidcUser.getClaims();
+        Map<String, Object> userInfo = HashMap.newHashMap(claims.size() + enhancedClaims.size());
+        userInfo.putAll(claims);
+        userInfo.putAll(enhancedClaims);
+        return userInfo;
+    }
+
+    private static long bytesPerResponse(Supplier<?> response) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += response.get() != null ? 1 : 0;
+        }
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += response.get() != null ? 1 : 0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+        assertThat(sink).isNotZero();
+        return allocated / MEASURED_ITERATIONS;
+    }
+
+    private static void report(String endpoint, long before, long after) {
+        System.out.printf("%-16s map: %6d B/op   record: %6d B/op   (%+.1f%%)%n",
+                endpoint, before, after, 100.0 * (after - before) / before);
+    }
+}
@@ -0,0 +1,97 @@
+package com.dotbrains.janus.benchmark;
+
+import com.dotbrains.janus.user.RoleRegistry;
+import com.dotbrains.janus.user.RoleSet;
+import com.dotbrains.janus.user.UserRole;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cost of the roles and is_admin claims in CustomClaimsMapper: the previous
+ * stream into a HashSet of names plus a SpEL {@code roleNames.contains('ADMIN')}
+ * (which streams the roles again) against one RoleSet bitset and a bit test.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=RoleCheckBenchmarkTest}.
+ */
+@Tag("benchmark")
+@DisplayName("Role check benchmark")
+class RoleCheckBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 200_000;
+
+    static {
+        // Registered as UserService.save would
+        List.of("USER", "DEVELOPER", "SENIOR").forEach(RoleRegistry.getInstance()::idOf);
+    }
+
+    private final Set<UserRole> roles = new HashSet<>(List.of(
+            UserRole.builder().roleName("USER").build(),
+            UserRole.builder().roleName("DEVELOPER").build(),
+            UserRole.builder().roleName("SENIOR").build()));
+
+    private final SpelExpressionParser spelParser = new SpelExpressionParser();
+
+    /**
+     * Stand-in for User with the previous getRoleNames()
+     */
+    public class PreviousUser {
+        public Set<String> getRoleNames() {
+            return roles.stream()
+                    .map(UserRole::getRoleName)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    @DisplayName("Roles and ADMIN check: HashSet + SpEL vs bitset")
+    void roleCheck() {
+        PreviousUser previousUser = new PreviousUser();
+        long[] before = measure(() -> {
+            Set<String> names = previousUser.getRoleNames();
+            Boolean admin = spelParser.parseExpression("roleNames.contains('ADMIN')")
+                    .getValue(new StandardEvaluationContext(previousUser), Boolean.class);
+            return !names.isEmpty() && Boolean.TRUE.equals(admin);
+        });
+        long[] after = measure(() -> {
+            RoleSet roleSet = RoleSet.of(roles);
+            return !roleSet.names().isEmpty() && roleSet.contains("ADMIN");
+        });
+
+        System.out.printf("roles + is_admin  HashSet+SpEL: %5d B/op %5d ns/op   RoleSet: %5d B/op %5d ns/op%n",
+                before[0], before[1], after[0], after[1]);
+        assertThat(after[0]).isLessThan(before[0]);
+    }
+
+    private static long[] measure(BooleanSupplier check) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        int hits = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            hits += check.getAsBoolean() ? 1 : 0;
+        }
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            hits += check.getAsBoolean() ? 1 : 0;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+        assertThat(hits).isZero();
+        return new long[]{bytes / MEASURED_ITERATIONS, nanos / MEASURED_ITERATIONS};
+    }
+}
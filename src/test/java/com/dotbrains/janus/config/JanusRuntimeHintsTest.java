@@ -0,0 +1,61 @@
+package com.dotbrains.janus.config;
+
+import com.dotbrains.janus.token.EncodedClaims;
+import com.dotbrains.janus.token.UserClaims;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("JanusRuntimeHints Unit Tests")
+class JanusRuntimeHintsTest {
+
+    private RuntimeHints hints;
+
+    @BeforeEach
+    void setUp() {
+        hints = new RuntimeHints();
+        new JanusRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    @DisplayName("Should register User accessors used by SpEL claim expressions")
+    void shouldRegisterUserAccessorsUsedBySpel() throws NoSuchMethodException {
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethodInvocation(User.class.getMethod("getFirstName"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethodInvocation(User.class.getMethod("getLastName"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethodInvocation(User.class.getMethod("getIsActive"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethodInvocation(User.class.getMethod("getRoleNames"))).accepts(hints);
+    }
+
+    @Test
+    @DisplayName("Should register UserRole accessors")
+    void shouldRegisterUserRoleAccessors() throws NoSuchMethodException {
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethodInvocation(UserRole.class.getMethod("getRoleName"))).accepts(hints);
+    }
+
+    @Test
+    @DisplayName("Should register Lombok builders")
+    void shouldRegisterLombokBuilders() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(User.UserBuilder.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(UserRole.UserRoleBuilder.class)).accepts(hints);
+    }
+
+    @Test
+    @DisplayName("Should register the claims serializers")
+    void shouldRegisterClaimsSerializers() throws NoSuchMethodException {
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onConstructorInvocation(EncodedClaims.Serializer.class.getConstructor())).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onConstructorInvocation(UserClaims.Serializer.class.getConstructor())).accepts(hints);
+    }
+}
@@ -0,0 +1,48 @@
+package com.dotbrains.janus.exception;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PrebuiltErrorBody Unit Tests")
+class PrebuiltErrorBodyTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Test
+    @DisplayName("Should render the same JSON as the equivalent ApiError")
+    void shouldRenderSameJsonAsApiError() {
+        // Given
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 12, 30, 15, 123_000_000);
+        String path = "/api/v1/auth/\"user\"\u00e9";
+        PrebuiltErrorBody body = new PrebuiltErrorBody(HttpStatus.UNAUTHORIZED, "Authentication \"failed\"");
+
+        // When
+        String rendered = new String(body.render(timestamp, path), StandardCharsets.UTF_8);
+
+        // Then
+        ApiError expected = new ApiError(timestamp, 401, "Unauthorized", "Authentication \"failed\"", path);
+        assertThat(rendered).isEqualTo(jsonMapper.writeValueAsString(expected));
+    }
+
+    @Test
+    @DisplayName("Should build a JSON response with the status")
+    void shouldBuildJsonResponse() {
+        // When
+        ResponseEntity<byte[]> response = new PrebuiltErrorBody(HttpStatus.FORBIDDEN, "Access denied")
+                .toResponse("/api/v1/users/kc-123");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(jsonMapper.readTree(response.getBody()).get("path").asString()).isEqualTo("/api/v1/users/kc-123");
+    }
+}
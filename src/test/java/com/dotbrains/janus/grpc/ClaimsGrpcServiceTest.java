@@ -0,0 +1,310 @@
+package com.dotbrains.janus.grpc;
+
+import com.dotbrains.janus.grpc.v1.BatchGetClaimsRequest;
+import com.dotbrains.janus.grpc.v1.BatchGetClaimsResponse;
+import com.dotbrains.janus.grpc.v1.Claims;
+import com.dotbrains.janus.grpc.v1.ClaimsServiceGrpc;
+import com.dotbrains.janus.grpc.v1.GetClaimsRequest;
+import com.dotbrains.janus.grpc.v1.StreamUserChangesRequest;
+import com.dotbrains.janus.grpc.v1.UserChange;
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.resilience.DatabaseUnavailableException;
+import com.dotbrains.janus.token.AttributeClaims;
+import com.dotbrains.janus.token.AttributeClaimsProperties;
+import com.dotbrains.janus.token.CustomClaimsMapper;
+import com.dotbrains.janus.user.RoleRegistry;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import com.dotbrains.janus.user.UserChanges;
+import com.dotbrains.janus.user.UserRole;
+import com.dotbrains.janus.user.UserService;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.authentication.BadCredentialsException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ClaimsGrpcService Unit Tests")
+class ClaimsGrpcServiceTest {
+
+    private static final String PARTNERS_ISSUER = "https://idp.example.com/realms/partners";
+
+    private final UserService userService = mock(UserService.class);
+    private final UserChanges userChanges = mock(UserChanges.class);
+    private final Realms realms = new Realms(new RealmProperties("janus",
+            List.of(new RealmProperties.Realm("partners", PARTNERS_ISSUER, null))));
+
+    private Server server;
+    private ManagedChannel channel;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(userChanges.subscribe(any())).thenReturn(() -> { });
+        ClaimsGrpcService service = new ClaimsGrpcService(userService, claimsMapper(), userChanges, realms, 2, 3);
+        // Accepts any token of a trusted issuer, except "revoked" subjects
+        BearerTokenInterceptor authentication = new BearerTokenInterceptor(issuer -> token -> {
+            if (token.getCredentials().toString().equals(token("revoked", PARTNERS_ISSUER))) {
+                throw new BadCredentialsException("revoked");
+            }
+            return token;
+        }, realms);
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(service, authentication))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+        user = User.builder()
+                .id(7L)
+                .keycloakId("kc-user-001")
+                .username("john.doe")
+                .email("john.doe@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .isActive(true)
+                .version(3)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .roles(new HashSet<>(List.of(UserRole.builder().roleName("ADMIN").build())))
+                .build();
+        RoleRegistry.getInstance().idOf("ADMIN");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        channel.shutdownNow();
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static String token(String subject, String issuer) {
+        return new PlainJWT(new JWTClaimsSet.Builder().subject(subject).issuer(issuer).build()).serialize();
+    }
+
+    private static Metadata bearer(String token) {
+        Metadata headers = new Metadata();
+        headers.put(BearerTokenInterceptor.AUTHORIZATION, "Bearer " + token);
+        return headers;
+    }
+
+    private ClaimsServiceGrpc.ClaimsServiceBlockingStub stub() {
+        return ClaimsServiceGrpc.newBlockingStub(channel)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(bearer(token("service", PARTNERS_ISSUER))));
+    }
+
+    @Test
+    @DisplayName("Should return the claims and version of a user in the caller's realm")
+    void shouldGetClaims() {
+        // Given
+        List<String> lookupRealms = new CopyOnWriteArrayList<>();
+        when(userService.findActiveUserWithRoles("kc-user-001")).thenAnswer(invocation -> {
+            lookupRealms.add(realms.current());
+            return Optional.of(user);
+        });
+
+        // When
+        Claims claims = stub().getClaims(GetClaimsRequest.newBuilder().setKeycloakId("kc-user-001").build());
+
+        // Then
+        assertThat(claims.getUserId()).isEqualTo(7L);
+        assertThat(claims.getUsername()).isEqualTo("john.doe");
+        assertThat(claims.getFullName()).isEqualTo("John Doe");
+        assertThat(claims.getRolesList()).containsExactly("ADMIN");
+        assertThat(claims.getIsAdmin()).isTrue();
+        assertThat(claims.getCreatedAt()).isEqualTo("2024-01-01T00:00:00");
+        assertThat(claims.getVersion()).isEqualTo(3);
+        assertThat(lookupRealms).containsExactly("partners");
+    }
+
+    @Test
+    @DisplayName("Should answer NOT_FOUND for unknown users and UNAVAILABLE while the database is")
+    void shouldMapLookupFailures() {
+        // Given
+        when(userService.findActiveUserWithRoles("kc-missing")).thenReturn(Optional.empty());
+        when(userService.findActiveUserWithRoles("kc-user-001"))
+                .thenThrow(new DatabaseUnavailableException("Database circuit open"));
+
+        // When / Then
+        assertThatThrownBy(() -> stub().getClaims(GetClaimsRequest.newBuilder().setKeycloakId("kc-missing").build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND));
+        assertThatThrownBy(() -> stub().getClaims(GetClaimsRequest.newBuilder().setKeycloakId("kc-user-001").build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE));
+    }
+
+    @Test
+    @DisplayName("Should look up a batch in one query and list the users not found")
+    @SuppressWarnings("unchecked")
+    void shouldBatchGetClaims() {
+        // Given
+        ArgumentCaptor<Collection<String>> ids = ArgumentCaptor.forClass(Collection.class);
+        when(userService.findActiveUsersWithRoles(anyCollection())).thenReturn(List.of(user));
+
+        // When
+        BatchGetClaimsResponse response = stub().batchGetClaims(BatchGetClaimsRequest.newBuilder()
+                .addKeycloakIds("kc-user-001")
+                .addKeycloakIds("kc-missing")
+                .addKeycloakIds("kc-user-001")
+                .build());
+
+        // Then
+        assertThat(response.getClaimsMap()).containsOnlyKeys("kc-user-001");
+        assertThat(response.getNotFoundList()).containsExactly("kc-missing");
+        verify(userService).findActiveUsersWithRoles(ids.capture());
+        assertThat(ids.getValue()).containsExactly("kc-user-001", "kc-missing");
+    }
+
+    @Test
+    @DisplayName("Should refuse batches above max-batch-size")
+    void shouldRefuseLargeBatches() {
+        // Given
+        BatchGetClaimsRequest request = BatchGetClaimsRequest.newBuilder()
+                .addAllKeycloakIds(List.of("kc-1", "kc-2", "kc-3"))
+                .build();
+
+        // When / Then
+        assertThatThrownBy(() -> stub().batchGetClaims(request))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    @DisplayName("Should refuse calls without a valid token of a trusted realm")
+    void shouldRefuseUnauthenticatedCalls() {
+        // Given
+        GetClaimsRequest request = GetClaimsRequest.newBuilder().setKeycloakId("kc-user-001").build();
+        List<Metadata> callers = List.of(
+                new Metadata(),
+                bearer("not-a-jwt"),
+                bearer(token("service", "https://idp.example.com/realms/other")),
+                bearer(token("revoked", PARTNERS_ISSUER)));
+
+        // When / Then
+        for (Metadata caller : callers) {
+            assertThatThrownBy(() -> ClaimsServiceGrpc.newBlockingStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(caller))
+                    .getClaims(request))
+                    .isInstanceOfSatisfying(StatusRuntimeException.class,
+                            e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.UNAUTHENTICATED));
+        }
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    @DisplayName("Should stream committed changes of the caller's realm only")
+    void shouldStreamChangesOfCallerRealm() throws Exception {
+        // Given
+        List<UserChange> received = new CopyOnWriteArrayList<>();
+        ClaimsServiceGrpc.newStub(channel)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(bearer(token("service", PARTNERS_ISSUER))))
+                .streamUserChanges(StreamUserChangesRequest.getDefaultInstance(), observer(received, new CompletableFuture<>(), 100));
+        Consumer<UserChanges.Change> subscriber = subscriber();
+
+        // When
+        subscriber.accept(new UserChanges.Change(1, "janus", "kc-other-realm", UserChanges.Type.UPDATED, 1000));
+        subscriber.accept(new UserChanges.Change(2, "partners", "kc-1", UserChanges.Type.UPDATED, 1000));
+        subscriber.accept(new UserChanges.Change(3, "partners", "kc-2", UserChanges.Type.DEACTIVATED, 1000));
+
+        // Then
+        assertThat(received).extracting(UserChange::getSeq, UserChange::getKeycloakId, UserChange::getType).containsExactly(
+                tuple(2L, "kc-1", UserChange.Type.UPDATED),
+                tuple(3L, "kc-2", UserChange.Type.DEACTIVATED));
+    }
+
+    @Test
+    @DisplayName("Should close the stream of a client falling more than max-queued-changes behind")
+    void shouldCloseStreamOfSlowClient() throws Exception {
+        // Given
+        CompletableFuture<Throwable> closed = new CompletableFuture<>();
+        ClaimsServiceGrpc.newStub(channel)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(bearer(token("service", PARTNERS_ISSUER))))
+                .streamUserChanges(StreamUserChangesRequest.getDefaultInstance(),
+                        observer(new CopyOnWriteArrayList<>(), closed, 0));
+        Consumer<UserChanges.Change> subscriber = subscriber();
+
+        // When
+        for (int seq = 1; seq <= 4; seq++) {
+            subscriber.accept(new UserChanges.Change(seq, "partners", "kc-" + seq, UserChanges.Type.UPDATED, 1000));
+        }
+
+        // Then
+        assertThat(Status.fromThrowable(closed.get(5, TimeUnit.SECONDS)).getCode())
+                .isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<UserChanges.Change> subscriber() {
+        ArgumentCaptor<Consumer<UserChanges.Change>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(userChanges, timeout(1000)).subscribe(subscriber.capture());
+        return subscriber.getValue();
+    }
+
+    private static ClientResponseObserver<StreamUserChangesRequest, UserChange> observer(
+            List<UserChange> received, CompletableFuture<Throwable> closed, int initialRequests) {
+        return new ClientResponseObserver<>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<StreamUserChangesRequest> requestStream) {
+                requestStream.disableAutoRequestWithInitial(initialRequests);
+            }
+
+            @Override
+            public void onNext(UserChange change) {
+                received.add(change);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                closed.complete(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                closed.complete(null);
+            }
+        };
+    }
+
+    private static CustomClaimsMapper claimsMapper() {
+        JsonMapper jsonMapper = JsonMapper.builder().build();
+        return new CustomClaimsMapper(new AttributeClaims(
+                new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000),
+                jsonMapper, new AttributeClaimsProperties(List.of())));
+    }
+}
@@ -0,0 +1,134 @@
+package com.dotbrains.janus.keycloak;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("KeycloakAdminClient Unit Tests")
+class KeycloakAdminClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final List<String> tokenForms = new CopyOnWriteArrayList<>();
+    private final Map<String, String> responses = new ConcurrentHashMap<>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/janus/protocol/openid-connect/token", exchange -> {
+            tokenRequests.incrementAndGet();
+            tokenForms.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            respond(exchange, 200, "{\"access_token\":\"admin-token\",\"expires_in\":300,\"token_type\":\"Bearer\"}");
+        });
+        server.createContext("/admin/realms/janus/users", exchange -> {
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getQuery();
+            String body = responses.get(query != null ? path + "?" + query : path);
+            if (body == null) {
+                respond(exchange, 404, "{\"error\":\"User not found\"}");
+            } else {
+                respond(exchange, 200, body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private KeycloakAdminClient client(boolean useServiceAccount) {
+        String serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new KeycloakAdminClient(new KeycloakAdminProperties(true, serverUrl, "janus", "admin-cli",
+                useServiceAccount, "admin", "secret"));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Test
+    @DisplayName("Should count and page users with one admin token")
+    void shouldCountAndPageUsersWithOneToken() {
+        // Given
+        responses.put("/admin/realms/janus/users/count", "3");
+        responses.put("/admin/realms/janus/users?briefRepresentation=true&first=0&max=2",
+                "[{\"id\":\"kc-1\",\"username\":\"one\",\"enabled\":true,\"createdTimestamp\":1},"
+                        + "{\"id\":\"kc-2\",\"username\":\"two\",\"enabled\":false}]");
+        KeycloakAdminClient client = client(false);
+
+        // When
+        int count = client.countUsers();
+        List<KeycloakUser> users = client.listUsers(0, 2);
+
+        // Then
+        assertThat(count).isEqualTo(3);
+        assertThat(users).containsExactly(
+                new KeycloakUser("kc-1", "one", null, null, null, true),
+                new KeycloakUser("kc-2", "two", null, null, null, false));
+        assertThat(tokenRequests).hasValue(1);
+        assertThat(authorizations).containsOnly("Bearer admin-token");
+        assertThat(tokenForms.getFirst()).contains("grant_type=password", "username=admin", "client_id=admin-cli");
+    }
+
+    @Test
+    @DisplayName("Should use the client credentials grant for a service account")
+    void shouldUseClientCredentialsForServiceAccount() {
+        // Given
+        responses.put("/admin/realms/janus/users/count", "0");
+
+        // When
+        client(true).countUsers();
+
+        // Then
+        assertThat(tokenForms.getFirst()).contains("grant_type=client_credentials", "client_secret=secret")
+                .doesNotContain("username=");
+    }
+
+    @Test
+    @DisplayName("Should return a user, or empty when it does not exist")
+    void shouldFindUserOrEmpty() {
+        // Given
+        responses.put("/admin/realms/janus/users/kc-1", "{\"id\":\"kc-1\",\"username\":\"one\",\"enabled\":true}");
+        KeycloakAdminClient client = client(false);
+
+        // When / Then
+        assertThat(client.findUser("kc-1")).contains(new KeycloakUser("kc-1", "one", null, null, null, true));
+        assertThat(client.findUser("kc-gone")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should fail when the admin API answers with an error")
+    void shouldFailOnAdminApiError() {
+        // Given
+        server.removeContext("/admin/realms/janus/users");
+        server.createContext("/admin/realms/janus/users", exchange -> respond(exchange, 503, "{}"));
+        KeycloakAdminClient client = client(false);
+
+        // When / Then
+        assertThatThrownBy(() -> client.findUser("kc-1")).isInstanceOf(KeycloakAdminException.class);
+        assertThatThrownBy(client::countUsers).isInstanceOf(RuntimeException.class);
+    }
+}
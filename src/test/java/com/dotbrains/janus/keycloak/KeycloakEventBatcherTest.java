@@ -0,0 +1,220 @@
+package com.dotbrains.janus.keycloak;
+
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.token.UserClaimsTable;
+import com.dotbrains.janus.user.UserChanges;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("KeycloakEventBatcher Unit Tests")
+class KeycloakEventBatcherTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private AuditLog auditLog;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UserChanges userChanges;
+
+    @Mock
+    private UserClaimsTable userClaimsTable;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private KeycloakEventBatcher batcher(int maxBatchSize, int maxPending) {
+        return new KeycloakEventBatcher(jdbcTemplate, transactionManager, JsonMapper.builder().build(), auditLog,
+                new Realms(new RealmProperties("janus", List.of())), userChanges, userClaimsTable, meterRegistry, "partners", maxBatchSize, maxPending);
+    }
+
+    private static KeycloakEvent profileUpdate(String userId, String firstName) {
+        return profileUpdate(userId, firstName, 1L);
+    }
+
+    private static KeycloakEvent profileUpdate(String userId, String firstName, long time) {
+        return new KeycloakEvent(time, "UPDATE_PROFILE", userId, Map.of("first_name", firstName),
+                null, null, null, null);
+    }
+
+    private static KeycloakEvent deletion(String userId) {
+        return new KeycloakEvent(1L, null, null, null, "USER", "DELETE", "users/" + userId, null);
+    }
+
+    @Test
+    @DisplayName("Should merge events per user and write them with one update and one insert")
+    void shouldMergeEventsPerUser() {
+        // Given
+        KeycloakEventBatcher batcher = batcher(100, 1000);
+        batcher.submit(List.of(profileUpdate("kc-1", "Ada", 1L), profileUpdate("kc-2", "Alan", 1L), profileUpdate("kc-1", "Grace", 2L)));
+        when(jdbcTemplate.queryForList(startsWith("INSERT INTO users"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("kc-2"));
+
+        // When
+        batcher.flush();
+
+        // Then
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).query(startsWith("UPDATE users AS u SET"), any(RowMapper.class), args.capture());
+        verify(jdbcTemplate).queryForList(startsWith("INSERT INTO users"), eq(String.class), any(Object[].class));
+        assertThat(args.getValue()).hasSize(16).contains("partners", "Grace", "Alan").doesNotContain("Ada");
+        verify(userClaimsTable).refresh("partners", List.of("kc-2"));
+        verify(userChanges).publish("partners", List.of("kc-2"), UserChanges.Type.UPDATED);
+        verify(transactionManager).commit(any());
+        assertThat(batcher.pendingCount()).isZero();
+        assertThat(meterRegistry.get("janus.keycloak.events.received").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Should write in batches of at most max-batch-size users")
+    void shouldWriteInBatches() {
+        // Given
+        KeycloakEventBatcher batcher = batcher(2, 1000);
+        batcher.submit(IntStream.range(0, 5).mapToObj(i -> profileUpdate("kc-" + i, "Name")).toList());
+
+        // When
+        batcher.flush();
+
+        // Then
+        verify(jdbcTemplate, times(3)).query(anyString(), any(RowMapper.class), any(Object[].class));
+        verify(jdbcTemplate, times(3)).queryForList(anyString(), eq(String.class), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Should refuse events once max-pending users are waiting")
+    void shouldRefuseEventsWhenBacklogIsFull() {
+        // Given
+        KeycloakEventBatcher batcher = batcher(100, 2);
+        batcher.submit(List.of(profileUpdate("kc-1", "Ada")));
+
+        // When
+        boolean accepted = batcher.submit(List.of(profileUpdate("kc-2", "Alan"), profileUpdate("kc-3", "Grace")));
+
+        // Then
+        assertThat(accepted).isFalse();
+        assertThat(batcher.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should let the latest event win across requests arriving out of order")
+    void shouldMergeByEventTimeAcrossRequests() {
+        // Given
+        KeycloakEventBatcher batcher = batcher(100, 1000);
+        batcher.submit(List.of(profileUpdate("kc-1", "Grace", 2000L)));
+        batcher.submit(List.of(profileUpdate("kc-1", "Ada", 1000L)));
+
+        // When
+        batcher.flush();
+
+        // Then
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).query(startsWith("UPDATE users AS u SET"), any(RowMapper.class), args.capture());
+        assertThat(args.getValue()).contains("Grace").doesNotContain("Ada");
+    }
+
+    @Test
+    @DisplayName("Should refuse a request larger than max-pending outright")
+    void shouldRefuseOversizedRequests() {
+        // Given
+        KeycloakEventBatcher batcher = batcher(100, 2);
+        List<KeycloakEvent> events = IntStream.range(0, 3).mapToObj(i -> profileUpdate("kc-" + i, "Name")).toList();
+
+        // When / Then
+        assertThatThrownBy(() -> batcher.submit(events)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(batcher.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep changes for the next flush when the database is unavailable")
+    void shouldKeepChangesWhenDatabaseIsUnavailable() {
+        // Given
+        KeycloakEventBatcher batcher = batcher(100, 1000);
+        batcher.submit(List.of(profileUpdate("kc-1", "Ada")));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        // When
+        batcher.flush();
+
+        // Then
+        assertThat(batcher.pendingCount()).isEqualTo(1);
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(userChanges);
+    }
+
+    @Test
+    @DisplayName("Should reject only the changes the database refuses")
+    void shouldRejectOnlyRefusedChanges() {
+        // Given
+        KeycloakEventBatcher batcher = batcher(100, 1000);
+        batcher.submit(List.of(profileUpdate("kc-1", "Ada"), profileUpdate("kc-2", "Alan")));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenReturn(List.of());
+
+        // When
+        batcher.flush();
+
+        // Then
+        verify(jdbcTemplate, times(3)).query(anyString(), any(RowMapper.class), any(Object[].class));
+        assertThat(meterRegistry.get("janus.keycloak.events.rejected").counter().count()).isEqualTo(1.0);
+        assertThat(batcher.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should audit and publish users deactivated by a deletion")
+    @SuppressWarnings("unchecked")
+    void shouldAuditDeactivations() throws Exception {
+        // Given
+        KeycloakEventBatcher batcher = batcher(100, 1000);
+        batcher.submit(List.of(deletion("kc-1")));
+        ResultSet row = mock(ResultSet.class);
+        when(row.getString("keycloak_id")).thenReturn("kc-1");
+        when(row.getString("username")).thenReturn("one");
+        when(row.getBoolean("deactivated")).thenReturn(true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> List.of(((RowMapper<Object>) invocation.getArgument(1)).mapRow(row, 0)));
+
+        // When
+        batcher.flush();
+
+        // Then
+        verify(auditLog).userDeactivated("kc-1", "one", KeycloakEventBatcher.ACTOR);
+        verify(userChanges).publish("partners", List.of("kc-1"), UserChanges.Type.DEACTIVATED);
+        assertThat(meterRegistry.get("janus.keycloak.events.applied").counter().count()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,283 @@
+package com.dotbrains.janus.keycloak;
+
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.user.UserIdentity;
+import com.dotbrains.janus.user.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("KeycloakReconciliation Unit Tests")
+class KeycloakReconciliationTest {
+
+    private static final int PAGE_SIZE = 3;
+
+    @Mock
+    private KeycloakAdminClient adminClient;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private AuditLog auditLog;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Realms realms;
+    private KeycloakAdminProperties adminProperties;
+    private List<KeycloakUser> keycloakUsers;
+    private List<UserIdentity> localUsers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        realms = new Realms(new RealmProperties("janus", List.of()));
+        adminProperties = new KeycloakAdminProperties(true, "http://keycloak", "partners", "admin-cli", false, "admin", "admin");
+        keycloakUsers = new ArrayList<>();
+        localUsers = new ArrayList<>();
+        lenient().when(adminClient.countUsers()).thenAnswer(invocation -> keycloakUsers.size());
+        lenient().when(adminClient.listUsers(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int first = invocation.getArgument(0);
+            int max = invocation.getArgument(1);
+            return keycloakUsers.subList(Math.min(first, keycloakUsers.size()), Math.min(first + max, keycloakUsers.size()));
+        });
+        lenient().when(adminClient.findUser(anyString())).thenAnswer(invocation -> keycloakUsers.stream()
+                .filter(user -> user.id().equals(invocation.getArgument(0)))
+                .findFirst());
+        lenient().when(userService.findActiveUsersAfter(anyString(), anyInt())).thenAnswer(invocation -> {
+            String after = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return localUsers.stream()
+                    .filter(user -> user.keycloakId().compareTo(after) > 0)
+                    .sorted((a, b) -> a.keycloakId().compareTo(b.keycloakId()))
+                    .limit(limit)
+                    .toList();
+        });
+        lenient().when(userService.deactivateUsers(anyCollection())).thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+    }
+
+    private KeycloakReconciliation reconciliation(double maxRatio) {
+        return reconciliation(maxRatio, 1000);
+    }
+
+    private KeycloakReconciliation reconciliation(double maxRatio, int maxUsers) {
+        return new KeycloakReconciliation(adminClient, userService, auditLog, realms, adminProperties, meterRegistry,
+                true, PAGE_SIZE, 4, 2, maxRatio, maxUsers);
+    }
+
+    private void givenUsers(int count) {
+        IntStream.range(0, count).forEach(i -> {
+            String id = "kc-%03d".formatted(i);
+            keycloakUsers.add(new KeycloakUser(id, "user" + i, null, null, null, true));
+            localUsers.add(new UserIdentity(id, "user" + i));
+        });
+    }
+
+    @Test
+    @DisplayName("Should deactivate users deleted or disabled in Keycloak")
+    void shouldDeactivateDeletedAndDisabledUsers() {
+        // Given
+        givenUsers(20);
+        keycloakUsers.removeIf(user -> user.id().equals("kc-004"));
+        keycloakUsers.replaceAll(user -> user.id().equals("kc-011") ? new KeycloakUser("kc-011", "user11", null, null, null, false) : user);
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.5).reconcile();
+
+        // Then
+        assertThat(summary).isEqualTo(new KeycloakReconciliation.Summary(18, 20, 2, 2, false));
+        verify(userService).deactivateUsers(List.of("kc-004", "kc-011"));
+        verify(auditLog).userDeactivated("kc-004", "user4", KeycloakReconciliation.ACTOR);
+        verify(auditLog).userDeactivated("kc-011", "user11", KeycloakReconciliation.ACTOR);
+        assertThat(meterRegistry.get("janus.reconciliation.deactivated").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should not deactivate anyone when the users match")
+    void shouldNotDeactivateWhenUsersMatch() {
+        // Given
+        givenUsers(9);
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.5).reconcile();
+
+        // Then
+        assertThat(summary).isEqualTo(new KeycloakReconciliation.Summary(9, 9, 0, 0, false));
+        verify(userService, never()).deactivateUsers(anyCollection());
+        verify(adminClient, never()).findUser(anyString());
+    }
+
+    @Test
+    @DisplayName("Should read past the count when users are added during the run")
+    void shouldReadPastCountWhenUsersAreAdded() {
+        // Given
+        givenUsers(12);
+        List<KeycloakUser> all = List.copyOf(keycloakUsers);
+        when(adminClient.countUsers()).thenReturn(5);
+        keycloakUsers.clear();
+        keycloakUsers.addAll(all);
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.5).reconcile();
+
+        // Then
+        assertThat(summary.keycloakUsers()).isEqualTo(12);
+        assertThat(summary.candidates()).isZero();
+        verify(adminClient).listUsers(12, PAGE_SIZE);
+    }
+
+    @Test
+    @DisplayName("Should not reconcile a realm larger than max-users")
+    void shouldAbortWhenRealmExceedsMaxUsers() {
+        // Given
+        givenUsers(12);
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.5, 10).reconcile();
+
+        // Then
+        assertThat(summary).isEqualTo(new KeycloakReconciliation.Summary(12, 0, 0, 0, true));
+        verify(adminClient, never()).listUsers(anyInt(), anyInt());
+        verify(userService, never()).findActiveUsersAfter(anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should stop reading a realm that grows past max-users during the run")
+    void shouldAbortWhenRealmGrowsPastMaxUsers() {
+        // Given
+        givenUsers(12);
+        when(adminClient.countUsers()).thenReturn(5);
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.5, 10).reconcile();
+
+        // Then
+        assertThat(summary.aborted()).isTrue();
+        verify(adminClient, never()).listUsers(12, PAGE_SIZE);
+        verify(userService, never()).deactivateUsers(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should skip candidates that exist when confirmed")
+    void shouldSkipCandidatesThatExistWhenConfirmed() {
+        // Given
+        givenUsers(6);
+        when(adminClient.listUsers(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int first = invocation.getArgument(0);
+            return switch (first) {
+                case 0 -> keycloakUsers.subList(1, PAGE_SIZE);
+                case PAGE_SIZE -> keycloakUsers.subList(PAGE_SIZE, 6);
+                default -> List.of();
+            };
+        });
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.5).reconcile();
+
+        // Then
+        assertThat(summary.candidates()).isEqualTo(1);
+        assertThat(summary.deactivated()).isZero();
+        verify(adminClient).findUser("kc-000");
+        verify(userService, never()).deactivateUsers(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should abort when too many users are missing from Keycloak")
+    void shouldAbortWhenTooManyUsersAreMissing() {
+        // Given
+        givenUsers(10);
+        keycloakUsers.subList(0, 5).clear();
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.1).reconcile();
+
+        // Then
+        assertThat(summary.aborted()).isTrue();
+        assertThat(summary.candidates()).isEqualTo(5);
+        verify(userService, never()).deactivateUsers(anyCollection());
+        verify(adminClient, never()).findUser(anyString());
+    }
+
+    @Test
+    @DisplayName("Should abort without deactivating when a page cannot be read")
+    void shouldAbortWhenPageFails() {
+        // Given
+        givenUsers(10);
+        keycloakUsers.removeFirst();
+        when(adminClient.listUsers(eq(PAGE_SIZE), anyInt())).thenThrow(new KeycloakAdminException("unavailable"));
+
+        // When / Then
+        KeycloakReconciliation reconciliation = reconciliation(0.5);
+        assertThatThrownBy(reconciliation::reconcile)
+                .isInstanceOf(KeycloakAdminException.class);
+        verify(userService, never()).deactivateUsers(anyCollection());
+        verify(userService, never()).findActiveUsersAfter(anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should deactivate in batches")
+    void shouldDeactivateInBatches() {
+        // Given
+        givenUsers(30);
+        keycloakUsers.removeIf(user -> user.id().compareTo("kc-025") >= 0);
+
+        // When
+        KeycloakReconciliation.Summary summary = reconciliation(0.5).reconcile();
+
+        // Then
+        assertThat(summary.deactivated()).isEqualTo(5);
+        verify(userService, times(3)).deactivateUsers(anyCollection());
+        verify(auditLog, times(5)).userDeactivated(anyString(), anyString(), eq(KeycloakReconciliation.ACTOR));
+    }
+
+    @Test
+    @DisplayName("Should compare the local users of the admin API's realm")
+    void shouldRunInAdminRealm() {
+        // Given
+        givenUsers(5);
+        List<String> realmsSeen = new ArrayList<>();
+        when(userService.findActiveUsersAfter(anyString(), anyInt())).thenAnswer(invocation -> {
+            realmsSeen.add(realms.current());
+            return List.of();
+        });
+
+        // When
+        reconciliation(0.5).reconcile();
+
+        // Then
+        assertThat(realmsSeen).isNotEmpty().containsOnly("partners");
+        assertThat(realms.current()).isEqualTo("janus");
+    }
+
+    @Test
+    @DisplayName("Should not run on schedule when disabled")
+    void shouldNotRunWhenDisabled() {
+        // Given
+        KeycloakReconciliation reconciliation = new KeycloakReconciliation(adminClient, userService, auditLog,
+                realms, adminProperties, meterRegistry, false, PAGE_SIZE, 4, 2, 0.1, 1000);
+
+        // When
+        reconciliation.scheduledRun();
+
+        // Then
+        verifyNoInteractions(userService);
+        verify(adminClient, never()).countUsers();
+    }
+}
@@ -0,0 +1,117 @@
+package com.dotbrains.janus.keycloak;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("UserChange Unit Tests")
+class UserChangeTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private static KeycloakEvent adminEvent(String operation, String path, String representation) {
+        return new KeycloakEvent(1L, null, null, null, "USER", operation, path, representation);
+    }
+
+    private static KeycloakEvent userEvent(String type, Map<String, String> details) {
+        return new KeycloakEvent(1L, type, "kc-1", details, null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("Should map a user created by an admin, disabled unless enabled is set")
+    void shouldMapAdminCreate() {
+        // When
+        UserChange enabled = UserChange.of(adminEvent("CREATE", "users/kc-1",
+                "{\"username\":\"one\",\"email\":\"one@example.com\",\"enabled\":true,\"attributes\":{}}"), 0L, jsonMapper).orElseThrow();
+        UserChange disabled = UserChange.of(adminEvent("CREATE", "users/kc-2",
+                "{\"username\":\"two\",\"email\":\"two@example.com\"}"), 0L, jsonMapper).orElseThrow();
+
+        // Then
+        assertThat(enabled).isEqualTo(new UserChange("kc-1", "one", "one@example.com", null, null, true, false, 1L));
+        assertThat(disabled.enabled()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should leave fields absent from an admin update unchanged")
+    void shouldLeaveAbsentFieldsOfAdminUpdate() {
+        // When
+        UserChange change = UserChange.of(adminEvent("UPDATE", "users/kc-1", "{\"firstName\":\"Ada\"}"), 0L, jsonMapper)
+                .orElseThrow();
+
+        // Then
+        assertThat(change).isEqualTo(new UserChange("kc-1", null, null, "Ada", null, null, false, 1L));
+    }
+
+    @Test
+    @DisplayName("Should map deletions and ignore other resources")
+    void shouldMapDeletionsAndIgnoreOtherResources() {
+        // When / Then
+        assertThat(UserChange.of(adminEvent("DELETE", "users/kc-1", null), 0L, jsonMapper))
+                .contains(UserChange.deletion("kc-1", 1L));
+        assertThat(UserChange.of(userEvent("DELETE_ACCOUNT", null), 0L, jsonMapper))
+                .contains(UserChange.deletion("kc-1", 1L));
+        assertThat(UserChange.of(adminEvent("CREATE", "users/kc-1/role-mappings/realm", "[]"), 0L, jsonMapper)).isEmpty();
+        assertThat(UserChange.of(new KeycloakEvent(1L, null, null, null, "CLIENT", "UPDATE", "clients/c-1", "{}"), 0L, jsonMapper))
+                .isEmpty();
+        assertThat(UserChange.of(userEvent("LOGIN", Map.of()), 0L, jsonMapper)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should map profile and email updates from user events")
+    void shouldMapUserEvents() {
+        // When
+        UserChange registered = UserChange.of(userEvent("REGISTER",
+                Map.of("username", "one", "email", "one@example.com", "first_name", "Ada")), 0L, jsonMapper).orElseThrow();
+        UserChange emailUpdated = UserChange.of(userEvent("UPDATE_EMAIL",
+                Map.of("previous_email", "one@example.com", "updated_email", "new@example.com")), 0L, jsonMapper).orElseThrow();
+
+        // Then
+        assertThat(registered).isEqualTo(new UserChange("kc-1", "one", "one@example.com", "Ada", null, null, false, 1L));
+        assertThat(emailUpdated.email()).isEqualTo("new@example.com");
+    }
+
+    @Test
+    @DisplayName("Should merge later changes over earlier ones")
+    void shouldMergeLaterChanges() {
+        // Given
+        UserChange created = new UserChange("kc-1", "one", "one@example.com", "Ada", null, true, false, 1L);
+        UserChange renamed = new UserChange("kc-1", null, null, "Grace", "Hopper", null, false, 1L);
+
+        // When / Then
+        assertThat(created.then(renamed))
+                .isEqualTo(new UserChange("kc-1", "one", "one@example.com", "Grace", "Hopper", true, false, 1L));
+        assertThat(created.then(UserChange.deletion("kc-1", 1L))).isEqualTo(UserChange.deletion("kc-1", 1L));
+        assertThat(UserChange.deletion("kc-1", 1L).then(created)).isEqualTo(created);
+    }
+
+    @Test
+    @DisplayName("Should combine changes by event time whatever order they arrive in")
+    void shouldMergeByEventTime() {
+        // Given
+        UserChange disabled = new UserChange("kc-1", null, null, "Ada", null, false, false, 2000L);
+        UserChange enabledBefore = new UserChange("kc-1", null, null, null, "Lovelace", true, false, 1000L);
+
+        // When
+        UserChange merged = disabled.merge(enabledBefore);
+
+        // Then
+        assertThat(merged).isEqualTo(new UserChange("kc-1", null, null, "Ada", "Lovelace", false, false, 2000L));
+        assertThat(enabledBefore.merge(disabled)).isEqualTo(merged);
+        assertThat(UserChange.deletion("kc-1", 3000L).merge(disabled)).isEqualTo(UserChange.deletion("kc-1", 3000L));
+    }
+
+    @Test
+    @DisplayName("Should date events without a time by their arrival")
+    void shouldDateEventsWithoutTime() {
+        // Given
+        KeycloakEvent untimed = new KeycloakEvent(null, "UPDATE_PROFILE", "kc-1", Map.of("first_name", "Ada"),
+                null, null, null, null);
+
+        // When / Then
+        assertThat(UserChange.of(untimed, 1234L, jsonMapper)).map(UserChange::time).contains(1234L);
+    }
+}
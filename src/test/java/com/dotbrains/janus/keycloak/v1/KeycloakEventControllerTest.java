@@ -0,0 +1,181 @@
+package com.dotbrains.janus.keycloak.v1;
+
+import com.dotbrains.janus.keycloak.KeycloakEvent;
+import com.dotbrains.janus.keycloak.KeycloakEventBatcher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("KeycloakEventController Unit Tests")
+class KeycloakEventControllerTest {
+
+    private static final String SECRET = "webhook-secret";
+    private static final byte[] EVENT = """
+            {"time":1700000000000,"type":"UPDATE_PROFILE","userId":"kc-1","details":{"first_name":"Ada"}}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private KeycloakEventBatcher batcher;
+
+    private static final Instant NOW = Instant.parse("2025-01-13T09:30:00Z");
+    private static final String TIMESTAMP = String.valueOf(NOW.getEpochSecond());
+
+    private KeycloakEventController controller(boolean enabled) {
+        return new KeycloakEventController(batcher, JsonMapper.builder().build(), enabled, SECRET,
+                Duration.ofMinutes(5), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private static String sign(byte[] body) throws Exception {
+        return sign(TIMESTAMP, body);
+    }
+
+    private static String sign(String timestamp, byte[] body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update((timestamp + ".").getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(mac.doFinal(body));
+    }
+
+    @Test
+    @DisplayName("Should accept a signed event")
+    @SuppressWarnings("unchecked")
+    void shouldAcceptSignedEvent() throws Exception {
+        // Given
+        when(batcher.submit(anyList())).thenReturn(true);
+
+        // When
+        ResponseEntity<Map<String, Object>> response = controller(true).submitEvents("sha256=" + sign(EVENT), TIMESTAMP, EVENT);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(response.getBody()).containsEntry("accepted", 1);
+        ArgumentCaptor<List<KeycloakEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(batcher).submit(events.capture());
+        assertThat(events.getValue()).singleElement()
+                .satisfies(event -> assertThat(event.details()).containsEntry("first_name", "Ada"));
+    }
+
+    @Test
+    @DisplayName("Should reject a missing or wrong signature")
+    void shouldRejectBadSignature() throws Exception {
+        // When / Then
+        assertThat(controller(true).submitEvents(null, TIMESTAMP, EVENT).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(controller(true).submitEvents(sign("other".getBytes(StandardCharsets.UTF_8)), TIMESTAMP, EVENT).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(controller(true).submitEvents("not-hex", TIMESTAMP, EVENT).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        verifyNoInteractions(batcher);
+    }
+
+    @Test
+    @DisplayName("Should reject a replayed request outside the allowed clock skew")
+    void shouldRejectStaleTimestamp() throws Exception {
+        // Given
+        String stale = String.valueOf(NOW.minus(Duration.ofMinutes(6)).getEpochSecond());
+
+        // When
+        ResponseEntity<Map<String, Object>> response = controller(true).submitEvents(sign(stale, EVENT), stale, EVENT);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(response.getBody()).containsEntry("error", "Expired signature");
+        assertThat(controller(true).submitEvents(sign(EVENT), null, EVENT).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(controller(true).submitEvents(sign(EVENT), stale, EVENT).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        verifyNoInteractions(batcher);
+    }
+
+    @Test
+    @DisplayName("Should answer 413 for more events than the backlog can hold")
+    void shouldRejectOversizedRequest() throws Exception {
+        // Given
+        when(batcher.submit(anyList())).thenThrow(new IllegalArgumentException("More than 2 Keycloak events in one request"));
+
+        // When
+        ResponseEntity<Map<String, Object>> response = controller(true).submitEvents(sign(EVENT), TIMESTAMP, EVENT);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONTENT_TOO_LARGE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed body")
+    void shouldRejectMalformedBody() throws Exception {
+        // Given
+        byte[] body = "{\"type\":".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        ResponseEntity<Map<String, Object>> response = controller(true).submitEvents(sign(body), TIMESTAMP, body);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verifyNoInteractions(batcher);
+    }
+
+    @Test
+    @DisplayName("Should reject an event whose representation cannot be read")
+    void shouldRejectUnreadableRepresentation() throws Exception {
+        // Given
+        JacksonException unreadable = catchThrowableOfType(JacksonException.class,
+                () -> JsonMapper.builder().build().readTree("{\"username\":"));
+        when(batcher.submit(anyList())).thenThrow(unreadable);
+
+        // When
+        ResponseEntity<Map<String, Object>> response = controller(true).submitEvents(sign(EVENT), TIMESTAMP, EVENT);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).containsEntry("error", "Malformed Keycloak event");
+    }
+
+    @Test
+    @DisplayName("Should ask the sender to retry when the backlog is full")
+    void shouldAskToRetryWhenBacklogIsFull() throws Exception {
+        // Given
+        when(batcher.submit(anyList())).thenReturn(false);
+
+        // When
+        ResponseEntity<Map<String, Object>> response = controller(true).submitEvents(sign(EVENT), TIMESTAMP, EVENT);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    @DisplayName("Should answer 404 while disabled")
+    void shouldAnswerNotFoundWhileDisabled() throws Exception {
+        // When
+        ResponseEntity<Map<String, Object>> response = controller(false).submitEvents(sign(EVENT), TIMESTAMP, EVENT);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        verifyNoInteractions(batcher);
+    }
+}
@@ -0,0 +1,128 @@
+package com.dotbrains.janus.logging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SampledLogger Unit Tests")
+class SampledLoggerTest {
+
+    private Logger log;
+
+    @BeforeEach
+    void setUp() {
+        log = mock(Logger.class);
+        when(log.isWarnEnabled()).thenReturn(true);
+        when(log.isInfoEnabled()).thenReturn(true);
+        // One event per second with a burst of three, so a test never earns a new token
+        SampledLogger.configure(1, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SampledLogger.configure(SampledLogger.DEFAULT_RATE_PER_SECOND, SampledLogger.DEFAULT_BURST);
+    }
+
+    @Test
+    @DisplayName("Should log the burst and count the rest as suppressed")
+    void shouldLogBurstAndSuppressRest() {
+        // Given
+        SampledLogger sampled = SampledLogger.of(log, "test.burst");
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            sampled.warn("Event {}", i);
+        }
+
+        // Then
+        verify(log, times(3)).warn(eq("Event {}"), any(Object[].class));
+        assertThat(sampled.totalSuppressed()).isEqualTo(7);
+        assertThat(sampled.drainSuppressed()).isEqualTo(7);
+        assertThat(sampled.drainSuppressed()).isZero();
+        assertThat(sampled.totalSuppressed()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Should neither log nor count events of a disabled level")
+    void shouldIgnoreDisabledLevel() {
+        // Given
+        SampledLogger sampled = SampledLogger.of(log, "test.disabled");
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            sampled.debug("Event {}", i);
+        }
+
+        // Then
+        verify(log, never()).debug(anyString(), any(Object[].class));
+        assertThat(sampled.totalSuppressed()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should hand out exactly the burst across concurrent callers")
+    void shouldHandOutBurstAcrossThreads() throws InterruptedException {
+        // Given
+        SampledLogger sampled = SampledLogger.of(log, "test.concurrent");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        for (int i = 0; i < 8_000; i++) {
+            executor.execute(() -> sampled.info("Event"));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        long logged = 8_000 - sampled.totalSuppressed();
+        assertThat(logged).isBetween(3L, 4L);
+    }
+
+    @Test
+    @DisplayName("Should return the same logger for a category")
+    void shouldReturnSameLoggerForCategory() {
+        assertThat(SampledLogger.of(log, "test.same")).isSameAs(SampledLogger.of(mock(Logger.class), "test.same"));
+    }
+
+    @Test
+    @DisplayName("Should reject non-positive limits")
+    void shouldRejectNonPositiveLimits() {
+        assertThatThrownBy(() -> SampledLogger.configure(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SampledLogger.configure(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should report suppressed events once and expose the total as a metric")
+    void shouldReportSuppressedEvents() {
+        // Given
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SampledLogReporter reporter = new SampledLogReporter(meterRegistry, 1, 3);
+        SampledLogger sampled = SampledLogger.of(log, "test.report");
+        for (int i = 0; i < 5; i++) {
+            sampled.warn("Event");
+        }
+
+        // When
+        reporter.report();
+        reporter.report();
+
+        // Then
+        verify(log, times(1)).info("Suppressed {} '{}' log events since the last report", 2L, "test.report");
+        assertThat(meterRegistry.get("janus.log.suppressed").tag("category", "test.report")
+                .functionCounter().count()).isEqualTo(2.0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.dotbrains.janus.ratelimit;
+
+import com.dotbrains.janus.ratelimit.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("AdaptiveConcurrencyLimiter Unit Tests")
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private MeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = limiter(true, 8);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(boolean enabled, int initialLimit) {
+        return new AdaptiveConcurrencyLimiter(meterRegistry, enabled, initialLimit, 2, 16,
+                Duration.ofMillis(250), 0.5, 0.5);
+    }
+
+    @Test
+    @DisplayName("Should shed normal requests at their share of the limit and critical ones at the limit")
+    void shouldShedByPriority() {
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire(Priority.NORMAL)).isTrue();
+        }
+
+        // Then
+        assertThat(limiter.tryAcquire(Priority.NORMAL)).isFalse();
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire(Priority.CRITICAL)).isTrue();
+        }
+        assertThat(limiter.tryAcquire(Priority.CRITICAL)).isFalse();
+        assertThat(limiter.inFlight()).isEqualTo(8);
+        assertThat(meterRegistry.get("janus.concurrency.rejected").tag("priority", "normal")
+                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should admit again after release")
+    void shouldAdmitAfterRelease() {
+        // Given
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire(Priority.CRITICAL);
+        }
+
+        // When
+        limiter.release();
+
+        // Then
+        assertThat(limiter.tryAcquire(Priority.CRITICAL)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should cut the limit on slow or dropped calls down to the minimum")
+    void shouldCutLimitOnSlowCalls() {
+        // When
+        limiter.onSample(SLOW, false);
+
+        // Then
+        assertThat(limiter.limit()).isEqualTo(4);
+        limiter.onSample(FAST, true);
+        assertThat(limiter.limit()).isEqualTo(2);
+        limiter.onSample(SLOW, false);
+        assertThat(limiter.limit()).isEqualTo(2);
+        assertThat(meterRegistry.get("janus.concurrency.limit").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should grow the limit on fast calls only while it is in use")
+    void shouldGrowLimitWhileInUse() {
+        // Given
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(FAST, false);
+        }
+        assertThat(limiter.limit()).isEqualTo(8);
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire(Priority.CRITICAL);
+        }
+        for (int i = 0; i < 200; i++) {
+            limiter.onSample(FAST, false);
+        }
+
+        // Then
+        assertThat(limiter.limit()).isEqualTo(16);
+    }
+
+    @Test
+    @DisplayName("Should admit everything when disabled")
+    void shouldAdmitEverythingWhenDisabled() {
+        // Given
+        AdaptiveConcurrencyLimiter disabled = limiter(false, 2);
+
+        // When / Then
+        for (int i = 0; i < 10; i++) {
+            assertThat(disabled.tryAcquire(Priority.NORMAL)).isTrue();
+        }
+        disabled.onSample(SLOW, true);
+        assertThat(disabled.limit()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should reject inconsistent limits")
+    void shouldRejectInconsistentLimits() {
+        assertThatThrownBy(() -> limiter(true, 32)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
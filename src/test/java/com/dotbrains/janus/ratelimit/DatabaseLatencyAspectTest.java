@@ -0,0 +1,78 @@
+package com.dotbrains.janus.ratelimit;
+
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.token.UserClaimsTable;
+import com.dotbrains.janus.user.UserAttributes;
+import com.dotbrains.janus.user.UserChanges;
+import com.dotbrains.janus.user.UserRepository;
+import com.dotbrains.janus.user.UserService;
+import com.dotbrains.janus.user.UserVersion;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DatabaseLatencyAspect Unit Tests")
+class DatabaseLatencyAspectTest {
+
+    @Mock
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new UserService(userRepository,
+                mock(EntityManager.class), mock(AuditLog.class), mock(Realms.class), mock(UserChanges.class),
+                mock(UserClaimsTable.class), mock(UserAttributes.class)));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new DatabaseLatencyAspect(concurrencyLimiter));
+        userService = proxyFactory.getProxy();
+    }
+
+    @Test
+    @DisplayName("Should sample the latency of request-path calls")
+    void shouldSampleRequestPathCalls() {
+        // Given
+        when(userRepository.findVersionByKeycloakId("kc-123")).thenReturn(Optional.of(new UserVersion(1L, 3)));
+
+        // When
+        userService.findVersionByKeycloakId("kc-123");
+
+        // Then
+        verify(concurrencyLimiter).onSample(anyLong(), eq(false));
+    }
+
+    @Test
+    @DisplayName("Should not sample background work")
+    void shouldNotSampleBackgroundWork() {
+        // Given
+        when(userRepository.streamActiveUsersWithRolesByRecentActivity()).thenReturn(Stream.empty());
+
+        // When
+        userService.forEachRecentlyActiveUser(100, user -> true);
+        userService.findActiveVersionsByIds(List.of());
+        userService.deactivateUsers(List.of());
+
+        // Then
+        verify(concurrencyLimiter, never()).onSample(anyLong(), anyBoolean());
+    }
+}
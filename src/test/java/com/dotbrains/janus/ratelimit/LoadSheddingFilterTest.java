@@ -0,0 +1,93 @@
+package com.dotbrains.janus.ratelimit;
+
+import com.dotbrains.janus.ratelimit.AdaptiveConcurrencyLimiter.Priority;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LoadSheddingFilter Unit Tests")
+class LoadSheddingFilterTest {
+
+    @Mock
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Mock
+    private FilterChain chain;
+
+    @InjectMocks
+    private LoadSheddingFilter loadSheddingFilter;
+
+    @Test
+    @DisplayName("Should shed a request with 503 and Retry-After at the limit")
+    void shouldShedAtLimit() throws Exception {
+        // Given
+        when(concurrencyLimiter.tryAcquire(Priority.NORMAL)).thenReturn(false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        loadSheddingFilter.doFilter(new MockHttpServletRequest("GET", "/api/v1/users/john.doe"), response, chain);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(response.getContentAsString()).contains("\"status\":503");
+        verify(chain, never()).doFilter(any(), any());
+        verify(concurrencyLimiter, never()).release();
+    }
+
+    @Test
+    @DisplayName("Should release the slot even when the request fails")
+    void shouldReleaseSlotWhenRequestFails() throws Exception {
+        // Given
+        when(concurrencyLimiter.tryAcquire(Priority.CRITICAL)).thenReturn(true);
+        doThrow(new IOException("client gone")).when(chain).doFilter(any(), any());
+
+        // When
+        try {
+            loadSheddingFilter.doFilter(new MockHttpServletRequest("GET", "/api/v1/auth/user"),
+                    new MockHttpServletResponse(), chain);
+        } catch (IOException expected) {
+            // propagated to the container
+        }
+
+        // Then
+        verify(concurrencyLimiter).release();
+    }
+
+    @Test
+    @DisplayName("Should not limit health and documentation requests")
+    void shouldNotLimitUnrelatedRequests() throws Exception {
+        // When
+        loadSheddingFilter.doFilter(new MockHttpServletRequest("GET", "/api/v1/auth/health"),
+                new MockHttpServletResponse(), chain);
+        loadSheddingFilter.doFilter(new MockHttpServletRequest("GET", "/v3/api-docs"),
+                new MockHttpServletResponse(), chain);
+
+        // Then
+        verify(chain, times(2)).doFilter(any(), any());
+        verifyNoInteractions(concurrencyLimiter);
+    }
+
+    @Test
+    @DisplayName("Should prioritize login and token endpoints over user administration")
+    void shouldPrioritizeAuthOverUserAdministration() {
+        assertThat(LoadSheddingFilter.priorityOf("/api/v1/auth/token")).isEqualTo(Priority.CRITICAL);
+        assertThat(LoadSheddingFilter.priorityOf("/login/oauth2/code/keycloak")).isEqualTo(Priority.CRITICAL);
+        assertThat(LoadSheddingFilter.priorityOf("/api/v1/users/keycloak/kc-123")).isEqualTo(Priority.NORMAL);
+        assertThat(LoadSheddingFilter.priorityOf("/api/v1/auth/refresh")).isNull();
+    }
+}
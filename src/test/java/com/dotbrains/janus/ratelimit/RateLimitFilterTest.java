@@ -0,0 +1,118 @@
+package com.dotbrains.janus.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@DisplayName("RateLimitFilter Unit Tests")
+class RateLimitFilterTest {
+
+    private RateLimitFilter rateLimitFilter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimiter rateLimiter = new RateLimiter(new RateLimitProperties(true, 1024, List.of(
+                new RateLimitProperties.Route("current-user", "/api/v1/auth/user",
+                        RateLimitProperties.KeyType.SUBJECT, 1, 1))), new SimpleMeterRegistry());
+        rateLimitFilter = new RateLimitFilter(rateLimiter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticate(String subject) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject(subject)
+                .claim("azp", "janus-client")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt, List.of()));
+    }
+
+    private MockHttpServletResponse call(String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request, response, mock(FilterChain.class));
+        return response;
+    }
+
+    @Test
+    @DisplayName("Should reject requests over the limit with 429 and Retry-After")
+    void shouldRejectOverLimitWith429() throws Exception {
+        // Given
+        authenticate("kc-123");
+
+        // When
+        MockHttpServletResponse first = call("/api/v1/auth/user");
+        MockHttpServletResponse second = call("/api/v1/auth/user");
+
+        // Then
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(second.getStatus()).isEqualTo(429);
+        assertThat(second.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(second.getContentAsString()).contains("\"status\":429", "\"path\":\"/api/v1/auth/user\"");
+    }
+
+    @Test
+    @DisplayName("Should count each subject separately")
+    void shouldCountSubjectsSeparately() throws Exception {
+        // When
+        authenticate("kc-123");
+        call("/api/v1/auth/user");
+        authenticate("kc-456");
+        MockHttpServletResponse other = call("/api/v1/auth/user");
+
+        // Then
+        assertThat(other.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Should pass unlimited routes through")
+    void shouldPassUnlimitedRoutesThrough() throws Exception {
+        // Given
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/auth/health");
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            rateLimitFilter.doFilter(request, new MockHttpServletResponse(), chain);
+        }
+
+        // Then
+        verify(chain, times(5)).doFilter(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should key by token claims and fall back to the remote address")
+    void shouldKeyByTokenClaimsOrAddress() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/auth/user");
+        request.setRemoteAddr("203.0.113.7");
+
+        // When / Then
+        assertThat(RateLimitFilter.keyOf(RateLimitProperties.KeyType.SUBJECT, request)).isEqualTo("ip:203.0.113.7");
+        authenticate("kc-123");
+        assertThat(RateLimitFilter.keyOf(RateLimitProperties.KeyType.SUBJECT, request)).isEqualTo("sub:kc-123");
+        assertThat(RateLimitFilter.keyOf(RateLimitProperties.KeyType.CLIENT, request)).isEqualTo("client:janus-client");
+        assertThat(RateLimitFilter.keyOf(RateLimitProperties.KeyType.IP, request)).isEqualTo("ip:203.0.113.7");
+    }
+}
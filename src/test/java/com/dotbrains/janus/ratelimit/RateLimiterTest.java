@@ -0,0 +1,116 @@
+package com.dotbrains.janus.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("RateLimiter Unit Tests")
+class RateLimiterTest {
+
+    private MeterRegistry meterRegistry;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new RateLimiter(new RateLimitProperties(true, 1024, List.of(
+                new RateLimitProperties.Route("current-user", "/api/v1/auth/user",
+                        RateLimitProperties.KeyType.SUBJECT, 1, 3),
+                new RateLimitProperties.Route("user-lookups", "/api/v1/users/**",
+                        RateLimitProperties.KeyType.CLIENT, 1, 2))), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should match the first route of a path")
+    void shouldMatchFirstRoute() {
+        assertThat(rateLimiter.routeFor("/api/v1/auth/user").name()).isEqualTo("current-user");
+        assertThat(rateLimiter.routeFor("/api/v1/users/keycloak/kc-123").name()).isEqualTo("user-lookups");
+        assertThat(rateLimiter.routeFor("/api/v1/auth/health")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should allow the burst of a key and then report the wait")
+    void shouldAllowBurstThenReject() {
+        // Given
+        RateLimiter.LimitedRoute route = rateLimiter.routeFor("/api/v1/auth/user");
+
+        // When / Then
+        for (int i = 0; i < 3; i++) {
+            assertThat(route.tryAcquire("sub:kc-123")).isZero();
+        }
+        assertThat(route.tryAcquire("sub:kc-123"))
+                .isPositive()
+                .isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(route.tryAcquire("sub:kc-456")).isZero();
+        assertThat(meterRegistry.get("janus.ratelimit.rejected").tag("route", "current-user")
+                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should keep buckets of routes apart")
+    void shouldKeepRoutesApart() {
+        // Given
+        RateLimiter.LimitedRoute lookups = rateLimiter.routeFor("/api/v1/users/john.doe");
+        lookups.tryAcquire("sub:kc-123");
+        lookups.tryAcquire("sub:kc-123");
+
+        // When / Then
+        assertThat(lookups.tryAcquire("sub:kc-123")).isPositive();
+        assertThat(rateLimiter.routeFor("/api/v1/auth/user").tryAcquire("sub:kc-123")).isZero();
+    }
+
+    @Test
+    @DisplayName("Should hand out exactly the burst across concurrent requests")
+    void shouldHandOutBurstAcrossThreads() throws InterruptedException {
+        // Given
+        RateLimiter.LimitedRoute route = rateLimiter.routeFor("/api/v1/auth/user");
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        for (int i = 0; i < 8_000; i++) {
+            executor.execute(() -> {
+                if (route.tryAcquire("sub:kc-123") == 0) {
+                    allowed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        assertThat(allowed.get()).isBetween(3, 4);
+    }
+
+    @Test
+    @DisplayName("Should limit nothing when disabled")
+    void shouldLimitNothingWhenDisabled() {
+        // When
+        RateLimiter disabled = new RateLimiter(new RateLimitProperties(false, 1024, List.of(
+                new RateLimitProperties.Route("current-user", "/api/v1/auth/user",
+                        RateLimitProperties.KeyType.SUBJECT, 1, 1))), meterRegistry);
+
+        // Then
+        assertThat(disabled.routeFor("/api/v1/auth/user")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject a route without a positive rate")
+    void shouldRejectRouteWithoutRate() {
+        assertThatThrownBy(() -> new RateLimiter(new RateLimitProperties(true, 1024, List.of(
+                new RateLimitProperties.Route("broken", "/api/**", RateLimitProperties.KeyType.IP, 0, 1))),
+                meterRegistry))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,100 @@
+package com.dotbrains.janus.realm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Realms Unit Tests")
+class RealmsTest {
+
+    private static final String JANUS_ISSUER = "http://localhost:8080/realms/janus";
+    private static final String PARTNERS_ISSUER = "http://localhost:8080/realms/partners";
+
+    private Realms realms;
+
+    @BeforeEach
+    void setUp() {
+        realms = new Realms(new RealmProperties("janus", List.of(
+                new RealmProperties.Realm("janus", JANUS_ISSUER, null),
+                new RealmProperties.Realm("partners", PARTNERS_ISSUER, null))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticate(String issuer) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .claim("iss", issuer)
+                .claim("sub", "kc-123")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    @Test
+    @DisplayName("Should use the default realm without an authenticated token")
+    void shouldUseDefaultRealmWhenUnauthenticated() {
+        // Then
+        assertThat(realms.current()).isEqualTo("janus");
+    }
+
+    @Test
+    @DisplayName("Should resolve the realm from the issuer of the authenticated token")
+    void shouldResolveRealmFromTokenIssuer() {
+        // Given
+        authenticate(PARTNERS_ISSUER);
+
+        // Then
+        assertThat(realms.current()).isEqualTo("partners");
+    }
+
+    @Test
+    @DisplayName("Should prefer an explicit realm and restore the previous one afterwards")
+    void shouldPreferExplicitRealm() {
+        // Given
+        authenticate(PARTNERS_ISSUER);
+
+        // When
+        String inside = realms.callAs("janus", realms::current);
+
+        // Then
+        assertThat(inside).isEqualTo("janus");
+        assertThat(realms.current()).isEqualTo("partners");
+    }
+
+    @Test
+    @DisplayName("Should list each realm name once, default first")
+    void shouldListRealmNames() {
+        // Then
+        assertThat(realms.names()).containsExactly("janus", "partners");
+        assertThat(realms.realmOf("http://evil.example/realms/janus")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject an issuer listed twice")
+    void shouldRejectDuplicateIssuer() {
+        // Given
+        RealmProperties properties = new RealmProperties("janus", List.of(
+                new RealmProperties.Realm("janus", JANUS_ISSUER, null),
+                new RealmProperties.Realm("other", JANUS_ISSUER, null)));
+
+        // Then
+        assertThatThrownBy(() -> new Realms(properties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(JANUS_ISSUER);
+    }
+}
@@ -0,0 +1,43 @@
+package com.dotbrains.janus.relay;
+
+import com.dotbrains.janus.user.UserChanges;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("FileSink Unit Tests")
+class FileSinkTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Should append each batch as JSON lines, creating the directory")
+    void shouldAppendJsonLines() throws Exception {
+        // Given
+        Path file = dir.resolve("relay/user-changes.ndjson");
+        FileSink sink = new FileSink(JsonMapper.builder().build(), file.toString());
+        Instant changedAt = Instant.parse("2024-06-01T12:30:00Z");
+
+        // When
+        sink.deliver(List.of(
+                new UserChangeMessage(1, "janus", "kc-1", UserChanges.Type.UPDATED, changedAt),
+                new UserChangeMessage(2, "janus", "kc-2", UserChanges.Type.DEACTIVATED, changedAt)));
+        sink.deliver(List.of(new UserChangeMessage(3, "partners", "kc-3", UserChanges.Type.UPDATED, changedAt)));
+
+        // Then
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(3);
+        assertThat(lines.getFirst()).isEqualTo(
+                "{\"seq\":1,\"realm\":\"janus\",\"keycloakId\":\"kc-1\",\"type\":\"UPDATED\",\"changedAt\":\"2024-06-01T12:30:00Z\"}");
+        assertThat(lines.get(2)).contains("\"seq\":3", "\"realm\":\"partners\"");
+    }
+}
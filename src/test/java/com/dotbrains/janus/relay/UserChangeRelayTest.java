@@ -0,0 +1,233 @@
+package com.dotbrains.janus.relay;
+
+import com.dotbrains.janus.user.UserChangeOutbox;
+import com.dotbrains.janus.user.UserChanges;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserChangeRelay Unit Tests")
+class UserChangeRelayTest {
+
+    private static final Duration LEASE = Duration.ofSeconds(30);
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Mock
+    private UserChangeOutbox outbox;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MutableClock clock;
+    private RecordingSink first;
+    private RecordingSink second;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock();
+        first = new RecordingSink("log");
+        second = new RecordingSink("webhook");
+    }
+
+    private UserChangeRelay relay(boolean enabled, List<String> sinkNames, int batchSize) {
+        return new UserChangeRelay(outbox, List.of(first, second), meterRegistry, enabled, sinkNames, batchSize, LEASE, clock);
+    }
+
+    private static List<UserChanges.Change> changes(long from, long to) {
+        return LongStream.rangeClosed(from, to)
+                .mapToObj(seq -> new UserChanges.Change(seq, "janus", "kc-" + seq, UserChanges.Type.UPDATED, 1000))
+                .toList();
+    }
+
+    @Test
+    @DisplayName("Should deliver claimed batches to every sink and mark them relayed until none are left")
+    void shouldRelayBatchesUntilDrained() {
+        // Given
+        UserChangeRelay relay = relay(true, List.of("log", "webhook"), 2);
+        when(outbox.claim(2, LEASE)).thenReturn(changes(1, 2), changes(3, 3));
+
+        // When
+        relay.relay();
+
+        // Then
+        assertThat(first.received).extracting(UserChangeMessage::seq).containsExactly(1L, 2L, 3L);
+        assertThat(second.received).extracting(UserChangeMessage::seq).containsExactly(1L, 2L, 3L);
+        verify(outbox).markRelayed(List.of(1L, 2L));
+        verify(outbox).markRelayed(List.of(3L));
+        verify(outbox, times(2)).claim(2, LEASE);
+        assertThat(meterRegistry.get("janus.changes.relay.relayed").counter().count()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("janus.changes.relay.batch").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should leave a refused batch claimed for redelivery and stop the run")
+    void shouldNotMarkRefusedBatch() {
+        // Given
+        UserChangeRelay relay = relay(true, List.of("log", "webhook"), 2);
+        second.failure = new IOException("502 Bad Gateway");
+        when(outbox.claim(2, LEASE)).thenReturn(changes(1, 2));
+
+        // When
+        relay.relay();
+
+        // Then
+        assertThat(first.received).hasSize(2);
+        verify(outbox, times(1)).claim(anyInt(), any());
+        verify(outbox, never()).markRelayed(anyCollection());
+        assertThat(meterRegistry.get("janus.changes.relay.failed").tag("sink", "webhook").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should not claim further batches until the lease of a refused one runs out")
+    void shouldPauseAfterRefusedBatch() {
+        // Given
+        UserChangeRelay relay = relay(true, List.of("log", "webhook"), 2);
+        second.failure = new IOException("502 Bad Gateway");
+        when(outbox.claim(2, LEASE)).thenReturn(changes(1, 2), changes(1, 1));
+        relay.relay();
+
+        // When
+        clock.advanceSeconds(LEASE.toSeconds() - 1);
+        relay.relay();
+        second.failure = null;
+        clock.advanceSeconds(1);
+        relay.relay();
+
+        // Then
+        verify(outbox, times(2)).claim(2, LEASE);
+        assertThat(second.received).extracting(UserChangeMessage::seq).containsExactly(1L);
+        verify(outbox).markRelayed(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("Should only use the sinks it is configured with")
+    void shouldUseSelectedSinks() {
+        // Given
+        UserChangeRelay relay = relay(true, List.of(" webhook ", "webhook"), 10);
+        when(outbox.claim(10, LEASE)).thenReturn(changes(1, 1));
+
+        // When
+        relay.relay();
+
+        // Then
+        assertThat(first.received).isEmpty();
+        assertThat(second.received).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should not claim anything while disabled")
+    void shouldDoNothingWhileDisabled() {
+        // When
+        relay(false, List.of("log"), 10).relay();
+
+        // Then
+        verifyNoInteractions(outbox);
+    }
+
+    @Test
+    @DisplayName("Should survive an unreachable database")
+    void shouldSurviveDatabaseFailure() {
+        // Given
+        UserChangeRelay relay = relay(true, List.of("log"), 10);
+        when(outbox.claim(10, LEASE)).thenThrow(new QueryTimeoutException("timeout"));
+
+        // When
+        relay.relay();
+
+        // Then
+        assertThat(first.received).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should refuse unknown, missing or unconfigured sinks at startup")
+    void shouldValidateSinks() {
+        // Given
+        second.verifyFailure = new IllegalArgumentException("janus.changes.relay.webhook.url must be set");
+
+        // Then
+        assertThatThrownBy(() -> relay(true, List.of("kafka"), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown sink kafka");
+        assertThatThrownBy(() -> relay(true, List.of(), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> relay(true, List.of("webhook"), 10))
+                .hasMessageContaining("webhook.url");
+        assertThat(relay(false, List.of("webhook"), 10)).isNotNull();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = NOW;
+
+        void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static final class RecordingSink implements UserChangeSink {
+
+        private final String name;
+        private final List<UserChangeMessage> received = new ArrayList<>();
+        private IOException failure;
+        private RuntimeException verifyFailure;
+
+        private RecordingSink(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void verify() {
+            if (verifyFailure != null) {
+                throw verifyFailure;
+            }
+        }
+
+        @Override
+        public void deliver(List<UserChangeMessage> changes) throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            received.addAll(changes);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.dotbrains.janus.relay;
+
+import com.dotbrains.janus.user.UserChanges;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("WebhookSink Unit Tests")
+class WebhookSinkTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final AtomicReference<byte[]> body = new AtomicReference<>();
+    private final AtomicReference<String> signature = new AtomicReference<>();
+    private final AtomicInteger status = new AtomicInteger(204);
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hook", exchange -> {
+            body.set(exchange.getRequestBody().readAllBytes());
+            signature.set(exchange.getRequestHeaders().getFirst(WebhookSink.SIGNATURE_HEADER));
+            exchange.sendResponseHeaders(status.get(), -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private WebhookSink sink(String secret) {
+        return new WebhookSink(jsonMapper, "http://127.0.0.1:" + server.getAddress().getPort() + "/hook",
+                secret, Duration.ofSeconds(5));
+    }
+
+    private static List<UserChangeMessage> changes() {
+        return List.of(new UserChangeMessage(7, "janus", "kc-7", UserChanges.Type.DEACTIVATED,
+                Instant.parse("2024-06-01T12:30:00Z")));
+    }
+
+    @Test
+    @DisplayName("Should POST the batch as a JSON array signed with the secret")
+    void shouldPostSignedBatch() throws Exception {
+        // When
+        sink("s3cret").deliver(changes());
+
+        // Then
+        assertThat(new String(body.get(), StandardCharsets.UTF_8))
+                .startsWith("[{\"seq\":7,\"realm\":\"janus\",\"keycloakId\":\"kc-7\",\"type\":\"DEACTIVATED\"");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("s3cret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        assertThat(signature.get()).isEqualTo("sha256=" + HexFormat.of().formatHex(mac.doFinal(body.get())));
+    }
+
+    @Test
+    @DisplayName("Should send no signature without a secret")
+    void shouldNotSignWithoutSecret() throws Exception {
+        // When
+        sink("").deliver(changes());
+
+        // Then
+        assertThat(body.get()).isNotEmpty();
+        assertThat(signature.get()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should fail the batch when the webhook does not answer 2xx")
+    void shouldFailOnErrorStatus() {
+        // Given
+        status.set(503);
+
+        // Then
+        assertThatThrownBy(() -> sink("").deliver(changes()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Webhook refused 1 user changes");
+    }
+
+    @Test
+    @DisplayName("Should refuse to be selected without a URL")
+    void shouldRequireUrl() {
+        // Then
+        assertThatThrownBy(() -> new WebhookSink(jsonMapper, "", "", Duration.ofSeconds(5)).verify())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("janus.changes.relay.webhook.url");
+    }
+}
@@ -0,0 +1,88 @@
+package com.dotbrains.janus.resilience;
+
+import com.dotbrains.janus.resilience.DatabaseCircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("DatabaseCircuitBreaker Unit Tests")
+class DatabaseCircuitBreakerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Should open after consecutive failures and reject calls")
+    void shouldOpenAfterConsecutiveFailures() {
+        // Given
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(meterRegistry, 3, Duration.ofMinutes(1));
+
+        // When
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        breaker.onFailure();
+
+        // Then
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(meterRegistry.get("janus.db.circuit.state").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should let one trial call through after the open duration")
+    void shouldAllowOneTrialCallWhenHalfOpen() {
+        // Given
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(meterRegistry, 1, Duration.ZERO);
+        breaker.onFailure();
+
+        // When / Then
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reopen when the trial call fails")
+    void shouldReopenWhenTrialFails() {
+        // Given
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(meterRegistry, 1, Duration.ZERO);
+        breaker.onFailure();
+        breaker.tryAcquire();
+
+        // When
+        breaker.onFailure();
+
+        // Then
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    @DisplayName("Should only count connection failures")
+    void shouldOnlyCountConnectionFailures() {
+        assertThat(CircuitBreakerAspect.isConnectionFailure(new CannotCreateTransactionException("pool timeout")))
+                .isTrue();
+        assertThat(CircuitBreakerAspect.isConnectionFailure(new QueryTimeoutException("timeout"))).isTrue();
+        assertThat(CircuitBreakerAspect.isConnectionFailure(new DataIntegrityViolationException("duplicate")))
+                .isFalse();
+    }
+}
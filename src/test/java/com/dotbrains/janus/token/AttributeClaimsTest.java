@@ -0,0 +1,74 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("AttributeClaims Unit Tests")
+class AttributeClaimsTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private AttributeClaims attributeClaims(AttributeClaimsProperties.Claim... claims) {
+        return new AttributeClaims(new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000),
+                jsonMapper, new AttributeClaimsProperties(List.of(claims)));
+    }
+
+    @Test
+    @DisplayName("Should compile JSON paths to JSON pointers")
+    void shouldCompileJsonPaths() {
+        assertThat(AttributeClaims.compile("$.location.city")).hasToString("/location/city");
+        assertThat(AttributeClaims.compile("$['cost-center']")).hasToString("/cost-center");
+        assertThat(AttributeClaims.compile("$[\"a/b\"].managers[0]")).hasToString("/a~1b/managers/0");
+        assertThatThrownBy(() -> AttributeClaims.compile("$")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AttributeClaims.compile("location.city")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AttributeClaims.compile("$..city")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AttributeClaims.compile("$.managers[*]")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should map configured paths to claims, leaving out absent and null values")
+    void shouldMapConfiguredPathsToClaims() {
+        // Given
+        AttributeClaims attributeClaims = attributeClaims(
+                new AttributeClaimsProperties.Claim("city", "$.location.city"),
+                new AttributeClaimsProperties.Claim("manager", "$.managers[0]"),
+                new AttributeClaimsProperties.Claim("clearance", "$.clearance"),
+                new AttributeClaimsProperties.Claim("badge", "$.badge"),
+                new AttributeClaimsProperties.Claim("location", "$.location"));
+        User user = User.builder().id(1L).version(1)
+                .attributes("{\"location\":{\"city\":\"Oslo\"},\"managers\":[\"kc-7\"],\"clearance\":null}")
+                .build();
+
+        // When
+        Map<String, Object> claims = attributeClaims.claimsOf(user);
+
+        // Then
+        assertThat(claims).containsExactly(
+                Map.entry("city", "Oslo"),
+                Map.entry("manager", "kc-7"),
+                Map.entry("location", Map.of("city", "Oslo")));
+    }
+
+    @Test
+    @DisplayName("Should reject claim names that are blank, standard or repeated")
+    void shouldRejectInvalidClaimNames() {
+        assertThatThrownBy(() -> attributeClaims(new AttributeClaimsProperties.Claim(" ", "$.a")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> attributeClaims(new AttributeClaimsProperties.Claim("email", "$.a")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> attributeClaims(
+                new AttributeClaimsProperties.Claim("site", "$.a"),
+                new AttributeClaimsProperties.Claim("site", "$.b")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
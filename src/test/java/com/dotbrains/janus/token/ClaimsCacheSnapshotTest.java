@@ -0,0 +1,117 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ClaimsCacheSnapshot Unit Tests")
+class ClaimsCacheSnapshotTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Mock
+    private UserService userService;
+
+    @TempDir
+    private Path directory;
+
+    private EncodedClaimsCache before;
+    private EncodedClaimsCache after;
+
+    @BeforeEach
+    void setUp() {
+        before = new EncodedClaimsCache(jsonMapper, new SimpleMeterRegistry(), 1024 * 1024);
+        after = new EncodedClaimsCache(jsonMapper, new SimpleMeterRegistry(), 1024 * 1024);
+    }
+
+    private ClaimsCacheSnapshot snapshot(EncodedClaimsCache cache, boolean enabled) {
+        return new ClaimsCacheSnapshot(cache, userService, jsonMapper, enabled, directory.resolve("claims.snapshot"));
+    }
+
+    private static User user(long id, int version) {
+        return User.builder().id(id).keycloakId("kc-" + id).version(version).build();
+    }
+
+    @Test
+    @DisplayName("Should restore only claims whose user version is unchanged")
+    void shouldRestoreOnlyCurrentClaims() {
+        // Given
+        before.put(user(1L, 1), Map.of("department", "Engineering"));
+        before.put(user(2L, 4), Map.of("department", "Sales"));
+        before.put(user(3L, 2), Map.of("department", "Finance"));
+        snapshot(before, true).save();
+        when(userService.findActiveVersionsByIds(any())).thenReturn(Map.of(1L, 1, 2L, 5));
+
+        // When
+        snapshot(after, true).restore();
+
+        // Then
+        assertThat(after.get(1L, 1)).isNotNull();
+        assertThat(new String(after.get(1L, 1).toJson())).isEqualTo("{\"department\":\"Engineering\"}");
+        assertThat(after.get(2L, 4)).isNull();
+        assertThat(after.get(3L, 2)).isNull();
+        verify(userService).findActiveVersionsByIds(argThat(ids -> ids.size() == 3));
+    }
+
+    @Test
+    @DisplayName("Should start cold when the snapshot cannot be validated")
+    void shouldStartColdWhenValidationFails() {
+        // Given
+        before.put(user(1L, 1), Map.of("department", "Engineering"));
+        snapshot(before, true).save();
+        when(userService.findActiveVersionsByIds(any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        // When
+        snapshot(after, true).restore();
+
+        // Then
+        assertThat(after.get(1L, 1)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should ignore a corrupt snapshot file")
+    void shouldIgnoreCorruptSnapshot() throws Exception {
+        // Given
+        Files.write(directory.resolve("claims.snapshot"), new byte[]{0x4A, 0x43, 0x43, 0x53, 0, 0, 0, 2, 0, 0, 0, 9, 0, 0});
+
+        // When
+        snapshot(after, true).restore();
+
+        // Then
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    @DisplayName("Should neither save nor restore when disabled")
+    void shouldDoNothingWhenDisabled() {
+        // Given
+        before.put(user(1L, 1), Map.of("department", "Engineering"));
+
+        // When
+        snapshot(before, false).save();
+        snapshot(after, false).restore();
+
+        // Then
+        assertThat(directory.resolve("claims.snapshot")).doesNotExist();
+        verifyNoInteractions(userService);
+    }
+}
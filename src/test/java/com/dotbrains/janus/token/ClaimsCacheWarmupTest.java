@@ -0,0 +1,143 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ClaimsCacheWarmup Unit Tests")
+class ClaimsCacheWarmupTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private TokenCustomizer tokenCustomizer;
+
+    private final Realms realms = new Realms(new RealmProperties("janus", List.of()));
+
+    private static List<User> users(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> User.builder().id((long) i).keycloakId("kc-" + i).version(0).build())
+                .toList();
+    }
+
+    private void streamUsers(List<User> users) {
+        when(userService.forEachRecentlyActiveUser(anyInt(), any())).thenAnswer(invocation -> {
+            Predicate<User> action = invocation.getArgument(1);
+            int visited = 0;
+            for (User user : users) {
+                visited++;
+                if (!action.test(user)) {
+                    break;
+                }
+            }
+            return visited;
+        });
+    }
+
+    @Test
+    @DisplayName("Should prewarm every recently active user on several threads")
+    void shouldPrewarmRecentlyActiveUsers() {
+        // Given
+        List<User> users = users(500);
+        streamUsers(users);
+        when(tokenCustomizer.prewarm(any())).thenReturn(true);
+        ClaimsCacheWarmup warmup = new ClaimsCacheWarmup(userService, tokenCustomizer, realms, true, 1000,
+                Duration.ofSeconds(10), 4);
+
+        // When
+        warmup.warmUp();
+
+        // Then
+        verify(userService).forEachRecentlyActiveUser(eq(1000), any());
+        users.forEach(user -> verify(tokenCustomizer).prewarm(user));
+    }
+
+    @Test
+    @DisplayName("Should warm each realm in turn within the shared user budget")
+    void shouldWarmEachRealm() {
+        // Given
+        Realms twoRealms = new Realms(new RealmProperties("janus", List.of(
+                new RealmProperties.Realm("partners", "http://localhost:8080/realms/partners", null))));
+        List<String> realmsSeen = new ArrayList<>();
+        when(userService.forEachRecentlyActiveUser(anyInt(), any())).thenAnswer(invocation -> {
+            realmsSeen.add(twoRealms.current());
+            return 300;
+        });
+        ClaimsCacheWarmup warmup = new ClaimsCacheWarmup(userService, tokenCustomizer, twoRealms, true, 1000,
+                Duration.ofSeconds(10), 2);
+
+        // When
+        warmup.warmUp();
+
+        // Then
+        assertThat(realmsSeen).containsExactly("janus", "partners");
+        verify(userService).forEachRecentlyActiveUser(eq(1000), any());
+        verify(userService).forEachRecentlyActiveUser(eq(700), any());
+    }
+
+    @Test
+    @DisplayName("Should stop reading users once the timeout has passed")
+    void shouldStopAtTimeout() {
+        // Given
+        List<User> users = users(100);
+        streamUsers(users);
+        ClaimsCacheWarmup warmup = new ClaimsCacheWarmup(userService, tokenCustomizer, realms, true, 1000,
+                Duration.ZERO, 2);
+
+        // When
+        warmup.warmUp();
+
+        // Then
+        verify(tokenCustomizer, never()).prewarm(any());
+    }
+
+    @Test
+    @DisplayName("Should finish without failing when the database is unavailable")
+    void shouldFinishWhenDatabaseIsUnavailable() {
+        // Given
+        when(userService.forEachRecentlyActiveUser(anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        ClaimsCacheWarmup warmup = new ClaimsCacheWarmup(userService, tokenCustomizer, realms, true, 1000,
+                Duration.ofSeconds(10), 2);
+
+        // When / Then
+        assertThatCode(warmup::warmUp).doesNotThrowAnyException();
+        verifyNoInteractions(tokenCustomizer);
+    }
+
+    @Test
+    @DisplayName("Should not read users when disabled")
+    void shouldNotReadUsersWhenDisabled() {
+        // Given
+        ClaimsCacheWarmup warmup = new ClaimsCacheWarmup(userService, tokenCustomizer, realms, false, 1000,
+                Duration.ofSeconds(10), 2);
+
+        // When
+        warmup.warmUp();
+
+        // Then
+        verifyNoInteractions(userService);
+    }
+}
@@ -1,13 +1,18 @@
 package com.dotbrains.janus.token;
 
+import com.dotbrains.janus.user.RoleRegistry;
 import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
 import com.dotbrains.janus.user.UserRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,7 +26,15 @@ class CustomClaimsMapperTest {
 
     @BeforeEach
     void setUp() {
-        claimsMapper = new CustomClaimsMapper();
+        // Registered as UserService.save would
+        RoleRegistry.getInstance().idOf("ADMIN");
+        RoleRegistry.getInstance().idOf("USER");
+
+        JsonMapper jsonMapper = JsonMapper.builder().build();
+        claimsMapper = new CustomClaimsMapper(new AttributeClaims(
+                new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000),
+                jsonMapper, new AttributeClaimsProperties(List.of(
+                        new AttributeClaimsProperties.Claim("cost_center", "$.costCenter")))));
 
         testUser = User.builder()
                 .id(1L)
@@ -189,4 +202,18 @@ void shouldCorrectlyEvaluateIsActiveSpelExpression() {
         // Then
         assertThat(claims).containsEntry("is_active", false);
     }
+
+    @Test
+    @DisplayName("Should add configured claims from the user's attributes")
+    void shouldAddConfiguredClaimsFromAttributes() {
+        // Given
+        testUser.setAttributes("{\"costCenter\":\"CC-42\",\"shift\":\"night\"}");
+
+        // When
+        Map<String, Object> claims = claimsMapper.mapUserToClaims(testUser);
+
+        // Then
+        assertThat(claims).containsEntry("cost_center", "CC-42");
+        assertThat(claims).doesNotContainKey("shift");
+    }
 }
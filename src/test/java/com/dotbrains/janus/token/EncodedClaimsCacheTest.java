@@ -0,0 +1,79 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.user.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("EncodedClaimsCache Unit Tests")
+class EncodedClaimsCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private EncodedClaimsCache claimsCache;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        claimsCache = new EncodedClaimsCache(JsonMapper.builder().build(), meterRegistry, 1024 * 1024);
+        testUser = User.builder()
+                .id(1L)
+                .keycloakId("kc-123")
+                .username("john.doe")
+                .version(2)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should return cached claims for the same version only")
+    void shouldReturnCachedClaimsForSameVersionOnly() {
+        // When
+        EncodedClaims encoded = claimsCache.put(testUser, Map.of("department", "Engineering"));
+
+        // Then
+        assertThat(claimsCache.get(1L, 2)).isSameAs(encoded);
+        assertThat(claimsCache.get(1L, 3)).isNull();
+        assertThat(claimsCache.get(2L, 2)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should not cache claims of an unversioned user")
+    void shouldNotCacheClaimsOfUnversionedUser() {
+        // Given
+        testUser.setVersion(null);
+
+        // When
+        EncodedClaims encoded = claimsCache.put(testUser, Map.of("department", "Engineering"));
+
+        // Then
+        assertThat(encoded.contains("department")).isTrue();
+        assertThat(claimsCache.get(1L, null)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should publish cache size and hit metrics")
+    void shouldPublishCacheSizeAndHitMetrics() {
+        // Given
+        EncodedClaims encoded = claimsCache.put(testUser, Map.of("department", "Engineering"));
+
+        // When
+        claimsCache.get(1L, 2);
+        claimsCache.get(1L, 3);
+        claimsCache.cleanUp();
+
+        // Then
+        assertThat(meterRegistry.get("janus.claims.cache.bytes").gauge().value())
+                .isEqualTo(Long.BYTES + Integer.BYTES + encoded.byteSize());
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "janus.claims").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "janus.claims").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+}
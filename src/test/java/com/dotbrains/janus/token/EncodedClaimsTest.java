@@ -0,0 +1,140 @@
+package com.dotbrains.janus.token;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("EncodedClaims Unit Tests")
+class EncodedClaimsTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @JsonPropertyOrder({"claims", "sub"})
+    record ClaimsFirst(@JsonUnwrapped EncodedClaims claims, String sub) {
+    }
+
+    @JsonPropertyOrder({"sub", "claims"})
+    record ClaimsLast(String sub, @JsonUnwrapped EncodedClaims claims) {
+    }
+
+    record Nested(String status, EncodedClaims claims) {
+    }
+
+    private EncodedClaims sampleClaims() {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("full_name", "Zo\u00eb O\"Brien");
+        claims.put("roles", Set.of("USER"));
+        claims.put("created_at", LocalDateTime.of(2024, 1, 1, 0, 0));
+        return EncodedClaims.encode(jsonMapper, claims);
+    }
+
+    @Test
+    @DisplayName("Should write claims as a nested object")
+    void shouldWriteClaimsAsNestedObject() {
+        // When
+        String json = jsonMapper.writeValueAsString(new Nested("success", sampleClaims()));
+
+        // Then
+        assertThat(json).isEqualTo("{\"status\":\"success\",\"claims\":{\"full_name\":\"Zo\u00eb O\\\"Brien\","
+                + "\"roles\":[\"USER\"],\"created_at\":\"2024-01-01T00:00:00\"}}");
+    }
+
+    @Test
+    @DisplayName("Should splice unwrapped claims at any position of the enclosing object")
+    void shouldSpliceUnwrappedClaimsAtAnyPosition() {
+        // When
+        Map<String, Object> first = toMap(new ClaimsFirst(sampleClaims(), "kc-123"));
+        Map<String, Object> last = toMap(new ClaimsLast("kc-123", sampleClaims()));
+
+        // Then
+        assertThat(first).isEqualTo(last);
+        assertThat(first).containsEntry("sub", "kc-123").containsEntry("full_name", "Zo\u00eb O\"Brien").hasSize(4);
+    }
+
+    @Test
+    @DisplayName("Should match the mapper output under pretty printing")
+    void shouldMatchMapperOutputUnderPrettyPrinting() {
+        // Given
+        JsonMapper indenting = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
+        Map<String, Object> claims = Map.of("user_id", 1, "is_admin", false);
+
+        // When
+        EncodedClaims encoded = EncodedClaims.encode(indenting, claims);
+
+        // Then
+        assertThat(toMap(new Nested("ok", encoded))).containsEntry("claims", claims);
+    }
+
+    @Test
+    @DisplayName("Should write nothing for empty claims")
+    void shouldWriteNothingForEmptyClaims() {
+        // When
+        String unwrapped = jsonMapper.writeValueAsString(new ClaimsLast("kc-123", EncodedClaims.encode(jsonMapper, Map.of())));
+        String nested = jsonMapper.writeValueAsString(new Nested("success", EncodedClaims.EMPTY));
+
+        // Then
+        assertThat(unwrapped).isEqualTo("{\"sub\":\"kc-123\"}");
+        assertThat(nested).isEqualTo("{\"status\":\"success\",\"claims\":{}}");
+    }
+
+    @Test
+    @DisplayName("Should expose claim names and size")
+    void shouldExposeClaimNamesAndSize() {
+        // When
+        EncodedClaims encoded = sampleClaims();
+
+        // Then
+        assertThat(encoded.names()).containsExactlyInAnyOrder("full_name", "roles", "created_at");
+        assertThat(encoded.contains("roles")).isTrue();
+        assertThat(encoded.contains("email")).isFalse();
+        assertThat(encoded.byteSize()).isPositive();
+        assertThat(EncodedClaims.EMPTY.byteSize()).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toMap(Object value) {
+        return jsonMapper.readValue(jsonMapper.writeValueAsBytes(value), Map.class);
+    }
+
+    @Test
+    @DisplayName("Should rebuild the claims as a standalone JSON object")
+    void shouldRebuildStandaloneJson() {
+        // Given
+        EncodedClaims claims = sampleClaims();
+
+        // When
+        Map<String, Object> parsed = jsonMapper.readValue(claims.toJson(), Map.class);
+
+        // Then
+        assertThat(parsed).containsEntry("full_name", "Zo\u00eb O\"Brien")
+                .containsKeys("roles", "created_at");
+        assertThat(new String(EncodedClaims.EMPTY.toJson())).isEqualTo("{}");
+    }
+
+    @Test
+    @DisplayName("Should decode stored claims back to the same bytes and names")
+    void shouldDecodeStoredClaims() {
+        // Given
+        EncodedClaims claims = sampleClaims();
+
+        // When
+        EncodedClaims decoded = EncodedClaims.decode(jsonMapper, claims.toJson());
+
+        // Then
+        assertThat(decoded.toJson()).isEqualTo(claims.toJson());
+        assertThat(decoded.names()).isEqualTo(claims.names());
+        assertThat(jsonMapper.writeValueAsString(new Nested("success", decoded)))
+                .isEqualTo(jsonMapper.writeValueAsString(new Nested("success", claims)));
+        assertThat(EncodedClaims.decode(jsonMapper, "{}".getBytes()).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,135 @@
+package com.dotbrains.janus.token;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("LastKnownClaims Unit Tests")
+class LastKnownClaimsTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @TempDir
+    private Path directory;
+
+    private LastKnownClaims lastKnownClaims(Instant now) {
+        return new LastKnownClaims(jsonMapper, meterRegistry, directory.resolve("claims.bin"),
+                Duration.ofHours(1), 100, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private EncodedClaims claims() {
+        return EncodedClaims.encode(jsonMapper, Map.of("full_name", "Test User", "department", "Engineering"));
+    }
+
+    @Test
+    @DisplayName("Should serve remembered claims marked as degraded")
+    void shouldServeRememberedClaimsMarkedDegraded() {
+        // Given
+        LastKnownClaims lastKnown = lastKnownClaims(NOW);
+        lastKnown.remember("janus", "kc-123", claims());
+
+        // When
+        Map<String, Object> result = lastKnown.degradedClaims("janus", "kc-123");
+
+        // Then
+        assertThat(result)
+                .containsEntry("full_name", "Test User")
+                .containsEntry("department", "Engineering")
+                .containsEntry(LastKnownClaims.CLAIMS_AS_OF, NOW.toString())
+                .containsEntry(LastKnownClaims.DEGRADED, true);
+        assertThat(meterRegistry.get("janus.token.degraded").tag("source", "last-known").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the OIDC token alone for unknown subjects")
+    void shouldFallBackToOidcOnlyForUnknownSubjects() {
+        // When
+        Map<String, Object> result = lastKnownClaims(NOW).degradedClaims("janus", "kc-unknown");
+
+        // Then
+        assertThat(result).containsExactly(Map.entry(LastKnownClaims.DEGRADED, true));
+        assertThat(meterRegistry.get("janus.token.degraded").tag("source", "oidc").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should keep the claims of a subject ID separate per realm")
+    void shouldKeepSubjectsSeparatePerRealm() {
+        // Given
+        LastKnownClaims lastKnown = lastKnownClaims(NOW);
+        lastKnown.remember("janus", "kc-123", claims());
+
+        // When
+        Map<String, Object> result = lastKnown.degradedClaims("partners", "kc-123");
+
+        // Then
+        assertThat(result).containsOnlyKeys(LastKnownClaims.DEGRADED);
+    }
+
+    @Test
+    @DisplayName("Should not serve claims older than the maximum staleness")
+    void shouldNotServeStaleClaims() {
+        // Given
+        lastKnownClaims(NOW).flush();
+        LastKnownClaims earlier = lastKnownClaims(NOW.minus(Duration.ofHours(2)));
+        earlier.remember("janus", "kc-123", claims());
+        earlier.flush();
+
+        // When
+        LastKnownClaims restarted = lastKnownClaims(NOW);
+        restarted.load();
+
+        // Then
+        assertThat(restarted.degradedClaims("janus", "kc-123")).doesNotContainKey("full_name");
+    }
+
+    @Test
+    @DisplayName("Should survive a restart through the snapshot file")
+    void shouldSurviveRestart() throws Exception {
+        // Given
+        LastKnownClaims before = lastKnownClaims(NOW);
+        before.remember("janus", "kc-123", claims());
+        before.flush();
+
+        // When
+        LastKnownClaims after = lastKnownClaims(NOW.plus(Duration.ofMinutes(5)));
+        after.load();
+
+        // Then
+        assertThat(after.degradedClaims("janus", "kc-123"))
+                .containsEntry("full_name", "Test User")
+                .containsEntry(LastKnownClaims.CLAIMS_AS_OF, NOW.toString());
+        assertThat(after.degradedClaims("partners", "kc-123")).doesNotContainKey("full_name");
+        assertThat(Files.list(directory)).containsExactly(directory.resolve("claims.bin"));
+    }
+
+    @Test
+    @DisplayName("Should ignore a snapshot file of an unknown format")
+    void shouldIgnoreUnknownFormat() throws Exception {
+        // Given
+        Files.write(directory.resolve("claims.bin"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        // When
+        LastKnownClaims lastKnown = lastKnownClaims(NOW);
+        lastKnown.load();
+
+        // Then
+        assertThat(lastKnown.degradedClaims("janus", "kc-123")).containsOnlyKeys(LastKnownClaims.DEGRADED);
+    }
+}
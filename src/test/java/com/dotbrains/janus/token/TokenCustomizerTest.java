@@ -1,20 +1,27 @@
 package com.dotbrains.janus.token;
 
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.resilience.DatabaseUnavailableException;
 import com.dotbrains.janus.user.User;
 import com.dotbrains.janus.user.UserService;
+import com.dotbrains.janus.user.UserVersion;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.security.oauth2.core.oidc.OidcIdToken;
 import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -34,6 +41,18 @@ class TokenCustomizerTest {
     @Mock
     private CustomClaimsMapper claimsMapper;
 
+    @Mock
+    private EncodedClaimsCache claimsCache;
+
+    @Mock
+    private UserClaimsTable claimsTable;
+
+    @Mock
+    private LastKnownClaims lastKnownClaims;
+
+    @Spy
+    private Realms realms = new Realms(new RealmProperties("janus", List.of()));
+
     @InjectMocks
     private TokenCustomizer tokenCustomizer;
 
@@ -81,10 +100,10 @@ void setUp() {
     @DisplayName("Should enhance token when user exists in database")
     void shouldEnhanceTokenWhenUserExists() {
         // Given
-        Map<String, Object> customClaims = Map.of(
-                "department", "Engineering",
-                "job_title", "Software Engineer"
-        );
+        UserClaims customClaims = UserClaims.builder()
+                .department("Engineering")
+                .jobTitle("Software Engineer")
+                .build();
         when(userService.findActiveUserWithRoles("kc-123")).thenReturn(Optional.of(testUser));
         when(claimsMapper.mapUserToClaims(testUser)).thenReturn(customClaims);
 
@@ -103,7 +122,7 @@ void shouldEnhanceTokenWhenUserExists() {
     @DisplayName("Should sync user from Keycloak when not found in database")
     void shouldSyncUserFromKeycloakWhenNotFound() {
         // Given
-        Map<String, Object> customClaims = Map.of("department", "Engineering");
+        UserClaims customClaims = UserClaims.builder().department("Engineering").build();
         when(userService.findActiveUserWithRoles("kc-123")).thenReturn(Optional.empty());
         when(userService.syncUserFromKeycloak(anyString(), anyString(), anyString(), anyString(), anyString()))
                 .thenReturn(testUser);
@@ -191,4 +210,147 @@ void shouldReturnEmptyMapWhenSyncReturnsNull() {
         verify(userService, times(1)).syncUserFromKeycloak(anyString(), anyString(), anyString(), anyString(), anyString());
         verify(claimsMapper, never()).mapUserToClaims(any());
     }
+
+    @Test
+    @DisplayName("Should serve encoded claims from cache for unchanged version")
+    void shouldServeEncodedClaimsFromCacheForUnchangedVersion() {
+        // Given
+        EncodedClaims cached = mock(EncodedClaims.class);
+        when(userService.findActiveVersionByKeycloakId("kc-123")).thenReturn(Optional.of(new UserVersion(1L, 2)));
+        when(claimsCache.get(1L, 2)).thenReturn(cached);
+
+        // When
+        EncodedClaims result = tokenCustomizer.enhanceTokenEncoded(oidcUser);
+
+        // Then
+        assertThat(result).isSameAs(cached);
+        verify(userService, never()).findActiveUserWithRoles(anyString());
+        verify(claimsMapper, never()).mapUserToClaims(any());
+        verify(lastKnownClaims).remember("janus", "kc-123", cached);
+    }
+
+    @Test
+    @DisplayName("Should map and cache claims on cache miss")
+    void shouldMapAndCacheClaimsOnCacheMiss() {
+        // Given
+        UserClaims customClaims = UserClaims.builder().department("Engineering").build();
+        EncodedClaims encoded = mock(EncodedClaims.class);
+        when(userService.findActiveVersionByKeycloakId("kc-123")).thenReturn(Optional.of(new UserVersion(1L, 2)));
+        when(userService.findActiveUserWithRoles("kc-123")).thenReturn(Optional.of(testUser));
+        when(claimsMapper.mapUserToClaims(testUser)).thenReturn(customClaims);
+        when(claimsCache.put(testUser, customClaims)).thenReturn(encoded);
+
+        // When
+        EncodedClaims result = tokenCustomizer.enhanceTokenEncoded(oidcUser);
+
+        // Then
+        assertThat(result).isSameAs(encoded);
+        verify(claimsCache, times(1)).put(testUser, customClaims);
+    }
+
+    @Test
+    @DisplayName("Should serve encoded claims from the claims table without loading the user")
+    void shouldServeEncodedClaimsFromClaimsTable() {
+        // Given
+        EncodedClaims stored = mock(EncodedClaims.class);
+        when(claimsTable.isEnabled()).thenReturn(true);
+        when(claimsTable.find("janus", "kc-123")).thenReturn(Optional.of(stored));
+
+        // When
+        EncodedClaims result = tokenCustomizer.enhanceTokenEncoded(oidcUser);
+
+        // Then
+        assertThat(result).isSameAs(stored);
+        verify(userService, never()).findActiveVersionByKeycloakId(anyString());
+        verify(userService, never()).findActiveUserWithRoles(anyString());
+    }
+
+    @Test
+    @DisplayName("Should map and store claims of a user missing from the claims table")
+    void shouldStoreClaimsMissingFromClaimsTable() {
+        // Given
+        UserClaims customClaims = UserClaims.builder().department("Engineering").build();
+        EncodedClaims encoded = mock(EncodedClaims.class);
+        when(claimsTable.isEnabled()).thenReturn(true);
+        when(claimsTable.find("janus", "kc-123")).thenReturn(Optional.empty());
+        when(userService.findActiveUserWithRoles("kc-123")).thenReturn(Optional.of(testUser));
+        when(claimsMapper.mapUserToClaims(testUser)).thenReturn(customClaims);
+        when(claimsCache.put(testUser, customClaims)).thenReturn(encoded);
+
+        // When
+        EncodedClaims result = tokenCustomizer.enhanceTokenEncoded(oidcUser);
+
+        // Then
+        assertThat(result).isSameAs(encoded);
+        verify(claimsTable).store("janus", testUser, encoded);
+        verify(userService, never()).findActiveVersionByKeycloakId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should return empty encoded claims when enhancement is disabled")
+    void shouldReturnEmptyEncodedClaimsWhenEnhancementIsDisabled() {
+        // Given
+        ReflectionTestUtils.setField(tokenCustomizer, "enhancementEnabled", false);
+
+        // When
+        EncodedClaims result = tokenCustomizer.enhanceTokenEncoded(oidcUser);
+
+        // Then
+        assertThat(result.isEmpty()).isTrue();
+        verify(userService, never()).findActiveVersionByKeycloakId(anyString());
+        verifyNoInteractions(claimsCache);
+    }
+
+    @Test
+    @DisplayName("Should serve last-known claims when the database is unavailable")
+    void shouldServeLastKnownClaimsWhenDatabaseIsUnavailable() {
+        // Given
+        EncodedClaims degraded = mock(EncodedClaims.class);
+        when(userService.findActiveVersionByKeycloakId("kc-123"))
+                .thenThrow(new DatabaseUnavailableException("Database circuit is open"));
+        when(lastKnownClaims.degradedEncoded("janus", "kc-123")).thenReturn(degraded);
+
+        // When
+        EncodedClaims result = tokenCustomizer.enhanceTokenEncoded(oidcUser);
+
+        // Then
+        assertThat(result).isSameAs(degraded);
+        verify(lastKnownClaims, never()).remember(anyString(), anyString(), any());
+        verifyNoInteractions(claimsCache);
+    }
+
+    @Test
+    @DisplayName("Should mark claims degraded when the user lookup fails on the database")
+    void shouldMarkClaimsDegradedWhenLookupFails() {
+        // Given
+        when(userService.findActiveUserWithRoles("kc-123"))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        when(lastKnownClaims.degradedClaims("janus", "kc-123")).thenReturn(Map.of(LastKnownClaims.DEGRADED, true));
+
+        // When
+        Map<String, Object> result = tokenCustomizer.enhanceToken(oidcUser);
+
+        // Then
+        assertThat(result).containsExactly(Map.entry(LastKnownClaims.DEGRADED, true));
+        verify(userService, never()).syncUserFromKeycloak(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should prewarm claims only when they are not cached")
+    void shouldPrewarmClaimsOnlyWhenNotCached() {
+        // Given
+        testUser.setVersion(3);
+        UserClaims customClaims = UserClaims.builder().department("Engineering").build();
+        when(claimsMapper.mapUserToClaims(testUser)).thenReturn(customClaims);
+        when(claimsCache.get(1L, 3)).thenReturn(null, EncodedClaims.EMPTY);
+
+        // When
+        boolean first = tokenCustomizer.prewarm(testUser);
+        boolean second = tokenCustomizer.prewarm(testUser);
+
+        // Then
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        verify(claimsCache, times(1)).put(testUser, customClaims);
+    }
 }
@@ -0,0 +1,110 @@
+package com.dotbrains.janus.token;
+
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserClaimsTable Unit Tests")
+class UserClaimsTableTest {
+
+    private static final String STORED = "{\"user_id\":1,\"keycloak_id\":\"kc-1\",\"username\":\"ada\"}";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private EncodedClaimsCache claimsCache;
+    private CustomClaimsMapper claimsMapper;
+
+    @BeforeEach
+    void setUp() {
+        claimsCache = new EncodedClaimsCache(jsonMapper, new SimpleMeterRegistry(), 1024 * 1024);
+        claimsMapper = new CustomClaimsMapper(new AttributeClaims(
+                new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000),
+                jsonMapper, new AttributeClaimsProperties(List.of())));
+    }
+
+    private UserClaimsTable table(boolean enabled) {
+        return new UserClaimsTable(jdbcTemplate, jsonMapper, claimsMapper, claimsCache, enabled, true);
+    }
+
+    @Test
+    @DisplayName("Should decode a stored row once per user version")
+    @SuppressWarnings("unchecked")
+    void shouldDecodeStoredRowOncePerVersion() throws Exception {
+        // Given
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("user_id")).thenReturn(1L);
+        when(row.getInt("version")).thenReturn(3);
+        when(row.getString("claims")).thenReturn(STORED);
+        when(jdbcTemplate.query(startsWith("SELECT user_id, version, claims"), any(RowMapper.class), eq("janus"), eq("kc-1")))
+                .thenAnswer(invocation -> List.of(invocation.<RowMapper<EncodedClaims>>getArgument(1).mapRow(row, 0)));
+        UserClaimsTable table = table(true);
+
+        // When
+        Optional<EncodedClaims> first = table.find("janus", "kc-1");
+        Optional<EncodedClaims> second = table.find("janus", "kc-1");
+
+        // Then
+        assertThat(first).isPresent();
+        assertThat(new String(first.get().toJson())).isEqualTo(STORED);
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(claimsCache.get(1L, 3)).isSameAs(first.get());
+    }
+
+    @Test
+    @DisplayName("Should rewrite the rows of changed active users with their mapped claims")
+    @SuppressWarnings("unchecked")
+    void shouldRewriteRowsOfChangedUsers() {
+        // Given
+        User ada = User.builder().id(1L).keycloakId("kc-1").username("ada").email("ada@example.com").version(4).build();
+        when(jdbcTemplate.query(contains("FROM users u"), any(RowMapper.class), eq("janus"), any(String[].class)))
+                .thenReturn(List.of(ada));
+
+        // When
+        table(true).refresh("janus", List.of("kc-1", "kc-2"));
+
+        // Then
+        verify(jdbcTemplate).update(startsWith("DELETE FROM user_claims"), eq("janus"), any(String[].class));
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO user_claims"), rows.capture());
+        assertThat(rows.getValue()).hasSize(1);
+        Object[] row = rows.getValue().getFirst();
+        assertThat(row).startsWith("janus", "kc-1", 1L, 4);
+        assertThat((String) row[4]).startsWith("{\"user_id\":1,\"keycloak_id\":\"kc-1\",\"username\":\"ada\"");
+    }
+
+    @Test
+    @DisplayName("Should only delete the rows of changed users while disabled")
+    void shouldOnlyDeleteRowsWhileDisabled() {
+        // When
+        UserClaimsTable table = table(false);
+        table.refresh("janus", List.of("kc-1"));
+        table.store("janus", User.builder().id(1L).version(1).build(), EncodedClaims.encode(jsonMapper, Map.of("a", 1)));
+
+        // Then
+        verify(jdbcTemplate).update(startsWith("DELETE FROM user_claims"), eq("janus"), any(String[].class));
+        verifyNoMoreInteractions(jdbcTemplate);
+        assertThat(table.isEnabled()).isFalse();
+    }
+}
@@ -0,0 +1,137 @@
+package com.dotbrains.janus.token;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("UserClaims Unit Tests")
+class UserClaimsTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private UserClaims sampleClaims() {
+        return UserClaims.builder()
+                .userId(1L)
+                .keycloakId("kc-123")
+                .username("john.doe")
+                .department("Engineering")
+                .isActive(true)
+                .roles(Set.of("ADMIN"))
+                .isAdmin(true)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .extra("cost_center", "CC-42")
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should expose set claims as a map and omit unset ones")
+    void shouldExposeSetClaimsAsMap() {
+        // When
+        UserClaims claims = sampleClaims();
+
+        // Then
+        assertThat(claims).hasSize(9)
+                .containsEntry(UserClaims.USER_ID, 1L)
+                .containsEntry(UserClaims.DEPARTMENT, "Engineering")
+                .containsEntry(UserClaims.ROLES, Set.of("ADMIN"))
+                .containsEntry("cost_center", "CC-42")
+                .doesNotContainKey(UserClaims.EMAIL)
+                .doesNotContainKey(UserClaims.UPDATED_AT);
+        assertThat(claims.get(UserClaims.EMAIL)).isNull();
+        assertThat(claims.keySet()).startsWith(UserClaims.USER_ID).endsWith("cost_center");
+    }
+
+    @Test
+    @DisplayName("Should be equal to a HashMap with the same claims")
+    void shouldBeEqualToEquivalentHashMap() {
+        // Given
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("user_id", 1L);
+        expected.put("keycloak_id", "kc-123");
+        expected.put("username", "john.doe");
+        expected.put("department", "Engineering");
+        expected.put("is_active", true);
+        expected.put("roles", Set.of("ADMIN"));
+        expected.put("is_admin", true);
+        expected.put("created_at", LocalDateTime.of(2024, 1, 1, 0, 0));
+        expected.put("cost_center", "CC-42");
+
+        // When / Then
+        assertThat(sampleClaims()).isEqualTo(expected);
+        assertThat(sampleClaims().hashCode()).isEqualTo(expected.hashCode());
+    }
+
+    @Test
+    @DisplayName("Should serialize the same JSON as the equivalent map")
+    void shouldSerializeSameJsonAsEquivalentMap() {
+        // Given
+        UserClaims claims = sampleClaims();
+
+        // When
+        Map<String, Object> direct = toMap(jsonMapper.writeValueAsBytes(claims));
+        Map<String, Object> viaMap = toMap(jsonMapper.writeValueAsBytes(new HashMap<>(claims)));
+
+        // Then
+        assertThat(direct).isEqualTo(viaMap)
+                .containsEntry("created_at", "2024-01-01T00:00:00")
+                .containsEntry("cost_center", "CC-42");
+    }
+
+    @Test
+    @DisplayName("Should route standard names given as extras to their fields")
+    void shouldRouteStandardNamesToFields() {
+        // Given: claims read back from JSON, as the last-known claims are
+        Map<String, Object> decoded = toMap(jsonMapper.writeValueAsBytes(sampleClaims()));
+        decoded.put("degraded", true);
+
+        // When
+        UserClaims claims = UserClaims.builder().extras(decoded).build();
+
+        // Then
+        assertThat(claims).containsEntry(UserClaims.USER_ID, 1L)
+                .containsEntry(UserClaims.ROLES, Set.of("ADMIN"))
+                .containsEntry(UserClaims.CREATED_AT, LocalDateTime.of(2024, 1, 1, 0, 0))
+                .containsEntry("degraded", true)
+                .hasSize(10);
+        assertThat(claims.keySet()).startsWith(UserClaims.USER_ID).endsWith("cost_center", "degraded");
+        assertThat(jsonMapper.writeValueAsString(claims).split("\"user_id\"", -1)).hasSize(2);
+        assertThatThrownBy(() -> UserClaims.builder().extra(UserClaims.IS_ADMIN, "yes"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should serialize empty claims as an empty object")
+    void shouldSerializeEmptyClaims() {
+        // When
+        String json = jsonMapper.writeValueAsString(UserClaims.EMPTY);
+
+        // Then
+        assertThat(UserClaims.EMPTY).isEmpty();
+        assertThat(json).isEqualTo("{}");
+    }
+
+    @Test
+    @DisplayName("Should encode for the claims cache with the claim names")
+    void shouldEncodeForClaimsCache() {
+        // When
+        EncodedClaims encoded = EncodedClaims.encode(jsonMapper, sampleClaims());
+
+        // Then
+        assertThat(encoded.names()).contains(UserClaims.USER_ID, "cost_center").hasSize(9);
+        assertThat(encoded.contains(UserClaims.EMAIL)).isFalse();
+    }
+
+    private Map<String, Object> toMap(byte[] json) {
+        return jsonMapper.readValue(json, new TypeReference<>() {
+        });
+    }
+}
@@ -0,0 +1,163 @@
+package com.dotbrains.janus.user;
+
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LastLoginTracker Unit Tests")
+class LastLoginTrackerTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final MutableClock clock = new MutableClock();
+    private final Realms realms = new Realms(new RealmProperties("janus", List.of()));
+
+    private LastLoginTracker tracker(int maxBatchSize) {
+        return new LastLoginTracker(jdbcTemplate, realms, new SimpleMeterRegistry(), maxBatchSize, clock);
+    }
+
+    @Test
+    @DisplayName("Should write the latest login per user in one statement")
+    void shouldCoalesceLoginsPerUser() {
+        // Given
+        LastLoginTracker tracker = tracker(100);
+        tracker.recordLogin("kc-1");
+        tracker.recordLogin("kc-2");
+        clock.advanceSeconds(30);
+        tracker.recordLogin("kc-1");
+
+        // When
+        tracker.flush();
+
+        // Then
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), args.capture());
+        assertThat(sql.getValue())
+                .startsWith("UPDATE users AS u SET last_login_at = v.login_at FROM (VALUES ")
+                .contains("(?, ?, CAST(? AS TIMESTAMP)), (?, ?, ?)")
+                .endsWith("WHERE u.realm = v.realm AND u.keycloak_id = v.keycloak_id"
+                        + " AND (u.last_login_at IS NULL OR u.last_login_at < v.login_at)")
+                .doesNotContain("version", "updated_at");
+        List<Object> values = List.of(args.getValue());
+        assertThat(values).hasSize(6);
+        int first = values.indexOf("kc-1");
+        assertThat(values.get(first + 1)).isEqualTo(LocalDateTime.ofInstant(NOW.plusSeconds(30), ZoneOffset.UTC));
+        assertThat(tracker.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep the logins of the same Keycloak ID in different realms apart")
+    void shouldKeepRealmsApart() {
+        // Given
+        LastLoginTracker tracker = tracker(100);
+        tracker.recordLogin("kc-1");
+        realms.callAs("partners", () -> {
+            tracker.recordLogin("kc-1");
+            return null;
+        });
+
+        // When
+        tracker.flush();
+
+        // Then
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(anyString(), args.capture());
+        assertThat(args.getValue()).hasSize(6).contains("janus", "partners");
+    }
+
+    @Test
+    @DisplayName("Should split large flushes into batches")
+    void shouldSplitIntoBatches() {
+        // Given
+        LastLoginTracker tracker = tracker(2);
+        for (int i = 0; i < 5; i++) {
+            tracker.recordLogin("kc-" + i);
+        }
+
+        // When
+        tracker.flush();
+
+        // Then
+        verify(jdbcTemplate, times(3)).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Should keep logins for the next flush when the write fails")
+    void shouldKeepLoginsWhenWriteFails() {
+        // Given
+        LastLoginTracker tracker = tracker(100);
+        tracker.recordLogin("kc-1");
+        tracker.recordLogin("kc-2");
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(2);
+
+        // When
+        tracker.flush();
+
+        // Then
+        assertThat(tracker.pendingCount()).isEqualTo(2);
+
+        tracker.flush();
+        assertThat(tracker.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not touch the database when there are no logins")
+    void shouldNotWriteWithoutLogins() {
+        // When
+        tracker(100).flush();
+
+        // Then
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = NOW;
+
+        void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.dotbrains.janus.user;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("RoleSet Unit Tests")
+class RoleSetTest {
+
+    private final RoleRegistry registry = RoleRegistry.getInstance();
+
+    private UserRole role(String name) {
+        // Registered first, as UserService.save does
+        registry.idOf(name);
+        return UserRole.builder().roleName(name).build();
+    }
+
+    @Test
+    @DisplayName("Should test membership by name and id")
+    void shouldTestMembershipByNameAndId() {
+        // When
+        RoleSet roles = RoleSet.of(List.of(role("USER"), role("ADMIN")));
+
+        // Then
+        assertThat(roles.contains("ADMIN")).isTrue();
+        assertThat(roles.contains(registry.idOf("USER"))).isTrue();
+        assertThat(roles.contains("DEVELOPER")).isFalse();
+        assertThat(roles.contains("NEVER_REGISTERED_ROLE")).isFalse();
+        assertThat(roles.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should expose role names as a set view")
+    void shouldExposeRoleNamesAsSetView() {
+        // When
+        Set<String> names = RoleSet.of(List.of(role("USER"), role("ADMIN"), role("USER"))).names();
+
+        // Then
+        assertThat(names).containsExactlyInAnyOrder("USER", "ADMIN");
+        assertThat(names).isEqualTo(new HashSet<>(List.of("ADMIN", "USER")));
+        assertThat(names.contains("ADMIN")).isTrue();
+        assertThat(names.contains(42)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should return canonical role name instances")
+    void shouldReturnCanonicalRoleNameInstances() {
+        // Given
+        String first = new String("DEVELOPER");
+        String second = new String("DEVELOPER");
+
+        // When
+        RoleSet roles = RoleSet.of(List.of(role(first)));
+
+        // Then
+        assertThat(registry.intern(second)).isSameAs(registry.intern(first));
+        assertThat(roles.names().iterator().next()).isSameAs(registry.intern(second));
+    }
+
+    @Test
+    @DisplayName("Should span several words of role ids")
+    void shouldSpanSeveralWordsOfRoleIds() {
+        // Given
+        List<UserRole> many = IntStream.range(0, 150).mapToObj(i -> role("ROLE_" + i)).toList();
+
+        // When
+        RoleSet roles = RoleSet.of(many);
+
+        // Then
+        assertThat(roles.size()).isEqualTo(150);
+        assertThat(roles.names()).hasSize(150).contains("ROLE_0", "ROLE_149");
+        assertThat(roles.contains("ROLE_149")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should be empty without roles")
+    void shouldBeEmptyWithoutRoles() {
+        assertThat(RoleSet.of(List.of())).isSameAs(RoleSet.EMPTY);
+        assertThat(RoleSet.EMPTY.isEmpty()).isTrue();
+        assertThat(RoleSet.EMPTY.names()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should keep role names the registry has not allocated, without allocating them")
+    void shouldKeepUnknownRoleNames() {
+        // Given
+        UserRole unknown = UserRole.builder().roleName("NEVER_SAVED_ROLE").build();
+
+        // When
+        RoleSet roles = RoleSet.of(List.of(role("USER"), unknown, unknown));
+
+        // Then
+        assertThat(roles.contains("NEVER_SAVED_ROLE")).isTrue();
+        assertThat(roles.contains("OTHER_UNSAVED_ROLE")).isFalse();
+        assertThat(roles.size()).isEqualTo(2);
+        assertThat(roles.names()).containsExactly("USER", "NEVER_SAVED_ROLE");
+        assertThat(registry.find("NEVER_SAVED_ROLE")).isEqualTo((short) -1);
+    }
+
+    @Test
+    @DisplayName("Should convert role names to ids and back")
+    void shouldConvertRoleNamesToIdsAndBack() {
+        // Given
+        RoleNameConverter converter = new RoleNameConverter();
+        registry.idOf("SECURITY");
+
+        // When
+        Short id = converter.convertToDatabaseColumn("SECURITY");
+
+        // Then
+        assertThat(converter.convertToEntityAttribute(id)).isSameAs(registry.intern("SECURITY"));
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThatThrownBy(() -> converter.convertToDatabaseColumn("NEVER_SAVED_ROLE"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(registry.find("NEVER_SAVED_ROLE")).isEqualTo((short) -1);
+        assertThatThrownBy(() -> registry.nameOf((short) 32000)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should load role ids allocated by another replica")
+    void shouldLoadRoleIdsAllocatedElsewhere() {
+        // Given
+        RoleNameConverter converter = new RoleNameConverter();
+        registry.setLoader(id -> id == 5000 ? "REMOTE_ROLE" : null);
+
+        try {
+            // When
+            String name = converter.convertToEntityAttribute((short) 5000);
+
+            // Then
+            assertThat(name).isEqualTo("REMOTE_ROLE");
+            assertThat(registry.find("REMOTE_ROLE")).isEqualTo((short) 5000);
+            assertThat(registry.nameOf((short) 5000)).isSameAs(name);
+            assertThatThrownBy(() -> registry.nameOf((short) 5001)).isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            registry.setLoader(id -> null);
+        }
+    }
+}
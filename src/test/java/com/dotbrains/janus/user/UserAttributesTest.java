@@ -0,0 +1,105 @@
+package com.dotbrains.janus.user;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("UserAttributes Unit Tests")
+class UserAttributesTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private UserAttributes userAttributes;
+
+    @BeforeEach
+    void setUp() {
+        userAttributes = new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 64, 1000);
+    }
+
+    @Test
+    @DisplayName("Should parse a document once per user version")
+    void shouldParseOncePerUserVersion() {
+        // Given
+        User user = User.builder().id(1L).version(3).attributes("{\"site\":\"HQ\"}").build();
+
+        // When
+        JsonNode first = userAttributes.of(user);
+        JsonNode second = userAttributes.of(user);
+        user.setVersion(4);
+        user.setAttributes("{\"site\":\"Annex\"}");
+        JsonNode next = userAttributes.of(user);
+
+        // Then
+        assertThat(first.get("site").asString()).isEqualTo("HQ");
+        assertThat(second).isSameAs(first);
+        assertThat(next.get("site").asString()).isEqualTo("Annex");
+    }
+
+    @Test
+    @DisplayName("Should not cache documents read in a write transaction")
+    void shouldNotCacheDocumentsOfWriteTransactions() {
+        // Given
+        User uncommitted = User.builder().id(1L).version(4).attributes("{\"site\":\"Annex\"}").build();
+        User committed = User.builder().id(1L).version(4).attributes("{\"site\":\"HQ\"}").build();
+
+        // When
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        JsonNode inTransaction;
+        try {
+            inTransaction = userAttributes.of(uncommitted);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        // The transaction rolled back and another change committed version 4
+        JsonNode afterRollback = userAttributes.of(committed);
+
+        // Then
+        assertThat(inTransaction.get("site").asString()).isEqualTo("Annex");
+        assertThat(afterRollback.get("site").asString()).isEqualTo("HQ");
+    }
+
+    @Test
+    @DisplayName("Should read missing attributes as an empty object")
+    void shouldReadMissingAttributesAsEmptyObject() {
+        // When
+        JsonNode attributes = userAttributes.of(User.builder().id(1L).version(1).attributes(null).build());
+
+        // Then
+        assertThat(attributes.isObject()).isTrue();
+        assertThat(attributes.isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should apply a JSON merge patch without modifying the document")
+    void shouldApplyMergePatch() {
+        // Given
+        JsonNode document = jsonMapper.readTree("{\"a\":\"b\",\"c\":{\"d\":\"e\",\"f\":\"g\"},\"tags\":[1,2]}");
+        JsonNode patch = jsonMapper.readTree("{\"a\":\"z\",\"c\":{\"f\":null},\"tags\":[3],\"n\":{\"x\":null,\"y\":1}}");
+
+        // When
+        JsonNode merged = userAttributes.merge(document, patch);
+
+        // Then
+        assertThat(merged).isEqualTo(jsonMapper.readTree("{\"a\":\"z\",\"c\":{\"d\":\"e\"},\"tags\":[3],\"n\":{\"y\":1}}"));
+        assertThat(document.get("c").has("f")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should only write objects within the size limit")
+    void shouldOnlyWriteObjectsWithinSizeLimit() {
+        // When / Then
+        assertThat(userAttributes.write(jsonMapper.readTree("{\"site\":\"HQ\"}"))).isEqualTo("{\"site\":\"HQ\"}");
+        assertThatThrownBy(() -> userAttributes.write(jsonMapper.readTree("\"HQ\"")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> userAttributes.write(jsonMapper.readTree("{\"notes\":\"" + "x".repeat(64) + "\"}")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> userAttributes.read("{\"site\""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
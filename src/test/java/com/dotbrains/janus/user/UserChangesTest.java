@@ -0,0 +1,180 @@
+package com.dotbrains.janus.user;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserChanges Unit Tests")
+class UserChangesTest {
+
+    @Mock
+    private UserChangeOutbox outbox;
+
+    private UserChanges userChanges;
+    private final List<UserChanges.Change> received = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userChanges = new UserChanges(outbox, 2, Duration.ofDays(7), true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static UserChanges.Change change(long seq, String keycloakId) {
+        return new UserChanges.Change(seq, "janus", keycloakId, UserChanges.Type.UPDATED, 1000);
+    }
+
+    @Test
+    @DisplayName("Should append changes to the outbox and poll once the transaction commits")
+    void shouldAppendAndPollAfterCommit() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        userChanges.publish("janus", List.of("kc-1", "kc-2"), UserChanges.Type.DEACTIVATED);
+
+        // Then
+        verify(outbox).append("janus", List.of("kc-1", "kc-2"), UserChanges.Type.DEACTIVATED);
+        verify(outbox, never()).head();
+
+        // When
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // Then
+        verify(outbox, timeout(1000)).head();
+    }
+
+    @Test
+    @DisplayName("Should not poll for a rolled back transaction")
+    void shouldNotPollAfterRollback() throws InterruptedException {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        userChanges.publish("janus", List.of("kc-1"), UserChanges.Type.UPDATED);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        Thread.sleep(50);
+
+        // Then
+        verify(outbox, never()).head();
+    }
+
+    @Test
+    @DisplayName("Should not touch the outbox for no users")
+    void shouldIgnoreEmptyPublish() {
+        // When
+        userChanges.publish("janus", List.of(), UserChanges.Type.UPDATED);
+
+        // Then
+        verify(outbox, never()).append(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should start from the head and deliver later changes in pages and in order")
+    void shouldDeliverFromHeadInPages() {
+        // Given
+        userChanges.subscribe(received::add);
+        when(outbox.head()).thenReturn(10L);
+        when(outbox.readAfter(10L, 2)).thenReturn(List.of(change(11, "kc-1"), change(12, "kc-2")));
+        when(outbox.readAfter(12L, 2)).thenReturn(List.of(change(13, "kc-3")));
+
+        // When
+        userChanges.poll();
+        userChanges.poll();
+
+        // Then
+        assertThat(received).extracting(UserChanges.Change::seq).containsExactly(11L, 12L, 13L);
+        assertThat(userChanges.position()).isEqualTo(13);
+    }
+
+    @Test
+    @DisplayName("Should stop delivering after unsubscribe and survive failing subscribers")
+    void shouldUnsubscribeAndIsolateFailures() {
+        // Given
+        Runnable unsubscribe = userChanges.subscribe(received::add);
+        userChanges.subscribe(change -> {
+            throw new IllegalStateException("broken subscriber");
+        });
+        List<UserChanges.Change> other = new ArrayList<>();
+        userChanges.subscribe(other::add);
+        when(outbox.head()).thenReturn(0L);
+        when(outbox.readAfter(0L, 2)).thenReturn(List.of(change(1, "kc-1")));
+        when(outbox.readAfter(1L, 2)).thenReturn(List.of(change(2, "kc-2")));
+        userChanges.poll();
+
+        // When
+        userChanges.poll();
+        unsubscribe.run();
+        userChanges.poll();
+
+        // Then
+        assertThat(received).extracting(UserChanges.Change::keycloakId).containsExactly("kc-1");
+        assertThat(other).extracting(UserChanges.Change::keycloakId).containsExactly("kc-1", "kc-2");
+        assertThat(userChanges.subscriberCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should keep its position when the outbox cannot be read")
+    void shouldKeepPositionOnReadFailure() {
+        // Given
+        when(outbox.head()).thenReturn(5L);
+        when(outbox.readAfter(anyLong(), anyInt())).thenThrow(new QueryTimeoutException("timeout"));
+        userChanges.poll();
+
+        // When
+        userChanges.poll();
+
+        // Then
+        assertThat(userChanges.position()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should keep changes the relay has not delivered when purging")
+    void shouldPurgeKeepingUnrelayedChanges() {
+        // When
+        userChanges.purge();
+
+        // Then
+        verify(outbox).purge(any(), eq(true));
+    }
+
+    @Test
+    @DisplayName("Should tell whether a resume position is still retained")
+    void shouldTellRetention() {
+        // Given
+        when(outbox.oldest()).thenReturn(100L);
+
+        // Then
+        assertThat(userChanges.retained(99)).isTrue();
+        assertThat(userChanges.retained(150)).isTrue();
+        assertThat(userChanges.retained(42)).isFalse();
+    }
+}
@@ -1,16 +1,31 @@
 package com.dotbrains.janus.user;
 
+import com.dotbrains.janus.audit.AuditLog;
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.token.UserClaimsTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -22,6 +37,26 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private AuditLog auditLog;
+
+    @Mock
+    private UserChanges userChanges;
+
+    @Mock
+    private UserClaimsTable userClaimsTable;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Spy
+    private UserAttributes userAttributes = new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 64, 1000);
+
+    @Spy
+    private Realms realms = new Realms(new RealmProperties("janus", List.of()));
+
     @InjectMocks
     private UserService userService;
 
@@ -101,6 +136,21 @@ void shouldFindUserByUsernameWithRoles() {
         verify(userRepository, times(1)).findByUsernameWithRoles("john.doe");
     }
 
+    @Test
+    @DisplayName("Should find user version by Keycloak ID")
+    void shouldFindUserVersionByKeycloakId() {
+        // Given
+        when(userRepository.findVersionByKeycloakId("kc-123")).thenReturn(Optional.of(new UserVersion(1L, 2)));
+
+        // When
+        Optional<UserVersion> result = userService.findVersionByKeycloakId("kc-123");
+
+        // Then
+        assertThat(result).contains(new UserVersion(1L, 2));
+        assertThat(result.get().eTag()).isEqualTo("\"1-2\"");
+        verify(userRepository, never()).findByKeycloakId(anyString());
+    }
+
     @Test
     @DisplayName("Should save user")
     void shouldSaveUser() {
@@ -114,6 +164,42 @@ void shouldSaveUser() {
         assertThat(result).isNotNull();
         assertThat(result.getUsername()).isEqualTo("john.doe");
         verify(userRepository, times(1)).save(testUser);
+        verify(userClaimsTable).refresh("janus", List.of("kc-123"));
+        verify(userChanges).publish("janus", List.of("kc-123"), UserChanges.Type.UPDATED);
+    }
+
+    @Test
+    @DisplayName("Should move the version of a user whose roles alone changed before rewriting its claims")
+    void shouldBumpVersionOnRoleOnlyChange() {
+        // Given
+        testUser.addRole("ADMIN");
+        when(userRepository.save(testUser)).thenReturn(testUser);
+
+        // When
+        userService.save(testUser);
+
+        // Then
+        InOrder inOrder = inOrder(entityManager, userClaimsTable);
+        inOrder.verify(entityManager).lock(testUser, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        inOrder.verify(userClaimsTable).refresh("janus", List.of("kc-123"));
+    }
+
+    @Test
+    @DisplayName("Should not lock a new user on save")
+    void shouldNotBumpVersionOfNewUser() {
+        // Given
+        User newUser = User.builder().keycloakId("kc-new").username("new").email("new@example.com").build();
+        when(userRepository.save(newUser)).thenAnswer(invocation -> {
+            newUser.setId(2L);
+            return newUser;
+        });
+
+        // When
+        userService.save(newUser);
+
+        // Then
+        verify(entityManager, never()).lock(any(), any(LockModeType.class));
+        verify(userChanges).publish("janus", List.of("kc-new"), UserChanges.Type.UPDATED);
     }
 
     @Test
@@ -194,6 +280,7 @@ void shouldDeactivateUser() {
         // Then
         verify(userRepository, times(1)).findByKeycloakId("kc-123");
         verify(userRepository, times(1)).save(any(User.class));
+        verify(auditLog).userDeactivated("kc-123", "john.doe");
     }
 
     @Test
@@ -208,5 +295,145 @@ void shouldNotFailWhenDeactivatingNonexistentUser() {
         // Then
         verify(userRepository, times(1)).findByKeycloakId("nonexistent");
         verify(userRepository, never()).save(any(User.class));
+        verifyNoInteractions(auditLog);
+    }
+
+    @Test
+    @DisplayName("Should visit recently active users up to the limit and detach them")
+    void shouldVisitRecentlyActiveUsersUpToLimit() {
+        // Given
+        User other = User.builder().id(2L).keycloakId("kc-456").build();
+        User third = User.builder().id(3L).keycloakId("kc-789").build();
+        when(userRepository.streamActiveUsersWithRolesByRecentActivity()).thenReturn(Stream.of(testUser, other, third));
+        List<User> visited = new ArrayList<>();
+
+        // When
+        int count = userService.forEachRecentlyActiveUser(2, visited::add);
+
+        // Then
+        assertThat(count).isEqualTo(2);
+        assertThat(visited).containsExactly(testUser, other);
+        verify(entityManager).detach(testUser);
+        verify(entityManager).detach(other);
+        verify(entityManager, never()).detach(third);
+    }
+
+    @Test
+    @DisplayName("Should stop visiting users when the action returns false")
+    void shouldStopVisitingWhenActionReturnsFalse() {
+        // Given
+        User other = User.builder().id(2L).keycloakId("kc-456").build();
+        when(userRepository.streamActiveUsersWithRolesByRecentActivity()).thenReturn(Stream.of(testUser, other));
+
+        // When
+        int count = userService.forEachRecentlyActiveUser(10, user -> false);
+
+        // Then
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should deactivate a batch of users in one statement")
+    void shouldDeactivateBatchInOneStatement() {
+        // Given
+        List<String> keycloakIds = List.of("kc-123", "kc-456");
+        when(userRepository.deactivateActiveByKeycloakIds(keycloakIds)).thenReturn(1);
+
+        // When
+        int deactivated = userService.deactivateUsers(keycloakIds);
+
+        // Then
+        assertThat(deactivated).isEqualTo(1);
+        verifyNoInteractions(auditLog);
+    }
+
+    @Test
+    @DisplayName("Should not query when deactivating an empty batch")
+    void shouldNotQueryForEmptyBatch() {
+        // When
+        int deactivated = userService.deactivateUsers(List.of());
+
+        // Then
+        assertThat(deactivated).isZero();
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Should page the active users of the current realm")
+    void shouldPageActiveUsersOfCurrentRealm() {
+        // Given
+        List<UserIdentity> page = List.of(new UserIdentity("kc-2", "jane.smith"));
+        when(userRepository.findActiveIdentitiesAfter("partners", "kc-1", 500)).thenReturn(page);
+
+        // When
+        List<UserIdentity> result = realms.callAs("partners", () -> userService.findActiveUsersAfter("kc-1", 500));
+
+        // Then
+        assertThat(result).isEqualTo(page);
+    }
+
+    @Test
+    @DisplayName("Should map the versions of active users by id")
+    void shouldMapActiveVersionsById() {
+        // Given
+        when(userRepository.findActiveVersionsByIds(new Long[]{1L, 2L}))
+                .thenReturn(List.of(new UserVersion(1L, 3)));
+
+        // When
+        Map<Long, Integer> versions = userService.findActiveVersionsByIds(List.of(1L, 2L));
+
+        // Then
+        assertThat(versions).containsExactly(Map.entry(1L, 3));
+    }
+
+    @Test
+    @DisplayName("Should merge patched attributes and publish the change")
+    void shouldMergeAttributesAndPublish() {
+        // Given
+        testUser.setVersion(2);
+        testUser.setAttributes("{\"site\":\"HQ\",\"shift\":\"day\"}");
+        when(userRepository.findByKeycloakId("kc-123")).thenReturn(Optional.of(testUser));
+
+        // When
+        Optional<User> result = userService.mergeAttributes("kc-123",
+                jsonMapper.readTree("{\"shift\":null,\"floor\":3}"));
+
+        // Then
+        assertThat(result).isPresent();
+        assertThat(jsonMapper.readTree(testUser.getAttributes()))
+                .isEqualTo(jsonMapper.readTree("{\"site\":\"HQ\",\"floor\":3}"));
+        verify(userClaimsTable).refresh("janus", List.of("kc-123"));
+        verify(userChanges).publish("janus", List.of("kc-123"), UserChanges.Type.UPDATED);
+    }
+
+    @Test
+    @DisplayName("Should leave unchanged attributes unwritten")
+    void shouldLeaveUnchangedAttributesUnwritten() {
+        // Given
+        testUser.setVersion(2);
+        testUser.setAttributes("{\"site\":\"HQ\"}");
+        when(userRepository.findByKeycloakId("kc-123")).thenReturn(Optional.of(testUser));
+
+        // When
+        userService.replaceAttributes("kc-123", jsonMapper.readTree("{\"site\":\"HQ\"}"));
+
+        // Then
+        verifyNoInteractions(entityManager, userClaimsTable, userChanges);
+    }
+
+    @Test
+    @DisplayName("Should reject attributes that are not an object or too large")
+    void shouldRejectInvalidAttributes() {
+        // Given
+        when(userRepository.findByKeycloakId("kc-123")).thenReturn(Optional.of(testUser));
+
+        // When / Then
+        assertThatThrownBy(() ->
+                        userService.replaceAttributes("kc-123", jsonMapper.readTree("[1, 2]")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() ->
+                        userService.replaceAttributes("kc-123", jsonMapper.readTree("{\"notes\":\"" + "x".repeat(64) + "\"}")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(userChanges);
     }
 }
@@ -7,6 +7,7 @@
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DisplayName("User Entity Tests")
 class UserTest {
@@ -98,6 +99,9 @@ void shouldGetRoleNamesFromUserRoles() {
                 .username("john.doe")
                 .build();
 
+        RoleRegistry.getInstance().idOf("USER");
+        RoleRegistry.getInstance().idOf("ADMIN");
+
         UserRole role1 = new UserRole();
         role1.setRoleName("USER");
         role1.setUser(user);
@@ -118,6 +122,43 @@ void shouldGetRoleNamesFromUserRoles() {
         assertThat(roleNames).containsExactlyInAnyOrder("USER", "ADMIN");
     }
 
+    @Test
+    @DisplayName("Should add a role that has no id yet, before the user is saved")
+    void shouldAddUnregisteredRole() {
+        // Given
+        User user = User.builder().username("john.doe").build();
+
+        // When
+        user.addRole("ROLE_ADDED_BEFORE_SAVE");
+        user.addRole("ROLE_ADDED_BEFORE_SAVE");
+
+        // Then
+        assertThat(user.getRoles()).hasSize(1);
+        assertThat(user.hasRole("ROLE_ADDED_BEFORE_SAVE")).isTrue();
+        assertThat(user.getRoleNames()).containsExactly("ROLE_ADDED_BEFORE_SAVE");
+    }
+
+    @Test
+    @DisplayName("Should keep the role set until the roles change")
+    void shouldKeepRoleSetUntilRolesChange() {
+        // Given
+        RoleRegistry.getInstance().idOf("USER");
+        RoleRegistry.getInstance().idOf("ADMIN");
+        User user = User.builder().username("john.doe").build();
+        user.addRole("USER");
+        RoleSet before = user.getRoleSet();
+
+        // When
+        user.addRole("ADMIN");
+
+        // Then
+        assertThat(user.getRoleSet()).isSameAs(user.getRoleSet()).isNotSameAs(before);
+        assertThat(user.hasRole("ADMIN")).isTrue();
+        assertThat(user.removeRole("ADMIN")).isTrue();
+        assertThat(user.getRoleNames()).containsExactly("USER");
+        assertThatThrownBy(() -> user.getRoles().clear()).isInstanceOf(UnsupportedOperationException.class);
+    }
+
     @Test
     @DisplayName("Should return empty set when no roles")
     void shouldReturnEmptySetWhenNoRoles() {
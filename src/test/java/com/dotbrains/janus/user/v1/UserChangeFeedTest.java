@@ -0,0 +1,206 @@
+package com.dotbrains.janus.user.v1;
+
+import com.dotbrains.janus.realm.RealmProperties;
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.user.UserChanges;
+import com.dotbrains.janus.user.UserAttributes;
+import com.dotbrains.janus.user.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DisplayName("UserChangeFeed Unit Tests")
+class UserChangeFeedTest {
+
+    private final UserChanges userChanges = mock(UserChanges.class);
+    private final Realms realms = new Realms(new RealmProperties("janus", List.of()));
+
+    private UserChangeFeed feed;
+    private Consumer<UserChanges.Change> dispatch;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(userChanges.retained(anyLong())).thenReturn(true);
+        when(userChanges.replay(anyString(), anyLong())).thenReturn(List.of());
+        feed = new UserChangeFeed(userChanges, new SimpleMeterRegistry(), 2, 2, Duration.ofMinutes(1));
+        ArgumentCaptor<Consumer<UserChanges.Change>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(userChanges).subscribe(subscriber.capture());
+        dispatch = subscriber.getValue();
+        mockMvc = MockMvcBuilders.standaloneSetup(new UserController(mock(UserService.class), feed, realms, mock(UserAttributes.class))).build();
+    }
+
+    private static UserChanges.Change change(long seq, String realm, String keycloakId, UserChanges.Type type) {
+        return new UserChanges.Change(seq, realm, keycloakId, type, 1_717_245_000_000L);
+    }
+
+    private MockHttpServletResponse open(String lastEventId) throws Exception {
+        var request = get("/api/v1/users/changes");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    private static void awaitContent(MockHttpServletResponse response, String expected) {
+        await().atMost(Duration.ofSeconds(5)).until(() -> response.getContentAsString().contains(expected));
+    }
+
+    @Test
+    @DisplayName("Should send committed changes of the caller's realm with their sequence numbers as ids")
+    void shouldStreamChangesOfRealm() throws Exception {
+        // Given
+        when(userChanges.position()).thenReturn(10L);
+        MockHttpServletResponse response = open(null);
+        verify(userChanges, timeout(1000)).replay("janus", 10L);
+
+        // When
+        dispatch.accept(change(11, "partners", "kc-other-realm", UserChanges.Type.UPDATED));
+        dispatch.accept(change(12, "janus", "kc-1", UserChanges.Type.UPDATED));
+        dispatch.accept(change(13, "janus", "kc-2", UserChanges.Type.DEACTIVATED));
+
+        // Then
+        awaitContent(response, "id:13\nevent:user.deactivated\ndata:{\"seq\":13,\"keycloakId\":\"kc-2\"");
+        String events = response.getContentAsString();
+        assertThat(events)
+                .contains("id:12\nevent:user.updated\ndata:{\"seq\":12,\"keycloakId\":\"kc-1\",\"type\":\"UPDATED\"")
+                .doesNotContain("kc-other-realm");
+        assertThat(response.getContentType()).startsWith("text/event-stream");
+        assertThat(feed.subscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should replay changes after Last-Event-ID before live ones, without duplicates")
+    void shouldResumeAfterLastEventId() throws Exception {
+        // Given
+        when(userChanges.replay("janus", 40L)).thenReturn(List.of(
+                change(41, "janus", "kc-1", UserChanges.Type.UPDATED),
+                change(42, "janus", "kc-2", UserChanges.Type.UPDATED)));
+        MockHttpServletResponse response = open("40");
+        awaitContent(response, "id:42");
+
+        // When
+        dispatch.accept(change(42, "janus", "kc-2", UserChanges.Type.UPDATED));
+        dispatch.accept(change(43, "janus", "kc-3", UserChanges.Type.DEACTIVATED));
+
+        // Then
+        awaitContent(response, "\"seq\":43");
+        String events = response.getContentAsString();
+        assertThat(events.indexOf("id:41")).isLessThan(events.indexOf("id:42"));
+        assertThat(events).containsOnlyOnce("id:42\n");
+        verify(userChanges, never()).position();
+    }
+
+    @Test
+    @DisplayName("Should send a reset event when changes after Last-Event-ID were purged")
+    void shouldResetWhenPurged() throws Exception {
+        // Given
+        when(userChanges.retained(5L)).thenReturn(false);
+
+        // When
+        MockHttpServletResponse response = open("5");
+
+        // Then
+        awaitContent(response, "event:reset\ndata:{\"afterSeq\":5}\n\n");
+    }
+
+    @Test
+    @DisplayName("Should catch a slow subscriber up from the outbox instead of queueing without bound")
+    void shouldCatchUpAfterOverflow() throws Exception {
+        // Given
+        when(userChanges.position()).thenReturn(0L);
+        MockHttpServletResponse response = open(null);
+        verify(userChanges, timeout(1000)).replay("janus", 0L);
+        when(userChanges.replay("janus", 0L)).thenReturn(List.of(
+                change(1, "janus", "kc-1", UserChanges.Type.UPDATED),
+                change(2, "janus", "kc-2", UserChanges.Type.UPDATED),
+                change(3, "janus", "kc-3", UserChanges.Type.UPDATED)));
+
+        // When
+        for (long seq = 1; seq <= 3; seq++) {
+            dispatch.accept(change(seq, "janus", "kc-" + seq, UserChanges.Type.UPDATED));
+        }
+
+        // Then
+        awaitContent(response, "\"seq\":3");
+        String events = response.getContentAsString();
+        assertThat(events).containsOnlyOnce("id:1\n");
+        assertThat(events).containsOnlyOnce("id:2\n");
+        assertThat(events).containsOnlyOnce("id:3\n");
+    }
+
+    @Test
+    @DisplayName("Should send heartbeats to idle streams")
+    void shouldSendHeartbeats() throws Exception {
+        // Given
+        MockHttpServletResponse response = open(null);
+        verify(userChanges, timeout(1000)).replay("janus", 0L);
+
+        // When
+        feed.heartbeat();
+
+        // Then
+        awaitContent(response, ":heartbeat");
+    }
+
+    @Test
+    @DisplayName("Should end the stream when the outbox cannot be read, for the client to resume")
+    void shouldCompleteOnReadFailure() throws Exception {
+        // Given
+        when(userChanges.replay("janus", 7L)).thenThrow(new QueryTimeoutException("timeout"));
+
+        // When
+        open("7");
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).until(() -> feed.subscriberCount() == 0);
+    }
+
+    @Test
+    @DisplayName("Should answer 503 once max-subscribers streams are open")
+    void shouldRefuseBeyondMaxSubscribers() throws Exception {
+        // Given
+        open(null);
+        open(null);
+
+        // When / Then
+        mockMvc.perform(get("/api/v1/users/changes"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    @Test
+    @DisplayName("Should answer 400 for a Last-Event-ID that is not a sequence number")
+    void shouldRejectInvalidLastEventId() throws Exception {
+        // When / Then
+        mockMvc.perform(get("/api/v1/users/changes").header("Last-Event-ID", "abc"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/users/changes").param("after", "-1"))
+                .andExpect(status().isBadRequest());
+        assertThat(feed.subscriberCount()).isZero();
+    }
+}
@@ -0,0 +1,265 @@
+package com.dotbrains.janus.user.v1;
+
+import com.dotbrains.janus.realm.Realms;
+import com.dotbrains.janus.user.User;
+import com.dotbrains.janus.user.UserAttributes;
+import com.dotbrains.janus.user.UserIdentity;
+import com.dotbrains.janus.user.UserService;
+import com.dotbrains.janus.user.UserVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserController Unit Tests")
+class UserControllerTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserChangeFeed userChangeFeed;
+
+    @Mock
+    private Realms realms;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Spy
+    private UserAttributes userAttributes = new UserAttributes(jsonMapper, new SimpleMeterRegistry(), 16384, 1000);
+
+    @InjectMocks
+    private UserController userController;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        testUser = User.builder()
+                .id(1L)
+                .keycloakId("kc-123")
+                .username("john.doe")
+                .email("john.doe@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .isActive(true)
+                .version(3)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should return user with ETag and Cache-Control headers")
+    void shouldReturnUserWithETagAndCacheControl() {
+        // Given
+        when(userService.findByKeycloakId("kc-123")).thenReturn(Optional.of(testUser));
+
+        // When
+        ResponseEntity<?> response = userController.getUserByKeycloakId("kc-123", null);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1-3\"");
+        assertThat(response.getHeaders().getCacheControl()).isEqualTo("no-cache, private");
+        assertThat(response.getBody()).isInstanceOfSatisfying(UserResponse.class,
+                body -> assertThat(body.username()).isEqualTo("john.doe"));
+        verify(userService, never()).findVersionByKeycloakId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should return 304 from version-only query when ETag matches")
+    void shouldReturnNotModifiedWhenETagMatches() {
+        // Given
+        when(userService.findVersionByKeycloakId("kc-123")).thenReturn(Optional.of(new UserVersion(1L, 3)));
+
+        // When
+        ResponseEntity<?> response = userController.getUserByKeycloakId("kc-123", "\"1-3\"");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1-3\"");
+        assertThat(response.getBody()).isNull();
+        verify(userService, never()).findByKeycloakId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should return full user when ETag is stale")
+    void shouldReturnFullUserWhenETagIsStale() {
+        // Given
+        when(userService.findVersionByUsername("john.doe")).thenReturn(Optional.of(new UserVersion(1L, 3)));
+        when(userService.findByUsernameWithRoles("john.doe")).thenReturn(Optional.of(testUser));
+
+        // When
+        ResponseEntity<?> response = userController.getUserByUsername("john.doe", "\"1-2\"");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1-3\"");
+        assertThat(response.getBody()).isInstanceOfSatisfying(UserResponse.class,
+                body -> assertThat(body.keycloakId()).isEqualTo("kc-123"));
+    }
+
+    @Test
+    @DisplayName("Should return full user when only the last login changed")
+    void shouldReturnFullUserWhenLastLoginChanged() {
+        // Given
+        LocalDateTime lastLoginAt = LocalDateTime.of(2025, 1, 13, 9, 30, 0, 123_456_000);
+        testUser.setLastLoginAt(lastLoginAt);
+        when(userService.findVersionByKeycloakId("kc-123")).thenReturn(Optional.of(new UserVersion(1L, 3, lastLoginAt)));
+        when(userService.findByKeycloakId("kc-123")).thenReturn(Optional.of(testUser));
+
+        // When
+        ResponseEntity<?> response = userController.getUserByKeycloakId("kc-123", "\"1-3\"");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1-3-1736760600123456\"");
+        assertThat(response.getBody()).isInstanceOfSatisfying(UserResponse.class,
+                body -> assertThat(body.lastLoginAt()).isEqualTo(lastLoginAt));
+    }
+
+    @Test
+    @DisplayName("Should return 304 for weak and wildcard If-None-Match values")
+    void shouldReturnNotModifiedForWeakAndWildcardETags() {
+        // Given
+        when(userService.findVersionByUsername("john.doe")).thenReturn(Optional.of(new UserVersion(1L, 3)));
+
+        // When
+        ResponseEntity<?> weak = userController.getUserByUsername("john.doe", "\"0-1\", W/\"1-3\"");
+        ResponseEntity<?> wildcard = userController.getUserByUsername("john.doe", "*");
+
+        // Then
+        assertThat(weak.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(wildcard.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(userService, never()).findByUsernameWithRoles(anyString());
+    }
+
+    @Test
+    @DisplayName("Should return error body without ETag when user not found")
+    void shouldReturnErrorWithoutETagWhenUserNotFound() {
+        // Given
+        when(userService.findVersionByKeycloakId("missing")).thenReturn(Optional.empty());
+        when(userService.findByKeycloakId("missing")).thenReturn(Optional.empty());
+
+        // When
+        ResponseEntity<?> response = userController.getUserByKeycloakId("missing", "\"1-3\"");
+
+        // Then
+        assertThat(response.getBody()).isEqualTo(Map.of("error", "User not found", "keycloakId", "missing"));
+        assertThat(response.getHeaders().containsHeader(HttpHeaders.ETAG)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should emit max-age when configured")
+    void shouldEmitMaxAgeWhenConfigured() {
+        // Given
+        ReflectionTestUtils.setField(userController, "cacheMaxAgeSeconds", 30L);
+        when(userService.findByKeycloakId("kc-123")).thenReturn(Optional.of(testUser));
+
+        // When
+        ResponseEntity<?> response = userController.getUserByKeycloakId("kc-123", null);
+
+        // Then
+        assertThat(response.getHeaders().getCacheControl()).isEqualTo("max-age=30, must-revalidate, private");
+    }
+
+    @Test
+    @DisplayName("Should return attributes with the user's ETag")
+    void shouldReturnAttributesWithUserETag() {
+        // Given
+        testUser.setAttributes("{\"costCenter\":\"CC-42\"}");
+        when(userService.findByKeycloakId("kc-123")).thenReturn(Optional.of(testUser));
+
+        // When
+        ResponseEntity<?> response = userController.getUserAttributes("kc-123", null);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1-3\"");
+        assertThat(response.getBody()).isEqualTo(jsonMapper.readTree("{\"costCenter\":\"CC-42\"}"));
+    }
+
+    @Test
+    @DisplayName("Should return 304 for attributes when ETag matches")
+    void shouldReturnNotModifiedForAttributesWhenETagMatches() {
+        // Given
+        when(userService.findVersionByKeycloakId("kc-123")).thenReturn(Optional.of(new UserVersion(1L, 3)));
+
+        // When
+        ResponseEntity<?> response = userController.getUserAttributes("kc-123", "\"1-3\"");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(userService, never()).findByKeycloakId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should return patched attributes with the new ETag")
+    void shouldReturnPatchedAttributesWithNewETag() {
+        // Given
+        JsonNode patch = jsonMapper.readTree("{\"shift\":\"night\"}");
+        testUser.setAttributes("{\"shift\":\"night\"}");
+        testUser.setVersion(4);
+        when(userService.mergeAttributes("kc-123", patch)).thenReturn(Optional.of(testUser));
+
+        // When
+        ResponseEntity<?> response = userController.mergeUserAttributes("kc-123", patch);
+
+        // Then
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1-4\"");
+        assertThat(response.getBody()).isEqualTo(patch);
+    }
+
+    @Test
+    @DisplayName("Should return error body when replacing attributes of unknown user")
+    void shouldReturnErrorBodyWhenReplacingAttributesOfUnknownUser() {
+        // Given
+        JsonNode attributes = jsonMapper.readTree("{}");
+        when(userService.replaceAttributes("missing", attributes)).thenReturn(Optional.empty());
+
+        // When
+        ResponseEntity<?> response = userController.replaceUserAttributes("missing", attributes);
+
+        // Then
+        assertThat(response.getBody()).isEqualTo(Map.of("error", "User not found", "keycloakId", "missing"));
+    }
+
+    @Test
+    @DisplayName("Should find users by attributes and reject invalid searches")
+    void shouldFindUsersByAttributes() {
+        // Given
+        List<UserIdentity> found = List.of(new UserIdentity("kc-123", "john.doe"));
+        when(userService.findActiveUsersByAttributes(jsonMapper.readTree("{\"site\":\"HQ\"}"), 10)).thenReturn(found);
+
+        // When
+        ResponseEntity<?> response = userController.findUsersByAttributes("{\"site\":\"HQ\"}", 10);
+
+        // Then
+        assertThat(response.getBody()).isEqualTo(found);
+        assertThatThrownBy(() -> userController.findUsersByAttributes("{\"site\":", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> userController.findUsersByAttributes("{}", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -33,6 +33,18 @@ sleep 30
 
 echo ""
 echo "🎉 Infrastructure services are running!"
+
+# Optionally start Janus itself, using the AppCDS archive from 'make cds' when present
+if [ "$1" = "--run" ]; then
+    CDS_DIR="target/cds"
+    if [ -f "${CDS_DIR}/janus.jsa" ]; then
+        APP_JAR=$(ls "${CDS_DIR}"/*.jar | head -n 1)
+        echo "🚀 Starting Janus with CDS archive ${CDS_DIR}/janus.jsa"
+        exec java -XX:SharedArchiveFile="${CDS_DIR}/janus.jsa" -jar "${APP_JAR}" --spring.profiles.active=dev
+    fi
+    echo "🚀 Starting Janus (no CDS archive - run 'make cds' to create one)"
+    exec mvn spring-boot:run -Dspring-boot.run.profiles=dev
+fi
 echo ""
 echo "Next steps:"
 echo "1. Configure Keycloak:"
@@ -45,5 +57,6 @@ echo "2. Update application.yml with your Keycloak client secret"
 echo ""
 echo "3. Start the application:"
 echo "   mvn spring-boot:run -Dspring-boot.run.profiles=dev"
+echo "   or ./start.sh --run (uses the AppCDS archive from 'make cds' when present)"
 echo ""
 echo "📚 See README.md for detailed setup instructions"